@@ -0,0 +1,168 @@
+/*
+ * Copyright 2019 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.jenkins.plugins.k8sengine;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.google.common.hash.Hashing;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.util.AtomicFileWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * Records the content hashes of the objects last applied successfully to a cluster namespace, so
+ * that subsequent deployments only need to send the objects which changed. Ledgers are stored per
+ * job in a single file holding one entry per cluster and namespace.
+ */
+public class ApplyLedger {
+    /** Name of the ledger file in the root directory of a job. */
+    public static final String FILE_NAME = "gke-apply-ledger.json";
+
+    private static final ObjectMapper MAPPER =
+            new ObjectMapper().configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+    private static final TypeReference<Map<String, Entry>> LEDGER_TYPE = new TypeReference<Map<String, Entry>>() {};
+    private static final Object LOCK = new Object();
+
+    private final File file;
+    private final String key;
+    private final Entry entry;
+
+    private ApplyLedger(File file, String key, Entry entry) {
+        this.file = file;
+        this.key = key;
+        this.entry = entry;
+    }
+
+    /** The state recorded for one cluster namespace. Public for (de)serialization. */
+    public static class Entry {
+        public long lastFullApply;
+        public Map<String, String> hashes = new HashMap<>();
+    }
+
+    /**
+     * Loads the entry for a cluster namespace from a ledger file.
+     *
+     * @param file The ledger file, which need not exist yet.
+     * @param key Identifies the cluster and namespace within the file.
+     * @return The {@link ApplyLedger} for the cluster namespace.
+     * @throws IOException If the ledger file couldn't be read.
+     */
+    public static ApplyLedger load(@NonNull File file, @NonNull String key) throws IOException {
+        synchronized (LOCK) {
+            Entry entry = readAll(file).get(key);
+            return new ApplyLedger(file, key, entry != null ? entry : new Entry());
+        }
+    }
+
+    /**
+     * @param interval The interval in milliseconds between full applies, or 0 to never force one.
+     * @param now The current time in milliseconds.
+     * @return Whether every object should be applied regardless of its recorded hash.
+     */
+    public boolean isFullApplyDue(long interval, long now) {
+        return entry.hashes.isEmpty() || (interval > 0 && now - entry.lastFullApply >= interval);
+    }
+
+    /**
+     * Filters the objects whose content differs from the content last applied.
+     *
+     * @param manifestObjects The {@link Manifests.ManifestObject}'s to be deployed.
+     * @return The objects which were changed or never applied.
+     */
+    public List<Manifests.ManifestObject> changed(@NonNull List<Manifests.ManifestObject> manifestObjects) {
+        return manifestObjects.stream()
+                .filter((object) -> !Objects.equals(entry.hashes.get(keyOf(object)), hash(object)))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Records objects which were applied successfully and saves the ledger. A full apply replaces
+     * every recorded hash, forgetting objects which are no longer deployed.
+     *
+     * @param applied The {@link Manifests.ManifestObject}'s which were applied.
+     * @param fullApply Whether the applied objects are the complete set of deployed objects.
+     * @param now The current time in milliseconds.
+     * @throws IOException If the ledger file couldn't be written.
+     */
+    public void record(@NonNull List<Manifests.ManifestObject> applied, boolean fullApply, long now)
+            throws IOException {
+        if (fullApply) {
+            entry.hashes.clear();
+            entry.lastFullApply = now;
+        }
+        applied.forEach((object) -> entry.hashes.put(keyOf(object), hash(object)));
+
+        synchronized (LOCK) {
+            // Re-read the file so entries saved by concurrent builds for other clusters are kept.
+            Map<String, Entry> entries = readAll(file);
+            entries.put(key, entry);
+            AtomicFileWriter writer = new AtomicFileWriter(file.toPath(), StandardCharsets.UTF_8);
+            try {
+                MAPPER.writeValue(writer, entries);
+                writer.commit();
+            } finally {
+                writer.abort();
+            }
+        }
+    }
+
+    /**
+     * @param object The {@link Manifests.ManifestObject} to identify.
+     * @return The identity of the object in the cluster: {ApiVersion}/{Kind}/{Namespace}/{Name}.
+     */
+    static String keyOf(Manifests.ManifestObject object) {
+        return String.join(
+                "/",
+                Objects.toString(object.getApiVersion(), ""),
+                Objects.toString(object.getKind(), ""),
+                object.getNamespace().orElse(""),
+                object.getName().orElse(""));
+    }
+
+    /**
+     * Hashes the source of an object, normalized by sorting its map keys so that reordering the
+     * fields of a manifest doesn't change its hash.
+     *
+     * @param object The {@link Manifests.ManifestObject} to hash.
+     * @return The hex-encoded SHA-256 hash of the normalized source.
+     */
+    static String hash(Manifests.ManifestObject object) {
+        try {
+            return Hashing.sha256()
+                    .hashBytes(MAPPER.writeValueAsBytes(object.parseSource()))
+                    .toString();
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Map<String, Entry> readAll(File file) throws IOException {
+        if (!file.exists()) {
+            return new LinkedHashMap<>();
+        }
+        return MAPPER.readValue(file, LEDGER_TYPE);
+    }
+}
@@ -0,0 +1,286 @@
+/*
+ * Copyright 2019 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.jenkins.plugins.k8sengine;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.jayway.jsonpath.JsonPath;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Plans the application of {@link Manifests.ManifestObject}'s as a sequence of waves, so that
+ * objects are only applied once the objects they typically depend on exist: Namespaces and
+ * CustomResourceDefinitions first, then configuration and RBAC, then workloads, and finally
+ * Services, Ingresses and any other kinds such as custom resources. The objects of a wave don't
+ * depend on each other and are applied in parallel. The API server only serves the custom resources
+ * of a CustomResourceDefinition once it is established, so the waves following one wait for that,
+ * for up to a timeout configurable with the {@code
+ * com.google.jenkins.plugins.k8sengine.ApplyPlanner.establishedTimeoutSeconds} system property.
+ */
+public class ApplyPlanner {
+    private static final Logger LOGGER = Logger.getLogger(ApplyPlanner.class.getName());
+    public static final int DEFAULT_CONCURRENCY = 4;
+
+    /** Default time to wait for CustomResourceDefinitions to be established, in seconds. */
+    static final long DEFAULT_ESTABLISHED_TIMEOUT_SECONDS = 60;
+
+    private static final Duration ESTABLISHED_TIMEOUT = Duration.ofSeconds(Long.getLong(
+            ApplyPlanner.class.getName() + ".establishedTimeoutSeconds", DEFAULT_ESTABLISHED_TIMEOUT_SECONDS));
+    private static final Duration ESTABLISHED_POLL_INTERVAL = Duration.ofSeconds(1);
+    private static final String CUSTOM_RESOURCE_DEFINITION_KIND = "customresourcedefinition";
+    private static final ObjectFields CONDITIONS =
+            new ObjectFields.Builder().field("status", "conditions").build();
+    private static final JsonPath NAME = JsonPath.compile("metadata.name");
+
+    private static final int NAMESPACES_WAVE = 0;
+    private static final int CONFIG_WAVE = 1;
+    private static final int WORKLOADS_WAVE = 2;
+    private static final int SERVICES_WAVE = 3;
+    private static final int WAVE_COUNT = 4;
+
+    private static final ImmutableMap<String, Integer> WAVES_BY_KIND = ImmutableMap.<String, Integer>builder()
+            .put("namespace", NAMESPACES_WAVE)
+            .put(CUSTOM_RESOURCE_DEFINITION_KIND, NAMESPACES_WAVE)
+            .put("storageclass", NAMESPACES_WAVE)
+            .put("priorityclass", NAMESPACES_WAVE)
+            .put("configmap", CONFIG_WAVE)
+            .put("secret", CONFIG_WAVE)
+            .put("serviceaccount", CONFIG_WAVE)
+            .put("role", CONFIG_WAVE)
+            .put("rolebinding", CONFIG_WAVE)
+            .put("clusterrole", CONFIG_WAVE)
+            .put("clusterrolebinding", CONFIG_WAVE)
+            .put("persistentvolume", CONFIG_WAVE)
+            .put("persistentvolumeclaim", CONFIG_WAVE)
+            .put("limitrange", CONFIG_WAVE)
+            .put("resourcequota", CONFIG_WAVE)
+            .put("networkpolicy", CONFIG_WAVE)
+            .put("pod", WORKLOADS_WAVE)
+            .put("replicationcontroller", WORKLOADS_WAVE)
+            .put("replicaset", WORKLOADS_WAVE)
+            .put("deployment", WORKLOADS_WAVE)
+            .put("statefulset", WORKLOADS_WAVE)
+            .put("daemonset", WORKLOADS_WAVE)
+            .put("job", WORKLOADS_WAVE)
+            .put("cronjob", WORKLOADS_WAVE)
+            .put("service", SERVICES_WAVE)
+            .put("ingress", SERVICES_WAVE)
+            .build();
+
+    private ApplyPlanner() {}
+
+    /**
+     * Groups the objects into waves, keeping the order of the objects within each wave. Kinds
+     * without a known place, such as custom resources, go in the last wave.
+     *
+     * @param manifestObjects The {@link Manifests.ManifestObject}'s to be applied.
+     * @return The non-empty waves, in the order they should be applied.
+     */
+    public static ImmutableList<ImmutableList<Manifests.ManifestObject>> plan(
+            @NonNull List<Manifests.ManifestObject> manifestObjects) {
+        List<List<Manifests.ManifestObject>> waves = new ArrayList<>();
+        for (int i = 0; i < WAVE_COUNT; i++) {
+            waves.add(new ArrayList<>());
+        }
+
+        for (Manifests.ManifestObject object : manifestObjects) {
+            String kind = object.getKind() == null ? "" : object.getKind().toLowerCase();
+            waves.get(WAVES_BY_KIND.getOrDefault(kind, SERVICES_WAVE)).add(object);
+        }
+
+        return waves.stream()
+                .filter((wave) -> !wave.isEmpty())
+                .map(ImmutableList::copyOf)
+                .collect(ImmutableList.toImmutableList());
+    }
+
+    /**
+     * Applies the objects wave by wave, applying up to the specified number of objects of a wave at
+     * a time. A wave is only started once every object of the previous wave was applied, and every
+     * CustomResourceDefinition it holds was established. The objects are applied on threads of their
+     * own, bounded by the concurrency and released once the apply ends.
+     *
+     * @param backend {@link KubernetesBackend} for applying the objects to the cluster.
+     * @param manifestObjects The {@link Manifests.ManifestObject}'s to be applied.
+     * @param concurrency The maximum number of objects applied at the same time.
+     * @param consoleLogger {@link PrintStream} for outputting progress (intended to be user facing).
+     * @throws IOException If an object of a wave couldn't be applied, or a CustomResourceDefinition
+     *     wasn't established in time.
+     * @throws InterruptedException If interrupted while applying the objects.
+     */
+    public static void apply(
+            @NonNull KubernetesBackend backend,
+            @NonNull List<Manifests.ManifestObject> manifestObjects,
+            int concurrency,
+            @NonNull PrintStream consoleLogger)
+            throws IOException, InterruptedException {
+        Preconditions.checkArgument(concurrency > 0, "concurrency must be positive");
+        ImmutableList<ImmutableList<Manifests.ManifestObject>> waves = plan(manifestObjects);
+        Scheduler scheduler = Schedulers.newBoundedElastic(concurrency, Integer.MAX_VALUE, "gke-apply");
+        try {
+            for (int i = 0; i < waves.size(); i++) {
+                ImmutableList<Manifests.ManifestObject> wave = waves.get(i);
+                consoleLogger.println(Messages.KubernetesEngineBuilder_ApplyingWave(i + 1, waves.size(), wave.size()));
+
+                List<String> failures = block(Flux.fromIterable(wave)
+                        .flatMap((object) -> applyObject(backend, object, scheduler), concurrency)
+                        .collectList());
+                if (!failures.isEmpty()) {
+                    failures.forEach(consoleLogger::println);
+                    throw new IOException(String.format(
+                            "Failed to apply %d objects of wave %d: %s",
+                            failures.size(), i + 1, String.join("; ", failures)));
+                }
+                if (i < waves.size() - 1) {
+                    awaitEstablished(backend, wave, consoleLogger);
+                }
+            }
+        } finally {
+            scheduler.dispose();
+        }
+    }
+
+    /**
+     * Waits for the CustomResourceDefinitions among the applied objects to be established, for up to
+     * the configured timeout.
+     *
+     * @param backend {@link KubernetesBackend} for reading the CustomResourceDefinitions.
+     * @param applied The {@link Manifests.ManifestObject}'s which were applied.
+     * @param consoleLogger {@link PrintStream} for outputting progress (intended to be user facing).
+     * @throws IOException If a CustomResourceDefinition wasn't established in time.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    static void awaitEstablished(
+            KubernetesBackend backend, List<Manifests.ManifestObject> applied, PrintStream consoleLogger)
+            throws IOException, InterruptedException {
+        awaitEstablished(backend, applied, ESTABLISHED_TIMEOUT, ESTABLISHED_POLL_INTERVAL, consoleLogger);
+    }
+
+    /**
+     * Waits for the CustomResourceDefinitions among the applied objects to be established, so that
+     * the API server serves their custom resources before any is applied. Objects of other kinds
+     * exist as soon as they were applied, and aren't waited for.
+     *
+     * @param backend {@link KubernetesBackend} for reading the CustomResourceDefinitions.
+     * @param applied The {@link Manifests.ManifestObject}'s which were applied.
+     * @param timeout How long to wait for the CustomResourceDefinitions to be established.
+     * @param pollInterval How long to wait between reads of the CustomResourceDefinitions.
+     * @param consoleLogger {@link PrintStream} for outputting progress (intended to be user facing).
+     * @throws IOException If a CustomResourceDefinition wasn't established in time.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    static void awaitEstablished(
+            KubernetesBackend backend,
+            List<Manifests.ManifestObject> applied,
+            Duration timeout,
+            Duration pollInterval,
+            PrintStream consoleLogger)
+            throws IOException, InterruptedException {
+        Set<String> pending = applied.stream()
+                .filter((object) -> CUSTOM_RESOURCE_DEFINITION_KIND.equalsIgnoreCase(object.getKind()))
+                .map((object) -> object.getName().orElse(""))
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        consoleLogger.println(Messages.KubernetesEngineBuilder_WaitingForEstablished(pending.size()));
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (true) {
+            List<Object> definitions;
+            try {
+                definitions = backend.getObjects(CUSTOM_RESOURCE_DEFINITION_KIND, null, pending, CONDITIONS);
+            } catch (IOException e) {
+                // The later waves report the error of a custom resource that still can't be applied.
+                LOGGER.log(Level.WARNING, "Failed to read CustomResourceDefinitions, no longer waiting for them", e);
+                return;
+            }
+            for (Object definition : definitions) {
+                if (isEstablished(definition)) {
+                    pending.remove(NAME.<String>read(definition));
+                }
+            }
+            if (pending.isEmpty()) {
+                return;
+            }
+            if (System.nanoTime() >= deadline) {
+                throw new IOException(String.format(
+                        "CustomResourceDefinitions not established after %d seconds: %s",
+                        timeout.getSeconds(), String.join(", ", pending)));
+            }
+            Thread.sleep(pollInterval.toMillis());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static boolean isEstablished(Object definition) {
+        Object status = ((Map<String, Object>) definition).get("status");
+        Object conditions = status instanceof Map ? ((Map<String, Object>) status).get("conditions") : null;
+        if (!(conditions instanceof List)) {
+            return false;
+        }
+        return ((List<Object>) conditions).stream()
+                .filter((condition) -> condition instanceof Map)
+                .map((condition) -> (Map<String, Object>) condition)
+                .anyMatch((condition) -> "Established".equals(condition.get("type"))
+                        && "True".equals(condition.get("status")));
+    }
+
+    /* Waits for the objects of a wave, rethrowing an interruption rather than Reactor's wrapper of it. */
+    private static <T> T block(Mono<T> mono) throws InterruptedException {
+        try {
+            return mono.block();
+        } catch (RuntimeException e) {
+            if (Exceptions.unwrap(e) instanceof InterruptedException) {
+                throw (InterruptedException) Exceptions.unwrap(e);
+            }
+            throw e;
+        }
+    }
+
+    /* Applies an object, emitting a description of the failure if it couldn't be applied. */
+    private static Mono<String> applyObject(
+            KubernetesBackend backend, Manifests.ManifestObject object, Scheduler scheduler) {
+        return Mono.fromCallable(() -> {
+                    backend.apply(object);
+                    return object;
+                })
+                .subscribeOn(scheduler)
+                .then(Mono.<String>empty())
+                .onErrorResume(
+                        (error) -> !(error instanceof InterruptedException),
+                        (error) -> {
+                            LOGGER.log(Level.WARNING, String.format("Failed to apply %s", object.describe()), error);
+                            return Mono.just(String.format("%s: %s", object.describe(), error.getMessage()));
+                        });
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright 2019 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.jenkins.plugins.k8sengine;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+/**
+ * Applies {@link Manifests.ManifestObject}'s in chunks of bounded size, retrying a chunk on its own
+ * when it fails with a transient error such as a conflict, a webhook timeout or an overloaded API
+ * server. Only the failed chunk is sent again, rather than every object, and a chunk that keeps
+ * failing doesn't stop the other chunks of its wave from being applied. Chunks are cut from the
+ * waves of {@link ApplyPlanner}, so objects are still applied after the objects they depend on, and
+ * custom resources after their CustomResourceDefinitions were established.
+ */
+public class ChunkedApplier {
+    private static final Logger LOGGER = Logger.getLogger(ChunkedApplier.class.getName());
+    public static final int DEFAULT_CHUNK_SIZE = 50;
+    public static final int DEFAULT_MAX_ATTEMPTS = 3;
+
+    static final Duration FIRST_BACKOFF = Duration.ofSeconds(2);
+    static final Duration MAX_BACKOFF = Duration.ofSeconds(30);
+
+    // Errors of kubectl and the API server worth retrying, matched in lower case. Timeouts are matched by
+    // whole phrases, as field names such as "timeoutSeconds" show up in permanent validation errors.
+    private static final ImmutableList<String> TRANSIENT_ERRORS = ImmutableList.of(
+            "the object has been modified",
+            "operation cannot be fulfilled",
+            "failed calling webhook",
+            "context deadline exceeded",
+            "i/o timeout",
+            "client.timeout exceeded",
+            "tls handshake timeout",
+            "the server was unable to return a response in the time allotted",
+            "timed out",
+            "connection refused",
+            "connection reset",
+            "unable to handle the request",
+            "too many requests",
+            "etcdserver",
+            "status: 409",
+            "status: 429",
+            "status: 500",
+            "status: 502",
+            "status: 503",
+            "status: 504");
+
+    private ChunkedApplier() {}
+
+    /** Thrown when some chunks couldn't be applied, holding the objects that were. */
+    public static class PartialApplyException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        private final transient ImmutableList<Manifests.ManifestObject> applied;
+
+        PartialApplyException(String message, List<Manifests.ManifestObject> applied) {
+            super(message);
+            this.applied = ImmutableList.copyOf(applied);
+        }
+
+        /** @return The objects of the chunks that were applied. */
+        public ImmutableList<Manifests.ManifestObject> getApplied() {
+            return applied;
+        }
+    }
+
+    /**
+     * Splits the objects into chunks of at most the specified size, without mixing the waves of
+     * {@link ApplyPlanner}.
+     *
+     * @param manifestObjects The {@link Manifests.ManifestObject}'s to be applied.
+     * @param chunkSize The maximum number of objects of a chunk.
+     * @return The waves of chunks, in the order they should be applied.
+     */
+    public static ImmutableList<ImmutableList<ImmutableList<Manifests.ManifestObject>>> chunk(
+            @NonNull List<Manifests.ManifestObject> manifestObjects, int chunkSize) {
+        Preconditions.checkArgument(chunkSize > 0, "chunkSize must be positive");
+        return ApplyPlanner.plan(manifestObjects).stream()
+                .map((wave) -> Lists.partition(wave, chunkSize).stream()
+                        .map(ImmutableList::copyOf)
+                        .collect(ImmutableList.toImmutableList()))
+                .collect(ImmutableList.toImmutableList());
+    }
+
+    /**
+     * Applies the objects chunk by chunk, making up to the specified number of attempts at a chunk
+     * failing with a transient error, with jittered exponential backoff between attempts. When a
+     * chunk still fails, the remaining chunks of its wave are applied but the later waves aren't.
+     *
+     * @param backend {@link KubernetesBackend} for applying the objects to the cluster.
+     * @param manifests The {@link Manifests} the objects were loaded into.
+     * @param manifestObjects The {@link Manifests.ManifestObject}'s to be applied.
+     * @param chunkSize The maximum number of objects applied by a single call to the backend.
+     * @param maxAttempts The maximum number of attempts at applying a chunk.
+     * @param consoleLogger {@link PrintStream} for outputting progress (intended to be user facing).
+     * @throws PartialApplyException If a chunk couldn't be applied.
+     * @throws IOException If applying a chunk failed otherwise.
+     * @throws InterruptedException If applying a chunk was interrupted.
+     */
+    public static void apply(
+            @NonNull KubernetesBackend backend,
+            @NonNull Manifests manifests,
+            @NonNull List<Manifests.ManifestObject> manifestObjects,
+            int chunkSize,
+            int maxAttempts,
+            @NonNull PrintStream consoleLogger)
+            throws IOException, InterruptedException {
+        apply(backend, manifests, manifestObjects, chunkSize, maxAttempts, FIRST_BACKOFF, MAX_BACKOFF, consoleLogger);
+    }
+
+    static void apply(
+            KubernetesBackend backend,
+            Manifests manifests,
+            List<Manifests.ManifestObject> manifestObjects,
+            int chunkSize,
+            int maxAttempts,
+            Duration firstBackoff,
+            Duration maxBackoff,
+            PrintStream consoleLogger)
+            throws IOException, InterruptedException {
+        Preconditions.checkArgument(maxAttempts > 0, "maxAttempts must be positive");
+        ImmutableList<ImmutableList<ImmutableList<Manifests.ManifestObject>>> waves =
+                chunk(manifestObjects, chunkSize);
+        int chunkCount = waves.stream().mapToInt(List::size).sum();
+
+        List<Manifests.ManifestObject> applied = new ArrayList<>();
+        List<String> failures = new ArrayList<>();
+        int chunkNumber = 0;
+        for (int i = 0; i < waves.size(); i++) {
+            ImmutableList<ImmutableList<Manifests.ManifestObject>> wave = waves.get(i);
+            for (ImmutableList<Manifests.ManifestObject> chunk : wave) {
+                chunkNumber++;
+                consoleLogger.println(
+                        Messages.KubernetesEngineBuilder_ApplyingChunk(chunkNumber, chunkCount, chunk.size()));
+                try {
+                    applyChunk(
+                            backend,
+                            manifests.subset(chunk),
+                            chunkNumber,
+                            maxAttempts,
+                            firstBackoff,
+                            maxBackoff,
+                            consoleLogger);
+                    applied.addAll(chunk);
+                } catch (IOException e) {
+                    LOGGER.log(Level.WARNING, String.format("Failed to apply chunk %d", chunkNumber), e);
+                    failures.add(String.format("chunk %d: %s", chunkNumber, e.getMessage()));
+                }
+            }
+            if (!failures.isEmpty()) {
+                failures.forEach(consoleLogger::println);
+                throw new PartialApplyException(
+                        String.format(
+                                "Failed to apply %d of %d chunks: %s",
+                                failures.size(), chunkCount, String.join("; ", failures)),
+                        applied);
+            }
+            if (i < waves.size() - 1) {
+                ApplyPlanner.awaitEstablished(
+                        backend, wave.stream().flatMap(List::stream).collect(Collectors.toList()), consoleLogger);
+            }
+        }
+    }
+
+    /* Applies a chunk, retrying it while it fails with a transient error. */
+    private static void applyChunk(
+            KubernetesBackend backend,
+            Manifests chunk,
+            int chunkNumber,
+            int maxAttempts,
+            Duration firstBackoff,
+            Duration maxBackoff,
+            PrintStream consoleLogger)
+            throws IOException, InterruptedException {
+        try {
+            Mono.fromCallable(() -> {
+                        backend.apply(chunk);
+                        return chunk;
+                    })
+                    .retryWhen(Retry.backoff(maxAttempts - 1, firstBackoff)
+                            .maxBackoff(maxBackoff)
+                            .filter(ChunkedApplier::isTransient)
+                            .doBeforeRetry((signal) -> consoleLogger.println(
+                                    Messages.KubernetesEngineBuilder_RetryingChunk(
+                                            chunkNumber,
+                                            signal.totalRetries() + 2,
+                                            maxAttempts,
+                                            signal.failure().getMessage())))
+                            .onRetryExhaustedThrow((spec, signal) -> signal.failure()))
+                    .block();
+        } catch (RuntimeException e) {
+            Throwable cause = Exceptions.unwrap(e);
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof InterruptedException) {
+                throw (InterruptedException) cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Whether an error applying objects is likely to go away when they're applied again, such as a
+     * conflict with another writer, a timed out admission webhook or an unavailable API server.
+     * Errors of the objects themselves, such as invalid fields, aren't.
+     *
+     * @param error The error applying objects.
+     * @return Whether the objects should be applied again.
+     */
+    static boolean isTransient(Throwable error) {
+        if (error instanceof ConnectException || error instanceof SocketTimeoutException) {
+            return true;
+        }
+        if (!(error instanceof IOException) || error.getMessage() == null) {
+            return false;
+        }
+        String message = error.getMessage().toLowerCase(Locale.ROOT);
+        return TRANSIENT_ERRORS.stream().anyMatch(message::contains);
+    }
+}
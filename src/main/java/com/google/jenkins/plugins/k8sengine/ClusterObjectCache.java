@@ -0,0 +1,550 @@
+/*
+ * Copyright 2019 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.jenkins.plugins.k8sengine;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.primitives.Longs;
+import hudson.FilePath;
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import reactor.core.Disposable;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Shares watches of the objects read by verifications across every build, so that concurrent
+ * builds verifying objects of the same cluster with the same credentials read them from a single
+ * watch per namespace and kind instead of each polling the API server. A watch is opened by the
+ * first verification reading objects of its namespace and kind, is counted as in use by every
+ * verification reading from it, and is closed once no verification has used it for an idle timeout,
+ * configurable with the {@code
+ * com.google.jenkins.plugins.k8sengine.ClusterObjectCache.idleTimeoutSeconds} system property.
+ * Only the watches of backends which don't depend on a build, such as {@link
+ * KubernetesHttpBackend}, are shared; verifications using other backends read from the cluster as
+ * before. Watches only keep the fields of the objects read by the {@link KubernetesVerifiers}, so
+ * that the objects they hold stay small. A watch can lag behind the cluster, so each verification
+ * reads an object from the cluster the first time and after every apply, and only reads it from the
+ * watch once the watch has caught up with the state it read.
+ */
+final class ClusterObjectCache {
+    private static final Logger LOGGER = Logger.getLogger(ClusterObjectCache.class.getName());
+
+    /** Default time a watch stays open once no verification uses it, in seconds. */
+    static final long DEFAULT_IDLE_TIMEOUT_SECONDS = 60;
+
+    private static final ClusterObjectCache SHARED = new ClusterObjectCache(Duration.ofSeconds(
+            Long.getLong(ClusterObjectCache.class.getName() + ".idleTimeoutSeconds", DEFAULT_IDLE_TIMEOUT_SECONDS)));
+
+    private final Duration idleTimeout;
+    // The watches which haven't ended, by the collection of objects they watch and the credentials reading it.
+    private final Map<String, SharedWatch> watches = new HashMap<>();
+    private long opened;
+
+    /**
+     * Constructs a new {@link ClusterObjectCache}.
+     *
+     * @param idleTimeout How long a watch stays open once no verification uses it.
+     */
+    ClusterObjectCache(Duration idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    /** @return The cache shared by every build. */
+    static ClusterObjectCache get() {
+        return SHARED;
+    }
+
+    /**
+     * Opens a session for one verification, reading objects through the shared watches.
+     *
+     * @param backend The {@link KubernetesBackend} of the verification, which also opens the watches
+     *     it is the first to use.
+     * @return A new {@link Session}, to be closed once the verification ends.
+     */
+    Session open(KubernetesBackend backend) {
+        return new Session(backend);
+    }
+
+    /** @return The number of watches open, whether in use or idle. */
+    synchronized int getOpenWatches() {
+        return watches.size();
+    }
+
+    /** @return The number of watches opened since Jenkins started. */
+    synchronized long getWatchesOpened() {
+        return opened;
+    }
+
+    /* Returns the watch of a collection, opening it with the backend unless it is open already. */
+    private SharedWatch acquire(KubernetesBackend backend, String id, String kind, String namespace)
+            throws IOException, InterruptedException {
+        SharedWatch watch;
+        synchronized (this) {
+            watch = watches.get(id);
+            if (watch == null) {
+                watch = new SharedWatch(id, KubernetesVerifiers.getWatchedFields(kind));
+                watches.put(id, watch);
+                opened++;
+            }
+            watch.references++;
+            if (watch.expiry != null) {
+                watch.expiry.dispose();
+                watch.expiry = null;
+            }
+        }
+
+        try {
+            watch.open(backend, kind, namespace);
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            release(watch);
+            throw e;
+        }
+        return watch;
+    }
+
+    /* Stops counting a verification as using a watch, closing the watch once it stays unused. */
+    private synchronized void release(SharedWatch watch) {
+        watch.references--;
+        if (watch.references == 0 && watches.get(watch.id) == watch) {
+            watch.expiry = Schedulers.parallel()
+                    .schedule(() -> expire(watch), idleTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void expire(SharedWatch watch) {
+        synchronized (this) {
+            if (watch.references > 0 || !watches.remove(watch.id, watch)) {
+                return;
+            }
+        }
+        LOGGER.info(String.format("Closing idle watch of %s", watch.id));
+        watch.close();
+    }
+
+    /* Forgets a watch which ended, so that the next verification opens a new one. */
+    private synchronized void remove(SharedWatch watch) {
+        watches.remove(watch.id, watch);
+        if (watch.expiry != null) {
+            watch.expiry.dispose();
+            watch.expiry = null;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> metadataOf(Object json) {
+        Object metadata = ((Map<String, Object>) json).get("metadata");
+        return metadata instanceof Map ? (Map<String, Object>) metadata : ImmutableMap.of();
+    }
+
+    private static String nameOf(Object json) {
+        return (String) metadataOf(json).get("name");
+    }
+
+    /* Whether a state of an object is older than another, by their generation then resourceVersion. */
+    private static boolean isOlder(Object json, Object than) {
+        int generations = compareVersions(metadataOf(json).get("generation"), metadataOf(than).get("generation"));
+        if (generations != 0) {
+            return generations < 0;
+        }
+        return compareVersions(metadataOf(json).get("resourceVersion"), metadataOf(than).get("resourceVersion")) < 0;
+    }
+
+    /* Compares two versions, which are only ordered if both are numbers, and otherwise compare as equal. */
+    private static int compareVersions(Object version, Object other) {
+        Long first = versionOf(version);
+        Long second = versionOf(other);
+        return first == null || second == null ? 0 : Long.compare(first, second);
+    }
+
+    private static Long versionOf(Object version) {
+        if (version instanceof Number) {
+            return ((Number) version).longValue();
+        }
+        return version instanceof String ? Longs.tryParse((String) version) : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static boolean hasLabels(Object json, Map<String, String> labels) {
+        Object objectLabels = metadataOf(json).get("labels");
+        Map<String, Object> present =
+                objectLabels instanceof Map ? (Map<String, Object>) objectLabels : ImmutableMap.of();
+        return labels.entrySet().stream()
+                .allMatch((label) -> label.getValue().equals(present.get(label.getKey())));
+    }
+
+    /**
+     * The watch of the objects of a kind in a namespace, keeping the latest state of each object
+     * until it is deleted and passing changes on to the listeners of the verifications watching them.
+     */
+    private final class SharedWatch implements KubernetesBackend.WatchListener {
+        private final String id;
+        // The fields kept of the watched objects, which the verifiers read.
+        private final ObjectFields fields;
+        private final Map<String, Object> objects = new ConcurrentHashMap<>();
+        private final List<KubernetesBackend.WatchListener> listeners = new CopyOnWriteArrayList<>();
+        // The objects deleted while the current objects are listed, so that the list doesn't bring them
+        // back, or null once they are listed. Guarded by the listeners.
+        private Set<String> deletedWhileListing = new HashSet<>();
+        private volatile Closeable watch;
+        private volatile boolean ended;
+        // Guarded by the cache.
+        private int references;
+        private Disposable expiry;
+
+        private SharedWatch(String id, ObjectFields fields) {
+            this.id = id;
+            this.fields = fields;
+        }
+
+        /* Starts the watch unless it was started already, once the current objects are listed. */
+        private synchronized void open(KubernetesBackend backend, String kind, String namespace)
+                throws IOException, InterruptedException {
+            if (ended) {
+                throw new IOException(String.format("Watch of %s ended", id));
+            }
+            if (watch != null) {
+                return;
+            }
+
+            try {
+                // The watch starts before the objects are listed, so that no change is missed in between.
+                watch = backend.watch(kind, namespace, this);
+                List<Object> current =
+                        backend.getObjectsThatMatchLabels(kind, namespace, ImmutableMap.of(), fields);
+                synchronized (listeners) {
+                    for (Object json : current) {
+                        if (!deletedWhileListing.contains(nameOf(json))) {
+                            objects.putIfAbsent(nameOf(json), json);
+                        }
+                    }
+                    deletedWhileListing = null;
+                }
+            } catch (IOException | InterruptedException | RuntimeException e) {
+                remove(this);
+                close();
+                throw e;
+            }
+            LOGGER.info(String.format("Opened shared watch of %s with %d objects", id, objects.size()));
+        }
+
+        private boolean hasEnded() {
+            return ended;
+        }
+
+        private Object get(String name) {
+            return objects.get(name);
+        }
+
+        private ImmutableList<Object> matching(Map<String, String> labels) {
+            return objects.values().stream()
+                    .filter((json) -> hasLabels(json, labels))
+                    .collect(ImmutableList.toImmutableList());
+        }
+
+        /* Passes every change on to a listener, until the returned subscription is closed. */
+        private Closeable subscribe(KubernetesBackend.WatchListener listener) {
+            listeners.add(listener);
+            if (ended) {
+                // The watch ended while the listener was added, and might not have told it.
+                listener.onClose(null);
+            }
+            return () -> listeners.remove(listener);
+        }
+
+        @Override
+        public void onObject(Object watched) {
+            Object json = fields.project(watched);
+            synchronized (listeners) {
+                objects.put(nameOf(json), json);
+                listeners.forEach((listener) -> notify(() -> listener.onObject(json)));
+            }
+        }
+
+        @Override
+        public void onDelete(Object watched) {
+            Object json = fields.project(watched);
+            synchronized (listeners) {
+                objects.remove(nameOf(json));
+                if (deletedWhileListing != null) {
+                    deletedWhileListing.add(nameOf(json));
+                }
+                listeners.forEach((listener) -> notify(() -> listener.onDelete(json)));
+            }
+        }
+
+        @Override
+        public void onClose(Exception cause) {
+            ended = true;
+            remove(this);
+            listeners.forEach((listener) -> listener.onClose(cause));
+        }
+
+        private void notify(Runnable event) {
+            try {
+                event.run();
+            } catch (RuntimeException e) {
+                // The other verifications keep reading from the watch.
+                LOGGER.log(Level.WARNING, String.format("Listener of the watch of %s failed", id), e);
+            }
+        }
+
+        private void close() {
+            ended = true;
+            Closeable current = watch;
+            if (current == null) {
+                return;
+            }
+            try {
+                current.close();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, String.format("Failed to close watch of %s", id), e);
+            }
+        }
+    }
+
+    /**
+     * Passes each state of an object on to a listener, unless the listener received a newer one or
+     * the object was deleted since.
+     */
+    private static final class LatestObjects implements KubernetesBackend.WatchListener {
+        private final KubernetesBackend.WatchListener listener;
+        // The latest state of each object passed on, by name.
+        private final Map<String, Object> latest = new HashMap<>();
+        // The last state of each deleted object, by name.
+        private final Map<String, Object> deleted = new HashMap<>();
+        private boolean closed;
+
+        private LatestObjects(KubernetesBackend.WatchListener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public synchronized void onObject(Object json) {
+            Object previous = latest.get(nameOf(json));
+            Object tombstone = deleted.get(nameOf(json));
+            // Only an object created again after its deletion has a later resourceVersion.
+            boolean deletedSince = tombstone != null
+                    && compareVersions(
+                                    metadataOf(json).get("resourceVersion"),
+                                    metadataOf(tombstone).get("resourceVersion"))
+                            <= 0;
+            if (closed || deletedSince || (previous != null && isOlder(json, previous))) {
+                return;
+            }
+            deleted.remove(nameOf(json));
+            latest.put(nameOf(json), json);
+            listener.onObject(json);
+        }
+
+        @Override
+        public synchronized void onDelete(Object json) {
+            if (closed) {
+                return;
+            }
+            latest.remove(nameOf(json));
+            deleted.put(nameOf(json), json);
+            listener.onDelete(json);
+        }
+
+        @Override
+        public synchronized void onClose(Exception cause) {
+            closed = true;
+            listener.onClose(cause);
+        }
+    }
+
+    /**
+     * The {@link KubernetesBackend} of one verification, reading objects from the shared watches and
+     * passing every other call on to the backend of the verification. Objects whose watch can't be
+     * shared or opened are read with the backend of the verification. An object is read with the
+     * backend the first time the verification reads it and after every apply, and from the watch once
+     * the watch holds the generation and resourceVersion read, or a later one. Watches only keep the
+     * fields the verifiers read, so objects requested with {@link ObjectFields} the watch doesn't
+     * keep are read with the backend, and objects read from a watch keep all of the watched fields.
+     */
+    final class Session implements KubernetesBackend, Closeable {
+        private final KubernetesBackend backend;
+        // Guarded by this.
+        private final Map<String, SharedWatch> acquired = new HashMap<>();
+        private final Set<String> unshared = new HashSet<>();
+        // The state of each object last read with the backend, by the id of its watch and its name.
+        private final Map<String, Map<String, Object>> read = new HashMap<>();
+        private boolean closed;
+
+        private Session(KubernetesBackend backend) {
+            this.backend = backend;
+        }
+
+        /* The shared watch of the objects of a kind in a namespace, or null unless it keeps the fields. */
+        private SharedWatch watchOf(String kind, String namespace, ObjectFields fields) throws InterruptedException {
+            return KubernetesVerifiers.getWatchedFields(kind).covers(fields) ? watchOf(kind, namespace) : null;
+        }
+
+        /* The shared watch of the objects of a kind in a namespace, or null to read them from the backend. */
+        private synchronized SharedWatch watchOf(String kind, String namespace) throws InterruptedException {
+            String id;
+            try {
+                id = backend.getCollectionId(kind, namespace);
+            } catch (IOException e) {
+                return null;
+            }
+            if (closed || id == null || unshared.contains(id)) {
+                return null;
+            }
+
+            SharedWatch watch = acquired.get(id);
+            if (watch != null && !watch.hasEnded()) {
+                return watch;
+            }
+            if (watch != null) {
+                // The watch ended, so a new one is opened in its place.
+                acquired.remove(id);
+                release(watch);
+            }
+            try {
+                watch = acquire(backend, id, kind, namespace);
+            } catch (IOException | RuntimeException e) {
+                LOGGER.log(Level.WARNING, String.format("Failed to watch %s, reading from the cluster instead", id), e);
+                unshared.add(id);
+                return null;
+            }
+            acquired.put(id, watch);
+            return watch;
+        }
+
+        /* The state of each object of a watch last read with the backend, by name. */
+        private synchronized Map<String, Object> readFrom(SharedWatch watch) {
+            return read.computeIfAbsent(watch.id, (id) -> new ConcurrentHashMap<>());
+        }
+
+        /* Forgets the states read with the backend, which the applied objects might have left behind. */
+        private synchronized void forgetRead() {
+            read.clear();
+        }
+
+        @Override
+        public void apply(FilePath manifestFile) throws IOException, InterruptedException {
+            backend.apply(manifestFile);
+            forgetRead();
+        }
+
+        @Override
+        public void apply(Manifests manifests) throws IOException, InterruptedException {
+            backend.apply(manifests);
+            forgetRead();
+        }
+
+        @Override
+        public void apply(Manifests.ManifestObject object) throws IOException, InterruptedException {
+            backend.apply(object);
+            forgetRead();
+        }
+
+        @Override
+        public Object getObject(String kind, String name) throws IOException, InterruptedException {
+            return backend.getObject(kind, name);
+        }
+
+        @Override
+        public ImmutableList<Object> getObjects(
+                String kind, String namespace, Collection<String> names, ObjectFields fields)
+                throws IOException, InterruptedException {
+            SharedWatch watch = watchOf(kind, namespace, fields);
+            if (watch == null) {
+                return backend.getObjects(kind, namespace, names, fields);
+            }
+
+            Map<String, Object> latest = readFrom(watch);
+            ImmutableList.Builder<Object> objects = ImmutableList.builder();
+            List<String> stale = new ArrayList<>();
+            for (String name : names) {
+                Object cached = watch.get(name);
+                Object current = latest.get(name);
+                if (cached == null || current == null || isOlder(cached, current)) {
+                    stale.add(name);
+                } else {
+                    objects.add(cached);
+                }
+            }
+            if (!stale.isEmpty()) {
+                // The watch might not have caught up with these objects yet, so they are read from the cluster.
+                ObjectFields versioned = fields.and("metadata", "generation").and("metadata", "resourceVersion");
+                for (Object json : backend.getObjects(kind, namespace, stale, versioned)) {
+                    latest.put(nameOf(json), json);
+                    objects.add(json);
+                }
+            }
+            return objects.build();
+        }
+
+        @Override
+        public ImmutableList<Object> getObjectsThatMatchLabels(
+                String kind, String namespace, Map<String, String> labels, ObjectFields fields)
+                throws IOException, InterruptedException {
+            SharedWatch watch = watchOf(kind, namespace, fields);
+            return watch == null
+                    ? backend.getObjectsThatMatchLabels(kind, namespace, labels, fields)
+                    : watch.matching(labels);
+        }
+
+        @Override
+        public String getCollectionId(String kind, String namespace) throws IOException, InterruptedException {
+            return backend.getCollectionId(kind, namespace);
+        }
+
+        @Override
+        public Closeable watch(String kind, String namespace, WatchListener listener)
+                throws IOException, InterruptedException {
+            SharedWatch watch = watchOf(kind, namespace);
+            if (watch == null) {
+                return backend.watch(kind, namespace, listener);
+            }
+
+            // The current objects are listed from the cluster, as the watch might not have caught up
+            // with them yet, and the changes of the watch older than them are left out.
+            LatestObjects latest = new LatestObjects(listener);
+            Closeable subscription = watch.subscribe(latest);
+            try {
+                backend.getObjectsThatMatchLabels(kind, namespace, ImmutableMap.of(), watch.fields)
+                        .forEach(latest::onObject);
+            } catch (IOException | InterruptedException | RuntimeException e) {
+                subscription.close();
+                throw e;
+            }
+            return subscription;
+        }
+
+        /** Stops using the shared watches, which close once no other verification uses them. */
+        @Override
+        public synchronized void close() {
+            closed = true;
+            acquired.values().forEach(ClusterObjectCache.this::release);
+            acquired.clear();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2019 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.jenkins.plugins.k8sengine;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Parses manifests by streaming the Jackson YAML tokens of their documents. Jackson doesn't report
+ * where documents start, so the "---" markers are found in the text: at the start of a line they
+ * can only separate documents, since every document holds a mapping.
+ */
+final class JacksonManifestParser extends ManifestParser {
+    // YAMLFactory is thread-safe, unlike the parsers it creates for each file.
+    private static final YAMLFactory FACTORY = new YAMLFactory();
+    private static final Pattern DOCUMENT_MARKER = Pattern.compile("---(?:[ \t].*)?[\r\n\u0085\u2028\u2029]*");
+
+    @Override
+    String getName() {
+        return JACKSON;
+    }
+
+    @Override
+    List<DocumentStart> scan(String content) throws IOException {
+        List<Integer> markers = markerLines(content);
+        List<DocumentStart> starts = new ArrayList<>();
+        int marker = 0;
+        int index = 0;
+        try (JsonParser parser = FACTORY.createParser(content)) {
+            for (JsonToken root = parser.nextToken(); root != null; root = parser.nextToken(), index++) {
+                if (root == JsonToken.VALUE_NULL) {
+                    // An empty document, which is left to its marker.
+                    continue;
+                }
+                if (root != JsonToken.START_OBJECT) {
+                    throw new IOException(String.format("Document %d is not a Kubernetes object", index + 1));
+                }
+
+                int line = parser.getTokenLocation().getLineNr() - 1;
+                Integer start = null;
+                while (marker < markers.size() && markers.get(marker) <= line) {
+                    if (start != null) {
+                        starts.add(new DocumentStart(start, true, null));
+                    }
+                    start = markers.get(marker++);
+                }
+                starts.add(new DocumentStart(
+                        start == null ? line : start, start != null, readMapping(parser, Level.ROOT)));
+            }
+        }
+        while (marker < markers.size()) {
+            starts.add(new DocumentStart(markers.get(marker++), true, null));
+        }
+        return starts;
+    }
+
+    /** Reads the mapping following a START_OBJECT token, keeping the fields of the level. */
+    private static Map<String, Object> readMapping(JsonParser parser, Level level) throws IOException {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            Level child = level.child(field);
+            if (value.isScalarValue() && level.keepsScalar(field)) {
+                if (value != JsonToken.VALUE_NULL) {
+                    fields.put(field, parser.getText());
+                }
+            } else if (child != null && value == JsonToken.START_OBJECT) {
+                fields.put(field, readMapping(parser, child));
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return fields;
+    }
+
+    /** @return The zero-based lines starting with a "---" document marker. */
+    private static List<Integer> markerLines(String content) {
+        int[] lineOffsets = lineOffsets(content);
+        List<Integer> markers = new ArrayList<>();
+        for (int line = 0; line < lineOffsets.length; line++) {
+            int end = line + 1 < lineOffsets.length ? lineOffsets[line + 1] : content.length();
+            if (content.startsWith("---", lineOffsets[line])
+                    && DOCUMENT_MARKER.matcher(content.substring(lineOffsets[line], end)).matches()) {
+                markers.add(line);
+            }
+        }
+        return markers;
+    }
+}
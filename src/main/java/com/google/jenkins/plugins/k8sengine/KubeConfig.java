@@ -22,6 +22,7 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import java.io.IOException;
 import java.io.Writer;
+import java.util.Map;
 import org.yaml.snakeyaml.Yaml;
 
 /**
@@ -79,6 +80,32 @@ public class KubeConfig {
         this.currentContext = currentContext;
     }
 
+    /** @return The API server address of the current context's cluster. */
+    public String getServer() {
+        return (String) currentEntry(getClusters(), "cluster").get("server");
+    }
+
+    /** @return The base64 encoded certificate authority data of the current context's cluster. */
+    public String getCertificateAuthorityData() {
+        return (String) currentEntry(getClusters(), "cluster").get("certificate-authority-data");
+    }
+
+    /** @return The access token of the current context's user. */
+    public String getToken() {
+        return (String) currentEntry(getUsers(), "user").get("token");
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> currentEntry(ImmutableList<Object> entries, String key) {
+        return entries.stream()
+                .map(entry -> (Map<String, Object>) entry)
+                .filter(entry -> getCurrentContext().equals(entry.get("name")))
+                .map(entry -> (Map<String, Object>) entry.get(key))
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException(
+                        String.format("No %s found for context: %s", key, getCurrentContext())));
+    }
+
     /**
      * Write a Yaml dump of this {@link KubeConfig}'s data to the specified {@link Writer}.
      * NOTE(craigatgoogle): The logic here is taken directly from the `gcloud containers clutsers
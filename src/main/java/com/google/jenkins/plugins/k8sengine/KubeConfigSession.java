@@ -0,0 +1,152 @@
+/*
+ * Copyright 2019 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.jenkins.plugins.k8sengine;
+
+import com.google.common.base.Preconditions;
+import hudson.FilePath;
+import hudson.remoting.VirtualChannel;
+import hudson.slaves.WorkspaceList;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.MasterToSlaveFileCallable;
+import org.apache.commons.io.FileUtils;
+
+/**
+ * A kubeconfig file written once to a private directory within the temporary directory of the
+ * workspace, shared by every kubectl invocation of a build step and removed when the session is
+ * closed. The file is written with its current context already set, so no `kubectl config
+ * use-context` call is needed.
+ */
+public class KubeConfigSession implements Closeable {
+    private static final Logger LOGGER = Logger.getLogger(KubeConfigSession.class.getName());
+    static final String KUBECONFIG_FILE_NAME = ".kubeconfig";
+
+    private final KubeConfig kubeConfig;
+    private final FilePath tempDir;
+    private final FilePath kubeConfigFile;
+    private final RemotingCallCounter remotingCalls;
+
+    private KubeConfigSession(KubeConfig kubeConfig, FilePath tempDir, RemotingCallCounter remotingCalls) {
+        this.kubeConfig = kubeConfig;
+        this.tempDir = tempDir;
+        this.kubeConfigFile = tempDir.child(KUBECONFIG_FILE_NAME);
+        this.remotingCalls = remotingCalls;
+    }
+
+    /**
+     * Writes the supplied {@link KubeConfig} to a temporary directory of the workspace.
+     *
+     * @param workspace The workspace the temporary directory is allocated for.
+     * @param kubeConfig The {@link KubeConfig} to be written.
+     * @return A new {@link KubeConfigSession} which must be closed by the caller.
+     * @throws IOException If an error occurred while writing the kubeconfig.
+     * @throws InterruptedException If an error occurred while writing the kubeconfig.
+     */
+    public static KubeConfigSession open(FilePath workspace, KubeConfig kubeConfig)
+            throws IOException, InterruptedException {
+        return open(workspace, kubeConfig, new RemotingCallCounter());
+    }
+
+    /**
+     * Writes the supplied {@link KubeConfig} to a temporary directory of the workspace, counting the
+     * remoting calls of the session with those the build step made before opening it.
+     *
+     * @param workspace The workspace the temporary directory is allocated for.
+     * @param kubeConfig The {@link KubeConfig} to be written.
+     * @param remotingCalls The {@link RemotingCallCounter} of the build step.
+     * @return A new {@link KubeConfigSession} which must be closed by the caller.
+     * @throws IOException If an error occurred while writing the kubeconfig.
+     * @throws InterruptedException If an error occurred while writing the kubeconfig.
+     */
+    public static KubeConfigSession open(FilePath workspace, KubeConfig kubeConfig, RemotingCallCounter remotingCalls)
+            throws IOException, InterruptedException {
+        Preconditions.checkNotNull(workspace);
+        Preconditions.checkNotNull(kubeConfig);
+        FilePath workspaceTempDir = WorkspaceList.tempDir(workspace);
+        if (workspaceTempDir == null) {
+            throw new IOException("tempDir is null");
+        }
+
+        // Set up the directory and kubeconfig with a single round-trip to the agent.
+        Preconditions.checkNotNull(remotingCalls);
+        String tempDir = remotingCalls.act(workspaceTempDir, new WriteKubeConfig(kubeConfig.toYaml()));
+        return new KubeConfigSession(kubeConfig, workspaceTempDir.child(tempDir), remotingCalls);
+    }
+
+    /** @return The {@link KubeConfig} backing this session. */
+    public KubeConfig getKubeConfig() {
+        return kubeConfig;
+    }
+
+    /** @return The temporary directory owned by this session. */
+    public FilePath getTempDir() {
+        return tempDir;
+    }
+
+    /** @return The kubeconfig file to be passed to kubectl with --kubeconfig. */
+    public FilePath getKubeConfigFile() {
+        return kubeConfigFile;
+    }
+
+    /** @return The {@link RemotingCallCounter} of the build step using this session. */
+    public RemotingCallCounter getRemotingCalls() {
+        return remotingCalls;
+    }
+
+    /** Removes the kubeconfig and its temporary directory. */
+    @Override
+    public void close() {
+        try {
+            remotingCalls.increment();
+            tempDir.deleteRecursive();
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, String.format("Failed to delete dir: %s", tempDir), e);
+        }
+    }
+
+    /**
+     * Creates a private directory within the temporary directory of the workspace and writes the
+     * kubeconfig to it, returning the name of the directory.
+     */
+    private static class WriteKubeConfig extends MasterToSlaveFileCallable<String> {
+        private static final long serialVersionUID = 1L;
+
+        private final String kubeConfigYaml;
+
+        WriteKubeConfig(String kubeConfigYaml) {
+            this.kubeConfigYaml = kubeConfigYaml;
+        }
+
+        @Override
+        public String invoke(File workspaceTempDir, VirtualChannel channel) throws IOException {
+            Files.createDirectories(workspaceTempDir.toPath());
+            File dir = Files.createTempDirectory(workspaceTempDir.toPath(), "kubectl").toFile();
+            try {
+                Files.write(
+                        new File(dir, KUBECONFIG_FILE_NAME).toPath(),
+                        kubeConfigYaml.getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                FileUtils.deleteQuietly(dir);
+                throw e;
+            }
+            return dir.getName();
+        }
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright 2019 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.jenkins.plugins.k8sengine;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteStreams;
+import hudson.EnvVars;
+import hudson.Launcher;
+import hudson.Proc;
+import hudson.model.TaskListener;
+import hudson.remoting.VirtualChannel;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import jenkins.MasterToSlaveFileCallable;
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Runs a single kubectl invocation on the machine holding the workspace, from setting up its
+ * kubeconfig through cleaning it up, so that the invocation costs one remoting round-trip. The
+ * standard output is parsed where it is produced and only the parsed result is sent back. kubectl is
+ * launched with the environment of the build, and is killed along with its children when the
+ * build is aborted. It is launched directly on the agent, so it is only used when the {@link
+ * Launcher} of the build isn't decorated; {@link KubectlWrapper} launches kubectl through decorated
+ * launchers, such as those running commands in a container, itself.
+ *
+ * @param <T> The type of the parsed output.
+ */
+class KubectlCallable<T> extends MasterToSlaveFileCallable<T> {
+    private static final long serialVersionUID = 1L;
+    static final String KUBECTL = "kubectl";
+
+    private final String executable;
+    private final String kubeConfigFile;
+    private final String kubeConfigYaml;
+    private final String tempDir;
+    private final ImmutableList<String> args;
+    private final KubectlWrapper.InputSource stdin;
+    private final EnvVars env;
+    private final KubectlWrapper.OutputParser<T> parser;
+    private final TaskListener listener;
+
+    /**
+     * Constructs a new {@link KubectlCallable}.
+     *
+     * @param session The {@link KubeConfigSession} providing the kubeconfig, or null to write the
+     *     kubeconfig for this invocation only.
+     * @param kubeConfig The {@link KubeConfig} written when there is no session.
+     * @param tempDir The directory the kubeconfig is written to when there is no session.
+     * @param args The arguments following `kubectl --kubeconfig <file>`.
+     * @param stdin Opens the standard input of the command, or null for none.
+     * @param env The environment variables of the build, which override those of the agent.
+     * @param parser Parses the standard output of the command.
+     * @param listener Receives the command line when logging verbosely, or null.
+     */
+    KubectlCallable(
+            KubeConfigSession session,
+            KubeConfig kubeConfig,
+            String tempDir,
+            ImmutableList<String> args,
+            KubectlWrapper.InputSource stdin,
+            EnvVars env,
+            KubectlWrapper.OutputParser<T> parser,
+            TaskListener listener) {
+        this(KUBECTL, session, kubeConfig, tempDir, args, stdin, env, parser, listener);
+    }
+
+    @VisibleForTesting
+    KubectlCallable(
+            String executable,
+            KubeConfigSession session,
+            KubeConfig kubeConfig,
+            String tempDir,
+            ImmutableList<String> args,
+            KubectlWrapper.InputSource stdin,
+            EnvVars env,
+            KubectlWrapper.OutputParser<T> parser,
+            TaskListener listener) {
+        this.executable = executable;
+        this.kubeConfigFile = session != null ? session.getKubeConfigFile().getRemote() : null;
+        this.kubeConfigYaml = session != null ? null : kubeConfig.toYaml();
+        this.tempDir = tempDir;
+        this.args = args;
+        this.stdin = stdin;
+        this.env = env == null ? new EnvVars() : env;
+        this.parser = parser;
+        this.listener = listener;
+    }
+
+    @Override
+    public T invoke(File workspace, VirtualChannel channel) throws IOException, InterruptedException {
+        File ownedDir = null;
+        try {
+            String configFile = kubeConfigFile;
+            if (configFile == null) {
+                Files.createDirectories(new File(tempDir).toPath());
+                ownedDir = Files.createTempDirectory(new File(tempDir).toPath(), "kubectl")
+                        .toFile();
+                File file = new File(ownedDir, KubeConfigSession.KUBECONFIG_FILE_NAME);
+                Files.write(file.toPath(), kubeConfigYaml.getBytes(StandardCharsets.UTF_8));
+                configFile = file.getAbsolutePath();
+            }
+            return run(workspace, ImmutableList.<String>builder()
+                    .add(executable, "--kubeconfig", configFile)
+                    .addAll(args)
+                    .build());
+        } finally {
+            if (ownedDir != null) {
+                FileUtils.deleteQuietly(ownedDir);
+            }
+        }
+    }
+
+    private T run(File workspace, List<String> command) throws IOException, InterruptedException {
+        // stderr is kept apart from stdout so warnings can't corrupt parsed output, and is bounded.
+        RingBufferOutputStream stderr = new RingBufferOutputStream(KubectlWrapper.MAX_STDERR_BYTES);
+        Launcher.ProcStarter starter = new Launcher.LocalLauncher(listener != null ? listener : TaskListener.NULL)
+                .launch()
+                .cmds(command)
+                .envs(env)
+                .pwd(workspace)
+                .readStdout()
+                .stderr(stderr)
+                .quiet(listener == null);
+        if (stdin != null) {
+            starter.stdin(stdin.open());
+        }
+        return await(starter.start(), parser, stderr, command);
+    }
+
+    /**
+     * Parses the standard output of a launched kubectl command while waiting for it to exit.
+     *
+     * @param proc The launched command, whose standard output is read.
+     * @param parser Parses the standard output of the command.
+     * @param stderr The standard error of the command, reported if it fails.
+     * @param command The command line, reported if the command fails.
+     * @param <T> The type of the parsed output.
+     * @return The value returned by the parser.
+     * @throws IOException If the command failed or its output couldn't be parsed.
+     * @throws InterruptedException If interrupted while waiting, which kills the command.
+     */
+    static <T> T await(
+            Proc proc, KubectlWrapper.OutputParser<T> parser, RingBufferOutputStream stderr, List<String> command)
+            throws IOException, InterruptedException {
+        // The output is parsed on its own thread so that waiting for kubectl stays interruptible: an
+        // interrupted join kills the process tree, which ends the output and with it the parser.
+        FutureTask<T> parse = new FutureTask<>(() -> {
+            try (InputStream stdout = proc.getStdout()) {
+                try {
+                    return parser.parse(stdout);
+                } finally {
+                    // Drain whatever the parser left unread so the process can't block on a full pipe.
+                    ByteStreams.exhaust(stdout);
+                }
+            }
+        });
+        Thread reader = new Thread(parse, "kubectl stdout: " + command);
+        reader.setDaemon(true);
+        reader.start();
+
+        int status = proc.join();
+        if (status != 0) {
+            // Failed commands typically produce no parseable output, so report the exit status first.
+            throw new IOException(String.format(
+                    "Failed to launch command args: %s, status: %s. Logs: %s",
+                    command, status, stderr.toString(StandardCharsets.UTF_8.name())));
+        }
+
+        try {
+            return parse.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+}
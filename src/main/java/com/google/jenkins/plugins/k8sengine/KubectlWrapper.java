@@ -15,35 +15,60 @@
 package com.google.jenkins.plugins.k8sengine;
 
 import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import com.google.common.io.ByteStreams;
 import com.jayway.jsonpath.Configuration;
 import com.jayway.jsonpath.InvalidJsonException;
+import hudson.EnvVars;
 import hudson.FilePath;
 import hudson.Launcher;
+import hudson.Proc;
+import hudson.remoting.RemoteInputStream;
+import hudson.remoting.VirtualChannel;
 import hudson.slaves.WorkspaceList;
-import hudson.util.ArgumentListBuilder;
-import java.io.ByteArrayOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.PushbackInputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
+import jenkins.MasterToSlaveFileCallable;
 
 /**
  * Encapsulates the logic of executing kubectl commands in the workspace. NOTE(craigatgoogle): This
  * is a temporary stop-gap measure which will be replaced once the Kubernetes server-side apply
  * method is added: <a href="https://github.com/kubernetes/enhancements/issues/555">issue#555</a>.
  */
-public class KubectlWrapper {
+public class KubectlWrapper implements KubernetesBackend {
     private static final Logger LOGGER = Logger.getLogger(KubectlWrapper.class.getName());
     private static final String CHARSET = "UTF-8";
+    static final int MAX_STDERR_BYTES = 64 * 1024;
+    static final int MAX_NAMES_PER_GET = 100;
 
     private KubeConfig kubeConfig;
+    private KubeConfigSession kubeConfigSession;
     private Launcher launcher;
+    private EnvVars envVars = new EnvVars();
     private FilePath workspace;
     private String namespace;
     private boolean verboseLogging;
+    private RemotingCallCounter remotingCalls = new RemotingCallCounter();
 
     private KubectlWrapper() {}
 
@@ -55,6 +80,12 @@ public class KubectlWrapper {
         this.kubeConfig = kubeConfig;
     }
 
+    private void setKubeConfigSession(KubeConfigSession kubeConfigSession) {
+        this.kubeConfigSession = kubeConfigSession;
+        this.kubeConfig = kubeConfigSession.getKubeConfig();
+        this.remotingCalls = kubeConfigSession.getRemotingCalls();
+    }
+
     private void setLauncher(Launcher launcher) {
         this.launcher = launcher;
     }
@@ -63,6 +94,10 @@ public class KubectlWrapper {
         return launcher;
     }
 
+    private void setEnvVars(EnvVars envVars) {
+        this.envVars = envVars == null ? new EnvVars() : envVars;
+    }
+
     private void setWorkspace(FilePath workspace) {
         this.workspace = workspace;
     }
@@ -88,7 +123,8 @@ public class KubectlWrapper {
     }
 
     /**
-     * Runs the specified kubectl command.
+     * Runs the specified kubectl command, returning its standard output in full. Callers expecting
+     * large output should parse it as a stream instead.
      *
      * @param command The kubectl command to be run.
      * @param args Arguments for the command.
@@ -98,77 +134,279 @@ public class KubectlWrapper {
      */
     public String runKubectlCommand(String command, ImmutableList<String> args)
             throws IOException, InterruptedException {
-        String output = "";
-        FilePath tempDir = null;
+        return runKubectlCommand(command, args, KubectlWrapper::outputOf);
+    }
+
+    /**
+     * Runs the specified kubectl command, handing its standard output as a stream to the supplied
+     * parser as it is produced.
+     *
+     * @param command The kubectl command to be run.
+     * @param args Arguments for the command.
+     * @param parser Consumes the standard output of the command.
+     * @param <T> The type of the parsed output.
+     * @return The value returned by the parser.
+     * @throws IOException If an error occurred while executing the command.
+     * @throws InterruptedException If an error occured while executing the command.
+     */
+    <T> T runKubectlCommand(String command, ImmutableList<String> args, OutputParser<T> parser)
+            throws IOException, InterruptedException {
+        return runKubectlCommand(namespace, command, args, parser);
+    }
+
+    private <T> T runKubectlCommand(
+            String targetNamespace, String command, ImmutableList<String> args, OutputParser<T> parser)
+            throws IOException, InterruptedException {
+        return runKubectlCommand(targetNamespace, command, args, null, parser);
+    }
+
+    private <T> T runKubectlCommand(
+            String targetNamespace,
+            String command,
+            ImmutableList<String> args,
+            InputSource stdin,
+            OutputParser<T> parser)
+            throws IOException, InterruptedException {
+        FilePath tempDir = WorkspaceList.tempDir(workspace);
+        if (tempDir == null) {
+            throw new IOException("tempDir is null");
+        }
+
         try {
-            // Set up the kubeconfig file for authentication
-            tempDir = WorkspaceList.tempDir(workspace);
-            if (tempDir == null) {
-                throw new IOException("tempDir is null");
+            if (launcher instanceof Launcher.DecoratedLauncher) {
+                return launchKubectlCommand(kubectlArgs(targetNamespace, command, args), stdin, parser);
             }
-            tempDir.mkdirs();
-            FilePath kubeConfigFile = tempDir.createTempFile(".kube", "config");
-            String config = getKubeConfig().toYaml();
-
-            // Setup the kubeconfig
-            kubeConfigFile.write(config, /* encoding */ null);
-            launchAndJoinCommand(
-                    getLauncher(),
-                    new ArgumentListBuilder()
-                            .add("kubectl")
-                            .add("--kubeconfig")
-                            .add(kubeConfigFile.getRemote())
-                            .add("config")
-                            .add("use-context")
-                            .add(kubeConfig.getCurrentContext())
-                            .toList(),
-                    verboseLogging);
-
-            // Run the kubectl command
-            ArgumentListBuilder kubectlCmdBuilder = new ArgumentListBuilder()
-                    .add("kubectl")
-                    .add("--kubeconfig")
-                    .add(kubeConfigFile.getRemote())
-                    .add(command);
-            if (!namespace.isEmpty()) {
-                kubectlCmdBuilder.add("--namespace").add(namespace);
-            }
-            args.forEach(kubectlCmdBuilder::add);
-            output = launchAndJoinCommand(getLauncher(), kubectlCmdBuilder.toList(), verboseLogging);
+            // Without a session owned by the caller, the callable sets up a kubeconfig for this invocation only.
+            return remotingCalls.act(
+                    workspace,
+                    new KubectlCallable<>(
+                            kubeConfigSession,
+                            getKubeConfig(),
+                            tempDir.getRemote(),
+                            kubectlArgs(targetNamespace, command, args),
+                            stdin,
+                            envVars,
+                            parser,
+                            verboseLogging ? getLauncher().getListener() : null));
         } catch (IOException | InterruptedException e) {
             LOGGER.log(
                     Level.SEVERE, String.format("Failed to execute kubectl command: %s, args: %s", command, args), e);
             throw e;
+        }
+    }
+
+    /*
+     * Launches kubectl through the Launcher of the build, whose decorators may run it elsewhere than
+     * on the agent, such as in a container. Its output is parsed on the controller, so this costs
+     * more remoting calls than the single KubectlCallable used with undecorated launchers.
+     */
+    private <T> T launchKubectlCommand(ImmutableList<String> args, InputSource stdin, OutputParser<T> parser)
+            throws IOException, InterruptedException {
+        boolean ownsSession = kubeConfigSession == null;
+        KubeConfigSession session =
+                ownsSession ? KubeConfigSession.open(workspace, getKubeConfig(), remotingCalls) : kubeConfigSession;
+        try {
+            List<String> command = ImmutableList.<String>builder()
+                    .add(KubectlCallable.KUBECTL, "--kubeconfig", session.getKubeConfigFile().getRemote())
+                    .addAll(args)
+                    .build();
+            RingBufferOutputStream stderr = new RingBufferOutputStream(MAX_STDERR_BYTES);
+            Launcher.ProcStarter starter = getLauncher()
+                    .launch()
+                    .cmds(command)
+                    .envs(envVars)
+                    .pwd(workspace)
+                    .readStdout()
+                    .stderr(stderr)
+                    .quiet(!verboseLogging);
+            if (stdin != null) {
+                // The input is opened where its files are, and streamed to wherever the launcher runs kubectl.
+                starter.stdin(remotingCalls.act(workspace, new OpenInput(stdin)));
+            }
+            remotingCalls.increment();
+            return KubectlCallable.await(starter.start(), parser, stderr, command);
         } finally {
+            if (ownsSession) {
+                session.close();
+            }
+        }
+    }
+
+    /** Opens an {@link InputSource} on the agent, returning a stream of it to the controller. */
+    private static class OpenInput extends MasterToSlaveFileCallable<InputStream> {
+        private static final long serialVersionUID = 1L;
+
+        private final InputSource source;
+
+        OpenInput(InputSource source) {
+            this.source = source;
+        }
+
+        @Override
+        public InputStream invoke(File workspace, VirtualChannel channel) throws IOException {
+            return new RemoteInputStream(source.open(), RemoteInputStream.Flag.GREEDY);
+        }
+    }
+
+    private static ImmutableList<String> kubectlArgs(
+            String targetNamespace, String command, ImmutableList<String> args) {
+        ImmutableList.Builder<String> kubectlArgs = ImmutableList.<String>builder().add(command);
+        if (!targetNamespace.isEmpty()) {
+            kubectlArgs.add("--namespace", targetNamespace);
+        }
+        return kubectlArgs.addAll(args).build();
+    }
+
+    /**
+     * Opens the standard input of a kubectl command on the machine running the command, so that
+     * files there reach kubectl without passing through the controller.
+     */
+    @FunctionalInterface
+    interface InputSource extends Serializable {
+        InputStream open() throws IOException;
+    }
+
+    /** @return An {@link InputSource} of the bytes, which are sent along with the command. */
+    private static InputSource bytesOf(byte[] bytes) {
+        return () -> new ByteArrayInputStream(bytes);
+    }
+
+    /**
+     * @return An {@link InputSource} streaming the summarized objects from their files as a single
+     *     YAML stream, labeled on the agent if the files weren't.
+     */
+    static InputSource documentsOf(Manifests manifests) {
+        Map<String, List<Integer>> indexes = new LinkedHashMap<>();
+        for (Manifests.ManifestObject object : manifests.getObjectManifests()) {
+            Manifests.ManifestSummary summary = object.getSummary();
+            indexes.computeIfAbsent(summary.getFile(), (file) -> new ArrayList<>()).add(summary.getIndex());
+        }
+        return new ManifestDocuments(manifests.getParser(), indexes, manifests.isLabeledWhenApplied());
+    }
+
+    /**
+     * Loads some of the objects of the manifest files on the agent, and renders them as a single YAML
+     * stream, so that only the positions of the objects in their files are sent from the controller.
+     */
+    private static class ManifestDocuments implements InputSource {
+        private static final long serialVersionUID = 1L;
+
+        private final String parser;
+        private final ImmutableMap<String, ImmutableSet<Integer>> indexes;
+        private final boolean label;
+
+        ManifestDocuments(String parser, Map<String, List<Integer>> indexes, boolean label) {
+            this.parser = parser;
+            this.indexes = indexes.entrySet().stream()
+                    .collect(ImmutableMap.toImmutableMap(
+                            Map.Entry::getKey, (entry) -> ImmutableSet.copyOf(entry.getValue())));
+            this.label = label;
+        }
+
+        @Override
+        public InputStream open() throws IOException {
+            Map<FilePath, ImmutableSet<Integer>> selection = new LinkedHashMap<>();
+            indexes.forEach((file, positions) -> selection.put(new FilePath(new File(file)), positions));
+            Manifests loaded;
             try {
-                if (tempDir != null) {
-                    tempDir.deleteRecursive();
+                loaded = Manifests.fromFileList(new ArrayList<>(selection.keySet()), parser);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException(e.getMessage());
+            }
+
+            List<Manifests.ManifestObject> selected = new ArrayList<>();
+            Map<FilePath, Integer> counts = new HashMap<>();
+            for (Manifests.ManifestObject object : loaded.getObjectManifests()) {
+                int index = counts.merge(object.getFile(), 1, Integer::sum) - 1;
+                if (selection.get(object.getFile()).contains(index)) {
+                    selected.add(object);
+                }
+            }
+            for (Map.Entry<FilePath, ImmutableSet<Integer>> entry : selection.entrySet()) {
+                int count = counts.getOrDefault(entry.getKey(), 0);
+                if (entry.getValue().stream().anyMatch((index) -> index >= count)) {
+                    throw new IOException(
+                            String.format("%s: manifest changed since it was loaded", entry.getKey().getRemote()));
                 }
-            } catch (Exception ee) {
-                LOGGER.log(Level.WARNING, String.format("Failed to delete dir: %s", tempDir), ee);
             }
+
+            Manifests documents = loaded.subset(selected);
+            if (label) {
+                KubernetesEngineBuilder.addMetricsLabel(documents);
+            }
+            return new ByteArrayInputStream(documents.toYaml().getBytes(StandardCharsets.UTF_8));
         }
+    }
 
-        return output;
+    /**
+     * Parses the standard output of a kubectl command as it is being produced, on the machine
+     * running the command. The parsed result is sent back to the controller, so it must be
+     * serializable.
+     *
+     * @param <T> The type of the parsed output.
+     */
+    @FunctionalInterface
+    interface OutputParser<T> extends Serializable {
+        T parse(InputStream stdout) throws IOException;
     }
 
-    private static String launchAndJoinCommand(Launcher launcher, List<String> args, boolean verboseLogging)
-            throws IOException, InterruptedException {
-        ByteArrayOutputStream cmdLogStream = new ByteArrayOutputStream();
-        int status = launcher.launch()
-                .cmds(args)
-                .stderr(cmdLogStream)
-                .stdout(cmdLogStream)
-                .quiet(!verboseLogging)
-                .join();
-        if (status != 0) {
-            String logs = cmdLogStream.toString(CHARSET);
-            LOGGER.log(Level.SEVERE, String.format("kubectl command log: %s", logs));
-            throw new IOException(
-                    String.format("Failed to launch command args: %s, status: %s. Logs: %s", args, status, logs));
+    /**
+     * Applies the manifests at the specified path using `kubectl apply -f`.
+     *
+     * @param manifestFile The manifest file, or directory of manifest files, to be applied.
+     * @throws IOException If an error occurred while executing the command.
+     * @throws InterruptedException If an error occurred while executing the command.
+     */
+    @Override
+    public void apply(FilePath manifestFile) throws IOException, InterruptedException {
+        runKubectlCommand("apply", ImmutableList.of("-f", manifestFile.getRemote()));
+    }
+
+    /**
+     * Applies the objects of the manifests using `kubectl apply`. Objects loaded with their sources
+     * are streamed to `kubectl apply -f -` on standard input, leaving their files untouched, while
+     * summarized objects are loaded again from their files on the agent, labeled there if needed, and
+     * streamed to it from the agent, so that they don't pass through the controller.
+     *
+     * @param manifests The {@link Manifests} to be applied.
+     * @throws IOException If an error occurred while executing the command.
+     * @throws InterruptedException If an error occurred while executing the command.
+     */
+    @Override
+    public void apply(Manifests manifests) throws IOException, InterruptedException {
+        if (manifests.getObjectManifests().isEmpty()) {
+            return;
         }
 
-        return cmdLogStream.toString(CHARSET);
+        if (!manifests.isSummarized()) {
+            byte[] documents = manifests.toYaml().getBytes(StandardCharsets.UTF_8);
+            runKubectlCommand(
+                    namespace, "apply", ImmutableList.of("-f", "-"), bytesOf(documents), KubectlWrapper::discard);
+            return;
+        }
+
+        runKubectlCommand(
+                namespace, "apply", ImmutableList.of("-f", "-"), documentsOf(manifests), KubectlWrapper::discard);
+    }
+
+    /**
+     * Applies a single object using `kubectl apply -f -`, passing the object on standard input. A
+     * summarized object is streamed from its file on the agent, like those of {@link
+     * #apply(Manifests)}.
+     *
+     * @param object The {@link Manifests.ManifestObject} to be applied.
+     * @throws IOException If an error occurred while executing the command.
+     * @throws InterruptedException If an error occurred while executing the command.
+     */
+    @Override
+    public void apply(Manifests.ManifestObject object) throws IOException, InterruptedException {
+        if (object.getSummary() != null) {
+            apply(object.getOwner().subset(ImmutableList.of(object)));
+            return;
+        }
+        byte[] source = object.toYaml().getBytes(StandardCharsets.UTF_8);
+        runKubectlCommand(namespace, "apply", ImmutableList.of("-f", "-"), bytesOf(source), KubectlWrapper::discard);
     }
 
     /**
@@ -181,9 +419,100 @@ public class KubectlWrapper {
      * @throws IOException If an error occurred while executing the command.
      * @throws InterruptedException If an error occurred while executing the command.
      */
+    @Override
     public Object getObject(String kind, String name) throws IOException, InterruptedException {
-        String json = runKubectlCommand("get", ImmutableList.<String>of(kind, name, "-o", "json"));
-        return Configuration.defaultConfiguration().jsonProvider().parse(json);
+        return runKubectlCommand("get", ImmutableList.<String>of(kind, name, "-o", "json"), KubectlWrapper::parseJson);
+    }
+
+    /**
+     * Using the kubectl CLI tool as the API client for the caller, this method retrieves several
+     * objects of a kind with a single `kubectl get` per {@value #MAX_NAMES_PER_GET} names.
+     *
+     * @param kind The kind of the Kubernetes Objects.
+     * @param objectNamespace The namespace of the objects, or null for the namespace of the wrapper.
+     * @param names The names of the Kubernetes Objects.
+     * @param fields The {@link ObjectFields} of the objects to keep, projected on the agent so that
+     *     only those are sent back.
+     * @return The projected JSON objects that were found, in no particular order.
+     * @throws IOException If an error occurred while executing the command.
+     * @throws InterruptedException If an error occurred while executing the command.
+     */
+    @Override
+    public ImmutableList<Object> getObjects(
+            String kind, String objectNamespace, Collection<String> names, ObjectFields fields)
+            throws IOException, InterruptedException {
+        String targetNamespace = Strings.isNullOrEmpty(objectNamespace) ? namespace : objectNamespace;
+        ImmutableList.Builder<Object> objects = ImmutableList.builder();
+        for (List<String> batch : Iterables.partition(names, MAX_NAMES_PER_GET)) {
+            ImmutableList<String> args = ImmutableList.<String>builder()
+                    .add(kind)
+                    .addAll(batch)
+                    .add("--ignore-not-found", "-o", "json")
+                    .build();
+            objects.addAll(itemsOf(runKubectlCommand(
+                    targetNamespace,
+                    "get",
+                    args,
+                    fields.isAll() ? KubectlWrapper::parseJsonIfPresent : fields::parse)));
+        }
+        return objects.build();
+    }
+
+    /**
+     * Watches the objects of a kind with a long running `kubectl get --watch --output-watch-events -o
+     * json`, which prints an event for every object once and then again whenever it changes or is
+     * deleted.
+     *
+     * @param kind The kind of the Kubernetes Objects.
+     * @param objectNamespace The namespace of the objects, or null for the namespace of the wrapper.
+     * @param listener Receives the state of the watched objects.
+     * @return A handle which kills the kubectl process when closed.
+     * @throws IOException If an error occurred while starting the command.
+     * @throws InterruptedException If an error occurred while starting the command.
+     */
+    @Override
+    public Closeable watch(String kind, String objectNamespace, WatchListener listener)
+            throws IOException, InterruptedException {
+        String targetNamespace = Strings.isNullOrEmpty(objectNamespace) ? namespace : objectNamespace;
+        // The watch outlives this call, so a kubeconfig set up for it is only removed once it is closed.
+        boolean ownsSession = kubeConfigSession == null;
+        KubeConfigSession session =
+                ownsSession ? KubeConfigSession.open(workspace, getKubeConfig(), remotingCalls) : kubeConfigSession;
+        try {
+            List<String> args = ImmutableList.<String>builder()
+                    .add("kubectl", "--kubeconfig", session.getKubeConfigFile().getRemote())
+                    .addAll(kubectlArgs(
+                            targetNamespace,
+                            "get",
+                            ImmutableList.of(kind, "--watch", "--output-watch-events", "-o", "json")))
+                    .build();
+            // The watch streams its output for as long as it runs, so it is launched rather than acted.
+            remotingCalls.increment();
+            Proc proc = getLauncher()
+                    .launch()
+                    .cmds(args)
+                    .envs(envVars)
+                    .readStdout()
+                    .stderr(new RingBufferOutputStream(MAX_STDERR_BYTES))
+                    .quiet(!verboseLogging)
+                    .start();
+            return new WatchStream(args.toString(), proc.getStdout(), listener, () -> {
+                try {
+                    proc.kill();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    if (ownsSession) {
+                        session.close();
+                    }
+                }
+            });
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            if (ownsSession) {
+                session.close();
+            }
+            throw e;
+        }
     }
 
     /**
@@ -191,23 +520,71 @@ public class KubectlWrapper {
      * output of objects matching the supplied labels.
      *
      * @param kind The kind of Kubernetes Object.
+     * @param objectNamespace The namespace of the objects, or null for the namespace of the wrapper.
      * @param labels The key-value labels set represented as a map.
+     * @param fields The {@link ObjectFields} of the objects to keep, projected on the agent.
      * @return A list of JSON Objects unmarshalled from the kubectl get command's output.
      * @throws IOException If an error occurred while executing the command.
      * @throws InterruptedException If an error occurred while executing the command.
      * @throws InvalidJsonException If an error occurred parsing the JSON return value.
      */
+    @Override
     @SuppressWarnings("unchecked")
-    public ImmutableList<Object> getObjectsThatMatchLabels(String kind, Map<String, String> labels)
+    public ImmutableList<Object> getObjectsThatMatchLabels(
+            String kind, String objectNamespace, Map<String, String> labels, ObjectFields fields)
             throws IOException, InterruptedException, InvalidJsonException {
+        String targetNamespace = Strings.isNullOrEmpty(objectNamespace) ? namespace : objectNamespace;
         String labelsArg = labels.keySet().stream()
                 .map((k) -> String.format("%s=%s", k, labels.get(k)))
                 .collect(Collectors.joining(","));
-        String json = runKubectlCommand("get", ImmutableList.<String>of(kind + "s", labelsArg));
-        Map<String, Object> result = (Map<String, Object>)
-                Configuration.defaultConfiguration().jsonProvider().parse(json);
-        List<Object> items = (List<Object>) result.get("items");
-        return ImmutableList.copyOf(items);
+        return itemsOf(runKubectlCommand(
+                targetNamespace,
+                "get",
+                ImmutableList.<String>of(kind, "-l", labelsArg, "-o", "json"),
+                fields.isAll() ? KubectlWrapper::parseJson : fields::parse));
+    }
+
+    private static String outputOf(InputStream stdout) throws IOException {
+        return new String(ByteStreams.toByteArray(stdout), CHARSET);
+    }
+
+    /* Reads past the output of commands whose output isn't used, such as applies. */
+    private static Void discard(InputStream stdout) throws IOException {
+        ByteStreams.exhaust(stdout);
+        return null;
+    }
+
+    private static Object parseJson(InputStream stdout) {
+        return Configuration.defaultConfiguration().jsonProvider().parse(stdout, CHARSET);
+    }
+
+    /* Parses the output of commands which print nothing when there is no result. */
+    private static Object parseJsonIfPresent(InputStream stdout) throws IOException {
+        PushbackInputStream in = new PushbackInputStream(stdout);
+        int first = in.read();
+        while (first != -1 && Character.isWhitespace(first)) {
+            first = in.read();
+        }
+        if (first == -1) {
+            return null;
+        }
+
+        in.unread(first);
+        return parseJson(in);
+    }
+
+    /* Unwraps the items of a List, which kubectl returns whenever more than one name is requested. */
+    @SuppressWarnings("unchecked")
+    private static ImmutableList<Object> itemsOf(Object json) {
+        if (json == null) {
+            return ImmutableList.of();
+        }
+
+        if (json instanceof Map && ((Map<String, Object>) json).containsKey("items")) {
+            List<Object> items = (List<Object>) ((Map<String, Object>) json).get("items");
+            return items == null ? ImmutableList.of() : ImmutableList.copyOf(items);
+        }
+        return ImmutableList.of(json);
     }
 
     /** Builder for {@link KubectlWrapper}. */
@@ -225,6 +602,17 @@ public class KubectlWrapper {
             return this;
         }
 
+        /**
+         * Sets the environment variables of the build, with which kubectl is launched.
+         *
+         * @param envVars The {@link EnvVars} to be set.
+         * @return A reference to the {@link Builder}.
+         */
+        public Builder envVars(EnvVars envVars) {
+            wrapper.setEnvVars(envVars);
+            return this;
+        }
+
         /**
          * Sets the {@link KubeConfig} to be used by the wrapper.
          *
@@ -236,6 +624,18 @@ public class KubectlWrapper {
             return this;
         }
 
+        /**
+         * Sets the {@link KubeConfigSession} to be used by the wrapper. The session is owned by the
+         * caller, which is responsible for closing it once the wrapper is no longer used.
+         *
+         * @param kubeConfigSession The {@link KubeConfigSession} to be set.
+         * @return A reference to the {@link Builder}.
+         */
+        public Builder kubeConfigSession(KubeConfigSession kubeConfigSession) {
+            wrapper.setKubeConfigSession(kubeConfigSession);
+            return this;
+        }
+
         /**
          * Sets the workspace to be used by the wrapper.
          *
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2019 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.jenkins.plugins.k8sengine;
+
+import com.google.common.collect.ImmutableList;
+import hudson.FilePath;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * The means by which the plugin talks to the Kubernetes API server of a cluster. Implementations
+ * are {@link KubectlWrapper}, which shells out to the kubectl CLI, and {@link
+ * KubernetesHttpBackend}, which talks to the API server directly from the JVM.
+ */
+public interface KubernetesBackend {
+    /** Name of the {@link KubectlWrapper} backend, as selected on the build step. */
+    String KUBECTL = "kubectl";
+
+    /** Name of the {@link KubernetesHttpBackend} backend, as selected on the build step. */
+    String HTTP = "http";
+
+    /**
+     * Applies the manifests at the specified path to the cluster.
+     *
+     * @param manifestFile The manifest file, or directory of manifest files, to be applied.
+     * @throws IOException If an error occurred while applying the manifests.
+     * @throws InterruptedException If an error occurred while applying the manifests.
+     */
+    void apply(FilePath manifestFile) throws IOException, InterruptedException;
+
+    /**
+     * Applies the objects of manifests loaded by the build step to the cluster.
+     *
+     * @param manifests The {@link Manifests} to be applied.
+     * @throws IOException If an error occurred while applying the manifests.
+     * @throws InterruptedException If an error occurred while applying the manifests.
+     */
+    void apply(Manifests manifests) throws IOException, InterruptedException;
+
+    /**
+     * Applies a single object to the cluster.
+     *
+     * @param object The {@link Manifests.ManifestObject} to be applied.
+     * @throws IOException If an error occurred while applying the object.
+     * @throws InterruptedException If an error occurred while applying the object.
+     */
+    void apply(Manifests.ManifestObject object) throws IOException, InterruptedException;
+
+    /**
+     * Retrieves a single Kubernetes object from the cluster.
+     *
+     * @param kind The kind of Kubernetes Object.
+     * @param name The name of the Kubernetes Object.
+     * @return The JSON object unmarshalled from the API server's response.
+     * @throws IOException If an error occurred while retrieving the object.
+     * @throws InterruptedException If an error occurred while retrieving the object.
+     */
+    Object getObject(String kind, String name) throws IOException, InterruptedException;
+
+    /**
+     * Retrieves several Kubernetes objects of the same kind and namespace with as few requests as
+     * possible. Objects which don't exist are left out of the result.
+     *
+     * @param kind The kind of the Kubernetes Objects.
+     * @param namespace The namespace of the objects, or null for the namespace of the backend.
+     * @param names The names of the Kubernetes Objects.
+     * @return The JSON objects that were found, in no particular order.
+     * @throws IOException If an error occurred while retrieving the objects.
+     * @throws InterruptedException If an error occurred while retrieving the objects.
+     */
+    default ImmutableList<Object> getObjects(String kind, String namespace, Collection<String> names)
+            throws IOException, InterruptedException {
+        return getObjects(kind, namespace, names, ObjectFields.ALL);
+    }
+
+    /**
+     * Retrieves several Kubernetes objects of the same kind and namespace with as few requests as
+     * possible, keeping only the specified fields of each. Objects which don't exist are left out of
+     * the result.
+     *
+     * @param kind The kind of the Kubernetes Objects.
+     * @param namespace The namespace of the objects, or null for the namespace of the backend.
+     * @param names The names of the Kubernetes Objects.
+     * @param fields The {@link ObjectFields} of the objects to keep.
+     * @return The projected JSON objects that were found, in no particular order.
+     * @throws IOException If an error occurred while retrieving the objects.
+     * @throws InterruptedException If an error occurred while retrieving the objects.
+     */
+    ImmutableList<Object> getObjects(String kind, String namespace, Collection<String> names, ObjectFields fields)
+            throws IOException, InterruptedException;
+
+    /**
+     * Retrieves the Kubernetes objects of a kind matching the supplied labels.
+     *
+     * @param kind The kind of Kubernetes Object.
+     * @param labels The key-value labels set represented as a map.
+     * @return A list of JSON Objects unmarshalled from the API server's response.
+     * @throws IOException If an error occurred while retrieving the objects.
+     * @throws InterruptedException If an error occurred while retrieving the objects.
+     */
+    default ImmutableList<Object> getObjectsThatMatchLabels(String kind, Map<String, String> labels)
+            throws IOException, InterruptedException {
+        return getObjectsThatMatchLabels(kind, null, labels);
+    }
+
+    /**
+     * Retrieves the Kubernetes objects of a kind and namespace matching the supplied labels.
+     *
+     * @param kind The kind of Kubernetes Object.
+     * @param namespace The namespace of the objects, or null for the namespace of the backend.
+     * @param labels The key-value labels set represented as a map.
+     * @return A list of JSON Objects unmarshalled from the API server's response.
+     * @throws IOException If an error occurred while retrieving the objects.
+     * @throws InterruptedException If an error occurred while retrieving the objects.
+     */
+    default ImmutableList<Object> getObjectsThatMatchLabels(String kind, String namespace, Map<String, String> labels)
+            throws IOException, InterruptedException {
+        return getObjectsThatMatchLabels(kind, namespace, labels, ObjectFields.ALL);
+    }
+
+    /**
+     * Retrieves the Kubernetes objects of a kind and namespace matching the supplied labels, keeping
+     * only the specified fields of each.
+     *
+     * @param kind The kind of Kubernetes Object.
+     * @param namespace The namespace of the objects, or null for the namespace of the backend.
+     * @param labels The key-value labels set represented as a map.
+     * @param fields The {@link ObjectFields} of the objects to keep.
+     * @return A list of projected JSON Objects unmarshalled from the API server's response.
+     * @throws IOException If an error occurred while retrieving the objects.
+     * @throws InterruptedException If an error occurred while retrieving the objects.
+     */
+    ImmutableList<Object> getObjectsThatMatchLabels(
+            String kind, String namespace, Map<String, String> labels, ObjectFields fields)
+            throws IOException, InterruptedException;
+
+    /**
+     * Identifies the objects of a kind in a namespace of the cluster as read with the credentials of
+     * this backend, so that builds talking to the same cluster with the same credentials can share a
+     * single watch of them through the {@link ClusterObjectCache}.
+     *
+     * @param kind The kind of the Kubernetes Objects.
+     * @param namespace The namespace of the objects, or null for the namespace of the backend.
+     * @return An identifier naming the cluster endpoint, namespace, kind and credentials, or null if
+     *     the watches of this backend can't outlive the build which opened them.
+     * @throws IOException If the objects of the kind can't be identified.
+     * @throws InterruptedException If an error occurred while identifying the objects.
+     */
+    default String getCollectionId(String kind, String namespace) throws IOException, InterruptedException {
+        return null;
+    }
+
+    /**
+     * Watches the objects of a kind in a namespace. The listener receives the current state of each
+     * object once the watch starts, and again whenever an object changes, until the returned handle
+     * is closed.
+     *
+     * @param kind The kind of the Kubernetes Objects.
+     * @param namespace The namespace of the objects, or null for the namespace of the backend.
+     * @param listener Receives the state of the watched objects.
+     * @return A handle which stops the watch when closed.
+     * @throws IOException If an error occurred while starting the watch.
+     * @throws InterruptedException If an error occurred while starting the watch.
+     */
+    Closeable watch(String kind, String namespace, WatchListener listener) throws IOException, InterruptedException;
+
+    /** Receives the objects of a {@link #watch(String, String, WatchListener)}. */
+    interface WatchListener {
+        /**
+         * Called with the state of a watched object, on a thread owned by the watch.
+         *
+         * @param json The JSON object unmarshalled from the watch.
+         */
+        void onObject(Object json);
+
+        /**
+         * Called with the last state of a watched object once it was deleted, on a thread owned by the
+         * watch. By default deletions are ignored.
+         *
+         * @param json The JSON object unmarshalled from the watch.
+         */
+        default void onDelete(Object json) {}
+
+        /**
+         * Called when the watch ends before its handle was closed.
+         *
+         * @param cause The error which ended the watch, or null if the server ended it.
+         */
+        void onClose(Exception cause);
+    }
+}
@@ -29,12 +29,12 @@ import com.google.cloud.graphite.platforms.plugin.client.ContainerClient;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
-import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.jenkins.plugins.credentials.oauth.GoogleOAuth2Credentials;
 import com.google.jenkins.plugins.k8sengine.client.ClientUtil;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.AbortException;
+import hudson.EnvVars;
 import hudson.Extension;
 import hudson.FilePath;
 import hudson.Launcher;
@@ -42,6 +42,7 @@ import hudson.model.AbstractProject;
 import hudson.model.Job;
 import hudson.model.Run;
 import hudson.model.TaskListener;
+import hudson.remoting.VirtualChannel;
 import hudson.security.ACL;
 import hudson.tasks.BuildStepDescriptor;
 import hudson.tasks.BuildStepMonitor;
@@ -49,6 +50,7 @@ import hudson.tasks.Builder;
 import hudson.util.FormValidation;
 import hudson.util.ListBoxModel;
 import hudson.util.ListBoxModel.Option;
+import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.io.Serializable;
@@ -56,15 +58,19 @@ import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import jenkins.MasterToSlaveFileCallable;
 import jenkins.model.Jenkins;
 import jenkins.tasks.SimpleBuildStep;
+import net.sf.json.JSONObject;
 import org.jenkinsci.Symbol;
 import org.kohsuke.stapler.AncestorInPath;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.DataBoundSetter;
 import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.StaplerRequest;
 
 /** Provides a build step for publishing build artifacts to a Kubernetes cluster running on GKE. */
 public class KubernetesEngineBuilder extends Builder implements SimpleBuildStep, Serializable {
@@ -73,6 +79,7 @@ public class KubernetesEngineBuilder extends Builder implements SimpleBuildStep,
     static final String EMPTY_NAME = "- none -";
     static final String EMPTY_VALUE = "";
     static final int DEFAULT_VERIFY_TIMEOUT_MINUTES = 5;
+    static final int DEFAULT_FULL_APPLY_INTERVAL_HOURS = 24;
     static final String METRICS_LABEL_KEY = "app.kubernetes.io/managed-by";
     static final String METRICS_LABEL_VALUE = "graphite-jenkins-gke";
     static final ImmutableSet<String> METRICS_TARGET_TYPES = ImmutableSet.of("Deployment", "Service", "ReplicaSet");
@@ -87,11 +94,29 @@ public class KubernetesEngineBuilder extends Builder implements SimpleBuildStep,
     private String clusterName;
     private String namespace;
     private String manifestPattern;
+    private String manifestExcludes;
+    private String manifestParser = ManifestParser.SNAKEYAML;
+    private boolean validateManifests;
+    private String schemaBundle;
     private boolean verifyDeployments;
     private int verifyTimeoutInMinutes = DEFAULT_VERIFY_TIMEOUT_MINUTES;
+    private boolean verifyUsingWatch;
+    private Integer verifyInitialDelayInSeconds;
+    private Integer verifyMaxDelayInSeconds;
+    private Integer verifyBackoffMultiplier;
+    private Integer verifyJitterPercent;
     private boolean verifyServices;
     private boolean isTestCleanup;
     private boolean verboseLogging = false;
+    private String apiBackend = KubernetesBackend.KUBECTL;
+    private boolean applyInWaves;
+    private int applyConcurrency = ApplyPlanner.DEFAULT_CONCURRENCY;
+    private boolean applyInChunks;
+    private int applyChunkSize = ChunkedApplier.DEFAULT_CHUNK_SIZE;
+    private int applyMaxAttempts = ChunkedApplier.DEFAULT_MAX_ATTEMPTS;
+    private boolean skipUnchangedObjects;
+    private boolean applyFromStdin;
+    private int fullApplyIntervalInHours = DEFAULT_FULL_APPLY_INTERVAL_HOURS;
     private LinkedList<KubeConfigAfterBuildStep> afterBuildStepStack;
 
     /** Constructs a new {@link KubernetesEngineBuilder}. */
@@ -190,6 +215,43 @@ public class KubernetesEngineBuilder extends Builder implements SimpleBuildStep,
         this.manifestPattern = manifestPattern;
     }
 
+    public String getManifestExcludes() {
+        return this.manifestExcludes;
+    }
+
+    @DataBoundSetter
+    public void setManifestExcludes(String manifestExcludes) {
+        this.manifestExcludes = Strings.emptyToNull(manifestExcludes);
+    }
+
+    public String getManifestParser() {
+        // NOTE: Configurations saved before this option existed deserialize it as null.
+        return Strings.isNullOrEmpty(this.manifestParser) ? ManifestParser.SNAKEYAML : this.manifestParser;
+    }
+
+    @DataBoundSetter
+    public void setManifestParser(String manifestParser) {
+        this.manifestParser = ManifestParser.forName(manifestParser).getName();
+    }
+
+    public boolean isValidateManifests() {
+        return this.validateManifests;
+    }
+
+    @DataBoundSetter
+    public void setValidateManifests(boolean validateManifests) {
+        this.validateManifests = validateManifests;
+    }
+
+    public String getSchemaBundle() {
+        return this.schemaBundle;
+    }
+
+    @DataBoundSetter
+    public void setSchemaBundle(String schemaBundle) {
+        this.schemaBundle = Strings.emptyToNull(schemaBundle);
+    }
+
     @DataBoundSetter
     public void setVerifyDeployments(boolean verifyDeployments) {
         this.verifyDeployments = verifyDeployments;
@@ -217,6 +279,66 @@ public class KubernetesEngineBuilder extends Builder implements SimpleBuildStep,
         this.verifyTimeoutInMinutes = verifyTimeoutInMinutes;
     }
 
+    public boolean isVerifyUsingWatch() {
+        return this.verifyUsingWatch;
+    }
+
+    @DataBoundSetter
+    public void setVerifyUsingWatch(boolean verifyUsingWatch) {
+        this.verifyUsingWatch = verifyUsingWatch;
+    }
+
+    public Integer getVerifyInitialDelayInSeconds() {
+        return verifyInitialDelayInSeconds;
+    }
+
+    @DataBoundSetter
+    public void setVerifyInitialDelayInSeconds(Integer verifyInitialDelayInSeconds) {
+        this.verifyInitialDelayInSeconds = verifyInitialDelayInSeconds;
+    }
+
+    public Integer getVerifyMaxDelayInSeconds() {
+        return verifyMaxDelayInSeconds;
+    }
+
+    @DataBoundSetter
+    public void setVerifyMaxDelayInSeconds(Integer verifyMaxDelayInSeconds) {
+        this.verifyMaxDelayInSeconds = verifyMaxDelayInSeconds;
+    }
+
+    public Integer getVerifyBackoffMultiplier() {
+        return verifyBackoffMultiplier;
+    }
+
+    @DataBoundSetter
+    public void setVerifyBackoffMultiplier(Integer verifyBackoffMultiplier) {
+        this.verifyBackoffMultiplier = verifyBackoffMultiplier;
+    }
+
+    public Integer getVerifyJitterPercent() {
+        return verifyJitterPercent;
+    }
+
+    @DataBoundSetter
+    public void setVerifyJitterPercent(Integer verifyJitterPercent) {
+        this.verifyJitterPercent = verifyJitterPercent;
+    }
+
+    /**
+     * Resolves the backoff of the verification polls. Settings left empty on the build step take
+     * the global defaults.
+     *
+     * @param defaults The global {@link VerificationBackoff}.
+     * @return The {@link VerificationBackoff} of this build step.
+     */
+    VerificationBackoff getVerificationBackoff(VerificationBackoff defaults) {
+        return new VerificationBackoff(
+                Optional.ofNullable(verifyInitialDelayInSeconds).orElse(defaults.getInitialDelayInSeconds()),
+                Optional.ofNullable(verifyMaxDelayInSeconds).orElse(defaults.getMaxDelayInSeconds()),
+                Optional.ofNullable(verifyBackoffMultiplier).orElse(defaults.getMultiplier()),
+                Optional.ofNullable(verifyJitterPercent).orElse(defaults.getJitterPercent()));
+    }
+
     public boolean isVerboseLogging() {
         return this.verboseLogging;
     }
@@ -226,6 +348,92 @@ public class KubernetesEngineBuilder extends Builder implements SimpleBuildStep,
         this.verboseLogging = verboseLogging;
     }
 
+    public String getApiBackend() {
+        // NOTE: Configurations saved before this option existed deserialize it as null.
+        return Strings.isNullOrEmpty(this.apiBackend) ? KubernetesBackend.KUBECTL : this.apiBackend;
+    }
+
+    @DataBoundSetter
+    public void setApiBackend(String apiBackend) {
+        this.apiBackend = Strings.isNullOrEmpty(apiBackend) ? KubernetesBackend.KUBECTL : apiBackend;
+    }
+
+    public boolean isApplyInWaves() {
+        return this.applyInWaves;
+    }
+
+    @DataBoundSetter
+    public void setApplyInWaves(boolean applyInWaves) {
+        this.applyInWaves = applyInWaves;
+    }
+
+    public int getApplyConcurrency() {
+        // NOTE: Configurations saved before this option existed deserialize it as 0.
+        return applyConcurrency > 0 ? applyConcurrency : ApplyPlanner.DEFAULT_CONCURRENCY;
+    }
+
+    @DataBoundSetter
+    public void setApplyConcurrency(int applyConcurrency) {
+        this.applyConcurrency = applyConcurrency;
+    }
+
+    public boolean isApplyInChunks() {
+        return this.applyInChunks;
+    }
+
+    @DataBoundSetter
+    public void setApplyInChunks(boolean applyInChunks) {
+        this.applyInChunks = applyInChunks;
+    }
+
+    public int getApplyChunkSize() {
+        // NOTE: Configurations saved before this option existed deserialize it as 0.
+        return applyChunkSize > 0 ? applyChunkSize : ChunkedApplier.DEFAULT_CHUNK_SIZE;
+    }
+
+    @DataBoundSetter
+    public void setApplyChunkSize(int applyChunkSize) {
+        this.applyChunkSize = applyChunkSize;
+    }
+
+    public int getApplyMaxAttempts() {
+        // NOTE: Configurations saved before this option existed deserialize it as 0.
+        return applyMaxAttempts > 0 ? applyMaxAttempts : ChunkedApplier.DEFAULT_MAX_ATTEMPTS;
+    }
+
+    @DataBoundSetter
+    public void setApplyMaxAttempts(int applyMaxAttempts) {
+        this.applyMaxAttempts = applyMaxAttempts;
+    }
+
+    public boolean isApplyFromStdin() {
+        return this.applyFromStdin;
+    }
+
+    @DataBoundSetter
+    public void setApplyFromStdin(boolean applyFromStdin) {
+        this.applyFromStdin = applyFromStdin;
+    }
+
+    public boolean isSkipUnchangedObjects() {
+        return this.skipUnchangedObjects;
+    }
+
+    @DataBoundSetter
+    public void setSkipUnchangedObjects(boolean skipUnchangedObjects) {
+        this.skipUnchangedObjects = skipUnchangedObjects;
+    }
+
+    public int getFullApplyIntervalInHours() {
+        // NOTE: 0 disables periodic full applies, while negative intervals are invalid.
+        return fullApplyIntervalInHours >= 0 ? fullApplyIntervalInHours : DEFAULT_FULL_APPLY_INTERVAL_HOURS;
+    }
+
+    @DataBoundSetter
+    public void setFullApplyIntervalInHours(int fullApplyIntervalInHours) {
+        this.fullApplyIntervalInHours = fullApplyIntervalInHours;
+    }
+
     @VisibleForTesting
     void pushAfterBuildStep(KubeConfigAfterBuildStep afterBuildStep) {
         if (afterBuildStepStack == null) {
@@ -240,6 +448,7 @@ public class KubernetesEngineBuilder extends Builder implements SimpleBuildStep,
     public void perform(
             @NonNull Run<?, ?> run,
             @NonNull FilePath workspace,
+            @NonNull EnvVars env,
             @NonNull Launcher launcher,
             @NonNull TaskListener listener)
             throws InterruptedException, IOException {
@@ -248,6 +457,33 @@ public class KubernetesEngineBuilder extends Builder implements SimpleBuildStep,
                 String.format(
                         "GKE Deploying, projectId: %s cluster: %s location: %s",
                         projectId, clusterName, getLocation()));
+
+        // Resolve, validate and load the manifests once, before any call to the cluster, sharing them with every
+        // phase of the step. The full object sources are only sent back from the agent when they're needed on the
+        // controller, by the HTTP backend or the ledger; kubectl streams the objects from the agent instead.
+        RemotingCallCounter remotingCalls = new RemotingCallCounter();
+        boolean withSources = skipUnchangedObjects || KubernetesBackend.HTTP.equals(getApiBackend());
+        Manifests manifests = loadManifests(
+                workspace,
+                manifestPattern,
+                manifestExcludes,
+                getManifestParser(),
+                validateManifests,
+                schemaBundle,
+                withSources,
+                applyFromStdin || applyInWaves || applyInChunks,
+                remotingCalls);
+        LOGGER.log(
+                Level.INFO,
+                String.format(
+                        "GKE manifest parse cache: %d hits, %d misses",
+                        manifests.getCacheHits(), manifests.getCacheMisses()));
+        if (verboseLogging) {
+            listener.getLogger()
+                    .println(Messages.KubernetesEngineBuilder_ManifestCacheStats(
+                            manifests.getCacheHits(), manifests.getCacheMisses()));
+        }
+
         ContainerClient client = getContainerClient(credentialsId);
         Cluster cluster = client.getCluster(projectId, getLocation(), clusterName);
 
@@ -255,28 +491,57 @@ public class KubernetesEngineBuilder extends Builder implements SimpleBuildStep,
         KubeConfig kubeConfig =
                 KubeConfig.fromCluster(projectId, cluster, CredentialsUtil.getAccessToken(credentialsId));
 
-        KubectlWrapper kubectl = new KubectlWrapper.Builder()
-                .workspace(workspace)
-                .launcher(launcher)
-                .kubeConfig(kubeConfig)
-                .namespace(namespace)
-                .verboseLogging(verboseLogging)
-                .build();
-
-        FilePath manifestFile = workspace.child(manifestPattern);
-        addMetricsLabel(manifestFile);
-        kubectl.runKubectlCommand("apply", ImmutableList.of("-f", manifestFile.getRemote()));
-        try {
-            if (verifyDeployments && !verify(kubectl, manifestPattern, workspace, listener.getLogger())) {
-                throw new AbortException(Messages.KubernetesEngineBuilder_KubernetesObjectsNotVerified());
-            }
-        } finally {
-            // run the after build step if it exists
-            // NOTE(craigatgoogle): Due to the reflective way this class is created, initializers aren't
-            // run, so we still have to check for null.
-            if (afterBuildStepStack != null) {
-                while (!afterBuildStepStack.isEmpty()) {
-                    afterBuildStepStack.pop().perform(kubeConfig, run, workspace, launcher, listener);
+        try (KubeConfigSession kubeConfigSession = KubeConfigSession.open(workspace, kubeConfig, remotingCalls)) {
+            KubectlWrapper kubectl = new KubectlWrapper.Builder()
+                    .workspace(workspace)
+                    .launcher(launcher)
+                    .envVars(env)
+                    .kubeConfigSession(kubeConfigSession)
+                    .namespace(namespace)
+                    .verboseLogging(verboseLogging)
+                    .build();
+
+            KubernetesBackend backend = KubernetesBackend.HTTP.equals(getApiBackend())
+                    ? new KubernetesHttpBackend.Builder()
+                            .kubeConfig(kubeConfig)
+                            .namespace(namespace)
+                            .build()
+                    : kubectl;
+
+            if (skipUnchangedObjects) {
+                applyChanged(run, backend, manifests, listener.getLogger());
+            } else if (applyInChunks) {
+                ChunkedApplier.apply(
+                        backend,
+                        manifests,
+                        manifests.getObjectManifests(),
+                        getApplyChunkSize(),
+                        getApplyMaxAttempts(),
+                        listener.getLogger());
+            } else if (applyInWaves) {
+                ApplyPlanner.apply(
+                        backend, manifests.getObjectManifests(), getApplyConcurrency(), listener.getLogger());
+            } else {
+                backend.apply(manifests);
+            }
+            try {
+                if (verifyDeployments && !verify(backend, manifests, listener.getLogger())) {
+                    throw new AbortException(Messages.KubernetesEngineBuilder_KubernetesObjectsNotVerified());
+                }
+            } finally {
+                // run the after build step if it exists
+                // NOTE(craigatgoogle): Due to the reflective way this class is created, initializers aren't
+                // run, so we still have to check for null.
+                if (afterBuildStepStack != null) {
+                    while (!afterBuildStepStack.isEmpty()) {
+                        afterBuildStepStack.pop().perform(kubeConfig, manifests, run, workspace, launcher, listener);
+                    }
+                }
+
+                LOGGER.log(Level.INFO, String.format("GKE deploy made %d remoting calls", remotingCalls.getCount()));
+                if (verboseLogging) {
+                    listener.getLogger()
+                            .println(Messages.KubernetesEngineBuilder_RemotingCalls(remotingCalls.getCount()));
                 }
             }
         }
@@ -299,45 +564,273 @@ public class KubernetesEngineBuilder extends Builder implements SimpleBuildStep,
     @VisibleForTesting
     static void addMetricsLabel(FilePath manifestFile) throws InterruptedException, IOException {
         Manifests manifests = Manifests.fromFile(manifestFile);
+        addMetricsLabel(manifests);
+        manifests.write();
+    }
+
+    /**
+     * Adds the metrics label to the loaded manifests in memory, leaving their files untouched.
+     *
+     * @param manifests The {@link Manifests} to be modified.
+     */
+    static void addMetricsLabel(Manifests manifests) {
         for (Manifests.ManifestObject manifest : manifests.getObjectManifestsOfKinds(METRICS_TARGET_TYPES)) {
             manifest.addLabel(METRICS_LABEL_KEY, METRICS_LABEL_VALUE);
         }
+    }
 
-        manifests.write();
+    /**
+     * Loads the manifests of the build step, adding the metrics label, on the machine holding them.
+     * When the full sources of the objects are requested, they are labeled in memory and the files
+     * are left untouched, since the objects are applied from their sources. Otherwise only the
+     * summaries of the objects are sent back over the remoting channel, and the files are either
+     * left untouched, the objects being labeled in memory there as they're applied (see {@link
+     * Manifests#isLabeledWhenApplied()}), or rewritten with the label like {@link
+     * #addMetricsLabel(FilePath)}.
+     *
+     * The manifest pattern is resolved there too, so that discovery, validation and loading take a
+     * single remoting call however many files match. Validation fails with every error found before
+     * any file is changed.
+     *
+     * @param workspace The workspace the manifest pattern is relative to.
+     * @param manifestPattern The manifest file, directory or Ant-style globs, see {@link
+     *     Manifests#fromPattern(FilePath, String, String)}.
+     * @param manifestExcludes The Ant-style globs of files to leave out, or null.
+     * @param manifestParser The name of the engine parsing the manifests, or null for the default.
+     * @param validate Whether the objects are validated against a Kubernetes API schema.
+     * @param schemaBundle The workspace path of the OpenAPI v2 schema validated against, or null for
+     *     the schema bundled with the plugin.
+     * @param withSources Whether the objects are needed with their full sources.
+     * @param labelWhenApplied Whether the files of summarized objects are left untouched, the objects
+     *     being labeled as they're applied.
+     * @param remotingCalls The {@link RemotingCallCounter} of the build step.
+     * @return The labeled {@link Manifests}, holding header-only objects unless sources were requested.
+     * @throws IOException If an error occurred while reading/writing the manifest file, or an
+     *     object is invalid.
+     * @throws InterruptedException If an error occurred while parsing/dumping YAML.
+     */
+    static Manifests loadManifests(
+            FilePath workspace,
+            String manifestPattern,
+            String manifestExcludes,
+            String manifestParser,
+            boolean validate,
+            String schemaBundle,
+            boolean withSources,
+            boolean labelWhenApplied,
+            RemotingCallCounter remotingCalls)
+            throws InterruptedException, IOException {
+        return remotingCalls.act(
+                workspace,
+                new LoadManifestsCallable(
+                        manifestPattern,
+                        manifestExcludes,
+                        manifestParser,
+                        validate,
+                        schemaBundle,
+                        true,
+                        withSources,
+                        labelWhenApplied));
+    }
+
+    /**
+     * Reads the manifests matching the pattern on the machine holding them, with the single remoting
+     * call of {@link #loadManifests}, but without labeling the objects or changing the files. Only the
+     * summaries of the objects are sent back over the remoting channel.
+     *
+     * @param workspace The workspace the manifest pattern is relative to.
+     * @param manifestPattern The manifest file, directory or Ant-style globs, see {@link
+     *     Manifests#fromPattern(FilePath, String, String)}.
+     * @param manifestExcludes The Ant-style globs of files to leave out, or null.
+     * @param remotingCalls The {@link RemotingCallCounter} of the step.
+     * @return The header-only {@link Manifests} of the objects.
+     * @throws IOException If no file matched or an error occurred while reading the files.
+     * @throws InterruptedException If an error occurred while parsing YAML.
+     */
+    static Manifests readManifests(
+            FilePath workspace, String manifestPattern, String manifestExcludes, RemotingCallCounter remotingCalls)
+            throws InterruptedException, IOException {
+        return remotingCalls.act(
+                workspace,
+                new LoadManifestsCallable(manifestPattern, manifestExcludes, null, false, null, false, false, false));
+    }
+
+    private static class LoadManifestsCallable extends MasterToSlaveFileCallable<Manifests> {
+        private static final long serialVersionUID = 1L;
+
+        private final String manifestPattern;
+        private final String manifestExcludes;
+        private final String manifestParser;
+        private final boolean validate;
+        private final String schemaBundle;
+        private final boolean label;
+        private final boolean withSources;
+        private final boolean labelWhenApplied;
+
+        LoadManifestsCallable(
+                String manifestPattern,
+                String manifestExcludes,
+                String manifestParser,
+                boolean validate,
+                String schemaBundle,
+                boolean label,
+                boolean withSources,
+                boolean labelWhenApplied) {
+            this.manifestPattern = manifestPattern;
+            this.manifestExcludes = manifestExcludes;
+            this.manifestParser = manifestParser;
+            this.validate = validate;
+            this.schemaBundle = schemaBundle;
+            this.label = label;
+            this.withSources = withSources;
+            this.labelWhenApplied = labelWhenApplied;
+        }
+
+        @Override
+        public Manifests invoke(File workspace, VirtualChannel channel) throws IOException, InterruptedException {
+            Manifests manifests = Manifests.fromPattern(
+                    new FilePath(workspace), manifestPattern, manifestExcludes, manifestParser);
+            if (validate) {
+                validateManifests(
+                        manifests,
+                        schemaBundle == null
+                                ? ManifestSchema.bundled()
+                                : ManifestSchema.fromFile(new FilePath(workspace).child(schemaBundle)));
+            }
+            if (!label) {
+                return manifests.toSummaries();
+            }
+            if (labelWhenApplied && !withSources) {
+                // The objects are labeled again from the untouched files, on this machine, as they're applied.
+                Manifests summaries = manifests.toSummaries();
+                summaries.labelWhenApplied();
+                return summaries;
+            }
+            addMetricsLabel(manifests);
+            if (withSources) {
+                // The objects are applied from their labeled sources, so the files are left untouched.
+                return manifests;
+            }
+
+            manifests.write();
+            return manifests.toSummaries();
+        }
+    }
+
+    /**
+     * Validates the objects of the manifests against a Kubernetes API schema, without calling the
+     * cluster.
+     *
+     * @param manifests The {@link Manifests} to be validated.
+     * @param schema The {@link ManifestSchema} of the Kubernetes API.
+     * @throws AbortException Listing every error found, if any object is invalid.
+     */
+    static void validateManifests(Manifests manifests, ManifestSchema schema) throws AbortException {
+        List<String> errors = schema.validate(manifests.getObjectManifests());
+        if (!errors.isEmpty()) {
+            throw new AbortException(
+                    Messages.KubernetesEngineBuilder_ManifestValidationFailed(errors.size(), schema.getVersion())
+                            + "\n"
+                            + String.join("\n", errors));
+        }
+    }
+
+    /**
+     * Applies only the objects whose content changed since they were last applied successfully to
+     * the cluster namespace by this job, as recorded in its {@link ApplyLedger}. Every object is
+     * applied once the full apply interval has elapsed, correcting any drift in the cluster.
+     *
+     * @param run The current {@link Run}, whose job stores the ledger.
+     * @param backend The {@link KubernetesBackend} for applying the objects.
+     * @param manifests The {@link Manifests} of the build step, loaded with their full sources.
+     * @param consoleLogger The {@link PrintStream} for Jenkins console output.
+     * @throws IOException If an error occurred while applying the objects or saving the ledger.
+     * @throws InterruptedException If applying the objects was interrupted.
+     */
+    private void applyChanged(Run<?, ?> run, KubernetesBackend backend, Manifests manifests, PrintStream consoleLogger)
+            throws IOException, InterruptedException {
+        List<Manifests.ManifestObject> manifestObjects = manifests.getObjectManifests();
+        ApplyLedger ledger = ApplyLedger.load(
+                new File(run.getParent().getRootDir(), ApplyLedger.FILE_NAME),
+                String.join("/", projectId, getLocation(), clusterName, Strings.nullToEmpty(namespace)));
+
+        long now = System.currentTimeMillis();
+        boolean fullApply = ledger.isFullApplyDue(TimeUnit.HOURS.toMillis(getFullApplyIntervalInHours()), now);
+        List<Manifests.ManifestObject> changed = fullApply ? manifestObjects : ledger.changed(manifestObjects);
+        consoleLogger.println(
+                Messages.KubernetesEngineBuilder_SkippingUnchangedObjects(manifestObjects.size() - changed.size()));
+
+        if (applyInChunks) {
+            try {
+                ChunkedApplier.apply(
+                        backend, manifests, changed, getApplyChunkSize(), getApplyMaxAttempts(), consoleLogger);
+            } catch (ChunkedApplier.PartialApplyException e) {
+                // Record the chunks that were applied, so that the next build only applies the rest.
+                ledger.record(e.getApplied(), false, now);
+                throw e;
+            }
+        } else if (applyInWaves) {
+            ApplyPlanner.apply(backend, changed, getApplyConcurrency(), consoleLogger);
+        } else if (!changed.isEmpty()) {
+            backend.apply(manifests.subset(changed));
+        }
+        ledger.record(changed, fullApply, now);
     }
 
     /**
      * Verify the application of the supplied {@link Manifests.ManifestObject}'s to the Kubernetes
      * cluster.
      *
-     * @param kubectl The {@link KubectlWrapper} for running the queries on the Kubernetes cluster.
-     * @param manifestPattern The manifest pattern for the list of manifest files to use.
-     * @param workspace The {@link FilePath} to the build workspace directory.
+     * @param backend The {@link KubernetesBackend} for running the queries on the Kubernetes cluster.
+     * @param manifests The {@link Manifests} of the build step.
      * @param consoleLogger The {@link PrintStream} for Jenkins console output.
      * @return If the verification succeeded.
      * @throws InterruptedException If an error occurred during verification.
-     * @throws IOException If an error occurred during verification.
      */
-    private boolean verify(
-            KubectlWrapper kubectl, String manifestPattern, FilePath workspace, PrintStream consoleLogger)
-            throws InterruptedException, IOException {
+    private boolean verify(KubernetesBackend backend, Manifests manifests, PrintStream consoleLogger)
+            throws InterruptedException {
         LOGGER.log(
                 Level.INFO,
                 String.format(
                         "GKE verifying deployment to, projectId: %s cluster: %s location: %s manifests: %s",
-                        projectId, clusterName, getLocation(), workspace.child(manifestPattern)));
-
-        consoleLogger.println(String.format("Verifying manifests: %s", workspace.child(manifestPattern)));
+                        projectId, clusterName, getLocation(), manifestPattern));
 
-        Manifests manifests = Manifests.fromFile(workspace.child(manifestPattern));
+        consoleLogger.println(String.format("Verifying manifests: %s", manifestPattern));
 
         // Filter by the kinds of manifests being verified.
         List<Manifests.ManifestObject> manifestObjects =
                 manifests.getObjectManifestsOfKinds(ImmutableSet.of(KubernetesVerifiers.DEPLOYMENT_KIND));
 
         consoleLogger.println(Messages.KubernetesEngineBuilder_VerifyingNObjects(manifestObjects.size()));
+        VerificationScheduler scheduler = VerificationScheduler.get();
+        LOGGER.log(
+                Level.INFO,
+                String.format(
+                        "GKE verification scheduler: %d of %d running, %d queued in %d lanes, %d completed",
+                        scheduler.getRunning(),
+                        scheduler.getParallelism(),
+                        scheduler.getQueueDepth(),
+                        scheduler.getWaitingLanes(),
+                        scheduler.getCompleted()));
+        if (verboseLogging) {
+            consoleLogger.println(Messages.KubernetesEngineBuilder_VerificationSchedulerStats(
+                    scheduler.getRunning(), scheduler.getParallelism(), scheduler.getQueueDepth()));
+        }
 
-        return VerificationTask.verifyObjects(kubectl, manifestObjects, consoleLogger, verifyTimeoutInMinutes);
+        VerificationBackoff backoff = getVerificationBackoff(getDefaultVerificationBackoff());
+        if (verifyUsingWatch) {
+            return VerificationTask.watchObjects(
+                    backend, manifestObjects, consoleLogger, verifyTimeoutInMinutes, backoff);
+        }
+        return VerificationTask.verifyObjects(backend, manifestObjects, consoleLogger, verifyTimeoutInMinutes, backoff);
+    }
+
+    /** @return The global default {@link VerificationBackoff}, shared with the verify step. */
+    static VerificationBackoff getDefaultVerificationBackoff() {
+        Jenkins jenkins = Jenkins.getInstanceOrNull();
+        return jenkins == null
+                ? VerificationBackoff.DEFAULT
+                : jenkins.getDescriptorByType(DescriptorImpl.class).getVerificationBackoff();
     }
 
     /**
@@ -356,9 +849,24 @@ public class KubernetesEngineBuilder extends Builder implements SimpleBuildStep,
     @Symbol("kubernetesEngineDeploy")
     @Extension
     public static final class DescriptorImpl extends BuildStepDescriptor<Builder> {
-        private ClientFactory clientFactory;
-        private String defaultProjectId;
-        private String credentialsId;
+        private transient ClientFactory clientFactory;
+        private transient String defaultProjectId;
+        private transient String credentialsId;
+        private int defaultVerifyInitialDelayInSeconds = VerificationBackoff.DEFAULT_INITIAL_DELAY_SECONDS;
+        private int defaultVerifyMaxDelayInSeconds = VerificationBackoff.DEFAULT_MAX_DELAY_SECONDS;
+        private int defaultVerifyBackoffMultiplier = VerificationBackoff.DEFAULT_MULTIPLIER;
+        private int defaultVerifyJitterPercent = VerificationBackoff.DEFAULT_JITTER_PERCENT;
+        private int verificationParallelism = VerificationScheduler.DEFAULT_PARALLELISM;
+        private boolean verificationVirtualThreads;
+
+        /** Constructs the descriptor, loading the global defaults of the build step. */
+        public DescriptorImpl() {
+            // This check ensures descriptors created by tests without Jenkins don't break.
+            if (Jenkins.getInstanceOrNull() != null) {
+                load();
+                configureVerificationScheduler();
+            }
+        }
 
         @NonNull
         @Override
@@ -371,6 +879,84 @@ public class KubernetesEngineBuilder extends Builder implements SimpleBuildStep,
             return true;
         }
 
+        @Override
+        public boolean configure(StaplerRequest req, JSONObject json) throws FormException {
+            req.bindJSON(this, json);
+            save();
+            configureVerificationScheduler();
+            return true;
+        }
+
+        public int getVerificationParallelism() {
+            // NOTE: Configurations saved before this option existed deserialize it as 0.
+            return verificationParallelism > 0 ? verificationParallelism : VerificationScheduler.DEFAULT_PARALLELISM;
+        }
+
+        public void setVerificationParallelism(int verificationParallelism) {
+            this.verificationParallelism = verificationParallelism;
+        }
+
+        public boolean isVerificationVirtualThreads() {
+            return verificationVirtualThreads;
+        }
+
+        public void setVerificationVirtualThreads(boolean verificationVirtualThreads) {
+            this.verificationVirtualThreads = verificationVirtualThreads;
+        }
+
+        private void configureVerificationScheduler() {
+            VerificationScheduler.get().configure(getVerificationParallelism(), verificationVirtualThreads);
+        }
+
+        public int getDefaultVerifyInitialDelayInSeconds() {
+            return defaultVerifyInitialDelayInSeconds;
+        }
+
+        public void setDefaultVerifyInitialDelayInSeconds(int defaultVerifyInitialDelayInSeconds) {
+            this.defaultVerifyInitialDelayInSeconds = defaultVerifyInitialDelayInSeconds;
+        }
+
+        public int getDefaultVerifyMaxDelayInSeconds() {
+            return defaultVerifyMaxDelayInSeconds;
+        }
+
+        public void setDefaultVerifyMaxDelayInSeconds(int defaultVerifyMaxDelayInSeconds) {
+            this.defaultVerifyMaxDelayInSeconds = defaultVerifyMaxDelayInSeconds;
+        }
+
+        public int getDefaultVerifyBackoffMultiplier() {
+            return defaultVerifyBackoffMultiplier;
+        }
+
+        public void setDefaultVerifyBackoffMultiplier(int defaultVerifyBackoffMultiplier) {
+            this.defaultVerifyBackoffMultiplier = defaultVerifyBackoffMultiplier;
+        }
+
+        public int getDefaultVerifyJitterPercent() {
+            return defaultVerifyJitterPercent;
+        }
+
+        public void setDefaultVerifyJitterPercent(int defaultVerifyJitterPercent) {
+            this.defaultVerifyJitterPercent = defaultVerifyJitterPercent;
+        }
+
+        /**
+         * @return The global default {@link VerificationBackoff}, or the built-in default should the
+         *     saved settings be out of range.
+         */
+        VerificationBackoff getVerificationBackoff() {
+            try {
+                return new VerificationBackoff(
+                        defaultVerifyInitialDelayInSeconds,
+                        defaultVerifyMaxDelayInSeconds,
+                        defaultVerifyBackoffMultiplier,
+                        defaultVerifyJitterPercent);
+            } catch (IllegalArgumentException e) {
+                LOGGER.log(Level.WARNING, "Invalid default verification backoff, using the built-in default", e);
+                return VerificationBackoff.DEFAULT;
+            }
+        }
+
         @VisibleForTesting
         ClientFactory getClientFactory(Jenkins context, String credentialsId) throws AbortException {
             if (this.clientFactory == null || updateCredentialsId(credentialsId)) {
@@ -627,6 +1213,22 @@ public class KubernetesEngineBuilder extends Builder implements SimpleBuildStep,
             return FormValidation.ok();
         }
 
+        public ListBoxModel doFillApiBackendItems() {
+            checkPermissions();
+            ListBoxModel items = new ListBoxModel();
+            items.add(Messages.KubernetesEngineBuilder_ApiBackendKubectl(), KubernetesBackend.KUBECTL);
+            items.add(Messages.KubernetesEngineBuilder_ApiBackendHttp(), KubernetesBackend.HTTP);
+            return items;
+        }
+
+        public ListBoxModel doFillManifestParserItems() {
+            checkPermissions();
+            ListBoxModel items = new ListBoxModel();
+            items.add(Messages.KubernetesEngineBuilder_ManifestParserSnakeYaml(), ManifestParser.SNAKEYAML);
+            items.add(Messages.KubernetesEngineBuilder_ManifestParserJackson(), ManifestParser.JACKSON);
+            return items;
+        }
+
         public FormValidation doCheckVerifyTimeoutInMinutes(
                 @QueryParameter("verifyTimeoutInMinutes") final String verifyTimeoutInMinutes) {
             checkPermissions();
@@ -640,6 +1242,148 @@ public class KubernetesEngineBuilder extends Builder implements SimpleBuildStep,
 
             return FormValidation.ok();
         }
+
+        public FormValidation doCheckApplyConcurrency(
+                @QueryParameter("applyConcurrency") final String applyConcurrency) {
+            checkPermissions();
+            if (Strings.isNullOrEmpty(applyConcurrency)) {
+                return FormValidation.error(Messages.KubernetesEngineBuilder_ApplyConcurrencyRequired());
+            }
+
+            if (!applyConcurrency.matches("([1-9]\\d*)")) {
+                return FormValidation.error(Messages.KubernetesEngineBuilder_ApplyConcurrencyFormatError());
+            }
+
+            return FormValidation.ok();
+        }
+
+        public FormValidation doCheckApplyChunkSize(@QueryParameter("applyChunkSize") final String applyChunkSize) {
+            checkPermissions();
+            if (Strings.isNullOrEmpty(applyChunkSize)) {
+                return FormValidation.error(Messages.KubernetesEngineBuilder_ApplyChunkSizeRequired());
+            }
+
+            if (!applyChunkSize.matches("([1-9]\\d*)")) {
+                return FormValidation.error(Messages.KubernetesEngineBuilder_ApplyChunkSizeFormatError());
+            }
+
+            return FormValidation.ok();
+        }
+
+        public FormValidation doCheckApplyMaxAttempts(
+                @QueryParameter("applyMaxAttempts") final String applyMaxAttempts) {
+            checkPermissions();
+            if (Strings.isNullOrEmpty(applyMaxAttempts)) {
+                return FormValidation.error(Messages.KubernetesEngineBuilder_ApplyMaxAttemptsRequired());
+            }
+
+            if (!applyMaxAttempts.matches("([1-9]\\d*)")) {
+                return FormValidation.error(Messages.KubernetesEngineBuilder_ApplyMaxAttemptsFormatError());
+            }
+
+            return FormValidation.ok();
+        }
+
+        public FormValidation doCheckFullApplyIntervalInHours(
+                @QueryParameter("fullApplyIntervalInHours") final String fullApplyIntervalInHours) {
+            checkPermissions();
+            if (Strings.isNullOrEmpty(fullApplyIntervalInHours)) {
+                return FormValidation.error(Messages.KubernetesEngineBuilder_FullApplyIntervalInHoursRequired());
+            }
+
+            // 0 disables periodic full applies.
+            if (!fullApplyIntervalInHours.matches("(0|[1-9]\\d*)")) {
+                return FormValidation.error(Messages.KubernetesEngineBuilder_FullApplyIntervalInHoursFormatError());
+            }
+
+            return FormValidation.ok();
+        }
+
+        public FormValidation doCheckVerifyInitialDelayInSeconds(
+                @QueryParameter("verifyInitialDelayInSeconds") final String verifyInitialDelayInSeconds) {
+            return checkBackoffSetting(verifyInitialDelayInSeconds, 1, Integer.MAX_VALUE, false);
+        }
+
+        public FormValidation doCheckVerifyMaxDelayInSeconds(
+                @QueryParameter("verifyMaxDelayInSeconds") final String verifyMaxDelayInSeconds) {
+            return checkBackoffSetting(verifyMaxDelayInSeconds, 1, Integer.MAX_VALUE, false);
+        }
+
+        public FormValidation doCheckVerifyBackoffMultiplier(
+                @QueryParameter("verifyBackoffMultiplier") final String verifyBackoffMultiplier) {
+            return checkBackoffSetting(verifyBackoffMultiplier, 1, Integer.MAX_VALUE, false);
+        }
+
+        public FormValidation doCheckVerifyJitterPercent(
+                @QueryParameter("verifyJitterPercent") final String verifyJitterPercent) {
+            return checkBackoffSetting(verifyJitterPercent, 0, 100, false);
+        }
+
+        public FormValidation doCheckVerificationParallelism(
+                @QueryParameter("verificationParallelism") final String verificationParallelism) {
+            checkPermissions();
+            if (Strings.isNullOrEmpty(verificationParallelism)) {
+                return FormValidation.error(Messages.KubernetesEngineBuilder_VerificationParallelismRequired());
+            }
+
+            if (!verificationParallelism.matches("([1-9]\\d*)")) {
+                return FormValidation.error(Messages.KubernetesEngineBuilder_VerificationParallelismFormatError());
+            }
+
+            return FormValidation.ok();
+        }
+
+        public FormValidation doCheckVerificationVirtualThreads(
+                @QueryParameter("verificationVirtualThreads") final boolean verificationVirtualThreads) {
+            checkPermissions();
+            if (verificationVirtualThreads && !VerificationScheduler.isVirtualThreadsSupported()) {
+                return FormValidation.warning(Messages.KubernetesEngineBuilder_VirtualThreadsUnsupported());
+            }
+
+            return FormValidation.ok();
+        }
+
+        public FormValidation doCheckDefaultVerifyInitialDelayInSeconds(
+                @QueryParameter("defaultVerifyInitialDelayInSeconds") final String value) {
+            return checkBackoffSetting(value, 1, Integer.MAX_VALUE, true);
+        }
+
+        public FormValidation doCheckDefaultVerifyMaxDelayInSeconds(
+                @QueryParameter("defaultVerifyMaxDelayInSeconds") final String value) {
+            return checkBackoffSetting(value, 1, Integer.MAX_VALUE, true);
+        }
+
+        public FormValidation doCheckDefaultVerifyBackoffMultiplier(
+                @QueryParameter("defaultVerifyBackoffMultiplier") final String value) {
+            return checkBackoffSetting(value, 1, Integer.MAX_VALUE, true);
+        }
+
+        public FormValidation doCheckDefaultVerifyJitterPercent(
+                @QueryParameter("defaultVerifyJitterPercent") final String value) {
+            return checkBackoffSetting(value, 0, 100, true);
+        }
+
+        /* Checks a verification backoff setting, which may be left empty on the build step. */
+        private static FormValidation checkBackoffSetting(String value, int min, int max, boolean required) {
+            checkPermissions();
+            if (Strings.isNullOrEmpty(value)) {
+                return required
+                        ? FormValidation.error(Messages.KubernetesEngineBuilder_VerifyBackoffRequired())
+                        : FormValidation.ok();
+            }
+
+            try {
+                int setting = Integer.parseInt(value);
+                if (setting >= min && setting <= max) {
+                    return FormValidation.ok();
+                }
+            } catch (NumberFormatException e) {
+                // reported below
+            }
+            return max == Integer.MAX_VALUE
+                    ? FormValidation.error(Messages.KubernetesEngineBuilder_VerifyBackoffFormatError())
+                    : FormValidation.error(Messages.KubernetesEngineBuilder_VerifyJitterPercentFormatError());
+        }
     }
 
     private static void selectOption(ListBoxModel listBoxModel, String optionValue) {
@@ -659,14 +1403,19 @@ public class KubernetesEngineBuilder extends Builder implements SimpleBuildStep,
         item.ifPresent(i -> i.selected = true);
     }
 
-    private static ContainerClient getContainerClient(String credentialsId) throws AbortException {
+    static ContainerClient getContainerClient(String credentialsId) throws AbortException {
         return ClientUtil.getClientFactory(Jenkins.get(), credentialsId).containerClient();
     }
 
     @FunctionalInterface
     interface KubeConfigAfterBuildStep extends Serializable {
         public void perform(
-                KubeConfig kubeConfig, Run<?, ?> run, FilePath workspace, Launcher launcher, TaskListener listener)
+                KubeConfig kubeConfig,
+                Manifests manifests,
+                Run<?, ?> run,
+                FilePath workspace,
+                Launcher launcher,
+                TaskListener listener)
                 throws AbortException, InterruptedException, IOException;
     }
 }
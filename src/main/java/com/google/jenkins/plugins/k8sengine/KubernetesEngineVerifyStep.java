@@ -0,0 +1,341 @@
+/*
+ * Copyright 2019 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.jenkins.plugins.k8sengine;
+
+import com.google.api.services.container.model.Cluster;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableSet;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.AbortException;
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.model.TaskListener;
+import hudson.util.ListBoxModel;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Serializable;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.model.Jenkins;
+import org.jenkinsci.plugins.workflow.steps.Step;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+import org.kohsuke.stapler.AncestorInPath;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Provides a Pipeline step verifying that the Deployments of manifests were rolled out to a GKE
+ * cluster, such as after a {@link KubernetesEngineBuilder} step that doesn't verify them. Unlike the
+ * deploy step it doesn't hold a thread while it waits: the polls or watches are scheduled on the
+ * threads shared by all verifications and the step is finished from their callback, so a long
+ * rollout costs almost nothing while it's in progress. The cluster is queried over HTTP from the
+ * controller. The manifests are either given as content, in which case the step runs outside of a
+ * node and holds no executor, or read from the workspace of the enclosing node.
+ */
+public class KubernetesEngineVerifyStep extends Step implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private static final Logger LOGGER = Logger.getLogger(KubernetesEngineVerifyStep.class.getName());
+
+    private String credentialsId;
+    private String projectId;
+    private String location;
+    private String clusterName;
+    private String namespace;
+    private String manifests;
+    private String manifestPattern;
+    private String manifestExcludes;
+    private int verifyTimeoutInMinutes = KubernetesEngineBuilder.DEFAULT_VERIFY_TIMEOUT_MINUTES;
+    private boolean verifyUsingWatch;
+
+    /** Constructs a new {@link KubernetesEngineVerifyStep}. */
+    @DataBoundConstructor
+    public KubernetesEngineVerifyStep() {}
+
+    public String getCredentialsId() {
+        return credentialsId;
+    }
+
+    @DataBoundSetter
+    public void setCredentialsId(String credentialsId) {
+        this.credentialsId = credentialsId;
+    }
+
+    public String getProjectId() {
+        return projectId;
+    }
+
+    @DataBoundSetter
+    public void setProjectId(String projectId) {
+        this.projectId = projectId;
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    @DataBoundSetter
+    public void setLocation(String location) {
+        this.location = location;
+    }
+
+    public String getClusterName() {
+        return clusterName;
+    }
+
+    @DataBoundSetter
+    public void setClusterName(String clusterName) {
+        this.clusterName = clusterName;
+    }
+
+    public String getNamespace() {
+        return namespace;
+    }
+
+    @DataBoundSetter
+    public void setNamespace(String namespace) {
+        this.namespace = Strings.emptyToNull(namespace);
+    }
+
+    public String getManifests() {
+        return manifests;
+    }
+
+    @DataBoundSetter
+    public void setManifests(String manifests) {
+        this.manifests = Strings.emptyToNull(manifests);
+    }
+
+    public String getManifestPattern() {
+        return manifestPattern;
+    }
+
+    @DataBoundSetter
+    public void setManifestPattern(String manifestPattern) {
+        this.manifestPattern = manifestPattern;
+    }
+
+    public String getManifestExcludes() {
+        return manifestExcludes;
+    }
+
+    @DataBoundSetter
+    public void setManifestExcludes(String manifestExcludes) {
+        this.manifestExcludes = Strings.emptyToNull(manifestExcludes);
+    }
+
+    public int getVerifyTimeoutInMinutes() {
+        return verifyTimeoutInMinutes;
+    }
+
+    @DataBoundSetter
+    public void setVerifyTimeoutInMinutes(int verifyTimeoutInMinutes) {
+        this.verifyTimeoutInMinutes = verifyTimeoutInMinutes;
+    }
+
+    public boolean isVerifyUsingWatch() {
+        return verifyUsingWatch;
+    }
+
+    @DataBoundSetter
+    public void setVerifyUsingWatch(boolean verifyUsingWatch) {
+        this.verifyUsingWatch = verifyUsingWatch;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public StepExecution start(StepContext context) {
+        return new Execution(this, context);
+    }
+
+    /**
+     * Verifies the Deployments asynchronously, finishing the step from the callback of the
+     * verification rather than from a thread waiting for it.
+     */
+    static class Execution extends StepExecution {
+        private static final long serialVersionUID = 1L;
+
+        private final transient KubernetesEngineVerifyStep step;
+        private transient volatile Disposable verification;
+        private transient volatile int objectCount;
+
+        Execution(KubernetesEngineVerifyStep step, StepContext context) {
+            super(context);
+            this.step = step;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean start() throws Exception {
+            StepContext context = getContext();
+            PrintStream consoleLogger = context.get(TaskListener.class).getLogger();
+            checkRequired("projectId", step.projectId);
+            checkRequired("clusterName", step.clusterName);
+            checkRequired("location", step.location);
+            checkRequired("credentialsId", step.credentialsId);
+            if (step.verifyTimeoutInMinutes <= 0) {
+                throw new AbortException(
+                        Messages.KubernetesEngineVerifyStep_VerifyTimeoutMustBePositive(step.verifyTimeoutInMinutes));
+            }
+            // Only manifests read from a workspace need the enclosing node, which holds an executor.
+            FilePath workspace = null;
+            if (step.manifests == null) {
+                if (Strings.isNullOrEmpty(step.manifestPattern)) {
+                    throw new AbortException(Messages.KubernetesEngineVerifyStep_ManifestsRequired());
+                }
+                workspace = context.get(FilePath.class);
+                if (workspace == null) {
+                    throw new AbortException(Messages.KubernetesEngineVerifyStep_WorkspaceRequired());
+                }
+            }
+            FilePath manifestsWorkspace = workspace;
+
+            // Loading the manifests and connecting to the cluster block briefly, so they run on the shared
+            // verification threads too rather than on the thread starting the step.
+            VerificationScheduler.Lane lane =
+                    VerificationScheduler.get().newLane(String.format("verify step of %s", step.clusterName));
+            verification = Mono.fromCallable(() -> loadDeployments(manifestsWorkspace, consoleLogger))
+                    .subscribeOn(Schedulers.fromExecutor(lane))
+                    .flatMap((deployments) -> Mono.fromCallable(this::connect)
+                            .flatMap((backend) -> verify(backend, deployments, consoleLogger)))
+                    .subscribe(
+                            (verified) -> {
+                                if (verified) {
+                                    context.onSuccess(null);
+                                } else {
+                                    context.onFailure(new AbortException(
+                                            Messages.KubernetesEngineVerifyStep_ObjectsNotVerified()));
+                                }
+                            },
+                            context::onFailure);
+            return false;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void stop(@NonNull Throwable cause) throws Exception {
+            Disposable current = verification;
+            if (current != null) {
+                current.dispose();
+            }
+            getContext().onFailure(cause);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void onResume() {
+            // The verification isn't persisted, so a restart of Jenkins ends it.
+            getContext().onFailure(new AbortException(Messages.KubernetesEngineVerifyStep_NotResumable()));
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public String getStatus() {
+            return Messages.KubernetesEngineVerifyStep_VerifyingNObjects(objectCount);
+        }
+
+        private static void checkRequired(String parameter, String value) throws AbortException {
+            if (Strings.isNullOrEmpty(value)) {
+                throw new AbortException(Messages.KubernetesEngineVerifyStep_ParameterRequired(parameter));
+            }
+        }
+
+        /* Loads the Deployments from the manifests content, or from the workspace if there is none. */
+        private List<Manifests.ManifestObject> loadDeployments(FilePath workspace, PrintStream consoleLogger)
+                throws IOException, InterruptedException {
+            Manifests manifests;
+            if (workspace == null) {
+                manifests = Manifests.fromContent(step.manifests);
+            } else {
+                consoleLogger.println(String.format("Verifying manifests: %s", step.manifestPattern));
+                // The manifests are parsed where they are with a single remoting call, and only summaries come back.
+                manifests = KubernetesEngineBuilder.readManifests(
+                        workspace, step.manifestPattern, step.manifestExcludes, new RemotingCallCounter());
+            }
+            List<Manifests.ManifestObject> deployments =
+                    manifests.getObjectManifestsOfKinds(ImmutableSet.of(KubernetesVerifiers.DEPLOYMENT_KIND));
+            objectCount = deployments.size();
+            consoleLogger.println(Messages.KubernetesEngineVerifyStep_VerifyingNObjects(deployments.size()));
+            return deployments;
+        }
+
+        /**
+         * Connects to the cluster the Deployments are verified on.
+         *
+         * @return The {@link KubernetesBackend} querying the cluster.
+         * @throws IOException If the cluster couldn't be retrieved or connected to.
+         */
+        @VisibleForTesting
+        KubernetesBackend connect() throws IOException {
+            LOGGER.log(
+                    Level.INFO,
+                    String.format(
+                            "GKE verifying, projectId: %s cluster: %s location: %s",
+                            step.projectId, step.clusterName, step.location));
+            Cluster cluster = KubernetesEngineBuilder.getContainerClient(step.credentialsId)
+                    .getCluster(step.projectId, step.location, step.clusterName);
+            KubeConfig kubeConfig = KubeConfig.fromCluster(
+                    step.projectId, cluster, CredentialsUtil.getAccessToken(step.credentialsId));
+            return new KubernetesHttpBackend.Builder()
+                    .kubeConfig(kubeConfig)
+                    .namespace(step.namespace)
+                    .build();
+        }
+
+        private Mono<Boolean> verify(
+                KubernetesBackend backend, List<Manifests.ManifestObject> deployments, PrintStream consoleLogger) {
+            Duration timeout = Duration.ofMinutes(step.verifyTimeoutInMinutes);
+            VerificationBackoff backoff = KubernetesEngineBuilder.getDefaultVerificationBackoff();
+            return step.verifyUsingWatch
+                    ? VerificationTask.watchObjectsAsync(backend, deployments, consoleLogger, timeout, backoff)
+                    : VerificationTask.verifyObjectsAsync(backend, deployments, consoleLogger, timeout, backoff);
+        }
+    }
+
+    @Extension
+    public static final class DescriptorImpl extends StepDescriptor {
+        @Override
+        public String getFunctionName() {
+            return "kubernetesEngineVerify";
+        }
+
+        @NonNull
+        @Override
+        public String getDisplayName() {
+            return Messages.KubernetesEngineVerifyStep_DisplayName();
+        }
+
+        @Override
+        public Set<? extends Class<?>> getRequiredContext() {
+            // The workspace is only read when the manifests aren't given as content, so the step can run
+            // outside of node.
+            return ImmutableSet.of(TaskListener.class);
+        }
+
+        public ListBoxModel doFillCredentialsIdItems(@AncestorInPath Jenkins context) {
+            return Jenkins.get()
+                    .getDescriptorByType(KubernetesEngineBuilder.DescriptorImpl.class)
+                    .doFillCredentialsIdItems(context);
+        }
+    }
+}
@@ -0,0 +1,569 @@
+/*
+ * Copyright 2019 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.jenkins.plugins.k8sengine;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.hash.Hashing;
+import com.jayway.jsonpath.Configuration;
+import hudson.FilePath;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateFactory;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+
+/**
+ * A {@link KubernetesBackend} that talks to the Kubernetes API server directly from the JVM, using
+ * the cluster endpoint, certificate authority and access token of a {@link KubeConfig}. A single
+ * {@link HttpClient} is kept per backend so that TLS connections are pooled and kept alive across
+ * requests, and manifests are applied using server-side apply. The resource name and scope of each
+ * kind are found through the {@code /api} and {@code /apis} discovery endpoints of the API server,
+ * and kept for the lifetime of the backend.
+ */
+public class KubernetesHttpBackend implements KubernetesBackend {
+    private static final Logger LOGGER = Logger.getLogger(KubernetesHttpBackend.class.getName());
+    static final String FIELD_MANAGER = KubernetesEngineBuilder.METRICS_LABEL_VALUE;
+    static final String APPLY_PATCH_CONTENT_TYPE = "application/apply-patch+yaml";
+    private static final String DEFAULT_NAMESPACE = "default";
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(30);
+    private static final Duration REQUEST_TIMEOUT = Duration.ofMinutes(2);
+
+    private HttpClient httpClient;
+    private String server;
+    private String token;
+    private String namespace;
+    // The resources served by each group version, by their lower case kind, as discovered.
+    private final Map<String, Map<String, ApiResource>> discoveredResources = new ConcurrentHashMap<>();
+    // The core version followed by the preferred version of each group, once discovered.
+    private volatile List<String> preferredGroupVersions;
+
+    private KubernetesHttpBackend() {}
+
+    private void setHttpClient(HttpClient httpClient) {
+        this.httpClient = httpClient;
+    }
+
+    private void setServer(String server) {
+        this.server = server.endsWith("/") ? server.substring(0, server.length() - 1) : server;
+    }
+
+    private String getServer() {
+        return server;
+    }
+
+    private void setToken(String token) {
+        this.token = token;
+    }
+
+    private void setNamespace(String namespace) {
+        this.namespace = namespace == null ? "" : namespace;
+    }
+
+    private String getNamespace() {
+        return namespace;
+    }
+
+    /**
+     * Applies the manifests at the specified path with a server-side apply request per object.
+     *
+     * @param manifestFile The manifest file, or directory of manifest files, to be applied.
+     * @throws IOException If an error occurred while applying an object.
+     * @throws InterruptedException If an error occurred while applying an object.
+     */
+    @Override
+    public void apply(FilePath manifestFile) throws IOException, InterruptedException {
+        apply(Manifests.fromFile(manifestFile));
+    }
+
+    /**
+     * Applies the objects of the manifests with a server-side apply request per object.
+     *
+     * @param manifests The {@link Manifests} to be applied, loaded with their full sources.
+     * @throws IOException If an error occurred while applying an object.
+     * @throws InterruptedException If an error occurred while applying an object.
+     */
+    @Override
+    public void apply(Manifests manifests) throws IOException, InterruptedException {
+        for (Manifests.ManifestObject object : manifests.getObjectManifests()) {
+            apply(object);
+        }
+    }
+
+    /**
+     * Applies a single object using server-side apply, taking ownership of conflicting fields.
+     *
+     * @param object The {@link Manifests.ManifestObject} to be applied.
+     * @throws IOException If the object has no apiVersion, kind or name, or the API server rejected it.
+     * @throws InterruptedException If the request was interrupted.
+     */
+    @Override
+    public void apply(Manifests.ManifestObject object) throws IOException, InterruptedException {
+        if (Strings.isNullOrEmpty(object.getApiVersion())
+                || Strings.isNullOrEmpty(object.getKind())
+                || !object.getName().isPresent()) {
+            throw new IOException(String.format(
+                    "%s%s: object needs an apiVersion, a kind and a name to be applied",
+                    object.getFile() == null ? "" : object.getFile().getRemote() + ": ",
+                    object.describe()));
+        }
+        String uri = objectUri(
+                resourceOf(object.getApiVersion(), object.getKind()),
+                object.getNamespace().orElse(null),
+                object.getName().get());
+        HttpRequest request = newRequest(String.format(
+                        "%s?fieldManager=%s&force=true", uri, encode(FIELD_MANAGER)))
+                .header("Content-Type", APPLY_PATCH_CONTENT_TYPE)
+                .method(
+                        "PATCH",
+                        HttpRequest.BodyPublishers.ofString(
+                                object.toYaml(), StandardCharsets.UTF_8))
+                .build();
+        try (InputStream body = send(request)) {
+            LOGGER.log(Level.FINE, String.format("Applied %s", object.describe()));
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Object getObject(String kind, String name) throws IOException, InterruptedException {
+        String uri = objectUri(resourceOf(kind), null, name);
+        try (InputStream body = send(newRequest(uri).GET().build())) {
+            return Configuration.defaultConfiguration().jsonProvider().parse(body, StandardCharsets.UTF_8.name());
+        }
+    }
+
+    /**
+     * Lists the collection of the kind in the namespace once and keeps the requested objects, as the
+     * API server can't select several objects by name in one request. A single object is selected
+     * by its name instead, so that the rest of the collection isn't sent.
+     *
+     * @param kind The kind of the Kubernetes Objects.
+     * @param objectNamespace The namespace of the objects, or null for the namespace of the backend.
+     * @param names The names of the Kubernetes Objects.
+     * @param fields The {@link ObjectFields} of the objects to keep, projected as the response is read.
+     * @return The projected JSON objects that were found, in no particular order.
+     * @throws IOException If an error occurred while retrieving the objects.
+     * @throws InterruptedException If an error occurred while retrieving the objects.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public ImmutableList<Object> getObjects(
+            String kind, String objectNamespace, Collection<String> names, ObjectFields fields)
+            throws IOException, InterruptedException {
+        Set<String> wanted = new HashSet<>(names);
+        String uri = collectionUri(resourceOf(kind), objectNamespace);
+        if (wanted.size() == 1) {
+            uri = String.format("%s?fieldSelector=%s", uri, encode("metadata.name=" + wanted.iterator().next()));
+        }
+        try (InputStream body = send(newRequest(uri).GET().build())) {
+            Map<String, Object> result = (Map<String, Object>) parse(body, fields);
+            List<Object> items = (List<Object>) result.get("items");
+            if (items == null) {
+                return ImmutableList.of();
+            }
+            return items.stream()
+                    .filter(item -> wanted.contains(nameOf(item)))
+                    .collect(ImmutableList.toImmutableList());
+        }
+    }
+
+    /**
+     * Identifies the objects of a kind in a namespace by the URI of their collection, which names
+     * the API server, the namespace and the resource, followed by a SHA-256 fingerprint of the access
+     * token the objects are read with. Watches opened by this backend only depend on the JVM, so they
+     * can be shared by builds talking to the same cluster with the same credentials, but never with
+     * builds whose credentials might not be allowed to read the objects.
+     *
+     * @param kind The kind of the Kubernetes Objects.
+     * @param objectNamespace The namespace of the objects, or null for the namespace of the backend.
+     * @return The URI of the collection of the objects and the fingerprint of the credentials.
+     * @throws IOException If the API server doesn't serve the kind.
+     * @throws InterruptedException If the API discovery was interrupted.
+     */
+    @Override
+    public String getCollectionId(String kind, String objectNamespace) throws IOException, InterruptedException {
+        String principal = Strings.isNullOrEmpty(token)
+                ? "anonymous"
+                : "token sha256:" + Hashing.sha256().hashString(token, StandardCharsets.UTF_8);
+        return String.format("%s as %s", collectionUri(resourceOf(kind), objectNamespace), principal);
+    }
+
+    /**
+     * Watches the objects of a kind using a streaming watch request. The API server sends an ADDED
+     * event for every existing object first, followed by an event for each change or deletion.
+     *
+     * @param kind The kind of the Kubernetes Objects.
+     * @param objectNamespace The namespace of the objects, or null for the namespace of the backend.
+     * @param listener Receives the state of the watched objects.
+     * @return A handle which ends the watch request when closed.
+     * @throws IOException If an error occurred while starting the watch.
+     * @throws InterruptedException If an error occurred while starting the watch.
+     */
+    @Override
+    public Closeable watch(String kind, String objectNamespace, WatchListener listener)
+            throws IOException, InterruptedException {
+        String uri = String.format("%s?watch=true", collectionUri(resourceOf(kind), objectNamespace));
+        InputStream events = send(newRequest(uri).GET().build());
+        return new WatchStream(uri, events, listener, () -> {});
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    @SuppressWarnings("unchecked")
+    public ImmutableList<Object> getObjectsThatMatchLabels(
+            String kind, String objectNamespace, Map<String, String> labels, ObjectFields fields)
+            throws IOException, InterruptedException {
+        String labelSelector = labels.keySet().stream()
+                .map((k) -> String.format("%s=%s", k, labels.get(k)))
+                .collect(Collectors.joining(","));
+        String uri = String.format(
+                "%s?labelSelector=%s", collectionUri(resourceOf(kind), objectNamespace), encode(labelSelector));
+        try (InputStream body = send(newRequest(uri).GET().build())) {
+            Map<String, Object> result = (Map<String, Object>) parse(body, fields);
+            List<Object> items = (List<Object>) result.get("items");
+            return items == null ? ImmutableList.of() : ImmutableList.copyOf(items);
+        }
+    }
+
+    private static Object parse(InputStream body, ObjectFields fields) throws IOException {
+        return fields.isAll()
+                ? Configuration.defaultConfiguration().jsonProvider().parse(body, StandardCharsets.UTF_8.name())
+                : fields.parse(body);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static String nameOf(Object item) {
+        Map<String, Object> metadata = (Map<String, Object>) ((Map<String, Object>) item).get("metadata");
+        return metadata == null ? null : (String) metadata.get("name");
+    }
+
+    private HttpRequest.Builder newRequest(String uri) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(uri))
+                .timeout(REQUEST_TIMEOUT)
+                .header("Accept", "application/json");
+        if (!Strings.isNullOrEmpty(token)) {
+            builder.header("Authorization", "Bearer " + token);
+        }
+        return builder;
+    }
+
+    private InputStream send(HttpRequest request) throws IOException, InterruptedException {
+        HttpResponse<InputStream> response = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        if (response.statusCode() >= 400) {
+            String body;
+            try (InputStream in = response.body()) {
+                body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+            throw new IOException(String.format(
+                    "Request %s %s failed, status: %s. Response: %s",
+                    request.method(), request.uri(), response.statusCode(), body));
+        }
+        return response.body();
+    }
+
+    private String objectUri(ApiResource resource, String objectNamespace, String name) {
+        return String.format("%s/%s", collectionUri(resource, objectNamespace), encode(name));
+    }
+
+    private String collectionUri(ApiResource resource, String objectNamespace) {
+        StringBuilder uri = new StringBuilder(server);
+        uri.append(groupVersionPath(resource.groupVersion));
+        if (resource.namespaced) {
+            String ns = !Strings.isNullOrEmpty(objectNamespace)
+                    ? objectNamespace
+                    : (namespace.isEmpty() ? DEFAULT_NAMESPACE : namespace);
+            uri.append("/namespaces/").append(encode(ns));
+        }
+        return uri.append("/").append(resource.name).toString();
+    }
+
+    private static String groupVersionPath(String groupVersion) {
+        // The core group is served from /api, all others from /apis.
+        return (groupVersion.contains("/") ? "/apis/" : "/api/") + groupVersion;
+    }
+
+    /*
+     * Finds the resource serving a kind in the group version of an object. The group version is
+     * discovered again if it doesn't serve the kind, as a CustomResourceDefinition applied since it
+     * was discovered may have added it.
+     */
+    private ApiResource resourceOf(String apiVersion, String kind) throws IOException, InterruptedException {
+        if (Strings.isNullOrEmpty(apiVersion) || Strings.isNullOrEmpty(kind)) {
+            throw new IOException(String.format("Objects need an apiVersion and a kind, got %s/%s", apiVersion, kind));
+        }
+        String key = kind.toLowerCase();
+        ApiResource resource = discover(apiVersion, false).get(key);
+        if (resource == null) {
+            resource = discover(apiVersion, true).get(key);
+        }
+        if (resource == null) {
+            throw new IOException(String.format("no matches for kind \"%s\" in version \"%s\"", kind, apiVersion));
+        }
+        return resource;
+    }
+
+    /*
+     * Finds the resource serving a kind when only the kind is known, looking in the core version
+     * first and then in the preferred version of each group, in the order the API server lists them.
+     */
+    private ApiResource resourceOf(String kind) throws IOException, InterruptedException {
+        String key = kind.toLowerCase();
+        for (String groupVersion : preferredGroupVersions()) {
+            ApiResource resource = discover(groupVersion, false).get(key);
+            if (resource != null) {
+                return resource;
+            }
+        }
+        throw new IOException(String.format("The server doesn't have a resource type \"%s\"", kind));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<String> preferredGroupVersions() throws IOException, InterruptedException {
+        List<String> groupVersions = preferredGroupVersions;
+        if (groupVersions != null) {
+            return groupVersions;
+        }
+
+        ImmutableList.Builder<String> discovered = ImmutableList.builder();
+        Map<String, Object> core = (Map<String, Object>) getJson(server + "/api");
+        List<Object> versions = (List<Object>) core.get("versions");
+        if (versions != null) {
+            versions.forEach((version) -> discovered.add((String) version));
+        }
+        Map<String, Object> groupList = (Map<String, Object>) getJson(server + "/apis");
+        List<Object> groups = (List<Object>) groupList.get("groups");
+        if (groups != null) {
+            for (Object group : groups) {
+                Object preferred = ((Map<String, Object>) group).get("preferredVersion");
+                if (preferred instanceof Map) {
+                    discovered.add((String) ((Map<String, Object>) preferred).get("groupVersion"));
+                }
+            }
+        }
+        groupVersions = discovered.build();
+        preferredGroupVersions = groupVersions;
+        return groupVersions;
+    }
+
+    /*
+     * Returns the resources served by a group version by their lower case kind, as well as by their
+     * plural and singular names, listing them with the API server unless they were listed already or
+     * a refresh is requested. A group version the API server doesn't serve has no resources.
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, ApiResource> discover(String groupVersion, boolean refresh)
+            throws IOException, InterruptedException {
+        Map<String, ApiResource> resources = discoveredResources.get(groupVersion);
+        if (resources != null && !refresh) {
+            return resources;
+        }
+
+        HttpResponse<InputStream> response =
+                httpClient.send(newRequest(server + groupVersionPath(groupVersion)).GET().build(),
+                        HttpResponse.BodyHandlers.ofInputStream());
+        Map<String, ApiResource> discovered = new HashMap<>();
+        try (InputStream body = response.body()) {
+            if (response.statusCode() == 404) {
+                LOGGER.log(Level.FINE, String.format("The server doesn't serve %s", groupVersion));
+            } else if (response.statusCode() >= 400) {
+                throw new IOException(String.format(
+                        "Discovery of %s failed, status: %s. Response: %s",
+                        groupVersion,
+                        response.statusCode(),
+                        new String(body.readAllBytes(), StandardCharsets.UTF_8)));
+            } else {
+                Map<String, Object> resourceList = (Map<String, Object>)
+                        Configuration.defaultConfiguration().jsonProvider().parse(body, StandardCharsets.UTF_8.name());
+                List<Object> entries = (List<Object>) resourceList.get("resources");
+                for (Object entry : entries == null ? ImmutableList.of() : entries) {
+                    Map<String, Object> fields = (Map<String, Object>) entry;
+                    String name = (String) fields.get("name");
+                    String kind = (String) fields.get("kind");
+                    if (Strings.isNullOrEmpty(name) || Strings.isNullOrEmpty(kind) || name.contains("/")) {
+                        // Subresources, such as deployments/status, aren't applied or read directly.
+                        continue;
+                    }
+                    ApiResource resource =
+                            new ApiResource(groupVersion, name, !Boolean.FALSE.equals(fields.get("namespaced")));
+                    discovered.putIfAbsent(kind.toLowerCase(), resource);
+                    discovered.putIfAbsent(name, resource);
+                    String singularName = (String) fields.get("singularName");
+                    if (!Strings.isNullOrEmpty(singularName)) {
+                        discovered.putIfAbsent(singularName, resource);
+                    }
+                }
+            }
+        }
+        resources = ImmutableMap.copyOf(discovered);
+        discoveredResources.put(groupVersion, resources);
+        return resources;
+    }
+
+    private Object getJson(String uri) throws IOException, InterruptedException {
+        try (InputStream body = send(newRequest(uri).GET().build())) {
+            return Configuration.defaultConfiguration().jsonProvider().parse(body, StandardCharsets.UTF_8.name());
+        }
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    private static SSLContext sslContext(String certificateAuthorityData) throws GeneralSecurityException, IOException {
+        CertificateFactory certificateFactory = CertificateFactory.getInstance("X.509");
+        KeyStore trustStore = KeyStore.getInstance(KeyStore.getDefaultType());
+        trustStore.load(null, null);
+        int i = 0;
+        for (Certificate certificate : certificateFactory.generateCertificates(
+                new ByteArrayInputStream(Base64.getDecoder().decode(certificateAuthorityData)))) {
+            trustStore.setCertificateEntry("ca-" + i++, certificate);
+        }
+        TrustManagerFactory trustManagerFactory =
+                TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trustManagerFactory.init(trustStore);
+        SSLContext context = SSLContext.getInstance("TLS");
+        context.init(null, trustManagerFactory.getTrustManagers(), null);
+        return context;
+    }
+
+    /** The REST resource serving the objects of a kind, as found through API discovery. */
+    private static final class ApiResource {
+        private final String groupVersion;
+        private final String name;
+        private final boolean namespaced;
+
+        private ApiResource(String groupVersion, String name, boolean namespaced) {
+            this.groupVersion = groupVersion;
+            this.name = name;
+            this.namespaced = namespaced;
+        }
+    }
+
+    /** Builder for {@link KubernetesHttpBackend}. */
+    public static class Builder {
+        private KubernetesHttpBackend backend = new KubernetesHttpBackend();
+        private String certificateAuthorityData;
+
+        /**
+         * Sets the server, certificate authority and token from the current context of the
+         * supplied {@link KubeConfig}.
+         *
+         * @param kubeConfig The {@link KubeConfig} to be used.
+         * @return A reference to the {@link Builder}.
+         */
+        public Builder kubeConfig(KubeConfig kubeConfig) {
+            Preconditions.checkNotNull(kubeConfig);
+            backend.setServer(kubeConfig.getServer());
+            backend.setToken(kubeConfig.getToken());
+            this.certificateAuthorityData = kubeConfig.getCertificateAuthorityData();
+            return this;
+        }
+
+        /**
+         * Sets the address of the API server, for example https://1.2.3.4.
+         *
+         * @param server The server to be set.
+         * @return A reference to the {@link Builder}.
+         */
+        public Builder server(String server) {
+            backend.setServer(Preconditions.checkNotNull(server));
+            return this;
+        }
+
+        /**
+         * Sets the base64 encoded certificate authority data the server is verified against.
+         *
+         * @param certificateAuthorityData The certificate authority data to be set.
+         * @return A reference to the {@link Builder}.
+         */
+        public Builder certificateAuthorityData(String certificateAuthorityData) {
+            this.certificateAuthorityData = certificateAuthorityData;
+            return this;
+        }
+
+        /**
+         * Sets the bearer token used to authenticate with the API server.
+         *
+         * @param token The token to be set.
+         * @return A reference to the {@link Builder}.
+         */
+        public Builder token(String token) {
+            backend.setToken(token);
+            return this;
+        }
+
+        /**
+         * Sets the namespace used for objects that don't specify their own.
+         *
+         * @param namespace The namespace to be set.
+         * @return A reference to the {@link Builder}.
+         */
+        public Builder namespace(String namespace) {
+            backend.setNamespace(namespace);
+            return this;
+        }
+
+        /**
+         * Builds a new {@link KubernetesHttpBackend}.
+         *
+         * @return A new {@link KubernetesHttpBackend}.
+         * @throws IOException If the certificate authority data could not be loaded.
+         */
+        public KubernetesHttpBackend build() throws IOException {
+            Preconditions.checkNotNull(backend.getServer());
+            if (backend.getNamespace() == null) {
+                backend.setNamespace("");
+            }
+
+            HttpClient.Builder httpClientBuilder =
+                    HttpClient.newBuilder().connectTimeout(CONNECT_TIMEOUT).version(HttpClient.Version.HTTP_1_1);
+            if (!Strings.isNullOrEmpty(certificateAuthorityData)) {
+                try {
+                    httpClientBuilder.sslContext(sslContext(certificateAuthorityData));
+                } catch (GeneralSecurityException | IllegalArgumentException e) {
+                    throw new IOException("Failed to load the cluster certificate authority", e);
+                }
+            }
+            backend.setHttpClient(httpClientBuilder.build());
+            return backend;
+        }
+    }
+}
@@ -15,12 +15,23 @@
 package com.google.jenkins.plugins.k8sengine;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.jayway.jsonpath.JsonPath;
+import com.jayway.jsonpath.PathNotFoundException;
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
 
 /**
  * Verification adapters for verifying ManifestObjects using kubectl and returning and logging the
@@ -31,6 +42,12 @@ public class KubernetesVerifiers {
     private static final Logger LOGGER = Logger.getLogger(KubernetesEngineBuilder.class.getName());
     private static Map<String, Verifier> verifiers = new HashMap<String, Verifier>();
     private static final Verifier defaultVerifier = new DefaultVerifier();
+    // The metadata of watched objects besides the fields read by the verifiers.
+    private static final ObjectFields WATCHED_METADATA = new ObjectFields.Builder()
+            .field("metadata", "generation")
+            .field("metadata", "resourceVersion")
+            .field("metadata", "labels")
+            .build();
     public static final String DEPLOYMENT_KIND = "deployment";
     // Register the available verifiers.
     static {
@@ -45,6 +62,7 @@ public class KubernetesVerifiers {
     public static class VerificationResult {
         private String log;
         private boolean status;
+        private boolean failed;
         private Manifests.ManifestObject manifestObject;
 
         /** @return Information relevant to the result and why the status is what it is. */
@@ -57,6 +75,14 @@ public class KubernetesVerifiers {
             return status;
         }
 
+        /**
+         * @return If the Kubernetes object can't be verified however long verification goes on, such
+         *     as when its rollout exceeded its progress deadline.
+         */
+        public boolean isFailed() {
+            return failed;
+        }
+
         /** @return The {@link Manifests.ManifestObject} for which verification was attempted. */
         public Manifests.ManifestObject getManifestObject() {
             return manifestObject;
@@ -75,6 +101,19 @@ public class KubernetesVerifiers {
             this.manifestObject = object;
         }
 
+        /**
+         * Constructs a new {@link VerificationResult} for an object which will never be verified.
+         *
+         * @param log Information relevant to why the object will never be verified.
+         * @param object The {@link Manifests.ManifestObject} for which this verification was attempted.
+         * @return The failed {@link VerificationResult}.
+         */
+        public static VerificationResult failed(String log, Manifests.ManifestObject object) {
+            VerificationResult result = new VerificationResult(log, false, object);
+            result.failed = true;
+            return result;
+        }
+
         /**
          * Get text description of the result.
          *
@@ -94,7 +133,7 @@ public class KubernetesVerifiers {
     }
 
     /**
-     * A verifier is an adapter that uses a {@link KubectlWrapper} to verify that a {@link
+     * A verifier is an adapter that uses a {@link KubernetesBackend} to verify that a {@link
      * Manifests.ManifestObject} was successfully applied to the Kubernetes cluster.
      */
     public interface Verifier {
@@ -102,11 +141,59 @@ public class KubernetesVerifiers {
          * Verify the Kubernetes object represented by the {@link Manifests.ManifestObject} was applied
          * to the Kubernetes cluster.
          *
-         * @param kubectl A {@link KubectlWrapper} object for querying the object type in the cluster.
+         * @param kubectl A {@link KubernetesBackend} for querying the object type in the cluster.
          * @param object The manifest to be verified.
          * @return true If the resource was verified, false otherwise.
          */
-        VerificationResult verify(KubectlWrapper kubectl, Manifests.ManifestObject object);
+        VerificationResult verify(KubernetesBackend kubectl, Manifests.ManifestObject object);
+
+        /**
+         * Verify the Kubernetes object represented by the {@link Manifests.ManifestObject} from its
+         * state as already retrieved from the cluster.
+         *
+         * @param object The manifest to be verified.
+         * @param json The object as retrieved from the cluster.
+         * @return true If the resource was verified, false otherwise.
+         */
+        VerificationResult verify(Manifests.ManifestObject object, Object json);
+
+        /**
+         * Looks in the cluster for reasons why objects which aren't verified yet never will be, such
+         * as the state of the pods they manage. The objects are looked at together, so that the
+         * requests they need are shared. By default no reason is looked for.
+         *
+         * @param kubectl A {@link KubernetesBackend} for querying the cluster.
+         * @param states The objects being verified, with their state as retrieved from the cluster.
+         * @return A {@link VerificationResult} for each object a reason was found for, which is failed
+         *     unless the reason usually clears up on its own and is only reported.
+         * @throws IOException If an error occurred while querying the cluster.
+         * @throws InterruptedException If an error occurred while querying the cluster.
+         */
+        default Map<Manifests.ManifestObject, VerificationResult> findFailures(
+                KubernetesBackend kubectl, Map<Manifests.ManifestObject, Object> states)
+                throws IOException, InterruptedException {
+            return Collections.emptyMap();
+        }
+
+        /**
+         * Get the fields of the objects read by the verifier, so that only those are retrieved from the
+         * cluster. By default all fields are.
+         *
+         * @return The {@link ObjectFields} read by the verifier.
+         */
+        default ObjectFields getFields() {
+            return ObjectFields.ALL;
+        }
+
+        /**
+         * Get the fields of the objects of other kinds read by the verifier while verifying, such as the
+         * pods of a deployment, by their lower case kind. By default no other kind is read.
+         *
+         * @return The {@link ObjectFields} read by the verifier of each other kind.
+         */
+        default Map<String, ObjectFields> getFieldsOfOtherKinds() {
+            return Collections.emptyMap();
+        }
     }
 
     /**
@@ -119,12 +206,24 @@ public class KubernetesVerifiers {
         /**
          * Default verifier returns false for unimplemented verifiers.
          *
-         * @param kubectl A KubectlWrapper object for querying the object type in the cluster.
+         * @param kubectl A {@link KubernetesBackend} for querying the object type in the cluster.
+         * @param object The Kubernetes object to verify represented by the {@link
+         *     Manifests.ManifestObject}
+         * @return false The unimplemented Verifier case.
+         */
+        public VerificationResult verify(KubernetesBackend kubectl, Manifests.ManifestObject object) {
+            return verify(object, null);
+        }
+
+        /**
+         * Default verifier returns false for unimplemented verifiers.
+         *
          * @param object The Kubernetes object to verify represented by the {@link
          *     Manifests.ManifestObject}
+         * @param json The object as retrieved from the cluster.
          * @return false The unimplemented Verifier case.
          */
-        public VerificationResult verify(KubectlWrapper kubectl, Manifests.ManifestObject object) {
+        public VerificationResult verify(Manifests.ManifestObject object, Object json) {
             LOGGER.info("Reached unimplemented default verifier.");
             return new VerificationResult(
                     Messages.KubernetesEngineBuilder_VerifierNotImplementedFor(object.describe()), false, object);
@@ -133,27 +232,145 @@ public class KubernetesVerifiers {
 
     /**
      * A {@link Verifier} that verifies a "deployment" object. For a deployment object to be verified
-     * it must have it's minimum number of replicas (spec.replicas) less than or equal to it's
-     * available replicas (status.availableReplicas).
+     * the deployment controller must have observed its latest generation (status.observedGeneration)
+     * and it must have it's minimum number of replicas (spec.replicas) less than or equal to it's
+     * available replicas (status.availableReplicas). A deployment fails verification as soon as its
+     * conditions report that the rollout exceeded its progress deadline, or a pod of its newest
+     * ReplicaSet is stuck, such as in ImagePullBackOff or CrashLoopBackOff. A ReplicaFailure
+     * condition, such as while quota is exhausted during a surge, and containers waiting with
+     * CreateContainerConfigError usually clear up on their own, so they are only reported.
      */
     private static class DeploymentVerifier implements Verifier {
-        private static final String AVAILABLE_REPLICAS = "availableReplicas";
-        private static final String MINIMUM_REPLICAS_JSONPATH = "spec.replicas";
-        private static final String STATUS_JSONPATH = "status";
+        private static final String REVISION_ANNOTATION = "deployment.kubernetes.io/revision";
+        private static final String POD_TEMPLATE_HASH_LABEL = "pod-template-hash";
+        private static final String PROGRESS_DEADLINE_EXCEEDED = "ProgressDeadlineExceeded";
+
+        // Paths are compiled once rather than parsed again for every state that is verified.
+        private static final JsonPath NAME = JsonPath.compile("metadata.name");
+        private static final JsonPath NAMESPACE = JsonPath.compile("metadata.namespace");
+        private static final JsonPath GENERATION = JsonPath.compile("metadata.generation");
+        private static final JsonPath LABELS = JsonPath.compile("metadata.labels");
+        private static final JsonPath REVISION =
+                JsonPath.compile(String.format("metadata.annotations['%s']", REVISION_ANNOTATION));
+        private static final JsonPath OWNER_REFERENCES = JsonPath.compile("metadata.ownerReferences");
+        private static final JsonPath MINIMUM_REPLICAS = JsonPath.compile("spec.replicas");
+        private static final JsonPath MATCH_LABELS = JsonPath.compile("spec.selector.matchLabels");
+        private static final JsonPath AVAILABLE_REPLICAS = JsonPath.compile("status.availableReplicas");
+        private static final JsonPath OBSERVED_GENERATION = JsonPath.compile("status.observedGeneration");
+        private static final JsonPath CONDITIONS = JsonPath.compile("status.conditions");
+        private static final JsonPath INIT_CONTAINER_STATUSES = JsonPath.compile("status.initContainerStatuses");
+        private static final JsonPath CONTAINER_STATUSES = JsonPath.compile("status.containerStatuses");
+
+        // Only the fields read by the verifier are kept from the objects retrieved from the cluster.
+        private static final ObjectFields FIELDS = new ObjectFields.Builder()
+                .field("metadata", "namespace")
+                .field("metadata", "generation")
+                .field("metadata", "annotations", REVISION_ANNOTATION)
+                .field("spec", "replicas")
+                .field("spec", "selector", "matchLabels")
+                .field("status", "availableReplicas")
+                .field("status", "observedGeneration")
+                .field("status", "conditions")
+                .build();
+        private static final ObjectFields REPLICA_SET_FIELDS = new ObjectFields.Builder()
+                .field("metadata", "labels", POD_TEMPLATE_HASH_LABEL)
+                .field("metadata", "annotations", REVISION_ANNOTATION)
+                .field("metadata", "ownerReferences")
+                .build();
+        private static final ObjectFields POD_FIELDS = new ObjectFields.Builder()
+                .field("metadata", "labels")
+                .field("status", "initContainerStatuses")
+                .field("status", "containerStatuses")
+                .build();
+
+        // Reasons of waiting containers which the kubelet only leaves by backing off further.
+        private static final ImmutableSet<String> STUCK_CONTAINER_REASONS = ImmutableSet.of(
+                "CrashLoopBackOff",
+                "ErrImageNeverPull",
+                "ImagePullBackOff",
+                "InvalidImageName");
+        // Reasons of waiting containers which clear up on their own, such as once a referenced
+        // ConfigMap or Secret is created.
+        private static final ImmutableSet<String> RECOVERABLE_CONTAINER_REASONS =
+                ImmutableSet.of("CreateContainerConfigError");
+
+        /** The state of a deployment read by the verifier, extracted once from its JSON object. */
+        private static final class DeploymentState {
+            private final String name;
+            private final String namespace;
+            private final Number generation;
+            private final Integer minReplicas;
+            private final int availableReplicas;
+            private final Number observedGeneration;
+            private final List<Map<String, Object>> conditions;
+            private final String revision;
+            private final Map<String, String> matchLabels;
+
+            private DeploymentState(Object json) {
+                this.name = readOrNull(json, NAME);
+                this.namespace = readOrNull(json, NAMESPACE);
+                this.generation = readOrNull(json, GENERATION);
+                Number minReplicas = readOrNull(json, MINIMUM_REPLICAS);
+                this.minReplicas = minReplicas == null ? null : minReplicas.intValue();
+                Number availableReplicas = readOrNull(json, AVAILABLE_REPLICAS);
+                this.availableReplicas = availableReplicas == null ? 0 : availableReplicas.intValue();
+                this.observedGeneration = readOrNull(json, OBSERVED_GENERATION);
+                List<Map<String, Object>> conditions = readOrNull(json, CONDITIONS);
+                this.conditions = conditions == null ? Collections.emptyList() : conditions;
+                this.revision = readOrNull(json, REVISION);
+                this.matchLabels = readOrNull(json, MATCH_LABELS);
+            }
+
+            /* Whether the status describes the latest generation of the deployment's spec. */
+            private boolean isObserved() {
+                return generation == null
+                        || (observedGeneration != null && observedGeneration.longValue() >= generation.longValue());
+            }
+
+            private boolean isAvailable() {
+                return minReplicas != null && minReplicas.intValue() <= availableReplicas;
+            }
+
+            /* Describes the replicas, and why the controller fails to create some while it retries. */
+            private String describe() {
+                StringBuilder log = new StringBuilder()
+                        .append("AvailableReplicas = ")
+                        .append(availableReplicas)
+                        .append(",")
+                        .append(" MinimumReplicas = ")
+                        .append(minReplicas)
+                        .append("\n");
+                String replicaFailure = isObserved() && !isAvailable() ? findReplicaFailure(conditions) : null;
+                if (replicaFailure != null) {
+                    log.append(replicaFailure).append("\n");
+                }
+                return log.toString();
+            }
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public ObjectFields getFields() {
+            return FIELDS;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public Map<String, ObjectFields> getFieldsOfOtherKinds() {
+            return ImmutableMap.of("replicaset", REPLICA_SET_FIELDS, "pod", POD_FIELDS);
+        }
 
         /**
          * Verifies that the deployment was applied to the GKE cluster.
          *
-         * @param kubectl A {@link KubectlWrapper} object for querying the object type in the cluster.
+         * @param kubectl A {@link KubernetesBackend} for querying the object type in the cluster.
          * @param object The deployment {@link Manifests.ManifestObject} that is being verified.
          * @return true If the minimum number of replicas is less than or equal to the available
          *     replicas.
          */
-        public VerificationResult verify(KubectlWrapper kubectl, Manifests.ManifestObject object) {
+        public VerificationResult verify(KubernetesBackend kubectl, Manifests.ManifestObject object) {
             Preconditions.checkArgument(object.getName().isPresent());
             String name = object.getName().get();
-            LOGGER.info(String.format("Verifying deployment, %s", name));
-            StringBuilder log = new StringBuilder();
             Object json = null;
 
             try {
@@ -162,21 +379,210 @@ public class KubernetesVerifiers {
                 return errorResult(e, object);
             }
 
-            Integer minReplicas = JsonPath.read(json, MINIMUM_REPLICAS_JSONPATH);
-            Map<String, Object> status = JsonPath.read(json, STATUS_JSONPATH);
-            Integer availableReplicas = (Integer) status.getOrDefault(AVAILABLE_REPLICAS, 0);
-            boolean verified = minReplicas != null
-                    && availableReplicas != null
-                    && minReplicas.intValue() <= availableReplicas.intValue();
+            return KubernetesVerifiers.verify(kubectl, object, json);
+        }
+
+        /**
+         * Verifies the deployment from its state as already retrieved from the cluster.
+         *
+         * @param object The deployment {@link Manifests.ManifestObject} that is being verified.
+         * @param json The deployment as retrieved from the cluster.
+         * @return true If the minimum number of replicas is less than or equal to the available
+         *     replicas.
+         */
+        public VerificationResult verify(Manifests.ManifestObject object, Object json) {
+            LOGGER.info(String.format("Verifying deployment, %s", object.getName().orElse("")));
+            DeploymentState state = new DeploymentState(json);
+            StringBuilder log = new StringBuilder(state.describe());
+            if (!state.isObserved()) {
+                // The status and conditions still describe the previous generation.
+                log.append("Waiting for the deployment controller to observe the latest generation\n");
+                return new VerificationResult(log.toString(), false, object);
+            }
+
+            if (!state.isAvailable()) {
+                String failure = findFailedCondition(state.conditions);
+                if (failure != null) {
+                    return VerificationResult.failed(log.append(failure).append("\n").toString(), object);
+                }
+            }
+            return new VerificationResult(log.toString(), state.isAvailable(), object);
+        }
 
-            log.append("AvailableReplicas = ")
-                    .append(availableReplicas)
-                    .append(",")
-                    .append(" MinimumReplicas = ")
-                    .append(minReplicas)
-                    .append("\n");
+        /**
+         * Looks for a container of the newest ReplicaSet's pods which is stuck, for each deployment
+         * whose latest generation the deployment controller has observed. The ReplicaSets and the pods
+         * are listed once per namespace for all of the deployments, rather than once per deployment.
+         *
+         * @param kubectl A {@link KubernetesBackend} for querying the cluster.
+         * @param states The deployments being verified, with their state as retrieved from the
+         *     cluster.
+         * @return A failed {@link VerificationResult} naming the stuck container of each deployment
+         *     which has one, or a pending one naming a container waiting for a reason which usually
+         *     clears up on its own.
+         * @throws IOException If an error occurred while querying the cluster.
+         * @throws InterruptedException If an error occurred while querying the cluster.
+         */
+        @Override
+        public Map<Manifests.ManifestObject, VerificationResult> findFailures(
+                KubernetesBackend kubectl, Map<Manifests.ManifestObject, Object> states)
+                throws IOException, InterruptedException {
+            Map<String, Map<Manifests.ManifestObject, DeploymentState>> byNamespace = new LinkedHashMap<>();
+            states.forEach((object, json) -> {
+                DeploymentState state = new DeploymentState(json);
+                boolean selectsPods = state.matchLabels != null && !state.matchLabels.isEmpty();
+                if (state.isObserved() && state.revision != null && selectsPods) {
+                    byNamespace
+                            .computeIfAbsent(state.namespace, (namespace) -> new LinkedHashMap<>())
+                            .put(object, state);
+                }
+            });
 
-            return new VerificationResult(log.toString(), verified, object);
+            Map<Manifests.ManifestObject, VerificationResult> failures = new HashMap<>();
+            for (Map.Entry<String, Map<Manifests.ManifestObject, DeploymentState>> namespace :
+                    byNamespace.entrySet()) {
+                failures.putAll(findStuckPods(kubectl, namespace.getKey(), namespace.getValue()));
+            }
+            return failures;
+        }
+
+        /* Looks for stuck containers of the deployments of a namespace with one ReplicaSet and one pod list. */
+        private static Map<Manifests.ManifestObject, VerificationResult> findStuckPods(
+                KubernetesBackend kubectl, String namespace, Map<Manifests.ManifestObject, DeploymentState> deployments)
+                throws IOException, InterruptedException {
+            // Only the labels selecting the pods of every deployment narrow the lists.
+            Map<String, String> selector = commonLabels(
+                    deployments.values().stream().map((state) -> state.matchLabels).collect(Collectors.toList()));
+            List<Object> replicaSets =
+                    kubectl.getObjectsThatMatchLabels("replicaset", namespace, selector, REPLICA_SET_FIELDS);
+
+            Map<Manifests.ManifestObject, Map<String, String>> podLabels = new LinkedHashMap<>();
+            deployments.forEach((object, state) -> {
+                for (Object replicaSet : replicaSets) {
+                    if (state.revision.equals(readOrNull(replicaSet, REVISION)) && isOwnedBy(replicaSet, state.name)) {
+                        Map<String, String> labels = readOrNull(replicaSet, LABELS);
+                        String podTemplateHash = labels == null ? null : labels.get(POD_TEMPLATE_HASH_LABEL);
+                        if (podTemplateHash != null) {
+                            podLabels.put(object, ImmutableMap.<String, String>builder()
+                                    .putAll(state.matchLabels)
+                                    .put(POD_TEMPLATE_HASH_LABEL, podTemplateHash)
+                                    .build());
+                        }
+                    }
+                }
+            });
+            if (podLabels.isEmpty()) {
+                return Collections.emptyMap();
+            }
+
+            Map<Manifests.ManifestObject, VerificationResult> failures = new HashMap<>();
+            List<Object> pods = kubectl.getObjectsThatMatchLabels(
+                    "pod", namespace, commonLabels(podLabels.values()), POD_FIELDS);
+            podLabels.forEach((object, labels) -> {
+                String waiting = null;
+                for (Object pod : pods) {
+                    Map<String, String> actual = readOrNull(pod, LABELS);
+                    if (actual == null || !actual.entrySet().containsAll(labels.entrySet())) {
+                        continue;
+                    }
+                    String failure = findWaitingContainer(pod, STUCK_CONTAINER_REASONS);
+                    if (failure != null) {
+                        failures.put(object, VerificationResult.failed(failure + "\n", object));
+                        return;
+                    }
+                    if (waiting == null) {
+                        waiting = findWaitingContainer(pod, RECOVERABLE_CONTAINER_REASONS);
+                    }
+                }
+                if (waiting != null) {
+                    // The container is only reported, the deployment can still become available.
+                    String log = deployments.get(object).describe() + waiting + "\n";
+                    failures.put(object, new VerificationResult(log, false, object));
+                }
+            });
+            return failures;
+        }
+
+        /* The labels shared by all of the label sets, which select the objects of each of them. */
+        private static Map<String, String> commonLabels(Collection<Map<String, String>> labelSets) {
+            Map<String, String> common = new HashMap<>(labelSets.iterator().next());
+            labelSets.forEach((labels) -> common.entrySet().retainAll(labels.entrySet()));
+            return common;
+        }
+
+        /* Describes the condition reporting that the rollout can't complete, if there is one. */
+        private static String findFailedCondition(List<Map<String, Object>> conditions) {
+            for (Map<String, Object> condition : conditions) {
+                if ("Progressing".equals(condition.get("type"))
+                        && "False".equals(condition.get("status"))
+                        && PROGRESS_DEADLINE_EXCEEDED.equals(condition.get("reason"))) {
+                    return describeCondition(condition);
+                }
+            }
+            return null;
+        }
+
+        /*
+         * Describes the condition reporting that the controller fails to create replicas, if there is
+         * one. The controller keeps retrying, such as once quota frees up as old pods terminate.
+         */
+        private static String findReplicaFailure(List<Map<String, Object>> conditions) {
+            for (Map<String, Object> condition : conditions) {
+                if ("ReplicaFailure".equals(condition.get("type")) && "True".equals(condition.get("status"))) {
+                    return describeCondition(condition);
+                }
+            }
+            return null;
+        }
+
+        private static String describeCondition(Map<String, Object> condition) {
+            return String.format(
+                    "Condition %s is %s: %s", condition.get("type"), condition.get("reason"), condition.get("message"));
+        }
+
+        /* Describes the first container of the pod waiting for one of the reasons. */
+        @SuppressWarnings("unchecked")
+        private static String findWaitingContainer(Object pod, ImmutableSet<String> reasons) {
+            for (JsonPath statuses : new JsonPath[] {INIT_CONTAINER_STATUSES, CONTAINER_STATUSES}) {
+                List<Map<String, Object>> containers = readOrNull(pod, statuses);
+                if (containers == null) {
+                    continue;
+                }
+                for (Map<String, Object> container : containers) {
+                    Map<String, Object> state = (Map<String, Object>) container.get("state");
+                    Map<String, Object> waiting = state == null ? null : (Map<String, Object>) state.get("waiting");
+                    if (waiting != null && reasons.contains(waiting.get("reason"))) {
+                        return String.format(
+                                "Container %s of pod %s is waiting with %s: %s",
+                                container.get("name"),
+                                readOrNull(pod, NAME),
+                                waiting.get("reason"),
+                                waiting.get("message"));
+                    }
+                }
+            }
+            return null;
+        }
+
+        private static boolean isOwnedBy(Object replicaSet, String name) {
+            List<Map<String, Object>> owners = readOrNull(replicaSet, OWNER_REFERENCES);
+            if (owners == null) {
+                return false;
+            }
+            for (Map<String, Object> owner : owners) {
+                if ("Deployment".equals(owner.get("kind")) && Objects.equals(name, owner.get("name"))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static <T> T readOrNull(Object json, JsonPath path) {
+            try {
+                return path.read(json);
+            } catch (PathNotFoundException e) {
+                return null;
+            }
         }
     }
 
@@ -208,22 +614,142 @@ public class KubernetesVerifiers {
         return verifier;
     }
 
+    /**
+     * Gets the fields read by the verifier of an object kind.
+     *
+     * @param apiVersion The Kubernetes API version.
+     * @param kind The Kubernetes object kind.
+     * @return The {@link ObjectFields} of the objects to retrieve from the cluster for verification.
+     */
+    static ObjectFields getFields(String apiVersion, String kind) {
+        return getVerifier(apiVersion, kind).getFields();
+    }
+
+    /**
+     * Gets the fields of the objects of a kind read by any verifier, whether it verifies objects of
+     * the kind or reads them while verifying objects of another kind, together with the metadata
+     * telling the states of an object apart and the labels objects are selected by.
+     *
+     * @param kind The Kubernetes object kind.
+     * @return The {@link ObjectFields} of the objects of the kind to keep while watching them.
+     */
+    static ObjectFields getWatchedFields(String kind) {
+        ObjectFields fields = WATCHED_METADATA;
+        for (Map.Entry<String, Verifier> verifier : verifiers.entrySet()) {
+            String verifiedKind = verifier.getKey().substring(verifier.getKey().lastIndexOf('/') + 1);
+            if (verifiedKind.equalsIgnoreCase(kind)) {
+                fields = fields.and(verifier.getValue().getFields());
+            }
+            ObjectFields otherKind = verifier.getValue().getFieldsOfOtherKinds().get(kind.toLowerCase());
+            if (otherKind != null) {
+                fields = fields.and(otherKind);
+            }
+        }
+        return fields;
+    }
+
     /**
      * Verify that the Kubernetes object was successfully applied to the Kubernetes cluster.
      *
-     * @param kubectl The {@link KubectlWrapper} that will query the cluster.
+     * @param kubectl The {@link KubernetesBackend} that will query the cluster.
      * @param object The {@link Manifests.ManifestObject} representation of the Kubernetes object to
      *     verify.
      * @return {@link VerificationResult} that encapsulates whether the Kubernetes object was verified
      *     together with relevant log that is dependent on the type of Kubernetes object.
      */
-    public static VerificationResult verify(KubectlWrapper kubectl, Manifests.ManifestObject object) {
+    public static VerificationResult verify(KubernetesBackend kubectl, Manifests.ManifestObject object) {
         Preconditions.checkNotNull(object);
         return getVerifier(object.getApiVersion(), object.getKind()).verify(kubectl, object);
     }
 
+    /**
+     * Verify that the Kubernetes object was successfully applied to the Kubernetes cluster from its
+     * state as already retrieved from the cluster.
+     *
+     * @param object The {@link Manifests.ManifestObject} representation of the Kubernetes object to
+     *     verify.
+     * @param json The object as retrieved from the cluster, or null if it wasn't found.
+     * @return {@link VerificationResult} that encapsulates whether the Kubernetes object was verified
+     *     together with relevant log that is dependent on the type of Kubernetes object.
+     */
+    public static VerificationResult verify(Manifests.ManifestObject object, Object json) {
+        Preconditions.checkNotNull(object);
+        if (json == null) {
+            return new VerificationResult(
+                    Messages.KubernetesEngineBuilder_VerifyingObjectNotFound(object.describe()), false, object);
+        }
+        try {
+            return getVerifier(object.getApiVersion(), object.getKind()).verify(object, json);
+        } catch (RuntimeException e) {
+            return errorResult(e, object);
+        }
+    }
+
+    /**
+     * Verify that the Kubernetes object was successfully applied to the Kubernetes cluster from its
+     * state as already retrieved from the cluster. If it isn't verified yet, the cluster is queried
+     * for a reason why it never will be, so that verification can stop early. Verifications of
+     * several objects should look for failures of all of them at once with {@link
+     * #findFailures(KubernetesBackend, Map)} instead.
+     *
+     * @param kubectl The {@link KubernetesBackend} that will query the cluster.
+     * @param object The {@link Manifests.ManifestObject} representation of the Kubernetes object to
+     *     verify.
+     * @param json The object as retrieved from the cluster, or null if it wasn't found.
+     * @return {@link VerificationResult} that encapsulates whether the Kubernetes object was verified,
+     *     or failed, together with relevant log that is dependent on the type of Kubernetes object.
+     */
+    public static VerificationResult verify(KubernetesBackend kubectl, Manifests.ManifestObject object, Object json) {
+        VerificationResult result = verify(object, json);
+        if (json == null || result.isVerified() || result.isFailed()) {
+            return result;
+        }
+        VerificationResult failure = findFailures(kubectl, ImmutableMap.of(object, json)).get(object);
+        return failure != null ? failure : result;
+    }
+
+    /**
+     * Looks in the cluster for reasons why Kubernetes objects which aren't verified yet never will
+     * be, so that verification can stop early. The objects of each verifier are looked at together,
+     * sharing the requests to the cluster.
+     *
+     * @param kubectl The {@link KubernetesBackend} that will query the cluster.
+     * @param states The {@link Manifests.ManifestObject}'s which aren't verified yet, with their state
+     *     as retrieved from the cluster.
+     * @return A {@link VerificationResult} for each object a reason was found for, which is failed
+     *     unless the reason usually clears up on its own and is only reported.
+     */
+    public static Map<Manifests.ManifestObject, VerificationResult> findFailures(
+            KubernetesBackend kubectl, Map<Manifests.ManifestObject, Object> states) {
+        Map<Verifier, Map<Manifests.ManifestObject, Object>> byVerifier = new LinkedHashMap<>();
+        states.forEach((object, json) -> byVerifier
+                .computeIfAbsent(getVerifier(object.getApiVersion(), object.getKind()), (v) -> new LinkedHashMap<>())
+                .put(object, json));
+
+        Map<Manifests.ManifestObject, VerificationResult> failures = new HashMap<>();
+        for (Map.Entry<Verifier, Map<Manifests.ManifestObject, Object>> group : byVerifier.entrySet()) {
+            try {
+                failures.putAll(group.getKey().findFailures(kubectl, group.getValue()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                // Looking for failures is best effort, the objects are still verified by their own state.
+                LOGGER.log(
+                        Level.WARNING,
+                        String.format(
+                                "Failed to look for failures of %s",
+                                group.getValue().keySet().stream()
+                                        .map(Manifests.ManifestObject::describe)
+                                        .collect(Collectors.toList())),
+                        e);
+            }
+        }
+        return failures;
+    }
+
     /* Convenience create a failed result with stacktrace of a throwable. */
-    private static VerificationResult errorResult(Throwable t, Manifests.ManifestObject object) {
+    static VerificationResult errorResult(Throwable t, Manifests.ManifestObject object) {
         StringWriter sw = new StringWriter();
         PrintWriter pw = new PrintWriter(sw);
         t.printStackTrace(pw);
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2019 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.jenkins.plugins.k8sengine;
+
+import com.google.common.cache.AbstractCache;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Caches the parsed documents of manifest files by the SHA-256 digest of their content and the
+ * engine that parsed them, so that builds deploying unchanged files skip parsing them. The shared
+ * cache serves every build parsing manifests in the same JVM, usually an agent, and is bounded by
+ * the total size of the cached documents, configurable with the {@code
+ * com.google.jenkins.plugins.k8sengine.ManifestCache.maxChars} system property.
+ */
+class ManifestCache {
+    /**
+     * Default bound of the shared cache, in characters of cached documents. Kept small since agents
+     * often run with small heaps; a few MB of manifests cover the files of most jobs.
+     */
+    static final long DEFAULT_MAX_CHARS = 4L * 1024 * 1024;
+
+    static final ManifestCache SHARED =
+            new ManifestCache(Long.getLong(ManifestCache.class.getName() + ".maxChars", DEFAULT_MAX_CHARS));
+
+    private final Cache<HashCode, ImmutableList<ManifestParser.Document>> cache;
+
+    /**
+     * Constructs a new {@link ManifestCache}.
+     *
+     * @param maxChars The maximum total number of characters of the cached documents.
+     */
+    ManifestCache(long maxChars) {
+        this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(maxChars)
+                .weigher((HashCode digest, ImmutableList<ManifestParser.Document> documents) ->
+                        documents.stream().mapToInt(ManifestParser.Document::length).sum())
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Returns the parsed documents of a manifest file, parsing and caching them unless a file with
+     * the same content was parsed by the same engine before.
+     *
+     * @param parser The {@link ManifestParser} used to parse the content on a cache miss.
+     * @param content The content of the manifest file, encoded in UTF-8.
+     * @param loadStats Additionally records the hit or miss, for the statistics of a single load.
+     * @return The parsed {@link ManifestParser.Document}'s of the file.
+     * @throws IOException If a document isn't a Kubernetes object.
+     */
+    ImmutableList<ManifestParser.Document> get(
+            ManifestParser parser, byte[] content, AbstractCache.StatsCounter loadStats) throws IOException {
+        HashCode digest = Hashing.sha256()
+                .newHasher()
+                .putString(parser.getName(), StandardCharsets.UTF_8)
+                .putByte((byte) 0)
+                .putBytes(content)
+                .hash();
+        ImmutableList<ManifestParser.Document> documents = cache.getIfPresent(digest);
+        if (documents != null) {
+            loadStats.recordHits(1);
+            return documents;
+        }
+
+        loadStats.recordMisses(1);
+        documents = parser.parse(new String(content, StandardCharsets.UTF_8));
+        cache.put(digest, documents);
+        return documents;
+    }
+
+    /** @return The hit and miss statistics of the cache since it was created. */
+    CacheStats stats() {
+        return cache.stats();
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2019 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.jenkins.plugins.k8sengine;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Indexes the objects of a {@link Manifests} by kind, apiVersion and kind, namespace, name and
+ * label, keeping the objects of each key in manifest order. The label index is built on first use
+ * and rebuilt once labels were handed out for modification, since labels change after loading.
+ */
+class ManifestIndex {
+    private final ImmutableList<Manifests.ManifestObject> objects;
+    private final ImmutableMap<Manifests.ManifestObject, Integer> positions;
+    private final ImmutableListMultimap<String, Manifests.ManifestObject> byKind;
+    private final ImmutableListMultimap<String, Manifests.ManifestObject> byApiVersionKind;
+    private final ImmutableListMultimap<String, Manifests.ManifestObject> byNamespace;
+    private final ImmutableListMultimap<String, Manifests.ManifestObject> byName;
+    private ImmutableListMultimap<String, Manifests.ManifestObject> byLabel;
+
+    /**
+     * Indexes the supplied objects.
+     *
+     * @param objects The {@link Manifests.ManifestObject}'s to be indexed, in manifest order.
+     */
+    ManifestIndex(List<Manifests.ManifestObject> objects) {
+        this.objects = ImmutableList.copyOf(objects);
+        // ManifestObject doesn't override equals, so objects are keyed by identity.
+        Map<Manifests.ManifestObject, Integer> positions = new LinkedHashMap<>();
+        ImmutableListMultimap.Builder<String, Manifests.ManifestObject> byKind = ImmutableListMultimap.builder();
+        ImmutableListMultimap.Builder<String, Manifests.ManifestObject> byApiVersionKind =
+                ImmutableListMultimap.builder();
+        ImmutableListMultimap.Builder<String, Manifests.ManifestObject> byNamespace = ImmutableListMultimap.builder();
+        ImmutableListMultimap.Builder<String, Manifests.ManifestObject> byName = ImmutableListMultimap.builder();
+        for (Manifests.ManifestObject object : objects) {
+            positions.putIfAbsent(object, positions.size());
+            byKind.put(kindKey(object.getKind()), object);
+            byApiVersionKind.put(apiVersionKindKey(object.getApiVersion(), object.getKind()), object);
+            byNamespace.put(object.getNamespace().orElse(""), object);
+            object.getName().ifPresent((name) -> byName.put(name, object));
+        }
+        this.positions = ImmutableMap.copyOf(positions);
+        this.byKind = byKind.build();
+        this.byApiVersionKind = byApiVersionKind.build();
+        this.byNamespace = byNamespace.build();
+        this.byName = byName.build();
+    }
+
+    /** @return The objects of the kind, compared case-insensitively. */
+    ImmutableList<Manifests.ManifestObject> ofKind(String kind) {
+        return byKind.get(kindKey(kind));
+    }
+
+    /** @return The objects of the apiVersion, such as apps/v1, and the kind. */
+    ImmutableList<Manifests.ManifestObject> ofApiVersionAndKind(String apiVersion, String kind) {
+        return byApiVersionKind.get(apiVersionKindKey(apiVersion, kind));
+    }
+
+    /** @return The objects specifying the namespace, or specifying none for an empty namespace. */
+    ImmutableList<Manifests.ManifestObject> inNamespace(String namespace) {
+        return byNamespace.get(Strings.nullToEmpty(namespace));
+    }
+
+    /** @return The objects with the name. */
+    ImmutableList<Manifests.ManifestObject> named(String name) {
+        return byName.get(name);
+    }
+
+    /** @return The objects labeled with the key and value. */
+    synchronized ImmutableList<Manifests.ManifestObject> labeled(String key, String value) {
+        if (byLabel == null) {
+            ImmutableListMultimap.Builder<String, Manifests.ManifestObject> builder = ImmutableListMultimap.builder();
+            for (Manifests.ManifestObject object : objects) {
+                object.getLabels().forEach((labelKey, labelValue) -> builder.put(labelKey + "=" + labelValue, object));
+            }
+            byLabel = builder.build();
+        }
+        return byLabel.get(key + "=" + value);
+    }
+
+    /** Discards the label index, as the labels of an object may have changed. */
+    synchronized void invalidateLabels() {
+        byLabel = null;
+    }
+
+    /** @return The indexed objects among the supplied ones, in manifest order. */
+    ImmutableList<Manifests.ManifestObject> inOrder(Collection<Manifests.ManifestObject> objects) {
+        return objects.stream()
+                .filter(positions::containsKey)
+                .distinct()
+                .sorted(Comparator.comparing(positions::get))
+                .collect(ImmutableList.toImmutableList());
+    }
+
+    private static String kindKey(String kind) {
+        return Strings.nullToEmpty(kind).toLowerCase(Locale.ROOT);
+    }
+
+    private static String apiVersionKindKey(String apiVersion, String kind) {
+        return Strings.nullToEmpty(apiVersion) + "/" + kindKey(kind);
+    }
+}
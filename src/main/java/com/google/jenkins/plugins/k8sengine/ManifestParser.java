@@ -0,0 +1,213 @@
+/*
+ * Copyright 2019 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.jenkins.plugins.k8sengine;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Splits a multi-document YAML manifest into {@link Document}'s holding the original text of each
+ * document and only the header fields read by the plugin: apiVersion, kind, and the name, namespace
+ * and labels of the metadata. Engines only stream the tokens of a document, so its node tree isn't
+ * built until the object is changed, and differ in the YAML library they stream them with.
+ */
+abstract class ManifestParser {
+    /** Name of the engine streaming SnakeYAML events, the default. */
+    static final String SNAKEYAML = "snakeyaml";
+    /** Name of the engine streaming Jackson YAML tokens. */
+    static final String JACKSON = "jackson";
+
+    private static final ImmutableMap<String, ManifestParser> PARSERS = ImmutableMap.of(
+            SNAKEYAML, new SnakeYamlManifestParser(),
+            JACKSON, new JacksonManifestParser());
+
+    /** The mappings of a manifest whose fields are kept in the header. */
+    enum Level {
+        ROOT,
+        METADATA,
+        LABELS;
+
+        /** @return Whether the scalar value of the field is kept in the header. */
+        boolean keepsScalar(String field) {
+            switch (this) {
+                case ROOT:
+                    return "apiVersion".equals(field) || "kind".equals(field);
+                case METADATA:
+                    return "name".equals(field) || "namespace".equals(field);
+                default:
+                    return true;
+            }
+        }
+
+        /** @return The level of the mapping value of the field, or null if it isn't kept. */
+        Level child(String field) {
+            if (this == ROOT && "metadata".equals(field)) {
+                return METADATA;
+            }
+            if (this == METADATA && "labels".equals(field)) {
+                return LABELS;
+            }
+            return null;
+        }
+    }
+
+    /** A scanned document holding a Kubernetes object, shared by the objects loaded from it. */
+    static final class Document {
+        private final Map<String, Object> header;
+        private final String text;
+        private final boolean explicitStart;
+        private final String trailer;
+
+        Document(Map<String, Object> header, String text, boolean explicitStart, String trailer) {
+            this.header = header;
+            this.text = text;
+            this.explicitStart = explicitStart;
+            this.trailer = trailer;
+        }
+
+        /** @return The header fields of the object, in the shape of its source. */
+        Map<String, Object> getHeader() {
+            return header;
+        }
+
+        /** @return The original text of the document. */
+        String getText() {
+            return text;
+        }
+
+        /** @return Whether the text starts the document with a "---" marker. */
+        boolean isExplicitStart() {
+            return explicitStart;
+        }
+
+        /** @return The text of the empty documents following the object in its file. */
+        String getTrailer() {
+            return trailer;
+        }
+
+        /** @return The number of characters of the document, approximating its size in memory. */
+        int length() {
+            return text.length() + trailer.length();
+        }
+    }
+
+    /** Where a document starts in the content, as streamed by an engine. */
+    static final class DocumentStart {
+        private final int line;
+        private final boolean explicit;
+        private final Map<String, Object> header;
+
+        /**
+         * @param line The zero-based line the document starts on.
+         * @param explicit Whether the document starts with a "---" marker.
+         * @param header The header fields of the document, or null for an empty document.
+         */
+        DocumentStart(int line, boolean explicit, Map<String, Object> header) {
+            this.line = line;
+            this.explicit = explicit;
+            this.header = header;
+        }
+    }
+
+    /**
+     * Returns the engine with the given name.
+     *
+     * @param name The name of the engine, or null or empty for the default.
+     * @return The {@link ManifestParser} with the name.
+     * @throws IllegalArgumentException If there's no engine with the name.
+     */
+    static ManifestParser forName(String name) {
+        ManifestParser parser = PARSERS.get(Strings.isNullOrEmpty(name) ? SNAKEYAML : name);
+        if (parser == null) {
+            throw new IllegalArgumentException(String.format("Unknown manifest parser: %s", name));
+        }
+        return parser;
+    }
+
+    /** @return The names of the engines, the default first. */
+    static ImmutableList<String> names() {
+        return PARSERS.keySet().asList();
+    }
+
+    /** @return The name of this engine. */
+    abstract String getName();
+
+    /**
+     * Streams the documents of a manifest file, reading the header of each.
+     *
+     * @param content The content of the manifest file.
+     * @return The start of every document, including empty ones, in file order.
+     * @throws IOException If a document isn't a mapping, and so not a Kubernetes object.
+     */
+    abstract List<DocumentStart> scan(String content) throws IOException;
+
+    /**
+     * Parses the documents of a manifest file. Empty documents don't produce objects; their text is
+     * kept with the preceding object, or the following one at the start of the file, so that
+     * concatenating the text of the objects reproduces the file.
+     *
+     * @param content The content of the manifest file.
+     * @return The {@link Document}'s of the non-empty documents, in file order.
+     * @throws IOException If a document isn't a mapping, and so not a Kubernetes object.
+     */
+    final ImmutableList<Document> parse(String content) throws IOException {
+        List<DocumentStart> starts = scan(content);
+        int[] lineOffsets = lineOffsets(content);
+        List<Document> documents = new ArrayList<>();
+        StringBuilder leading = new StringBuilder();
+        for (int i = 0; i < starts.size(); i++) {
+            // The first document also owns any comments preceding it.
+            int begin = i == 0 ? 0 : lineOffsets[starts.get(i).line];
+            int end = i + 1 < starts.size() ? lineOffsets[starts.get(i + 1).line] : content.length();
+            String text = content.substring(begin, end);
+            DocumentStart start = starts.get(i);
+            if (start.header != null) {
+                documents.add(new Document(start.header, leading + text, start.explicit || leading.length() > 0, ""));
+                leading.setLength(0);
+            } else if (!documents.isEmpty()) {
+                Document last = documents.get(documents.size() - 1);
+                documents.set(
+                        documents.size() - 1,
+                        new Document(last.header, last.text, last.explicitStart, last.trailer + text));
+            } else {
+                leading.append(text);
+            }
+        }
+        return ImmutableList.copyOf(documents);
+    }
+
+    /**
+     * @return The offset of the start of each line, counting line breaks the way the SnakeYAML
+     *     reader, which Jackson also reads YAML with, does for its marks.
+     */
+    static int[] lineOffsets(String content) {
+        List<Integer> offsets = new ArrayList<>();
+        offsets.add(0);
+        for (int i = 0; i < content.length(); i++) {
+            char c = content.charAt(i);
+            boolean lineBreak = c == '\n' || c == '\u0085' || c == '\u2028' || c == '\u2029'
+                    || (c == '\r' && (i + 1 == content.length() || content.charAt(i + 1) != '\n'));
+            if (lineBreak) {
+                offsets.add(i + 1);
+            }
+        }
+        return offsets.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
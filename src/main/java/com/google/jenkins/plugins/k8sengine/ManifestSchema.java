@@ -0,0 +1,260 @@
+/*
+ * Copyright 2019 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.jenkins.plugins.k8sengine;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import hudson.FilePath;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Validates the objects of manifests against the definitions of an OpenAPI v2 schema of the
+ * Kubernetes API, such as the one served by a cluster at /openapi/v2, without calling the cluster.
+ * Like kubectl's client-side validation it reports unknown fields, missing required fields and
+ * values of the wrong type. Objects whose kind the schema doesn't define, such as custom resources,
+ * aren't validated.
+ */
+class ManifestSchema {
+    /** Resource of the schema bundled with the plugin, covering the most common kinds. */
+    static final String BUNDLED_RESOURCE = "schemas/kubernetes-v1.27.json";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final String DEFINITIONS_PREFIX = "#/definitions/";
+    private static final String QUANTITY = "io.k8s.apimachinery.pkg.api.resource.Quantity";
+
+    // Schemas served by clusters are several megabytes, so the few in use are kept parsed.
+    private static final Cache<HashCode, ManifestSchema> LOADED =
+            CacheBuilder.newBuilder().maximumSize(4).build();
+
+    private final String version;
+    private final JsonNode definitions;
+    private final ImmutableMap<String, String> definitionsByKind;
+
+    private ManifestSchema(JsonNode schema) throws IOException {
+        this.definitions = schema.path("definitions");
+        if (!definitions.isObject()) {
+            throw new IOException("Schema has no definitions, expected an OpenAPI v2 schema");
+        }
+        this.version = schema.path("info").path("version").asText("unknown");
+
+        Map<String, String> definitionsByKind = new HashMap<>();
+        Iterator<Map.Entry<String, JsonNode>> fields = definitions.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> definition = fields.next();
+            for (JsonNode gvk : definition.getValue().path("x-kubernetes-group-version-kind")) {
+                definitionsByKind.put(
+                        kindKey(gvk.path("group").asText(), gvk.path("version").asText(), gvk.path("kind").asText()),
+                        definition.getKey());
+            }
+        }
+        this.definitionsByKind = ImmutableMap.copyOf(definitionsByKind);
+    }
+
+    private static class BundledHolder {
+        private static final ManifestSchema BUNDLED = loadBundled();
+
+        private static ManifestSchema loadBundled() {
+            try (InputStream in = ManifestSchema.class.getResourceAsStream(BUNDLED_RESOURCE)) {
+                return new ManifestSchema(MAPPER.readTree(in));
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to load the bundled manifest schema", e);
+            }
+        }
+    }
+
+    /** @return The schema bundled with the plugin. */
+    static ManifestSchema bundled() {
+        return BundledHolder.BUNDLED;
+    }
+
+    /**
+     * Loads a schema from a file, reusing the parsed schema if a file with the same content was
+     * loaded before.
+     *
+     * @param file The OpenAPI v2 schema, in JSON.
+     * @return The {@link ManifestSchema} of the file.
+     * @throws IOException If the file couldn't be read or isn't an OpenAPI v2 schema.
+     * @throws InterruptedException If reading the file was interrupted.
+     */
+    static ManifestSchema fromFile(FilePath file) throws IOException, InterruptedException {
+        byte[] content;
+        try (InputStream in = file.read()) {
+            content = ByteStreams.toByteArray(in);
+        }
+        try {
+            return LOADED.get(Hashing.sha256().hashBytes(content), () -> new ManifestSchema(MAPPER.readTree(content)));
+        } catch (ExecutionException e) {
+            throw new IOException(String.format("%s: %s", file.getRemote(), e.getCause().getMessage()), e.getCause());
+        }
+    }
+
+    /** @return The version of the Kubernetes API described by the schema. */
+    String getVersion() {
+        return version;
+    }
+
+    /**
+     * Validates the objects of manifests, reporting every error rather than stopping at the first.
+     *
+     * @param objects The {@link Manifests.ManifestObject}'s to be validated.
+     * @return The errors found, each naming the file, the object and the field, or an empty list.
+     */
+    ImmutableList<String> validate(List<Manifests.ManifestObject> objects) {
+        ImmutableList.Builder<String> errors = ImmutableList.builder();
+        for (Manifests.ManifestObject object : objects) {
+            String definition = definitionsByKind.get(kindKey(object.getApiVersion(), object.getKind()));
+            if (definition == null) {
+                continue;
+            }
+
+            List<String> objectErrors = new ArrayList<>();
+            // The source isn't kept, so that valid objects are still written back from their text.
+            validate(object.parseSource(), definitions.path(definition), object.getKind(), objectErrors);
+            String prefix = String.format(
+                    "%s%s/%s: ",
+                    object.getFile() == null ? "" : object.getFile().getRemote() + ": ",
+                    object.getKind(),
+                    object.getName().orElse(""));
+            objectErrors.forEach((error) -> errors.add(prefix + error));
+        }
+        return errors.build();
+    }
+
+    private void validate(Object value, JsonNode schema, String path, List<String> errors) {
+        if (value == null) {
+            // Kubernetes treats null fields as omitted.
+            return;
+        }
+        if (schema.has("$ref")) {
+            String definition = schema.path("$ref").asText().substring(DEFINITIONS_PREFIX.length());
+            if (QUANTITY.equals(definition)) {
+                // Quantities are strings, but numbers such as "cpu: 1" are accepted too.
+                check(value instanceof String || value instanceof Number, value, "a quantity", path, errors);
+                return;
+            }
+            validate(value, definitions.path(definition), path, errors);
+            return;
+        }
+        if ("int-or-string".equals(schema.path("format").asText())) {
+            check(value instanceof String || isInteger(value), value, "an integer or string", path, errors);
+            return;
+        }
+
+        switch (schema.path("type").asText()) {
+            case "object":
+                if (check(value instanceof Map, value, "an object", path, errors)) {
+                    validateObject((Map<?, ?>) value, schema, path, errors);
+                }
+                break;
+            case "array":
+                if (check(value instanceof List, value, "an array", path, errors)) {
+                    List<?> items = (List<?>) value;
+                    for (int i = 0; i < items.size(); i++) {
+                        validate(items.get(i), schema.path("items"), String.format("%s[%d]", path, i), errors);
+                    }
+                }
+                break;
+            case "string":
+                // SnakeYAML reads unquoted timestamps as dates, which are sent as strings.
+                check(value instanceof String || value instanceof Date, value, "a string", path, errors);
+                break;
+            case "integer":
+                check(isInteger(value), value, "an integer", path, errors);
+                break;
+            case "number":
+                check(value instanceof Number, value, "a number", path, errors);
+                break;
+            case "boolean":
+                check(value instanceof Boolean, value, "a boolean", path, errors);
+                break;
+            default:
+                // Untyped schemas accept any value.
+                break;
+        }
+    }
+
+    private void validateObject(Map<?, ?> object, JsonNode schema, String path, List<String> errors) {
+        JsonNode properties = schema.path("properties");
+        JsonNode additionalProperties = schema.path("additionalProperties");
+        boolean preservesUnknownFields = schema.path("x-kubernetes-preserve-unknown-fields").asBoolean(false);
+        for (Map.Entry<?, ?> field : object.entrySet()) {
+            String name = String.valueOf(field.getKey());
+            String fieldPath = path + "." + name;
+            if (properties.has(name)) {
+                validate(field.getValue(), properties.path(name), fieldPath, errors);
+            } else if (additionalProperties.isObject()) {
+                validate(field.getValue(), additionalProperties, fieldPath, errors);
+            } else if (properties.isObject() && !preservesUnknownFields) {
+                errors.add(String.format("%s: unknown field \"%s\"", path, name));
+            }
+        }
+        for (JsonNode required : schema.path("required")) {
+            if (!object.containsKey(required.asText())) {
+                errors.add(String.format("%s: missing required field \"%s\"", path, required.asText()));
+            }
+        }
+    }
+
+    private static boolean check(boolean valid, Object value, String expected, String path, List<String> errors) {
+        if (!valid) {
+            errors.add(String.format("%s: expected %s, got %s", path, expected, describe(value)));
+        }
+        return valid;
+    }
+
+    private static boolean isInteger(Object value) {
+        return value instanceof Integer || value instanceof Long || value instanceof BigInteger;
+    }
+
+    private static String describe(Object value) {
+        if (value instanceof Map) {
+            return "an object";
+        }
+        if (value instanceof List) {
+            return "an array";
+        }
+        return value instanceof String ? String.format("\"%s\"", value) : String.valueOf(value);
+    }
+
+    private static String kindKey(String apiVersion, String kind) {
+        if (apiVersion == null) {
+            return kindKey("", "", kind);
+        }
+        int slash = apiVersion.indexOf('/');
+        return slash < 0
+                ? kindKey("", apiVersion, kind)
+                : kindKey(apiVersion.substring(0, slash), apiVersion.substring(slash + 1), kind);
+    }
+
+    private static String kindKey(String group, String version, String kind) {
+        return group + "/" + version + "/" + kind;
+    }
+}
@@ -14,12 +14,27 @@
 
 package com.google.jenkins.plugins.k8sengine;
 
+import com.google.common.base.Strings;
+import com.google.common.cache.AbstractCache;
+import com.google.common.cache.CacheStats;
+import com.google.common.io.ByteStreams;
 import hudson.FilePath;
+import hudson.remoting.ClassFilter;
+import hudson.remoting.ObjectInputStreamEx;
+import hudson.remoting.VirtualChannel;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -27,24 +42,64 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 import org.yaml.snakeyaml.LoaderOptions;
 import org.yaml.snakeyaml.Yaml;
 import org.yaml.snakeyaml.constructor.SafeConstructor;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
 /**
  * Utility library for loading Kubernetes manifests files from a {@link FilePath} into a list of
  * descriptive wrappers, {@link ManifestObject}.
  */
-public class Manifests {
+public class Manifests implements Serializable {
+    private static final long serialVersionUID = 1L;
     private static final String DEFAULT_ENCODING = "UTF-8";
 
-    static Yaml yaml = new Yaml(new SafeConstructor(new LoaderOptions()));
-    private List<ManifestObject> objects = new ArrayList<ManifestObject>();
+    /** Maximum number of manifest files parsed at the same time, shared by all builds. */
+    static final int PARSER_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    // SnakeYAML instances aren't thread-safe, so every thread parsing or dumping gets its own.
+    private static final ThreadLocal<Yaml> YAML =
+            ThreadLocal.withInitial(() -> new Yaml(new SafeConstructor(new LoaderOptions())));
+    private static final Scheduler PARSER_SCHEDULER = Schedulers.newBoundedElastic(
+            PARSER_THREADS, Schedulers.DEFAULT_BOUNDED_ELASTIC_QUEUESIZE, "manifest-parser", 60, true);
+    /**
+     * Files of a manifest directory that are loaded, the same as `kubectl apply -f` without `-R`:
+     * the YAML and JSON files directly inside it.
+     */
+    static final String DIRECTORY_INCLUDES = "*.yaml,*.yml,*.json";
+
+    private transient List<ManifestObject> objects = new ArrayList<ManifestObject>();
+    private transient ManifestIndex index;
+    private boolean summarized;
+    private String parser;
+    private boolean labeledWhenApplied;
+    private int cacheHits;
+    private int cacheMisses;
+
+    /**
+     * ManifestObject wrapper that encapsulates an object spec loaded from a supplied manifest.
+     * Objects loaded from a file keep the original text of their document and only its header
+     * fields; the full source is parsed when it's first requested, and only objects whose source
+     * was requested are dumped again when the manifests are written.
+     */
+    public static class ManifestObject implements Serializable {
+        private static final long serialVersionUID = 1L;
 
-    /** ManifestObject wrapper that encapsulates an object spec loaded from a supplied manifest. */
-    public static class ManifestObject {
         private Map<String, Object> source;
+        private Map<String, Object> header;
+        private String text;
+        private String trailer = "";
+        private boolean explicitStart;
         private FilePath file;
+        private ManifestSummary summary;
+        private transient Manifests owner;
 
         /**
          * Build the manifest object from source.
@@ -57,30 +112,133 @@ public class Manifests {
             this.file = file;
         }
 
+        /**
+         * Build the manifest object from the text of its document, as parsed by a {@link
+         * ManifestParser}.
+         *
+         * @param header The header fields of the object, in the shape of its source.
+         * @param text The original text of the document.
+         * @param explicitStart Whether the text starts the document with a "---" marker.
+         * @param trailer The text of the empty documents following the object in its file.
+         * @param file The file containing the manifest.
+         */
+        ManifestObject(
+                Map<String, Object> header, String text, boolean explicitStart, String trailer, FilePath file) {
+            this.header = header;
+            this.text = text;
+            this.explicitStart = explicitStart;
+            this.trailer = trailer;
+            this.file = file;
+        }
+
         /** @return The file containing this manifest. */
         public FilePath getFile() {
             return file;
         }
 
-        /** @return The YAML map source for the object. */
+        /** @return The {@link Manifests} the object belongs to, or null if it was built on its own. */
+        Manifests getOwner() {
+            return owner;
+        }
+
+        /**
+         * @return The {@link ManifestSummary} the object was built from, if it only holds the fields
+         *     of a summary, otherwise null.
+         */
+        public ManifestSummary getSummary() {
+            return summary;
+        }
+
+        /**
+         * Returns the full source of the object, parsing it from the original text if needed. As the
+         * returned map may be modified, the object is dumped from its source rather than written
+         * back from its original text from then on.
+         *
+         * @return The YAML map source for the object.
+         */
         public Map<String, Object> getSource() {
+            if (source == null) {
+                source = parseSource();
+                header = null;
+            }
             return source;
         }
 
+        /**
+         * @return The full source of the object, parsed from the original text without keeping it
+         *     when the source wasn't requested yet.
+         */
+        @SuppressWarnings("unchecked")
+        Map<String, Object> parseSource() {
+            if (source != null) {
+                return source;
+            }
+            checkHasText();
+            for (Object document : yaml().loadAll(text)) {
+                if (document != null) {
+                    return (Map<String, Object>) document;
+                }
+            }
+            throw new IllegalStateException("Manifest contains no object: " + text);
+        }
+
+        /** @return Whether the object will be dumped from its source rather than its original text. */
+        public boolean isModified() {
+            return source != null;
+        }
+
+        /**
+         * @return The YAML document of the object, its original text unless it was modified.
+         * @throws IllegalStateException If the object only holds the fields of a {@link ManifestSummary}.
+         */
+        public String toYaml() {
+            if (isModified()) {
+                return yaml().dump(source);
+            }
+            checkHasText();
+            return text;
+        }
+
+        /* Fails for the header-only objects of summaries, whose documents were left on the agent. */
+        private void checkHasText() {
+            if (summary != null) {
+                throw new IllegalStateException("Summarized manifest has no document: " + describe());
+            }
+        }
+
+        /**
+         * Renders the object as part of a multi-document stream, followed by any empty documents
+         * that followed it in its file.
+         *
+         * @param separated Whether the object follows another document in the stream.
+         * @return The YAML text of the object.
+         */
+        String toDocument(boolean separated) {
+            boolean needsMarker = isModified() ? explicitStart || separated : separated && !explicitStart;
+            return (needsMarker ? "---\n" : "") + toYaml() + trailer;
+        }
+
         /** @return The apiVersion. */
         public String getApiVersion() {
-            return (String) source.get("apiVersion");
+            return asString(fields().get("apiVersion"));
         }
 
         /** @return The kind. */
         public String getKind() {
-            return (String) source.get("kind");
+            return asString(fields().get("kind"));
         }
 
         /** @return The name. */
         public Optional<String> getName() {
             return getMetadata().isPresent()
-                    ? Optional.of((String) getMetadata().get().get("name"))
+                    ? Optional.ofNullable(asString(getMetadata().get().get("name")))
+                    : Optional.empty();
+        }
+
+        /** @return The namespace, if the object specifies one. */
+        public Optional<String> getNamespace() {
+            return getMetadata().isPresent()
+                    ? Optional.ofNullable(asString(getMetadata().get().get("namespace")))
                     : Optional.empty();
         }
 
@@ -92,6 +250,10 @@ public class Manifests {
          */
         @SuppressWarnings("unchecked")
         public Map<String, String> getOrCreateLabels() {
+            if (owner != null) {
+                // The labels are handed out for modification, so they can no longer be trusted as indexed.
+                owner.labelsChanged();
+            }
             Map<String, Object> metadata = getOrCreateMetadata();
 
             if (!metadata.containsKey("labels")) {
@@ -109,13 +271,25 @@ public class Manifests {
          * @param value The value of the label to be added.
          */
         public void addLabel(String key, String value) {
-            Map<String, String> labels = getOrCreateLabels();
+            String current = getLabels().get(key);
             // Add the specified label ensuring no duplicate values.
-            Set<String> labelValues = labels.get(key) != null
-                    ? new HashSet<>(Arrays.asList(labels.get(key).split(",")))
-                    : new HashSet<>();
-            labelValues.add(value);
-            labels.put(key, String.join(",", labelValues));
+            Set<String> labelValues =
+                    current != null ? new HashSet<>(Arrays.asList(current.split(","))) : new HashSet<>();
+            if (!labelValues.add(value) && !isModified()) {
+                // Already labeled, so the original text can still be kept.
+                return;
+            }
+            getOrCreateLabels().put(key, String.join(",", labelValues));
+        }
+
+        /** @return A copy of the labels of the object, empty if it has none. */
+        @SuppressWarnings("unchecked")
+        public Map<String, String> getLabels() {
+            Map<String, String> labels = new LinkedHashMap<>();
+            getMetadata()
+                    .map((metadata) -> (Map<String, Object>) metadata.get("labels"))
+                    .ifPresent((values) -> values.forEach((key, value) -> labels.put(key, asString(value))));
+            return labels;
         }
 
         /** @return The description of the object in {ApiVersion}/{Kind}: {Name} */
@@ -124,10 +298,19 @@ public class Manifests {
                     "%s/%s: %s", getApiVersion(), getKind(), getName().orElse(""));
         }
 
+        /** @return The source if it was parsed, otherwise the header fields. */
+        private Map<String, Object> fields() {
+            return source != null ? source : header;
+        }
+
+        private static String asString(Object value) {
+            return value == null ? null : value.toString();
+        }
+
         /** @return The metadata map for this {@link ManifestObject}. */
         @SuppressWarnings("unchecked")
         private Optional<Map<String, Object>> getMetadata() {
-            return Optional.ofNullable((Map<String, Object>) source.get("metadata"));
+            return Optional.ofNullable((Map<String, Object>) fields().get("metadata"));
         }
 
         /**
@@ -137,6 +320,7 @@ public class Manifests {
          */
         @SuppressWarnings("unchecked")
         private Map<String, Object> getOrCreateMetadata() {
+            Map<String, Object> source = getSource();
             if (source.get("metadata") == null) {
                 source.put("metadata", new LinkedHashMap<String, Object>());
             }
@@ -145,20 +329,124 @@ public class Manifests {
         }
     }
 
+    /**
+     * A compact, serializable description of a {@link ManifestObject}, holding only the fields
+     * needed to identify it, so that manifests parsed on an agent needn't be sent to the controller.
+     */
+    public static class ManifestSummary implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final String apiVersion;
+        private final String kind;
+        private final String namespace;
+        private final String name;
+        private final String file;
+        private final int index;
+
+        /**
+         * Summarizes the supplied {@link ManifestObject}.
+         *
+         * @param object The {@link ManifestObject} to be summarized.
+         * @param index The position of the object among the objects of its file.
+         */
+        public ManifestSummary(ManifestObject object, int index) {
+            this.apiVersion = object.getApiVersion();
+            this.kind = object.getKind();
+            this.namespace = object.getNamespace().orElse(null);
+            this.name = object.getName().orElse(null);
+            this.file = object.getFile() == null ? null : object.getFile().getRemote();
+            this.index = index;
+        }
+
+        /** @return The apiVersion. */
+        public String getApiVersion() {
+            return apiVersion;
+        }
+
+        /** @return The kind. */
+        public String getKind() {
+            return kind;
+        }
+
+        /** @return The namespace, if the object specifies one. */
+        public Optional<String> getNamespace() {
+            return Optional.ofNullable(namespace);
+        }
+
+        /** @return The name. */
+        public Optional<String> getName() {
+            return Optional.ofNullable(name);
+        }
+
+        /** @return The path of the file containing the manifest, on the machine it was parsed on. */
+        public String getFile() {
+            return file;
+        }
+
+        /**
+         * @return The position of the object among the objects of its file, identifying it when the
+         *     file is loaded again.
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * Builds a header-only {@link ManifestObject} holding only the summarized fields, enough to
+         * identify and verify the object in the cluster. It is not modified and has no document, so it
+         * can't be rendered, written or applied from the controller.
+         *
+         * @param channel The channel to the machine the manifest was parsed on.
+         * @return The {@link ManifestObject} for this summary.
+         */
+        public ManifestObject toManifestObject(VirtualChannel channel) {
+            Map<String, Object> metadata = new LinkedHashMap<>();
+            if (name != null) {
+                metadata.put("name", name);
+            }
+            if (namespace != null) {
+                metadata.put("namespace", namespace);
+            }
+
+            Map<String, Object> header = new LinkedHashMap<>();
+            header.put("apiVersion", apiVersion);
+            header.put("kind", kind);
+            header.put("metadata", metadata);
+            ManifestObject object =
+                    new ManifestObject(header, null, false, "", file == null ? null : new FilePath(channel, file));
+            object.summary = this;
+            return object;
+        }
+    }
+
+    /** Private constructor constructs {@link Manifests} from already loaded objects. */
+    private Manifests(Collection<ManifestObject> objects) {
+        adopt(objects);
+    }
+
     /** Private constructor constructs {@link Manifests} from a FilePath. */
     private Manifests(FilePath filePath) throws IOException, InterruptedException {
-        this(Arrays.asList(new FilePath[] {filePath}));
+        this(Arrays.asList(new FilePath[] {filePath}), ManifestParser.forName(null));
     }
 
     /** Private constructor constructs {@link Manifests} from a list of FilePaths. */
-    private Manifests(List<FilePath> files) throws IOException, InterruptedException {
-        for (FilePath fp : files) {
-            loadFile(fp);
-        }
+    private Manifests(List<FilePath> files, ManifestParser parser) throws IOException, InterruptedException {
+        AbstractCache.SimpleStatsCounter loadStats = new AbstractCache.SimpleStatsCounter();
+        this.parser = parser.getName();
+        adopt(loadFiles(files, parser, loadStats));
+        CacheStats stats = loadStats.snapshot();
+        cacheHits = (int) stats.hitCount();
+        cacheMisses = (int) stats.missCount();
+    }
+
+    private void adopt(Collection<ManifestObject> loaded) {
+        loaded.forEach((object) -> object.owner = this);
+        objects.addAll(loaded);
     }
 
     /**
-     * Factory method for single {@link FilePath}.
+     * Factory method for single {@link FilePath}. The YAML and JSON files of a directory are parsed
+     * in parallel.
      *
      * @param file The {@link FilePath} containing the manifests.
      * @return A {@link Manifests} object containing the individual manifests contained at the file
@@ -168,14 +456,120 @@ public class Manifests {
      */
     public static Manifests fromFile(FilePath file) throws IOException, InterruptedException {
         if (file.isDirectory()) {
-            return new Manifests(Arrays.asList(file.list("**/*")));
+            return new Manifests(list(file, DIRECTORY_INCLUDES, null), ManifestParser.forName(null));
         }
 
         return new Manifests(file);
     }
 
     /**
-     * Factory method for list of {@link FilePath} objects.
+     * Factory method for the manifests matching a pattern, resolved in a single pass over the base
+     * directory. A pattern naming a file loads that file, and one naming a directory loads its YAML
+     * and JSON files. Otherwise the pattern is a comma-separated list of Ant-style globs, such as
+     * "k8s/**&#47;*.yaml".
+     *
+     * @param base The {@link FilePath} the pattern is relative to.
+     * @param pattern The file, directory or Ant-style include globs of the manifests.
+     * @param excludes The comma-separated Ant-style globs of files to leave out, or null.
+     * @return A {@link Manifests} object containing the manifests of the matched files, ordered by
+     *     path.
+     * @throws IOException If no file matched or an error occurred while loading the files.
+     * @throws InterruptedException If a threading error occurred while loading the files.
+     */
+    public static Manifests fromPattern(FilePath base, String pattern, String excludes)
+            throws IOException, InterruptedException {
+        return fromPattern(base, pattern, excludes, null);
+    }
+
+    /**
+     * Factory method for the manifests matching a pattern, parsed with the named engine. See {@link
+     * #fromPattern(FilePath, String, String)}.
+     *
+     * @param base The {@link FilePath} the pattern is relative to.
+     * @param pattern The file, directory or Ant-style include globs of the manifests.
+     * @param excludes The comma-separated Ant-style globs of files to leave out, or null.
+     * @param parser The name of the engine parsing the manifests, "snakeyaml" or "jackson", or null
+     *     for the default.
+     * @return A {@link Manifests} object containing the manifests of the matched files, ordered by
+     *     path.
+     * @throws IOException If no file matched or an error occurred while loading the files.
+     * @throws InterruptedException If a threading error occurred while loading the files.
+     * @throws IllegalArgumentException If there's no engine with the name.
+     */
+    public static Manifests fromPattern(FilePath base, String pattern, String excludes, String parser)
+            throws IOException, InterruptedException {
+        return new Manifests(resolve(base, pattern, excludes), ManifestParser.forName(parser));
+    }
+
+    /**
+     * @return The files matched by the pattern, ordered by path so that they're always applied in
+     *     the same order.
+     */
+    static List<FilePath> resolve(FilePath base, String pattern, String excludes)
+            throws IOException, InterruptedException {
+        String includes = pattern;
+        if (!pattern.contains("*") && !pattern.contains("?") && !pattern.contains(",")) {
+            FilePath path = base.child(pattern);
+            if (!path.isDirectory()) {
+                return Arrays.asList(path);
+            }
+            base = path;
+            includes = DIRECTORY_INCLUDES;
+        }
+
+        List<FilePath> files = list(base, includes, excludes);
+        if (files.isEmpty()) {
+            throw new IOException(String.format("No manifests match %s in %s", pattern, base.getRemote()));
+        }
+        return files;
+    }
+
+    private static List<FilePath> list(FilePath dir, String includes, String excludes)
+            throws IOException, InterruptedException {
+        return Arrays.stream(dir.list(includes, Strings.emptyToNull(excludes)))
+                .sorted(Comparator.comparing(FilePath::getRemote))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Factory method for manifests given as text rather than read from files, such as by a Pipeline
+     * step running without a workspace. The objects have no file.
+     *
+     * @param content The YAML or JSON text of the manifests.
+     * @return A {@link Manifests} object containing the objects of the text.
+     * @throws IOException If a document of the text isn't a Kubernetes object.
+     */
+    public static Manifests fromContent(String content) throws IOException {
+        List<ManifestObject> objects = new ArrayList<>();
+        for (ManifestParser.Document document : ManifestParser.forName(null).parse(content)) {
+            objects.add(new ManifestObject(
+                    document.getHeader(),
+                    document.getText(),
+                    document.isExplicitStart(),
+                    document.getTrailer(),
+                    null));
+        }
+        return new Manifests(objects);
+    }
+
+    /**
+     * Factory method for the header-only objects of summarized manifests, as built by {@link
+     * ManifestSummary#toManifestObject(VirtualChannel)}.
+     *
+     * @param summaries The {@link ManifestSummary}'s of the objects.
+     * @param channel The channel to the machine the manifests were parsed on.
+     * @return A {@link Manifests} object holding the summarized objects.
+     */
+    public static Manifests fromSummaries(List<ManifestSummary> summaries, VirtualChannel channel) {
+        Manifests manifests = new Manifests(summaries.stream()
+                .map((summary) -> summary.toManifestObject(channel))
+                .collect(Collectors.toList()));
+        manifests.summarized = true;
+        return manifests;
+    }
+
+    /**
+     * Factory method for list of {@link FilePath} objects, which are parsed in parallel.
      *
      * @param files The list of {@link FilePath} objects containing the manifests.
      * @return Manifests object constructed based on the list of {@link FilePath}'s.
@@ -183,20 +577,336 @@ public class Manifests {
      * @throws InterruptedException If a threading error occurred while loading the file.
      */
     public static Manifests fromFileList(List<FilePath> files) throws IOException, InterruptedException {
-        return new Manifests(files);
+        return fromFileList(files, null);
+    }
+
+    /**
+     * Factory method for list of {@link FilePath} objects, parsed in parallel with the named engine.
+     *
+     * @param files The list of {@link FilePath} objects containing the manifests.
+     * @param parser The name of the engine parsing the manifests, or null for the default.
+     * @return Manifests object constructed based on the list of {@link FilePath}'s.
+     * @throws IOException If an error occurred while loading the file.
+     * @throws InterruptedException If a threading error occurred while loading the file.
+     * @throws IllegalArgumentException If there's no engine with the name.
+     */
+    public static Manifests fromFileList(List<FilePath> files, String parser)
+            throws IOException, InterruptedException {
+        return new Manifests(files, ManifestParser.forName(parser));
+    }
+
+    /** @return The {@link Yaml} instance of the current thread. */
+    static Yaml yaml() {
+        return YAML.get();
+    }
+
+    /**
+     * Loads the files in parallel on the shared parser pool, keeping the objects in the order of
+     * the files.
+     */
+    private static List<ManifestObject> loadFiles(
+            List<FilePath> files, ManifestParser parser, AbstractCache.StatsCounter loadStats)
+            throws IOException, InterruptedException {
+        if (files.size() < 2) {
+            List<ManifestObject> loaded = new ArrayList<>();
+            for (FilePath file : files) {
+                loaded.addAll(loadFile(file, parser, loadStats));
+            }
+            return loaded;
+        }
+
+        try {
+            return Flux.fromIterable(files)
+                    .flatMapSequential(
+                            (file) -> Mono.fromCallable(() -> loadFile(file, parser, loadStats))
+                                    .subscribeOn(PARSER_SCHEDULER),
+                            PARSER_THREADS)
+                    .flatMapIterable((loaded) -> loaded)
+                    .collectList()
+                    .block();
+        } catch (RuntimeException e) {
+            Throwable cause = Exceptions.unwrap(e);
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof InterruptedException) {
+                throw (InterruptedException) cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Loads the file with the given path (Assuming it's a file), reusing the documents scanned by
+     * earlier builds when the content is unchanged.
+     */
+    private static List<ManifestObject> loadFile(
+            FilePath filePath, ManifestParser parser, AbstractCache.StatsCounter loadStats)
+            throws IOException, InterruptedException {
+        byte[] content;
+        try (InputStream mis = filePath.read()) {
+            content = ByteStreams.toByteArray(mis);
+        }
+        List<ManifestParser.Document> documents;
+        try {
+            documents = ManifestCache.SHARED.get(parser, content, loadStats);
+        } catch (IOException e) {
+            throw new IOException(String.format("%s: %s", filePath.getRemote(), e.getMessage()), e);
+        }
+        // The documents may be shared by several builds, so each gets its own objects.
+        List<ManifestObject> objects = new ArrayList<>(documents.size());
+        for (ManifestParser.Document document : documents) {
+            objects.add(new ManifestObject(
+                    document.getHeader(),
+                    document.getText(),
+                    document.isExplicitStart(),
+                    document.getTrailer(),
+                    filePath));
+        }
+        return objects;
+    }
+
+    /**
+     * Sends the objects over a remoting channel as one compressed stream, since manifests compress
+     * very well.
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (ObjectOutputStream objectsOut = new ObjectOutputStream(new GZIPOutputStream(compressed))) {
+            objectsOut.writeObject(new ArrayList<>(objects));
+        }
+        out.writeObject(compressed.toByteArray());
     }
 
-    /** Loads the file with the given path (Assuming it's a file). */
     @SuppressWarnings("unchecked")
-    private void loadFile(FilePath filePath) throws IOException, InterruptedException {
-        InputStream mis = filePath.read();
-        Iterable<Object> iter = yaml.loadAll(new InputStreamReader(mis, DEFAULT_ENCODING));
-        iter.forEach((o) -> objects.add(new ManifestObject((Map<String, Object>) o, filePath)));
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        byte[] compressed = (byte[]) in.readObject();
+        try (ObjectInputStream objectsIn = new ObjectInputStreamEx(
+                new GZIPInputStream(new ByteArrayInputStream(compressed)),
+                Manifests.class.getClassLoader(),
+                ClassFilter.DEFAULT)) {
+            objects = new ArrayList<>();
+            adopt((List<ManifestObject>) objectsIn.readObject());
+        }
     }
 
     /** @return The {@link ManifestObject}'s that were loaded. */
     public List<ManifestObject> getObjectManifests() {
-        return objects;
+        return Collections.unmodifiableList(objects);
+    }
+
+    /**
+     * Returns some of the objects as a {@link Manifests} of their own, such as a chunk to be applied
+     * separately. The objects are shared rather than copied, and still belong to this {@link
+     * Manifests}.
+     *
+     * @param subset The objects to be included, which must belong to this {@link Manifests}.
+     * @return A {@link Manifests} holding the objects, summarized if this one is.
+     */
+    public Manifests subset(List<ManifestObject> subset) {
+        Manifests manifests = new Manifests(Collections.emptyList());
+        manifests.objects.addAll(subset);
+        manifests.summarized = summarized;
+        manifests.parser = parser;
+        manifests.labeledWhenApplied = labeledWhenApplied;
+        return manifests;
+    }
+
+    /**
+     * Starts a query over the objects, which is answered from an index of the objects built on
+     * first use, rather than by scanning the objects.
+     *
+     * @return A new {@link Query} matching every object.
+     */
+    public Query query() {
+        return new Query();
+    }
+
+    private synchronized ManifestIndex index() {
+        if (index == null) {
+            index = new ManifestIndex(objects);
+        }
+        return index;
+    }
+
+    private void labelsChanged() {
+        ManifestIndex current;
+        synchronized (this) {
+            current = index;
+        }
+        if (current != null) {
+            current.invalidateLabels();
+        }
+    }
+
+    /** Selects the {@link ManifestObject}'s matching every criterion added to the query. */
+    public class Query {
+        private final List<List<ManifestObject>> matches = new ArrayList<>();
+
+        private Query() {}
+
+        /**
+         * @param kind The kind of the objects, compared case-insensitively.
+         * @return This query.
+         */
+        public Query kind(String kind) {
+            matches.add(index().ofKind(kind));
+            return this;
+        }
+
+        /**
+         * @param kinds The kinds the objects may have, compared case-insensitively.
+         * @return This query.
+         */
+        public Query kinds(Collection<String> kinds) {
+            ManifestIndex index = index();
+            matches.add(index.inOrder(kinds.stream()
+                    .flatMap((kind) -> index.ofKind(kind).stream())
+                    .collect(Collectors.toList())));
+            return this;
+        }
+
+        /**
+         * @param apiVersion The apiVersion of the objects, such as apps/v1.
+         * @param kind The kind of the objects, compared case-insensitively.
+         * @return This query.
+         */
+        public Query apiVersionAndKind(String apiVersion, String kind) {
+            matches.add(index().ofApiVersionAndKind(apiVersion, kind));
+            return this;
+        }
+
+        /**
+         * @param namespace The namespace the objects specify, or null for objects specifying none.
+         * @return This query.
+         */
+        public Query namespace(String namespace) {
+            matches.add(index().inNamespace(namespace));
+            return this;
+        }
+
+        /**
+         * @param name The name of the objects.
+         * @return This query.
+         */
+        public Query name(String name) {
+            matches.add(index().named(name));
+            return this;
+        }
+
+        /**
+         * @param key The key of a label of the objects.
+         * @param value The value of the label.
+         * @return This query.
+         */
+        public Query label(String key, String value) {
+            matches.add(index().labeled(key, value));
+            return this;
+        }
+
+        /** @return The matching objects, in manifest order. */
+        public List<ManifestObject> list() {
+            if (matches.isEmpty()) {
+                return new ArrayList<>(objects);
+            }
+            // Filter the most selective criterion's objects, which are in manifest order, by the others.
+            List<ManifestObject> smallest = Collections.min(matches, Comparator.comparingInt(List::size));
+            List<Set<ManifestObject>> others = matches.stream()
+                    .filter((match) -> match != smallest)
+                    .<Set<ManifestObject>>map(HashSet::new)
+                    .collect(Collectors.toList());
+            return smallest.stream()
+                    .filter((object) -> others.stream().allMatch((other) -> other.contains(object)))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /** @return The number of files whose documents were found in the parse cache while loading. */
+    public int getCacheHits() {
+        return cacheHits;
+    }
+
+    /** @return The number of files which were parsed while loading, as they weren't cached. */
+    public int getCacheMisses() {
+        return cacheMisses;
+    }
+
+    /**
+     * @return Whether the objects only hold the fields of their {@link ManifestSummary}, rather than
+     *     their full sources.
+     */
+    public boolean isSummarized() {
+        return summarized;
+    }
+
+    /** @return The name of the engine the objects were parsed with, or null if it isn't known. */
+    public String getParser() {
+        return parser;
+    }
+
+    /**
+     * @return Whether the metrics label is still to be added to the summarized objects, in memory on
+     *     the machine holding their files as they're applied, since the files were left untouched.
+     */
+    public boolean isLabeledWhenApplied() {
+        return labeledWhenApplied;
+    }
+
+    /** Marks the metrics label as still to be added to the summarized objects as they're applied. */
+    void labelWhenApplied() {
+        labeledWhenApplied = true;
+    }
+
+    /**
+     * Renders the objects as a multi-document YAML stream, keeping the original text of the
+     * objects that weren't modified.
+     *
+     * @return The YAML documents of the objects.
+     * @throws IllegalStateException If the objects only hold the fields of their {@link
+     *     ManifestSummary}.
+     */
+    public String toYaml() {
+        return toYaml(getObjectManifests());
+    }
+
+    private static String toYaml(List<ManifestObject> manifestObjects) {
+        StringBuilder stream = new StringBuilder();
+        for (ManifestObject object : manifestObjects) {
+            if (stream.length() > 0 && stream.charAt(stream.length() - 1) != '\n') {
+                stream.append('\n');
+            }
+            stream.append(object.toDocument(stream.length() > 0));
+        }
+        return stream.toString();
+    }
+
+    /**
+     * @return Header-only {@link Manifests} for the summaries of the objects, as built by {@link
+     *     #fromSummaries(List, VirtualChannel)}, keeping the parse cache statistics of this load.
+     */
+    public Manifests toSummaries() {
+        Manifests manifests = fromSummaries(summarize(), null);
+        manifests.parser = parser;
+        manifests.labeledWhenApplied = labeledWhenApplied;
+        manifests.cacheHits = cacheHits;
+        manifests.cacheMisses = cacheMisses;
+        return manifests;
+    }
+
+    /**
+     * @return The {@link ManifestSummary}'s of the {@link ManifestObject}'s that were loaded, numbering
+     *     the objects of every file in their order.
+     */
+    public ArrayList<ManifestSummary> summarize() {
+        ArrayList<ManifestSummary> summaries = new ArrayList<>();
+        Map<FilePath, Integer> counts = new HashMap<>();
+        for (ManifestObject object : getObjectManifests()) {
+            int index = counts.merge(object.getFile(), 1, Integer::sum) - 1;
+            summaries.add(object.getSummary() != null ? object.getSummary() : new ManifestSummary(object, index));
+        }
+        return summaries;
     }
 
     /**
@@ -206,21 +916,23 @@ public class Manifests {
      * @return The manifest objects that match the included kinds.
      */
     public List<ManifestObject> getObjectManifestsOfKinds(Set<String> includedKinds) {
-        final Set<String> includedKindsLowerCase =
-                includedKinds.stream().map(String::toLowerCase).collect(Collectors.toSet());
-        return getObjectManifests().stream()
-                .filter((manifest) ->
-                        includedKindsLowerCase.contains(manifest.getKind().toLowerCase()))
-                .collect(Collectors.toList());
+        return query().kinds(includedKinds).list();
     }
 
     /**
      * Writes the contents of this {@link Manifests}'s objects back to their corresponding files.
+     * Files without modified objects are left untouched, and unmodified objects keep their original
+     * text.
      *
      * @throws InterruptedException If an error occurred while dumping to YAML.
      * @throws IOException If an error occurred while writing the file contents.
+     * @throws IllegalStateException If the objects only hold the fields of their {@link
+     *     ManifestSummary}.
      */
     public void write() throws InterruptedException, IOException {
+        if (getObjectManifests().stream().anyMatch((object) -> object.getSummary() != null)) {
+            throw new IllegalStateException("Summarized manifests have no documents to write");
+        }
         Map<FilePath, List<ManifestObject>> fileToManifestListMap = new LinkedHashMap<>();
         for (ManifestObject manifest : getObjectManifests()) {
             List<ManifestObject> manifestList =
@@ -232,10 +944,9 @@ public class Manifests {
         for (Map.Entry<FilePath, List<ManifestObject>> entry : fileToManifestListMap.entrySet()) {
             FilePath file = entry.getKey();
             List<ManifestObject> manifestObjects = entry.getValue();
-            file.write(
-                    yaml.dumpAll(
-                            manifestObjects.stream().map(m -> m.getSource()).iterator()),
-                    DEFAULT_ENCODING);
+            if (manifestObjects.stream().anyMatch(ManifestObject::isModified)) {
+                file.write(toYaml(manifestObjects), DEFAULT_ENCODING);
+            }
         }
     }
 }
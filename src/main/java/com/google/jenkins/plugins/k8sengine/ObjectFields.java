@@ -0,0 +1,274 @@
+/*
+ * Copyright 2019 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.jenkins.plugins.k8sengine;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.google.common.collect.ImmutableMap;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The fields of Kubernetes objects a caller reads, projecting the JSON objects retrieved from the
+ * cluster onto them. The API server can't leave fields such as managedFields or the last applied
+ * configuration out of its responses, so the projection is applied while the response is streamed
+ * and the other fields are skipped without being materialized. Objects always keep their
+ * metadata.name, which identifies them.
+ */
+final class ObjectFields implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /** Keeps every field of the objects. */
+    static final ObjectFields ALL = new ObjectFields(null);
+
+    // JsonFactory is thread-safe, unlike the parsers it creates for each response.
+    private static final JsonFactory FACTORY = new JsonFactory();
+    private static final String ITEMS = "items";
+
+    // The projected fields by name, or null if the whole value is kept.
+    private final ImmutableMap<String, ObjectFields> fields;
+
+    private ObjectFields(ImmutableMap<String, ObjectFields> fields) {
+        this.fields = fields;
+    }
+
+    /** @return Whether every field is kept. */
+    boolean isAll() {
+        return fields == null;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof ObjectFields && Objects.equals(fields, ((ObjectFields) other).fields);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(fields);
+    }
+
+    /**
+     * Keeps the whole value of a field, besides these fields.
+     *
+     * @param names The names of the fields leading to the field, starting at the object.
+     * @return The {@link ObjectFields} keeping these fields and the field.
+     */
+    ObjectFields and(String... names) {
+        return with(Arrays.asList(names));
+    }
+
+    /**
+     * Keeps the fields kept by either of two {@link ObjectFields}.
+     *
+     * @param other The other fields to keep.
+     * @return The {@link ObjectFields} keeping these fields and the other fields.
+     */
+    ObjectFields and(ObjectFields other) {
+        if (fields == null || other.fields == null) {
+            return ALL;
+        }
+
+        Map<String, ObjectFields> merged = new LinkedHashMap<>(fields);
+        other.fields.forEach((name, child) -> merged.merge(name, child, ObjectFields::and));
+        return new ObjectFields(ImmutableMap.copyOf(merged));
+    }
+
+    /**
+     * Tells whether objects projected onto these fields keep every field of another projection.
+     *
+     * @param other The other fields.
+     * @return Whether every field kept by the other {@link ObjectFields} is kept by these.
+     */
+    boolean covers(ObjectFields other) {
+        if (fields == null) {
+            return true;
+        }
+        if (other.fields == null) {
+            return false;
+        }
+        return other.fields.entrySet().stream().allMatch((field) -> {
+            ObjectFields kept = fields.get(field.getKey());
+            return kept != null && kept.covers(field.getValue());
+        });
+    }
+
+    /**
+     * Keeps only the projected fields of an object which was already parsed, such as the object of a
+     * watch event.
+     *
+     * @param json The JSON object.
+     * @return The projected object.
+     */
+    @SuppressWarnings("unchecked")
+    Object project(Object json) {
+        if (fields == null || !(json instanceof Map)) {
+            return json;
+        }
+
+        Map<String, Object> object = new LinkedHashMap<>();
+        ((Map<String, Object>) json).forEach((name, value) -> {
+            ObjectFields child = fields.get(name);
+            if (child != null) {
+                object.put(name, child.project(value));
+            }
+        });
+        return object;
+    }
+
+    /** Builder for {@link ObjectFields}. */
+    static class Builder {
+        private ObjectFields projection = new ObjectFields(ImmutableMap.of()).with(Arrays.asList("metadata", "name"));
+
+        /**
+         * Keeps the whole value of a field.
+         *
+         * @param names The names of the fields leading to the field, starting at the object.
+         * @return A reference to the {@link Builder}.
+         */
+        Builder field(String... names) {
+            projection = projection.with(Arrays.asList(names));
+            return this;
+        }
+
+        /**
+         * Builds a new {@link ObjectFields}.
+         *
+         * @return A new {@link ObjectFields} keeping the fields.
+         */
+        ObjectFields build() {
+            return projection;
+        }
+    }
+
+    private ObjectFields with(List<String> path) {
+        if (fields == null) {
+            return this;
+        }
+        if (path.isEmpty()) {
+            return ALL;
+        }
+
+        Map<String, ObjectFields> merged = new LinkedHashMap<>(fields);
+        ObjectFields child = fields.getOrDefault(path.get(0), new ObjectFields(ImmutableMap.of()));
+        merged.put(path.get(0), child.with(path.subList(1, path.size())));
+        return new ObjectFields(ImmutableMap.copyOf(merged));
+    }
+
+    /**
+     * Parses a response holding an object or a List of objects, keeping only the projected fields of
+     * each object.
+     *
+     * @param in The JSON response.
+     * @return The projected object, or a map holding the projected objects under "items" for a List,
+     *     or null if the response is empty.
+     * @throws IOException If the response isn't JSON.
+     */
+    Object parse(InputStream in) throws IOException {
+        try (JsonParser parser = FACTORY.createParser(in)) {
+            JsonToken root = parser.nextToken();
+            if (root == null) {
+                return null;
+            }
+            if (root != JsonToken.START_OBJECT) {
+                throw new IOException(String.format("Expected a Kubernetes object, got %s", root));
+            }
+
+            // A List holds its objects under "items", a field no other kind has at its root.
+            Map<String, Object> result = new HashMap<>();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                ObjectFields child = fieldsOf(name);
+                if (ITEMS.equals(name) && value == JsonToken.START_ARRAY) {
+                    List<Object> items = new ArrayList<>();
+                    while (parser.nextToken() != JsonToken.END_ARRAY) {
+                        items.add(project(parser));
+                    }
+                    result.put(ITEMS, items);
+                } else if (child != null) {
+                    result.put(name, child.project(parser));
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            return result;
+        }
+    }
+
+    /* The projection of the value of a field, or null if the field isn't kept. */
+    private ObjectFields fieldsOf(String name) {
+        return fields == null ? ALL : fields.get(name);
+    }
+
+    /* Reads the value at the current token, keeping the projected fields of objects. */
+    private Object project(JsonParser parser) throws IOException {
+        if (fields == null || parser.currentToken() != JsonToken.START_OBJECT) {
+            return read(parser);
+        }
+
+        Map<String, Object> object = new LinkedHashMap<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            parser.nextToken();
+            ObjectFields child = fieldsOf(name);
+            if (child != null) {
+                object.put(name, child.project(parser));
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return object;
+    }
+
+    /* Reads the whole value at the current token. */
+    private static Object read(JsonParser parser) throws IOException {
+        switch (parser.currentToken()) {
+            case START_OBJECT:
+                Map<String, Object> object = new LinkedHashMap<>();
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = parser.getCurrentName();
+                    parser.nextToken();
+                    object.put(name, read(parser));
+                }
+                return object;
+            case START_ARRAY:
+                List<Object> array = new ArrayList<>();
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    array.add(read(parser));
+                }
+                return array;
+            case VALUE_STRING:
+                return parser.getText();
+            case VALUE_NUMBER_INT:
+            case VALUE_NUMBER_FLOAT:
+                return parser.getNumberValue();
+            case VALUE_TRUE:
+                return Boolean.TRUE;
+            case VALUE_FALSE:
+                return Boolean.FALSE;
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2019 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.jenkins.plugins.k8sengine;
+
+import hudson.FilePath;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts the controller to agent round-trips made by a build step, each of which costs a network
+ * round-trip when the workspace is on a remote agent.
+ */
+public class RemotingCallCounter {
+    private final AtomicInteger count = new AtomicInteger();
+
+    /**
+     * Executes a callable against a path of the workspace, counting it as one remoting call.
+     *
+     * @param path The {@link FilePath} the callable is executed against.
+     * @param callable The {@link FilePath.FileCallable} to execute where the path is located.
+     * @param <T> The type of the result of the callable.
+     * @return The result of the callable.
+     * @throws IOException If an error occurred while executing the callable.
+     * @throws InterruptedException If an error occurred while executing the callable.
+     */
+    public <T> T act(FilePath path, FilePath.FileCallable<T> callable) throws IOException, InterruptedException {
+        count.incrementAndGet();
+        return path.act(callable);
+    }
+
+    /** Counts a remoting call made by other means, such as a {@link FilePath} operation. */
+    public void increment() {
+        count.incrementAndGet();
+    }
+
+    /** @return The number of remoting calls counted so far. */
+    public int getCount() {
+        return count.get();
+    }
+}
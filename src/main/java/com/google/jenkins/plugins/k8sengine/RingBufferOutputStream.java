@@ -0,0 +1,93 @@
+/*
+ * Copyright 2019 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.jenkins.plugins.k8sengine;
+
+import com.google.common.base.Preconditions;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+
+/**
+ * An {@link OutputStream} that keeps only the last bytes written to it, up to a fixed capacity, so
+ * that capturing command output uses bounded memory no matter how much is written.
+ */
+class RingBufferOutputStream extends OutputStream {
+    private final byte[] buffer;
+    private int position;
+    private long count;
+
+    /**
+     * Constructs a new {@link RingBufferOutputStream}.
+     *
+     * @param capacity The maximum number of bytes retained.
+     */
+    RingBufferOutputStream(int capacity) {
+        Preconditions.checkArgument(capacity > 0);
+        this.buffer = new byte[capacity];
+    }
+
+    @Override
+    public synchronized void write(int b) {
+        buffer[position] = (byte) b;
+        position = (position + 1) % buffer.length;
+        count++;
+    }
+
+    @Override
+    public synchronized void write(byte[] b, int off, int len) {
+        Preconditions.checkPositionIndexes(off, off + len, b.length);
+        count += len;
+        // Only the tail of a write larger than the buffer can be retained.
+        if (len > buffer.length) {
+            off += len - buffer.length;
+            len = buffer.length;
+        }
+
+        int firstPart = Math.min(len, buffer.length - position);
+        System.arraycopy(b, off, buffer, position, firstPart);
+        System.arraycopy(b, off + firstPart, buffer, 0, len - firstPart);
+        position = (position + len) % buffer.length;
+    }
+
+    /** @return Whether more bytes were written than could be retained. */
+    synchronized boolean isTruncated() {
+        return count > buffer.length;
+    }
+
+    /** @return The retained bytes, oldest first. */
+    synchronized byte[] toByteArray() {
+        if (count < buffer.length) {
+            byte[] result = new byte[position];
+            System.arraycopy(buffer, 0, result, 0, position);
+            return result;
+        }
+
+        byte[] result = new byte[buffer.length];
+        System.arraycopy(buffer, position, result, 0, buffer.length - position);
+        System.arraycopy(buffer, 0, result, buffer.length - position, position);
+        return result;
+    }
+
+    /**
+     * Decodes the retained bytes, marking the result if earlier output was discarded.
+     *
+     * @param charsetName The charset used to decode the retained bytes.
+     * @return The retained output.
+     * @throws UnsupportedEncodingException If the charset is not supported.
+     */
+    String toString(String charsetName) throws UnsupportedEncodingException {
+        String tail = new String(toByteArray(), charsetName);
+        return isTruncated() ? "[...]" + tail : tail;
+    }
+}
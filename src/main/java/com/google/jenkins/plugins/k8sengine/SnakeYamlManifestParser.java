@@ -0,0 +1,122 @@
+/*
+ * Copyright 2019 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.jenkins.plugins.k8sengine;
+
+import com.google.common.collect.ImmutableSet;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.yaml.snakeyaml.DumperOptions;
+import org.yaml.snakeyaml.events.CollectionEndEvent;
+import org.yaml.snakeyaml.events.CollectionStartEvent;
+import org.yaml.snakeyaml.events.DocumentStartEvent;
+import org.yaml.snakeyaml.events.Event;
+import org.yaml.snakeyaml.events.MappingEndEvent;
+import org.yaml.snakeyaml.events.MappingStartEvent;
+import org.yaml.snakeyaml.events.ScalarEvent;
+
+/**
+ * Parses manifests by streaming the SnakeYAML events of their documents. This is the default
+ * engine, as SnakeYAML also loads the source of the objects that are changed.
+ */
+final class SnakeYamlManifestParser extends ManifestParser {
+    private static final ImmutableSet<String> NULL_VALUES = ImmutableSet.of("", "~", "null", "Null", "NULL");
+
+    @Override
+    String getName() {
+        return SNAKEYAML;
+    }
+
+    @Override
+    List<DocumentStart> scan(String content) throws IOException {
+        List<DocumentStart> starts = new ArrayList<>();
+        Iterator<Event> events = Manifests.yaml().parse(new StringReader(content)).iterator();
+        while (events.hasNext()) {
+            Event event = events.next();
+            if (event instanceof DocumentStartEvent) {
+                starts.add(new DocumentStart(
+                        event.getStartMark().getLine(),
+                        ((DocumentStartEvent) event).getExplicit(),
+                        readDocument(events.next(), events, starts.size())));
+            }
+        }
+        return starts;
+    }
+
+    /**
+     * Reads the header of a document, consuming the events of its root node.
+     *
+     * @return The header fields, or null for an empty document.
+     */
+    private static Map<String, Object> readDocument(Event root, Iterator<Event> events, int index)
+            throws IOException {
+        if (root instanceof MappingStartEvent) {
+            return readMapping(events, Level.ROOT);
+        }
+        if (isNull(root)) {
+            return null;
+        }
+        throw new IOException(String.format("Document %d is not a Kubernetes object", index + 1));
+    }
+
+    /** Reads the mapping following a {@link MappingStartEvent}, keeping the fields of the level. */
+    private static Map<String, Object> readMapping(Iterator<Event> events, Level level) {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        for (Event key = events.next(); !(key instanceof MappingEndEvent); key = events.next()) {
+            String field = null;
+            if (key instanceof ScalarEvent) {
+                field = ((ScalarEvent) key).getValue();
+            } else {
+                skip(key, events);
+            }
+
+            Event value = events.next();
+            Level child = field == null ? null : level.child(field);
+            if (field != null && value instanceof ScalarEvent && level.keepsScalar(field)) {
+                if (!isNull(value)) {
+                    fields.put(field, ((ScalarEvent) value).getValue());
+                }
+            } else if (child != null && value instanceof MappingStartEvent) {
+                fields.put(field, readMapping(events, child));
+            } else {
+                skip(value, events);
+            }
+        }
+        return fields;
+    }
+
+    /** Consumes the remaining events of the node started by an event. */
+    private static void skip(Event start, Iterator<Event> events) {
+        int depth = start instanceof CollectionStartEvent ? 1 : 0;
+        while (depth > 0) {
+            Event event = events.next();
+            if (event instanceof CollectionStartEvent) {
+                depth++;
+            } else if (event instanceof CollectionEndEvent) {
+                depth--;
+            }
+        }
+    }
+
+    private static boolean isNull(Event event) {
+        return event instanceof ScalarEvent
+                && ((ScalarEvent) event).getScalarStyle() == DumperOptions.ScalarStyle.PLAIN
+                && NULL_VALUES.contains(((ScalarEvent) event).getValue());
+    }
+}
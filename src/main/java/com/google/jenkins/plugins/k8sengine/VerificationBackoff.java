@@ -0,0 +1,122 @@
+/*
+ * Copyright 2019 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.jenkins.plugins.k8sengine;
+
+import com.google.common.base.Preconditions;
+import java.io.Serializable;
+import java.time.Duration;
+import reactor.retry.Backoff;
+import reactor.retry.BackoffDelay;
+import reactor.retry.Jitter;
+import reactor.retry.Repeat;
+
+/**
+ * The delays between the polls verifying that objects were applied. The first poll is repeated
+ * quickly, so fast rollouts are verified without waiting, and each further delay grows by a factor
+ * up to a cap, so slow rollouts aren't polled needlessly often. Every delay is randomized by a
+ * fraction of itself, so that concurrent builds don't poll the API server in lockstep.
+ */
+public class VerificationBackoff implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public static final int DEFAULT_INITIAL_DELAY_SECONDS = 1;
+    public static final int DEFAULT_MAX_DELAY_SECONDS = 30;
+    public static final int DEFAULT_MULTIPLIER = 2;
+    public static final int DEFAULT_JITTER_PERCENT = 50;
+
+    /** The default backoff: 1s, doubling up to 30s, randomized by up to half of each delay. */
+    public static final VerificationBackoff DEFAULT = new VerificationBackoff(
+            DEFAULT_INITIAL_DELAY_SECONDS, DEFAULT_MAX_DELAY_SECONDS, DEFAULT_MULTIPLIER, DEFAULT_JITTER_PERCENT);
+
+    private final int initialDelayInSeconds;
+    private final int maxDelayInSeconds;
+    private final int multiplier;
+    private final int jitterPercent;
+
+    /**
+     * Constructs a new {@link VerificationBackoff}.
+     *
+     * @param initialDelayInSeconds The delay before the first poll is repeated.
+     * @param maxDelayInSeconds The cap of the delays, which is raised to the initial delay if lower.
+     * @param multiplier The factor each delay grows by, 1 for fixed delays.
+     * @param jitterPercent The maximum randomization of a delay, as a percentage of the delay.
+     * @throws IllegalArgumentException If a setting is out of range.
+     */
+    public VerificationBackoff(int initialDelayInSeconds, int maxDelayInSeconds, int multiplier, int jitterPercent) {
+        Preconditions.checkArgument(initialDelayInSeconds > 0, "initialDelayInSeconds must be positive");
+        Preconditions.checkArgument(multiplier > 0, "multiplier must be positive");
+        Preconditions.checkArgument(
+                jitterPercent >= 0 && jitterPercent <= 100, "jitterPercent must be between 0 and 100");
+        this.initialDelayInSeconds = initialDelayInSeconds;
+        this.maxDelayInSeconds = Math.max(initialDelayInSeconds, maxDelayInSeconds);
+        this.multiplier = multiplier;
+        this.jitterPercent = jitterPercent;
+    }
+
+    /** @return The delay before the first poll is repeated, in seconds. */
+    public int getInitialDelayInSeconds() {
+        return initialDelayInSeconds;
+    }
+
+    /** @return The cap of the delays, in seconds. */
+    public int getMaxDelayInSeconds() {
+        return maxDelayInSeconds;
+    }
+
+    /** @return The factor each delay grows by. */
+    public int getMultiplier() {
+        return multiplier;
+    }
+
+    /** @return The maximum randomization of a delay, as a percentage of the delay. */
+    public int getJitterPercent() {
+        return jitterPercent;
+    }
+
+    /** @return The {@link Backoff} growing the delays, without jitter. */
+    Backoff backoff() {
+        Duration initialDelay = Duration.ofSeconds(initialDelayInSeconds);
+        Duration maxDelay = Duration.ofSeconds(maxDelayInSeconds);
+        // Grown step by step rather than with a power, which would overflow during long verifications.
+        return (context) -> {
+            Duration delay = initialDelay;
+            for (long i = 1; i < context.iteration() && multiplier > 1 && delay.compareTo(maxDelay) < 0; i++) {
+                delay = delay.multipliedBy(multiplier);
+            }
+            return new BackoffDelay(initialDelay, maxDelay, delay.compareTo(maxDelay) < 0 ? delay : maxDelay);
+        };
+    }
+
+    /** @return The {@link Jitter} randomizing the delays, kept between the initial delay and the cap. */
+    Jitter jitter() {
+        return jitterPercent == 0 ? Jitter.noJitter() : Jitter.random(jitterPercent / 100.0);
+    }
+
+    /**
+     * Applies the delays of this backoff between the repetitions of a {@link Repeat}.
+     *
+     * @param repeat The {@link Repeat} of the polls.
+     * @return The {@link Repeat} delayed by this backoff.
+     */
+    <T> Repeat<T> applyTo(Repeat<T> repeat) {
+        return repeat.backoff(backoff()).jitter(jitter());
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "%ds x%d up to %ds, %d%% jitter", initialDelayInSeconds, multiplier, maxDelayInSeconds, jitterPercent);
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2019 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.jenkins.plugins.k8sengine;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs the blocking work of verifications, such as the kubectl calls retrieving objects, on a
+ * bounded number of threads shared by every build. Each verification queues its work in a {@link
+ * Lane} of its own and the lanes take turns at the free threads, so that a build verifying hundreds
+ * of objects doesn't hold back the others. On JDK 21 and later the work can run on virtual threads
+ * instead, so that a call waiting on kubectl doesn't hold a platform thread; the number of calls
+ * running at once stays bounded either way.
+ */
+final class VerificationScheduler {
+    private static final Logger LOGGER = Logger.getLogger(VerificationScheduler.class.getName());
+
+    /** Default number of verification calls running at once across all builds. */
+    static final int DEFAULT_PARALLELISM = Math.max(8, 2 * Runtime.getRuntime().availableProcessors());
+
+    private static final int VIRTUAL_THREADS_JAVA_VERSION = 21;
+    private static final VerificationScheduler INSTANCE = new VerificationScheduler(DEFAULT_PARALLELISM, false);
+
+    // Lanes with queued work, in the order they take their turns.
+    private final Deque<Lane> ready = new ArrayDeque<>();
+    private ExecutorService executor;
+    private int parallelism;
+    private boolean virtualThreads;
+    private int running;
+    private int queued;
+    private long completed;
+
+    /**
+     * Constructs a new {@link VerificationScheduler}.
+     *
+     * @param parallelism The maximum number of tasks running at once.
+     * @param virtualThreads Whether tasks run on virtual threads, if the JDK supports them.
+     */
+    VerificationScheduler(int parallelism, boolean virtualThreads) {
+        configure(parallelism, virtualThreads);
+    }
+
+    /** @return The scheduler shared by every build. */
+    static VerificationScheduler get() {
+        return INSTANCE;
+    }
+
+    /** @return Whether the JDK running Jenkins supports virtual threads. */
+    static boolean isVirtualThreadsSupported() {
+        return Runtime.version().feature() >= VIRTUAL_THREADS_JAVA_VERSION;
+    }
+
+    /**
+     * Changes the parallelism and the kind of threads. Tasks already running finish on their
+     * threads, and queued tasks start on the new ones.
+     *
+     * @param parallelism The maximum number of tasks running at once.
+     * @param virtualThreads Whether tasks run on virtual threads, ignored if the JDK doesn't support
+     *     them.
+     */
+    synchronized void configure(int parallelism, boolean virtualThreads) {
+        Preconditions.checkArgument(parallelism > 0, "parallelism must be positive");
+        if (virtualThreads && !isVirtualThreadsSupported()) {
+            LOGGER.warning(String.format(
+                    "Virtual threads require Java %d or later, verifying on platform threads",
+                    VIRTUAL_THREADS_JAVA_VERSION));
+            virtualThreads = false;
+        }
+
+        this.parallelism = parallelism;
+        if (executor == null || this.virtualThreads != virtualThreads) {
+            ExecutorService previous = executor;
+            executor = virtualThreads ? newVirtualThreadExecutor() : newPlatformThreadExecutor();
+            this.virtualThreads = virtualThreads;
+            if (previous != null) {
+                previous.shutdown();
+            }
+        }
+        dispatch();
+    }
+
+    /**
+     * Opens a lane for the work of one verification.
+     *
+     * @param name Describes the verification, for diagnostics.
+     * @return The new {@link Lane}.
+     */
+    Lane newLane(String name) {
+        return new Lane(name);
+    }
+
+    /** @return The maximum number of tasks running at once. */
+    synchronized int getParallelism() {
+        return parallelism;
+    }
+
+    /** @return Whether tasks run on virtual threads. */
+    synchronized boolean isUsingVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /** @return The number of tasks running. */
+    synchronized int getRunning() {
+        return running;
+    }
+
+    /** @return The number of tasks waiting for a thread, across all lanes. */
+    synchronized int getQueueDepth() {
+        return queued;
+    }
+
+    /** @return The number of lanes with tasks waiting for a thread. */
+    synchronized int getWaitingLanes() {
+        return ready.size();
+    }
+
+    /** @return The number of tasks run since Jenkins started. */
+    synchronized long getCompleted() {
+        return completed;
+    }
+
+    /** The queue of the work of one verification, which takes turns with the other lanes. */
+    final class Lane implements Executor {
+        private final String name;
+        private final Queue<Runnable> tasks = new ArrayDeque<>();
+
+        private Lane(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            synchronized (VerificationScheduler.this) {
+                if (tasks.isEmpty()) {
+                    ready.addLast(this);
+                }
+                tasks.add(task);
+                queued++;
+                dispatch();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    /* Starts queued tasks while there are free slots, taking one task from each lane in turn. */
+    private void dispatch() {
+        while (running < parallelism && !ready.isEmpty()) {
+            Lane lane = ready.pollFirst();
+            Runnable task = lane.tasks.poll();
+            queued--;
+            if (!lane.tasks.isEmpty()) {
+                ready.addLast(lane);
+            }
+
+            running++;
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.WARNING, String.format("Verification task of %s failed", lane), e);
+                } finally {
+                    synchronized (VerificationScheduler.this) {
+                        running--;
+                        completed++;
+                        dispatch();
+                    }
+                }
+            });
+        }
+    }
+
+    private static ExecutorService newPlatformThreadExecutor() {
+        // Threads are only created while tasks are dispatched, so there are about as many as the parallelism.
+        return Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+                .setNameFormat("gke-verification-%d")
+                .setDaemon(true)
+                .build());
+    }
+
+    private static ExecutorService newVirtualThreadExecutor() {
+        // Looked up reflectively, since the plugin is built for a JDK without virtual threads.
+        try {
+            return (ExecutorService)
+                    Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Failed to create a virtual thread executor", e);
+        }
+    }
+}
@@ -14,17 +14,33 @@
 
 package com.google.jenkins.plugins.k8sengine;
 
+import com.jayway.jsonpath.JsonPath;
 import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.Closeable;
+import java.io.IOException;
 import java.io.PrintStream;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 import org.reactivestreams.Publisher;
+import reactor.core.Disposable;
+import reactor.core.Exceptions;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
 import reactor.core.scheduler.Schedulers;
-import reactor.retry.Backoff;
 import reactor.retry.Repeat;
 
 /**
@@ -32,25 +48,21 @@ import reactor.retry.Repeat;
  * Kubernetes cluster.
  */
 public class VerificationTask {
-    private static final int VERIFICATION_DELAY = 5;
-
-    private KubectlWrapper kubectl;
     private Manifests.ManifestObject manifestObject;
-    private KubernetesVerifiers.VerificationResult currentResult;
+    private volatile KubernetesVerifiers.VerificationResult currentResult;
+    private volatile Object currentState;
     private PrintStream consoleLogger; // Jenkins console
 
     private static Logger LOGGER = Logger.getLogger(VerificationTask.class.getName());
+    private static final JsonPath NAME = JsonPath.compile("metadata.name");
 
     /**
      * Constructs new {@link VerificationTask}.
      *
-     * @param kubectl The KubectlWrapper for issuing kubectl commands.
      * @param manifestObject The wrapper for the Kubernetes object to verify.
      * @param consoleLogger The console output {@link PrintStream}.
      */
-    private VerificationTask(
-            KubectlWrapper kubectl, Manifests.ManifestObject manifestObject, PrintStream consoleLogger) {
-        this.kubectl = kubectl;
+    private VerificationTask(Manifests.ManifestObject manifestObject, PrintStream consoleLogger) {
         this.manifestObject = manifestObject;
         this.consoleLogger = consoleLogger;
     }
@@ -65,19 +77,43 @@ public class VerificationTask {
         return currentResult != null && currentResult.isVerified();
     }
 
+    /**
+     * Check whether there is a result and whether it indicates that verification will never succeed.
+     *
+     * @return If this task found that the {@link Manifests.ManifestObject} can't be verified.
+     */
+    private boolean isFailed() {
+        return currentResult != null && currentResult.isFailed();
+    }
+
+    /**
+     * Check whether verification of the tasks is over, because all of them were verified or one of
+     * them never will be.
+     *
+     * @param verificationTasks All the {@link VerificationTask}'s.
+     * @return If verification of the tasks can stop.
+     */
+    private static boolean isSettled(List<VerificationTask> verificationTasks) {
+        return verificationTasks.stream().allMatch(VerificationTask::isVerified)
+                || verificationTasks.stream().anyMatch(VerificationTask::isFailed);
+    }
+
     /** @return The {@link KubernetesVerifiers.VerificationResult}. */
     public KubernetesVerifiers.VerificationResult getVerificationResult() {
         return currentResult;
     }
 
     /**
-     * Verifies its {@link Manifests.ManifestObject} using the kubectl cli.
+     * Verifies its {@link Manifests.ManifestObject} from the object's state in the cluster, without
+     * querying the cluster any further.
      *
+     * @param json The object as retrieved from the cluster, or null if it wasn't found.
      * @return Self-reference after performing verify.
      */
-    private VerificationTask verify() {
+    private VerificationTask verify(Object json) {
         consoleLogger.println(String.format("Verifying: %s ", manifestObject.describe()));
-        currentResult = KubernetesVerifiers.verify(kubectl, manifestObject);
+        currentState = json;
+        currentResult = KubernetesVerifiers.verify(manifestObject, json);
         if (isVerified()) {
             consoleLogger.println(currentResult.toString());
         }
@@ -85,43 +121,415 @@ public class VerificationTask {
         return this;
     }
 
+    /**
+     * The unverified {@link VerificationTask}'s of one kind and namespace, whose objects are
+     * retrieved from the cluster together with a single request.
+     */
+    private static class VerificationBatch {
+        private final KubernetesBackend kubectl;
+        private final String kind;
+        private final String namespace;
+        private final List<VerificationTask> tasks;
+
+        private VerificationBatch(
+                KubernetesBackend kubectl, String kind, String namespace, List<VerificationTask> tasks) {
+            this.kubectl = kubectl;
+            this.kind = kind;
+            this.namespace = namespace;
+            this.tasks = tasks;
+        }
+
+        /**
+         * Groups the tasks which aren't verified yet by the kind and namespace of their objects.
+         *
+         * @param kubectl The {@link KubernetesBackend} for querying the cluster.
+         * @param tasks All the {@link VerificationTask}'s.
+         * @return A batch per kind and namespace.
+         */
+        private static List<VerificationBatch> ofUnverified(KubernetesBackend kubectl, List<VerificationTask> tasks) {
+            Map<List<String>, List<VerificationTask>> groups = tasks.stream()
+                    .filter((task) -> !task.isVerified())
+                    .collect(Collectors.groupingBy(
+                            (task) -> Arrays.asList(
+                                    task.manifestObject.getKind().toLowerCase(),
+                                    task.manifestObject.getNamespace().orElse(null)),
+                            LinkedHashMap::new,
+                            Collectors.toList()));
+            return groups.entrySet().stream()
+                    .map((group) -> new VerificationBatch(
+                            kubectl, group.getKey().get(0), group.getKey().get(1), group.getValue()))
+                    .collect(Collectors.toList());
+        }
+
+        /**
+         * Retrieves the objects of all tasks in the batch at once and verifies each of them.
+         *
+         * @return Self-reference after performing verify.
+         * @throws InterruptedException If interrupted while retrieving the objects.
+         */
+        private VerificationBatch verify() throws InterruptedException {
+            List<String> names = tasks.stream()
+                    .map((task) -> task.manifestObject.getName().orElse(""))
+                    .collect(Collectors.toList());
+            // The objects of a batch share their kind, and so the fields their verifier reads.
+            ObjectFields fields = KubernetesVerifiers.getFields(
+                    tasks.get(0).manifestObject.getApiVersion(), tasks.get(0).manifestObject.getKind());
+            Map<String, Object> objectsByName = new HashMap<>();
+            try {
+                for (Object json : kubectl.getObjects(kind, namespace, names, fields)) {
+                    objectsByName.put(NAME.read(json), json);
+                }
+            } catch (IOException | RuntimeException e) {
+                LOGGER.log(Level.WARNING, String.format("Failed to retrieve %s objects: %s", kind, names), e);
+                tasks.forEach((task) -> task.currentResult = KubernetesVerifiers.errorResult(e, task.manifestObject));
+                return this;
+            }
+
+            tasks.forEach((task) -> task.verify(objectsByName.get(task.manifestObject.getName().orElse(""))));
+            findFailures();
+            return this;
+        }
+
+        /**
+         * Looks in the cluster for reasons why the objects of the tasks which aren't settled yet never
+         * will be verified. The objects of the batch are looked at together, so that the requests are
+         * shared by all of them rather than made for each.
+         *
+         * @return Whether a task of the batch was found to have failed.
+         */
+        private boolean findFailures() {
+            Map<Manifests.ManifestObject, VerificationTask> pending = new LinkedHashMap<>();
+            Map<Manifests.ManifestObject, Object> states = new LinkedHashMap<>();
+            for (VerificationTask task : tasks) {
+                Object state = task.currentState;
+                if (state != null && !task.isVerified() && !task.isFailed()) {
+                    pending.put(task.manifestObject, task);
+                    states.put(task.manifestObject, state);
+                }
+            }
+            if (states.isEmpty()) {
+                return false;
+            }
+
+            Map<Manifests.ManifestObject, KubernetesVerifiers.VerificationResult> failures =
+                    KubernetesVerifiers.findFailures(kubectl, states);
+            failures.forEach((object, result) -> {
+                VerificationTask task = pending.get(object);
+                // A watch may have verified the task in the meantime.
+                if (!task.isVerified()) {
+                    task.currentResult = result;
+                }
+            });
+            return tasks.stream().anyMatch(VerificationTask::isFailed);
+        }
+
+        /**
+         * Creates a listener verifying the tasks of this batch as the watch of their kind reports
+         * their objects. A task is settled by the first state which verifies it, and all tasks are
+         * settled by the first state showing that a task can't be verified. The listener only reads
+         * the states it receives, leaving queries to the cluster to the threads of the {@link
+         * VerificationScheduler}.
+         *
+         * @param unverified The number of tasks across all batches not verified yet.
+         * @param done Completed once all tasks are settled, or exceptionally if the watch ends.
+         * @return The listener for the watch of this batch's kind and namespace.
+         */
+        private KubernetesBackend.WatchListener watchListener(AtomicInteger unverified, CompletableFuture<Void> done) {
+            return new KubernetesBackend.WatchListener() {
+                @Override
+                public void onObject(Object json) {
+                    String name = NAME.read(json);
+                    for (VerificationTask task : tasks) {
+                        if (task.isVerified() || !name.equals(task.manifestObject.getName().orElse(""))) {
+                            continue;
+                        }
+                        task.verify(json);
+                        if (task.isFailed() || (task.isVerified() && unverified.decrementAndGet() == 0)) {
+                            done.complete(null);
+                        }
+                    }
+                }
+
+                @Override
+                public void onClose(Exception cause) {
+                    done.completeExceptionally(
+                            cause != null ? cause : new IOException(String.format("Watch of %s ended", kind)));
+                }
+            };
+        }
+    }
+
     /**
      * The caller's entrypoint for verifying that a list of {@link Manifests.ManifestObject}'s were
      * applied to the Kubernetes cluster.
      *
-     * @param kubectl KubectlWrapper object for issuing commands to Kubernetes cluster.
+     * @param kubectl {@link KubernetesBackend} for querying the Kubernetes cluster.
      * @param manifestObjects List of {@link Manifests.ManifestObject}'s to verify.
      * @param consoleLogger {@link PrintStream} for outputting results (intended to be user facing).
      * @param timeoutInMinutes Stop retrying verification after this many minutes.
      * @return If the {@link Manifests.ManifestObject}'s were successfully verified.
+     * @throws InterruptedException If interrupted while waiting for verification.
      */
     public static boolean verifyObjects(
-            @NonNull KubectlWrapper kubectl,
+            @NonNull KubernetesBackend kubectl,
+            @NonNull List<Manifests.ManifestObject> manifestObjects,
+            @NonNull PrintStream consoleLogger,
+            int timeoutInMinutes)
+            throws InterruptedException {
+        return verifyObjects(kubectl, manifestObjects, consoleLogger, timeoutInMinutes, VerificationBackoff.DEFAULT);
+    }
+
+    /**
+     * Verifies that a list of {@link Manifests.ManifestObject}'s were applied to the Kubernetes
+     * cluster, polling the cluster with the delays of the specified backoff.
+     *
+     * @param kubectl {@link KubernetesBackend} for querying the Kubernetes cluster.
+     * @param manifestObjects List of {@link Manifests.ManifestObject}'s to verify.
+     * @param consoleLogger {@link PrintStream} for outputting results (intended to be user facing).
+     * @param timeoutInMinutes Stop retrying verification after this many minutes.
+     * @param backoff The {@link VerificationBackoff} delaying the polls.
+     * @return If the {@link Manifests.ManifestObject}'s were successfully verified.
+     * @throws InterruptedException If interrupted while waiting for verification.
+     */
+    public static boolean verifyObjects(
+            @NonNull KubernetesBackend kubectl,
+            @NonNull List<Manifests.ManifestObject> manifestObjects,
+            @NonNull PrintStream consoleLogger,
+            int timeoutInMinutes,
+            @NonNull VerificationBackoff backoff)
+            throws InterruptedException {
+        Duration timeout = Duration.ofMinutes(timeoutInMinutes);
+        return block(verifyObjectsAsync(kubectl, manifestObjects, consoleLogger, timeout, backoff));
+    }
+
+    /**
+     * Verifies that a list of {@link Manifests.ManifestObject}'s were applied to the Kubernetes
+     * cluster without blocking the caller. No thread is held between polls, and the polls run on
+     * the threads of the {@link VerificationScheduler}. Objects are read from the watches the {@link
+     * ClusterObjectCache} shares with other builds verifying objects of the same cluster, if the
+     * backend allows it.
+     *
+     * @param kubectl {@link KubernetesBackend} for querying the Kubernetes cluster.
+     * @param manifestObjects List of {@link Manifests.ManifestObject}'s to verify.
+     * @param consoleLogger {@link PrintStream} for outputting results (intended to be user facing).
+     * @param timeout Stop retrying verification after this long.
+     * @param backoff The {@link VerificationBackoff} delaying the polls.
+     * @return A {@link Mono} polling the cluster once subscribed, emitting whether the {@link
+     *     Manifests.ManifestObject}'s were successfully verified.
+     */
+    public static Mono<Boolean> verifyObjectsAsync(
+            @NonNull KubernetesBackend kubectl,
+            @NonNull List<Manifests.ManifestObject> manifestObjects,
+            @NonNull PrintStream consoleLogger,
+            @NonNull Duration timeout,
+            @NonNull VerificationBackoff backoff) {
+        return Mono.using(
+                () -> ClusterObjectCache.get().open(kubectl),
+                (shared) -> {
+                    List<VerificationTask> verificationTasks = tasksOf(manifestObjects, consoleLogger);
+                    return poll(shared, verificationTasks, consoleLogger, timeout, backoff)
+                            .then(Mono.fromCallable(() -> report(verificationTasks, consoleLogger)));
+                },
+                ClusterObjectCache.Session::close);
+    }
+
+    /**
+     * Verifies that a list of {@link Manifests.ManifestObject}'s were applied to the Kubernetes
+     * cluster by watching their objects instead of polling. A single watch is opened per kind and
+     * namespace and each object is settled as soon as a state verifying it arrives. Should a watch
+     * end early, the objects not verified yet are polled for the remainder of the timeout.
+     *
+     * @param kubectl {@link KubernetesBackend} for querying the Kubernetes cluster.
+     * @param manifestObjects List of {@link Manifests.ManifestObject}'s to verify.
+     * @param consoleLogger {@link PrintStream} for outputting results (intended to be user facing).
+     * @param timeoutInMinutes Stop waiting for verification after this many minutes.
+     * @return If the {@link Manifests.ManifestObject}'s were successfully verified.
+     * @throws InterruptedException If interrupted while waiting for verification.
+     */
+    public static boolean watchObjects(
+            @NonNull KubernetesBackend kubectl,
+            @NonNull List<Manifests.ManifestObject> manifestObjects,
+            @NonNull PrintStream consoleLogger,
+            int timeoutInMinutes)
+            throws InterruptedException {
+        return watchObjects(kubectl, manifestObjects, consoleLogger, timeoutInMinutes, VerificationBackoff.DEFAULT);
+    }
+
+    /**
+     * Verifies that a list of {@link Manifests.ManifestObject}'s were applied to the Kubernetes
+     * cluster by watching their objects, falling back to polling with the delays of the specified
+     * backoff should a watch end early.
+     *
+     * @param kubectl {@link KubernetesBackend} for querying the Kubernetes cluster.
+     * @param manifestObjects List of {@link Manifests.ManifestObject}'s to verify.
+     * @param consoleLogger {@link PrintStream} for outputting results (intended to be user facing).
+     * @param timeoutInMinutes Stop waiting for verification after this many minutes.
+     * @param backoff The {@link VerificationBackoff} delaying the polls after a watch ends early.
+     * @return If the {@link Manifests.ManifestObject}'s were successfully verified.
+     * @throws InterruptedException If interrupted while waiting for verification.
+     */
+    public static boolean watchObjects(
+            @NonNull KubernetesBackend kubectl,
             @NonNull List<Manifests.ManifestObject> manifestObjects,
             @NonNull PrintStream consoleLogger,
-            int timeoutInMinutes) {
-        List<VerificationTask> verificationTasks = manifestObjects.stream()
-                .map((manifestObject) -> new VerificationTask(kubectl, manifestObject, consoleLogger))
+            int timeoutInMinutes,
+            @NonNull VerificationBackoff backoff)
+            throws InterruptedException {
+        return block(watchObjectsAsync(
+                kubectl, manifestObjects, consoleLogger, Duration.ofMinutes(timeoutInMinutes), backoff));
+    }
+
+    /* Waits for a verification, rethrowing an interruption rather than Reactor's wrapper of it. */
+    private static <T> T block(Mono<T> mono) throws InterruptedException {
+        try {
+            return mono.block();
+        } catch (RuntimeException e) {
+            if (Exceptions.unwrap(e) instanceof InterruptedException) {
+                throw (InterruptedException) Exceptions.unwrap(e);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Verifies that a list of {@link Manifests.ManifestObject}'s were applied to the Kubernetes
+     * cluster by watching their objects without blocking the caller, falling back to polling should
+     * a watch end early. No thread is held while waiting for the watches. Builds verifying objects of
+     * the same cluster share the watches through the {@link ClusterObjectCache}, if the backend
+     * allows it.
+     *
+     * @param kubectl {@link KubernetesBackend} for querying the Kubernetes cluster.
+     * @param manifestObjects List of {@link Manifests.ManifestObject}'s to verify.
+     * @param consoleLogger {@link PrintStream} for outputting results (intended to be user facing).
+     * @param timeout Stop waiting for verification after this long.
+     * @param backoff The {@link VerificationBackoff} delaying the polls after a watch ends early.
+     * @return A {@link Mono} opening the watches once subscribed, emitting whether the {@link
+     *     Manifests.ManifestObject}'s were successfully verified. Cancelling it closes the watches.
+     */
+    public static Mono<Boolean> watchObjectsAsync(
+            @NonNull KubernetesBackend kubectl,
+            @NonNull List<Manifests.ManifestObject> manifestObjects,
+            @NonNull PrintStream consoleLogger,
+            @NonNull Duration timeout,
+            @NonNull VerificationBackoff backoff) {
+        return Mono.using(() -> ClusterObjectCache.get().open(kubectl), (shared) -> {
+            List<VerificationTask> verificationTasks = tasksOf(manifestObjects, consoleLogger);
+            long deadline = System.nanoTime() + timeout.toNanos();
+            AtomicInteger unverified = new AtomicInteger(verificationTasks.size());
+            CompletableFuture<Void> done = new CompletableFuture<>();
+            if (verificationTasks.isEmpty()) {
+                done.complete(null);
+            }
+
+            List<VerificationBatch> batches = VerificationBatch.ofUnverified(shared, verificationTasks);
+            List<Closeable> watches = Collections.synchronizedList(new ArrayList<>());
+            try {
+                for (VerificationBatch batch : batches) {
+                    watches.add(shared.watch(batch.kind, batch.namespace, batch.watchListener(unverified, done)));
+                }
+            } catch (IOException | InterruptedException e) {
+                done.completeExceptionally(e);
+            }
+
+            // A stuck rollout changes none of the watched objects, so reasons why the objects never will be
+            // verified are looked for with the delays of the backoff, away from the threads reading the watches.
+            Scheduler scheduler = Schedulers.fromExecutor(
+                    VerificationScheduler.get().newLane(String.format("%d watched objects", verificationTasks.size())));
+            Disposable failureChecks = backoff.applyTo(Repeat.onlyIf((ctx) -> !done.isDone()))
+                    .apply(Mono.fromRunnable(() -> {
+                                boolean failed = false;
+                                for (VerificationBatch batch : batches) {
+                                    failed |= batch.findFailures();
+                                }
+                                if (failed) {
+                                    done.complete(null);
+                                }
+                            })
+                            .subscribeOn(scheduler))
+                    .subscribe(null, (error) -> LOGGER.log(Level.WARNING, "Failed to look for failed objects", error));
+
+            AtomicBoolean watchFailed = new AtomicBoolean();
+            return Mono.fromFuture(done)
+                    .timeout(timeout)
+                    .onErrorResume(TimeoutException.class, (e) -> {
+                        LOGGER.info("Timed out watching objects for verification");
+                        return Mono.empty();
+                    })
+                    .onErrorResume((e) -> !(e instanceof InterruptedException), (e) -> {
+                        LOGGER.log(
+                                Level.WARNING, "Watching objects for verification failed, falling back to polling", e);
+                        watchFailed.set(true);
+                        return Mono.empty();
+                    })
+                    .doOnCancel(() -> {
+                        failureChecks.dispose();
+                        close(watches);
+                    })
+                    .then(Mono.defer(() -> {
+                        failureChecks.dispose();
+                        close(watches);
+                        long remaining = deadline - System.nanoTime();
+                        return watchFailed.get() && remaining > 0
+                                ? poll(shared, verificationTasks, consoleLogger, Duration.ofNanos(remaining), backoff)
+                                : Mono.<Void>empty();
+                    }))
+                    .then(Mono.fromCallable(() -> report(verificationTasks, consoleLogger)));
+        }, ClusterObjectCache.Session::close);
+    }
+
+    /* Closes the watches which are still open. */
+    private static void close(List<Closeable> watches) {
+        List<Closeable> open;
+        synchronized (watches) {
+            open = new ArrayList<>(watches);
+            watches.clear();
+        }
+        for (Closeable watch : open) {
+            try {
+                watch.close();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to close watch", e);
+            }
+        }
+    }
+
+    private static List<VerificationTask> tasksOf(
+            List<Manifests.ManifestObject> manifestObjects, PrintStream consoleLogger) {
+        return manifestObjects.stream()
+                .map((manifestObject) -> new VerificationTask(manifestObject, consoleLogger))
                 .collect(Collectors.toList());
+    }
 
-        Repeat.onlyIf((ctx) -> !verificationTasks.stream()
-                        .map((task) -> task.isVerified()) // only repeat if we aren't all done
-                        .reduce(true, (acc, done) -> acc && done))
-                .backoff(Backoff.fixed(Duration.ofSeconds(VERIFICATION_DELAY)))
-                .timeout(Duration.ofMinutes(timeoutInMinutes))
-                // apply this repeat to the list of  VerificationTask's
-                .apply((Publisher<VerificationTask>) Flux.fromIterable(verificationTasks))
-                .filter((task) -> !task.isVerified()) // Don't try to verify objects that are already verified
-                .map((task) -> task.verify())
-                .subscribeOn(Schedulers.elastic()) // parallelize the verification
-                .doOnError((error) -> {
+    /* Polls the cluster until all tasks are verified or the timeout expires, once subscribed. */
+    private static Mono<Void> poll(
+            KubernetesBackend kubectl,
+            List<VerificationTask> verificationTasks,
+            PrintStream consoleLogger,
+            Duration timeout,
+            VerificationBackoff backoff) {
+        // The batches are retrieved on the threads shared by all builds, taking turns with other verifications.
+        Scheduler scheduler = Schedulers.fromExecutor(
+                VerificationScheduler.get().newLane(String.format("%d objects", verificationTasks.size())));
+        return backoff.applyTo(Repeat.onlyIf((ctx) -> !isSettled(verificationTasks))) // only repeat if we aren't done
+                .timeout(timeout)
+                // apply this repeat to the batches of VerificationTask's that aren't verified yet
+                .apply((Publisher<VerificationBatch>) Flux.defer(
+                        () -> Flux.fromIterable(VerificationBatch.ofUnverified(kubectl, verificationTasks))
+                                .flatMap((batch) -> Mono.fromCallable(batch::verify)
+                                        .subscribeOn(scheduler)))) // parallelize the verification
+                .doOnError((error) -> !(error instanceof InterruptedException), (error) -> {
                     LOGGER.log(Level.SEVERE, "Unexpected error in verifyObjects()", error);
                     error.printStackTrace(consoleLogger); // report error
                 })
-                .blockLast(); // wait for all this to finish
+                .then();
+    }
 
+    /* Reports the tasks which couldn't be verified, returning whether all were verified. */
+    private static boolean report(List<VerificationTask> verificationTasks, PrintStream consoleLogger) {
         List<KubernetesVerifiers.VerificationResult> finalResults = verificationTasks.stream()
-                .map((task) -> task.getVerificationResult())
+                .map((task) -> task.getVerificationResult() != null
+                        ? task.getVerificationResult()
+                        : KubernetesVerifiers.verify(task.manifestObject, null))
                 .collect(Collectors.toList());
 
         List<KubernetesVerifiers.VerificationResult> errorResults =
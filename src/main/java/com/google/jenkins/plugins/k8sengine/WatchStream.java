@@ -0,0 +1,106 @@
+/*
+ * Copyright 2019 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.jenkins.plugins.k8sengine;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import hudson.model.Computer;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Reads a stream of concatenated Kubernetes watch events on a background thread and hands the object
+ * of each one to a {@link KubernetesBackend.WatchListener}, as a change or as a deletion, until it is
+ * closed.
+ */
+class WatchStream implements Closeable {
+    private static final Logger LOGGER = Logger.getLogger(WatchStream.class.getName());
+    private static final ObjectReader READER = new ObjectMapper().readerFor(Object.class);
+
+    private final String description;
+    private final InputStream stream;
+    private final Closeable resource;
+    private final Future<?> reader;
+    private volatile boolean closed;
+
+    /**
+     * Starts reading the stream.
+     *
+     * @param description Describes the watch in log messages.
+     * @param stream The stream of JSON watch events.
+     * @param listener Receives the watched objects.
+     * @param resource Released when the watch is closed, for example the process producing the
+     *     stream.
+     */
+    WatchStream(
+            String description,
+            InputStream stream,
+            KubernetesBackend.WatchListener listener,
+            Closeable resource) {
+        this.description = description;
+        this.stream = stream;
+        this.resource = resource;
+        this.reader = Computer.threadPoolForRemoting.submit(() -> read(listener));
+    }
+
+    private void read(KubernetesBackend.WatchListener listener) {
+        Exception cause = null;
+        try (MappingIterator<Object> values = READER.readValues(stream)) {
+            while (!closed && values.hasNextValue()) {
+                dispatch(values.nextValue(), listener);
+            }
+        } catch (IOException | RuntimeException e) {
+            cause = e;
+        }
+
+        if (!closed) {
+            LOGGER.log(Level.WARNING, String.format("Watch ended unexpectedly: %s", description), cause);
+            listener.onClose(cause);
+        }
+    }
+
+    /* Hands the object of a watch event to the listener, logging errors reported by the watch. */
+    @SuppressWarnings("unchecked")
+    private void dispatch(Object value, KubernetesBackend.WatchListener listener) {
+        Map<String, Object> event = (Map<String, Object>) value;
+        Object type = event.get("type");
+        Object object = event.get("object");
+        if ("ADDED".equals(type) || "MODIFIED".equals(type)) {
+            listener.onObject(object);
+        } else if ("DELETED".equals(type)) {
+            listener.onDelete(object);
+        } else if ("ERROR".equals(type)) {
+            LOGGER.log(Level.WARNING, String.format("Watch error on %s: %s", description, object));
+        }
+    }
+
+    /** Stops the watch and releases its resources. */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        try {
+            resource.close();
+        } finally {
+            stream.close();
+            reader.cancel(true);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2019 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.jenkins.plugins.k8sengine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/** Tests {@link ApplyLedger}. */
+public class ApplyLedgerTest {
+    private static final String KEY = "project/us-west1-a/cluster/default";
+    private static final long HOUR = 60 * 60 * 1000L;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testOnlyChangedObjectsAreReturned() throws Exception {
+        File file = new File(temporaryFolder.getRoot(), ApplyLedger.FILE_NAME);
+        Manifests.ManifestObject web = deployment("web", "nginx:1");
+        Manifests.ManifestObject api = deployment("api", "api:1");
+        ApplyLedger.load(file, KEY).record(ImmutableList.of(web, api), true, 0);
+
+        Manifests.ManifestObject updatedApi = deployment("api", "api:2");
+        ApplyLedger ledger = ApplyLedger.load(file, KEY);
+
+        assertEquals(
+                ImmutableList.of(updatedApi),
+                ledger.changed(ImmutableList.of(deployment("web", "nginx:1"), updatedApi)));
+    }
+
+    @Test
+    public void testHashIgnoresFieldOrder() {
+        Map<String, Object> reordered = new LinkedHashMap<>();
+        Manifests.ManifestObject original = deployment("web", "nginx:1");
+        original.getSource().forEach((key, value) -> reordered.put(key, value));
+        Map<String, Object> reversed = new LinkedHashMap<>();
+        ImmutableList.copyOf(reordered.keySet()).reverse().forEach((key) -> reversed.put(key, reordered.get(key)));
+
+        assertEquals(
+                ApplyLedger.hash(original), ApplyLedger.hash(new Manifests.ManifestObject(reversed, null)));
+    }
+
+    @Test
+    public void testFullApplyDueWhenEmptyOrIntervalElapsed() throws Exception {
+        File file = new File(temporaryFolder.getRoot(), ApplyLedger.FILE_NAME);
+        assertTrue(ApplyLedger.load(file, KEY).isFullApplyDue(24 * HOUR, 0));
+
+        ApplyLedger.load(file, KEY).record(ImmutableList.of(deployment("web", "nginx:1")), true, 0);
+        ApplyLedger ledger = ApplyLedger.load(file, KEY);
+        assertFalse(ledger.isFullApplyDue(24 * HOUR, HOUR));
+        assertTrue(ledger.isFullApplyDue(24 * HOUR, 24 * HOUR));
+        assertFalse(ledger.isFullApplyDue(0, 48 * HOUR));
+    }
+
+    @Test
+    public void testEntriesForOtherClustersArePreserved() throws Exception {
+        File file = new File(temporaryFolder.getRoot(), ApplyLedger.FILE_NAME);
+        Manifests.ManifestObject web = deployment("web", "nginx:1");
+        ApplyLedger.load(file, KEY).record(ImmutableList.of(web), true, 0);
+        ApplyLedger.load(file, "other").record(ImmutableList.of(web), true, 0);
+
+        assertTrue(ApplyLedger.load(file, KEY).changed(ImmutableList.of(web)).isEmpty());
+    }
+
+    private static Manifests.ManifestObject deployment(String name, String image) {
+        Map<String, Object> metadata = new LinkedHashMap<>();
+        metadata.put("name", name);
+        Map<String, Object> spec = new LinkedHashMap<>();
+        spec.put("image", image);
+        Map<String, Object> source = new LinkedHashMap<>();
+        source.put("apiVersion", "apps/v1");
+        source.put("kind", "Deployment");
+        source.put("metadata", metadata);
+        source.put("spec", spec);
+        return new Manifests.ManifestObject(source, null);
+    }
+}
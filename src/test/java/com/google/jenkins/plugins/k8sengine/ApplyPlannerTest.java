@@ -0,0 +1,209 @@
+/*
+ * Copyright 2019 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.jenkins.plugins.k8sengine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+
+import com.google.common.collect.ImmutableList;
+import hudson.FilePath;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+
+/** Tests {@link ApplyPlanner}. */
+public class ApplyPlannerTest {
+    @Test
+    public void testPlanOrdersWavesByDependency() {
+        Manifests.ManifestObject service = object("Service", "web");
+        Manifests.ManifestObject deployment = object("Deployment", "web");
+        Manifests.ManifestObject configMap = object("ConfigMap", "web-config");
+        Manifests.ManifestObject namespace = object("Namespace", "web");
+        Manifests.ManifestObject crd = object("CustomResourceDefinition", "widgets.example.com");
+        Manifests.ManifestObject widget = object("Widget", "web-widget");
+
+        ImmutableList<ImmutableList<Manifests.ManifestObject>> waves =
+                ApplyPlanner.plan(ImmutableList.of(service, widget, deployment, configMap, namespace, crd));
+
+        assertEquals(
+                ImmutableList.of(
+                        ImmutableList.of(namespace, crd),
+                        ImmutableList.of(configMap),
+                        ImmutableList.of(deployment),
+                        ImmutableList.of(service, widget)),
+                waves);
+    }
+
+    @Test
+    public void testPlanSkipsEmptyWaves() {
+        Manifests.ManifestObject deployment = object("Deployment", "web");
+        assertEquals(
+                ImmutableList.of(ImmutableList.of(deployment)), ApplyPlanner.plan(ImmutableList.of(deployment)));
+    }
+
+    @Test
+    public void testApplyAppliesWavesInOrder() throws Exception {
+        KubernetesBackend backend = Mockito.mock(KubernetesBackend.class);
+        Manifests.ManifestObject namespace = object("Namespace", "web");
+        Manifests.ManifestObject deployment = object("Deployment", "web");
+
+        ApplyPlanner.apply(backend, ImmutableList.of(deployment, namespace), 2, consoleLogger());
+
+        InOrder inOrder = Mockito.inOrder(backend);
+        inOrder.verify(backend).apply(namespace);
+        inOrder.verify(backend).apply(deployment);
+    }
+
+    @Test
+    public void testApplyStopsAfterFailedWave() throws Exception {
+        KubernetesBackend backend = Mockito.mock(KubernetesBackend.class);
+        Manifests.ManifestObject namespace = object("Namespace", "web");
+        Manifests.ManifestObject deployment = object("Deployment", "web");
+        Mockito.doThrow(new IOException("forbidden")).when(backend).apply(namespace);
+
+        try {
+            ApplyPlanner.apply(backend, ImmutableList.of(deployment, namespace), 2, consoleLogger());
+            fail("Expected the failed wave to abort the apply");
+        } catch (IOException e) {
+            // expected
+        }
+
+        Mockito.verify(backend, Mockito.never()).apply(deployment);
+        Mockito.verify(backend, Mockito.never()).apply(any(FilePath.class));
+    }
+
+    @Test
+    public void testInterruptedApplyThrowsInterruptedException() throws Exception {
+        KubernetesBackend backend = Mockito.mock(KubernetesBackend.class);
+        CountDownLatch applying = new CountDownLatch(1);
+        Mockito.doAnswer((invocation) -> {
+                    applying.countDown();
+                    Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+                    return null;
+                })
+                .when(backend)
+                .apply(any(Manifests.ManifestObject.class));
+        AtomicReference<Throwable> thrown = new AtomicReference<>();
+        Thread thread = new Thread(() -> {
+            try {
+                ApplyPlanner.apply(backend, ImmutableList.of(object("Deployment", "web")), 2, consoleLogger());
+            } catch (Throwable e) {
+                thrown.set(e);
+            }
+        });
+
+        thread.start();
+        applying.await();
+        thread.interrupt();
+        thread.join(TimeUnit.SECONDS.toMillis(10));
+
+        assertTrue(thrown.get() instanceof InterruptedException);
+    }
+
+    @Test
+    public void testApplyWaitsForCustomResourceDefinitionsToBeEstablished() throws Exception {
+        KubernetesBackend backend = Mockito.mock(KubernetesBackend.class);
+        Manifests.ManifestObject crd = object("CustomResourceDefinition", "widgets.example.com");
+        Manifests.ManifestObject widget = object("Widget", "web-widget");
+        Mockito.when(backend.getObjects(eq("customresourcedefinition"), isNull(), any(), any()))
+                .thenReturn(ImmutableList.of(definition("widgets.example.com", "True")));
+
+        ApplyPlanner.apply(backend, ImmutableList.of(widget, crd), 2, consoleLogger());
+
+        InOrder inOrder = Mockito.inOrder(backend);
+        inOrder.verify(backend).apply(crd);
+        inOrder.verify(backend).getObjects(eq("customresourcedefinition"), isNull(), any(), any());
+        inOrder.verify(backend).apply(widget);
+    }
+
+    @Test
+    public void testAwaitEstablishedPollsUntilEstablished() throws Exception {
+        KubernetesBackend backend = Mockito.mock(KubernetesBackend.class);
+        Mockito.when(backend.getObjects(eq("customresourcedefinition"), isNull(), any(), any()))
+                .thenReturn(ImmutableList.of(definition("widgets.example.com", "False")))
+                .thenReturn(ImmutableList.of(definition("widgets.example.com", "True")));
+
+        ApplyPlanner.awaitEstablished(
+                backend,
+                ImmutableList.of(object("CustomResourceDefinition", "widgets.example.com")),
+                Duration.ofSeconds(30),
+                Duration.ofMillis(1),
+                consoleLogger());
+
+        Mockito.verify(backend, Mockito.times(2))
+                .getObjects(eq("customresourcedefinition"), isNull(), any(), any());
+    }
+
+    @Test
+    public void testAwaitEstablishedTimesOut() throws Exception {
+        KubernetesBackend backend = Mockito.mock(KubernetesBackend.class);
+        Mockito.when(backend.getObjects(eq("customresourcedefinition"), isNull(), any(), any()))
+                .thenReturn(ImmutableList.of(definition("widgets.example.com", "False")));
+
+        try {
+            ApplyPlanner.awaitEstablished(
+                    backend,
+                    ImmutableList.of(object("CustomResourceDefinition", "widgets.example.com")),
+                    Duration.ofMillis(10),
+                    Duration.ofMillis(1),
+                    consoleLogger());
+            fail("Expected the wait for the CustomResourceDefinition to time out");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("widgets.example.com"));
+        }
+    }
+
+    private static Object definition(String name, String established) {
+        Map<String, Object> condition = new LinkedHashMap<>();
+        condition.put("type", "Established");
+        condition.put("status", established);
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("conditions", ImmutableList.of(condition));
+        Map<String, Object> metadata = new LinkedHashMap<>();
+        metadata.put("name", name);
+        Map<String, Object> definition = new LinkedHashMap<>();
+        definition.put("metadata", metadata);
+        definition.put("status", status);
+        return definition;
+    }
+
+    private static Manifests.ManifestObject object(String kind, String name) {
+        Map<String, Object> metadata = new LinkedHashMap<>();
+        metadata.put("name", name);
+        Map<String, Object> source = new LinkedHashMap<>();
+        source.put("apiVersion", "v1");
+        source.put("kind", kind);
+        source.put("metadata", metadata);
+        return new Manifests.ManifestObject(source, null);
+    }
+
+    private static PrintStream consoleLogger() throws IOException {
+        return new PrintStream(new ByteArrayOutputStream(), true, StandardCharsets.UTF_8.name());
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2019 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.jenkins.plugins.k8sengine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+
+import com.google.common.collect.ImmutableList;
+import hudson.FilePath;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.ConnectException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+
+/** Tests {@link ChunkedApplier}. */
+public class ChunkedApplierTest {
+    private static final Duration BACKOFF = Duration.ofMillis(1);
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testChunksDoNotMixWaves() throws Exception {
+        Manifests manifests = load("Deployment a", "Namespace ns", "Deployment b", "Deployment c", "Service a");
+        List<Manifests.ManifestObject> objects = manifests.getObjectManifests();
+
+        ImmutableList<ImmutableList<ImmutableList<Manifests.ManifestObject>>> waves =
+                ChunkedApplier.chunk(objects, 2);
+
+        assertEquals(
+                ImmutableList.of(
+                        ImmutableList.of(ImmutableList.of(objects.get(1))),
+                        ImmutableList.of(
+                                ImmutableList.of(objects.get(0), objects.get(2)), ImmutableList.of(objects.get(3))),
+                        ImmutableList.of(ImmutableList.of(objects.get(4)))),
+                waves);
+    }
+
+    @Test
+    public void testOnlyTheFailedChunkIsRetried() throws Exception {
+        Manifests manifests = load("Deployment a", "Deployment b", "Deployment c");
+        List<List<String>> calls = new ArrayList<>();
+        KubernetesBackend backend = Mockito.mock(KubernetesBackend.class);
+        Mockito.doAnswer((invocation) -> {
+                    calls.add(names(invocation.getArgument(0)));
+                    if (calls.size() == 1) {
+                        throw new IOException("Operation cannot be fulfilled: the object has been modified");
+                    }
+                    return null;
+                })
+                .when(backend)
+                .apply(any(Manifests.class));
+
+        ChunkedApplier.apply(
+                backend, manifests, manifests.getObjectManifests(), 2, 3, BACKOFF, BACKOFF, consoleLogger());
+
+        assertEquals(
+                ImmutableList.of(ImmutableList.of("a", "b"), ImmutableList.of("a", "b"), ImmutableList.of("c")),
+                calls);
+    }
+
+    @Test
+    public void testRetriesStopAfterMaxAttempts() throws Exception {
+        Manifests manifests = load("Deployment a");
+        KubernetesBackend backend = Mockito.mock(KubernetesBackend.class);
+        Mockito.doThrow(new IOException("Request PATCH /apis failed, status: 503. Response: unavailable"))
+                .when(backend)
+                .apply(any(Manifests.class));
+
+        try {
+            ChunkedApplier.apply(
+                    backend, manifests, manifests.getObjectManifests(), 2, 2, BACKOFF, BACKOFF, consoleLogger());
+            fail("Expected the chunk to fail");
+        } catch (ChunkedApplier.PartialApplyException e) {
+            assertTrue(e.getMessage().contains("status: 503"));
+            assertTrue(e.getApplied().isEmpty());
+        }
+
+        Mockito.verify(backend, Mockito.times(2)).apply(any(Manifests.class));
+    }
+
+    @Test
+    public void testFailedChunkStopsLaterWaves() throws Exception {
+        Manifests manifests = load("Deployment a", "Deployment b", "Service a");
+        List<Manifests.ManifestObject> objects = manifests.getObjectManifests();
+        List<List<String>> calls = new ArrayList<>();
+        KubernetesBackend backend = Mockito.mock(KubernetesBackend.class);
+        Mockito.doAnswer((invocation) -> {
+                    List<String> names = names(invocation.getArgument(0));
+                    calls.add(names);
+                    if (names.contains("a")) {
+                        throw new IOException("Deployment.apps \"a\" is invalid: spec.replicas: Invalid value");
+                    }
+                    return null;
+                })
+                .when(backend)
+                .apply(any(Manifests.class));
+
+        try {
+            ChunkedApplier.apply(backend, manifests, objects, 1, 3, BACKOFF, BACKOFF, consoleLogger());
+            fail("Expected the chunk to fail");
+        } catch (ChunkedApplier.PartialApplyException e) {
+            assertEquals(ImmutableList.of(objects.get(1)), e.getApplied());
+        }
+
+        // Invalid objects aren't retried, and the Service isn't applied without its Deployment.
+        assertEquals(ImmutableList.of(ImmutableList.of("a"), ImmutableList.of("b")), calls);
+        Mockito.verify(backend, Mockito.never()).apply(any(FilePath.class));
+    }
+
+    @Test
+    public void testTransientErrors() {
+        assertTrue(ChunkedApplier.isTransient(new IOException(
+                "Internal error occurred: failed calling webhook \"validate.example.com\": i/o timeout")));
+        assertTrue(ChunkedApplier.isTransient(new IOException("Error from server: Too many requests")));
+        assertTrue(ChunkedApplier.isTransient(new ConnectException()));
+        assertFalse(ChunkedApplier.isTransient(new IOException("error validating data: unknown field \"spec.foo\"")));
+        assertFalse(ChunkedApplier.isTransient(new IllegalStateException("timeout")));
+        assertTrue(ChunkedApplier.isTransient(new IOException(
+                "Get \"https://1.2.3.4/api\": net/http: TLS handshake timeout")));
+        assertTrue(ChunkedApplier.isTransient(new IOException(
+                "Error from server (Timeout): the server was unable to return a response in the time allotted")));
+        assertFalse(ChunkedApplier.isTransient(new IOException(
+                "error validating data: ValidationError(Deployment.spec): unknown field \"timeoutSeconds\"")));
+        assertFalse(ChunkedApplier.isTransient(new IOException(
+                "Deployment.apps \"web\" is invalid: spec.progressDeadlineSeconds: must be greater than the"
+                        + " timeout of minReadySeconds")));
+    }
+
+    @Test
+    public void testSubsetsKeepTheObjects() throws Exception {
+        Manifests manifests = load("Deployment a", "Deployment b");
+        Manifests.ManifestObject b = manifests.getObjectManifests().get(1);
+
+        Manifests subset = manifests.subset(ImmutableList.of(b));
+
+        assertEquals(ImmutableList.of(b), subset.getObjectManifests());
+        assertEquals(2, manifests.getObjectManifests().size());
+    }
+
+    private Manifests load(String... objects) throws Exception {
+        File file = temporaryFolder.newFile();
+        String manifest = ImmutableList.copyOf(objects).stream()
+                .map((object) -> String.format(
+                        "apiVersion: v1\nkind: %s\nmetadata:\n  name: %s\n",
+                        object.split(" ")[0], object.split(" ")[1]))
+                .collect(Collectors.joining("---\n"));
+        Files.write(file.toPath(), manifest.getBytes(StandardCharsets.UTF_8));
+        return Manifests.fromFile(new FilePath(file));
+    }
+
+    private static List<String> names(Manifests manifests) {
+        return manifests.getObjectManifests().stream()
+                .map((object) -> object.getName().orElse(""))
+                .collect(Collectors.toList());
+    }
+
+    private static PrintStream consoleLogger() throws IOException {
+        return new PrintStream(new ByteArrayOutputStream(), true, StandardCharsets.UTF_8.name());
+    }
+}
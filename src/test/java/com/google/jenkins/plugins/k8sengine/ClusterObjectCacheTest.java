@@ -0,0 +1,424 @@
+/*
+ * Copyright 2019 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.jenkins.plugins.k8sengine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.Resources;
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.JsonPath;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+/** Tests {@link ClusterObjectCache}. */
+public class ClusterObjectCacheTest {
+    private static final String COLLECTION = "https://1.2.3.4/apis/apps/v1/namespaces/default/deployments";
+    private static final String UNVERIFIABLE_DEPLOYMENT_OUTPUT = "unverifiableDeploymentOutput.json";
+    private static final long CLOSE_TIMEOUT_MILLIS = 5000;
+    private static final ObjectFields FIELDS = KubernetesVerifiers.getFields("apps/v1", "Deployment");
+
+    private ClusterObjectCache cache;
+    private Closeable watch;
+    private AtomicReference<KubernetesBackend.WatchListener> watchListener;
+    // The objects read from the cluster without the watch, by name.
+    private Map<String, Object> cluster;
+
+    @Before
+    public void setUp() {
+        cache = new ClusterObjectCache(Duration.ofMillis(100));
+        watch = Mockito.mock(Closeable.class);
+        watchListener = new AtomicReference<>();
+        cluster = new ConcurrentHashMap<>();
+    }
+
+    @Test
+    public void testConcurrentSessionsShareOneWatch() throws Exception {
+        KubernetesBackend first = backend(COLLECTION, deployment("web", "1"));
+        KubernetesBackend second = backend(COLLECTION, deployment("web", "1"));
+
+        try (ClusterObjectCache.Session one = cache.open(first);
+                ClusterObjectCache.Session two = cache.open(second)) {
+            for (int i = 0; i < 3; i++) {
+                assertEquals(1, one.getObjects("deployment", null, ImmutableList.of("web"), FIELDS).size());
+                assertEquals(1, two.getObjects("deployment", null, ImmutableList.of("web"), FIELDS).size());
+            }
+        }
+
+        assertEquals(1, cache.getWatchesOpened());
+        Mockito.verify(first).watch(eq("deployment"), isNull(), any());
+        Mockito.verify(second, Mockito.never()).watch(anyString(), any(), any());
+        // Only the first read of each session is from the cluster.
+        Mockito.verify(first, Mockito.times(1)).getObjects(anyString(), any(), any(), any());
+        Mockito.verify(second, Mockito.times(1)).getObjects(anyString(), any(), any(), any());
+    }
+
+    @Test
+    public void testMissingObjectsAreReadFromTheCluster() throws Exception {
+        KubernetesBackend backend = backend(COLLECTION, deployment("web", "1"));
+
+        try (ClusterObjectCache.Session session = cache.open(backend)) {
+            assertEquals(0, session.getObjects("deployment", null, ImmutableList.of("api"), FIELDS).size());
+            Object created = deployment("api", "1");
+            cluster.put("api", created);
+
+            assertEquals(
+                    ImmutableList.of(created),
+                    session.getObjects("deployment", null, ImmutableList.of("api"), FIELDS));
+        }
+
+        Mockito.verify(backend, Mockito.times(2)).getObjects(eq("deployment"), isNull(), any(), any());
+    }
+
+    @Test
+    public void testObjectsAreReadFromTheClusterAfterAnApply() throws Exception {
+        KubernetesBackend backend = backend(COLLECTION, deployment("web", "1"));
+        Manifests manifests = Mockito.mock(Manifests.class);
+
+        try (ClusterObjectCache.Session session = cache.open(backend)) {
+            session.getObjects("deployment", null, ImmutableList.of("web"), FIELDS);
+            session.getObjects("deployment", null, ImmutableList.of("web"), FIELDS);
+            Mockito.verify(backend, Mockito.times(1)).getObjects(eq("deployment"), isNull(), any(), any());
+
+            Object applied = deployment("web", "2");
+            cluster.put("web", applied);
+            session.apply(manifests);
+
+            assertEquals(
+                    ImmutableList.of(applied),
+                    session.getObjects("deployment", null, ImmutableList.of("web"), FIELDS));
+        }
+
+        Mockito.verify(backend).apply(manifests);
+        Mockito.verify(backend, Mockito.times(2)).getObjects(eq("deployment"), isNull(), any(), any());
+    }
+
+    @Test
+    public void testObjectsOlderThanTheClusterAreNotReadFromTheWatch() throws Exception {
+        KubernetesBackend backend = backend(COLLECTION, deployment("web", "1"));
+        Object applied = deployment("web", "2");
+        cluster.put("web", applied);
+
+        try (ClusterObjectCache.Session session = cache.open(backend)) {
+            // The watch still holds the generation before the apply.
+            for (int i = 0; i < 2; i++) {
+                assertEquals(
+                        ImmutableList.of(applied),
+                        session.getObjects("deployment", null, ImmutableList.of("web"), FIELDS));
+            }
+            Mockito.verify(backend, Mockito.times(2)).getObjects(eq("deployment"), isNull(), any(), any());
+
+            watchListener.get().onObject(applied);
+            assertEquals(
+                    ImmutableList.of(applied),
+                    session.getObjects("deployment", null, ImmutableList.of("web"), FIELDS));
+        }
+
+        Mockito.verify(backend, Mockito.times(2)).getObjects(eq("deployment"), isNull(), any(), any());
+    }
+
+    @Test
+    public void testChangesFromTheWatchAreRead() throws Exception {
+        try (ClusterObjectCache.Session session = cache.open(backend(COLLECTION, deployment("web", "1")))) {
+            session.getObjects("deployment", null, ImmutableList.of("web"), FIELDS);
+            Object updated = deployment("web", "2");
+            watchListener.get().onObject(updated);
+
+            assertEquals(
+                    ImmutableList.of(updated),
+                    session.getObjects("deployment", null, ImmutableList.of("web"), FIELDS));
+            assertEquals(
+                    ImmutableList.of(updated),
+                    session.getObjectsThatMatchLabels("deployment", null, ImmutableMap.of("version", "2"), FIELDS));
+            assertEquals(
+                    0,
+                    session.getObjectsThatMatchLabels("deployment", null, ImmutableMap.of("version", "1"), FIELDS)
+                            .size());
+        }
+    }
+
+    @Test
+    public void testListenersReceiveTheCurrentObjectsThenChanges() throws Exception {
+        Object current = deployment("web", "1");
+        Object updated = deployment("web", "2");
+        KubernetesBackend.WatchListener listener = Mockito.mock(KubernetesBackend.WatchListener.class);
+
+        try (ClusterObjectCache.Session session = cache.open(backend(COLLECTION, current))) {
+            Closeable subscription = session.watch("deployment", null, listener);
+            watchListener.get().onObject(updated);
+            subscription.close();
+            watchListener.get().onObject(deployment("web", "3"));
+        }
+
+        Mockito.verify(listener).onObject(current);
+        Mockito.verify(listener).onObject(updated);
+        Mockito.verifyNoMoreInteractions(listener);
+    }
+
+    @Test
+    public void testListenersReceiveTheCurrentObjectsFromTheCluster() throws Exception {
+        Object stale = deployment("web", "1");
+        Object applied = deployment("web", "2");
+        Object updated = deployment("web", "3");
+        KubernetesBackend backend = backend(COLLECTION, stale);
+        KubernetesBackend.WatchListener listener = Mockito.mock(KubernetesBackend.WatchListener.class);
+
+        try (ClusterObjectCache.Session session = cache.open(backend)) {
+            session.getObjects("deployment", null, ImmutableList.of("web"), FIELDS);
+            // The cluster now holds the applied deployment, which the watch hasn't caught up with.
+            Mockito.when(backend.getObjectsThatMatchLabels(eq("deployment"), isNull(), eq(ImmutableMap.of()), any()))
+                    .thenReturn(ImmutableList.of(applied));
+
+            session.watch("deployment", null, listener);
+            watchListener.get().onObject(stale);
+            watchListener.get().onObject(updated);
+        }
+
+        Mockito.verify(listener).onObject(applied);
+        Mockito.verify(listener).onObject(updated);
+        Mockito.verifyNoMoreInteractions(listener);
+    }
+
+    @Test
+    public void testDeletedObjectsAreDropped() throws Exception {
+        Object deleted = deployment("web", "1");
+        KubernetesBackend.WatchListener listener = Mockito.mock(KubernetesBackend.WatchListener.class);
+
+        try (ClusterObjectCache.Session session = cache.open(backend(COLLECTION, deleted))) {
+            session.watch("deployment", null, listener);
+            cluster.remove("web");
+            watchListener.get().onDelete(deleted);
+
+            assertEquals(
+                    0,
+                    session.getObjectsThatMatchLabels("deployment", null, ImmutableMap.of("app", "web"), FIELDS)
+                            .size());
+            assertEquals(0, session.getObjects("deployment", null, ImmutableList.of("web"), FIELDS).size());
+        }
+
+        Mockito.verify(listener).onObject(deleted);
+        Mockito.verify(listener).onDelete(deleted);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testDeletedStuckPodNoLongerFailsTheRollout() throws Exception {
+        Map<String, KubernetesBackend.WatchListener> listeners = new ConcurrentHashMap<>();
+        KubernetesBackend backend = Mockito.mock(KubernetesBackend.class);
+        Mockito.when(backend.getCollectionId(anyString(), any()))
+                .thenAnswer((invocation) -> "https://1.2.3.4/namespaces/default/" + invocation.getArgument(0));
+        Mockito.when(backend.watch(anyString(), any(), any())).thenAnswer((invocation) -> {
+            listeners.put(
+                    invocation.getArgument(0), invocation.getArgument(2, KubernetesBackend.WatchListener.class));
+            return watch;
+        });
+        Object stuckPod = KubernetesVerifiersTest.stuckPod();
+        Mockito.when(backend.getObjectsThatMatchLabels(eq("replicaset"), eq("default"), eq(ImmutableMap.of()), any()))
+                .thenReturn(ImmutableList.of(KubernetesVerifiersTest.stuckReplicaSet()));
+        Mockito.when(backend.getObjectsThatMatchLabels(eq("pod"), eq("default"), eq(ImmutableMap.of()), any()))
+                .thenReturn(ImmutableList.of(stuckPod));
+        Manifests.ManifestObject deployment = KubernetesVerifiersTest.deployment("nginx-deployment-bad");
+        Object rollingOut = readTestFile(UNVERIFIABLE_DEPLOYMENT_OUTPUT);
+        Object available = readTestFile(UNVERIFIABLE_DEPLOYMENT_OUTPUT);
+        ((Map<String, Object>) JsonPath.read(available, "status")).put("availableReplicas", 3);
+
+        try (ClusterObjectCache.Session session = cache.open(backend)) {
+            assertTrue(KubernetesVerifiers.verify(session, deployment, rollingOut).isFailed());
+
+            // The stuck pod is replaced by a healthy one.
+            listeners.get("pod").onDelete(stuckPod);
+
+            assertFalse(KubernetesVerifiers.verify(session, deployment, rollingOut).isFailed());
+            assertTrue(KubernetesVerifiers.verify(session, deployment, available).isVerified());
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testWatchesOnlyKeepTheFieldsOfTheVerifiers() throws Exception {
+        Map<String, Object> metadata = new LinkedHashMap<>();
+        metadata.put("name", "web");
+        metadata.put("generation", 1L);
+        metadata.put("resourceVersion", "1");
+        metadata.put("managedFields", ImmutableList.of(ImmutableMap.of("manager", "kubectl")));
+        Object watched = ImmutableMap.of(
+                "metadata", metadata, "spec", ImmutableMap.of("replicas", 3, "template", ImmutableMap.of()));
+        KubernetesBackend backend = backend(COLLECTION);
+
+        try (ClusterObjectCache.Session session = cache.open(backend)) {
+            session.getObjects("deployment", null, ImmutableList.of("web"), FIELDS);
+            watchListener.get().onObject(watched);
+            cluster.put("web", watched);
+
+            Map<String, Object> cached = (Map<String, Object>) session
+                    .getObjectsThatMatchLabels("deployment", null, ImmutableMap.of(), FIELDS)
+                    .get(0);
+            assertEquals(ImmutableMap.of("replicas", 3), cached.get("spec"));
+            assertFalse(((Map<String, Object>) cached.get("metadata")).containsKey("managedFields"));
+
+            // Fields the watch doesn't keep are read from the cluster.
+            assertEquals(
+                    ImmutableList.of(watched),
+                    session.getObjects("deployment", null, ImmutableList.of("web"), ObjectFields.ALL));
+        }
+
+        Mockito.verify(backend).getObjectsThatMatchLabels(
+                eq("deployment"),
+                isNull(),
+                eq(ImmutableMap.of()),
+                eq(KubernetesVerifiers.getWatchedFields("deployment")));
+        Mockito.verify(backend).getObjects(eq("deployment"), isNull(), any(), eq(ObjectFields.ALL));
+    }
+
+    @Test
+    public void testIdleWatchIsClosed() throws Exception {
+        KubernetesBackend backend = backend(COLLECTION, deployment("web", "1"));
+        try (ClusterObjectCache.Session session = cache.open(backend)) {
+            session.getObjects("deployment", null, ImmutableList.of("web"), FIELDS);
+            Mockito.verify(watch, Mockito.after(300).never()).close();
+        }
+
+        Mockito.verify(watch, Mockito.timeout(CLOSE_TIMEOUT_MILLIS)).close();
+        assertEquals(0, cache.getOpenWatches());
+    }
+
+    @Test
+    public void testWatchUsedAgainBeforeTheIdleTimeoutStaysOpen() throws Exception {
+        KubernetesBackend backend = backend(COLLECTION, deployment("web", "1"));
+        try (ClusterObjectCache.Session session = cache.open(backend)) {
+            session.getObjects("deployment", null, ImmutableList.of("web"), FIELDS);
+        }
+        try (ClusterObjectCache.Session session = cache.open(backend)) {
+            session.getObjects("deployment", null, ImmutableList.of("web"), FIELDS);
+            Mockito.verify(watch, Mockito.after(300).never()).close();
+        }
+
+        assertEquals(1, cache.getWatchesOpened());
+    }
+
+    @Test
+    public void testEndedWatchIsOpenedAgain() throws Exception {
+        KubernetesBackend backend = backend(COLLECTION, deployment("web", "1"));
+        KubernetesBackend.WatchListener listener = Mockito.mock(KubernetesBackend.WatchListener.class);
+
+        try (ClusterObjectCache.Session session = cache.open(backend)) {
+            session.watch("deployment", null, listener);
+            IOException cause = new IOException("Connection reset");
+            watchListener.get().onClose(cause);
+            Mockito.verify(listener).onClose(cause);
+
+            session.getObjects("deployment", null, ImmutableList.of("web"), FIELDS);
+        }
+
+        assertEquals(2, cache.getWatchesOpened());
+        Mockito.verify(backend, Mockito.times(2)).watch(eq("deployment"), isNull(), any());
+    }
+
+    @Test
+    public void testObjectsOfUnsharedBackendsAreReadFromTheCluster() throws Exception {
+        KubernetesBackend backend = backend(null, deployment("web", "1"));
+        Mockito.when(backend.getObjects(eq("deployment"), isNull(), any(), any()))
+                .thenReturn(ImmutableList.of(deployment("web", "1")));
+
+        try (ClusterObjectCache.Session session = cache.open(backend)) {
+            assertEquals(1, session.getObjects("deployment", null, ImmutableList.of("web"), FIELDS).size());
+        }
+
+        assertEquals(0, cache.getWatchesOpened());
+        Mockito.verify(backend, Mockito.never()).watch(anyString(), any(), any());
+    }
+
+    @Test
+    public void testObjectsAreReadFromTheClusterIfTheWatchFails() throws Exception {
+        KubernetesBackend backend = backend(COLLECTION, deployment("web", "1"));
+        Mockito.when(backend.watch(anyString(), any(), any())).thenThrow(new IOException("Forbidden"));
+        Mockito.when(backend.getObjects(eq("deployment"), isNull(), any(), any()))
+                .thenReturn(ImmutableList.of(deployment("web", "1")));
+
+        try (ClusterObjectCache.Session session = cache.open(backend)) {
+            session.getObjects("deployment", null, ImmutableList.of("web"), FIELDS);
+            session.getObjects("deployment", null, ImmutableList.of("web"), FIELDS);
+        }
+
+        assertEquals(0, cache.getOpenWatches());
+        Mockito.verify(backend, Mockito.times(1)).watch(anyString(), any(), any());
+        Mockito.verify(backend, Mockito.times(2)).getObjects(eq("deployment"), isNull(), any(), any());
+    }
+
+    private KubernetesBackend backend(String collection, Object... objects) throws Exception {
+        KubernetesBackend backend = Mockito.mock(KubernetesBackend.class);
+        Mockito.when(backend.getCollectionId(anyString(), any())).thenReturn(collection);
+        Mockito.when(backend.watch(eq("deployment"), isNull(), any())).thenAnswer((invocation) -> {
+            watchListener.set(invocation.getArgument(2, KubernetesBackend.WatchListener.class));
+            return watch;
+        });
+        Mockito.when(backend.getObjectsThatMatchLabels(eq("deployment"), isNull(), eq(ImmutableMap.of()), any()))
+                .thenReturn(ImmutableList.copyOf(objects));
+        for (Object json : objects) {
+            cluster.putIfAbsent(nameOf(json), json);
+        }
+        Mockito.when(backend.getObjects(eq("deployment"), isNull(), any(), any())).thenAnswer((invocation) -> {
+            Collection<String> names = invocation.getArgument(2);
+            return names.stream()
+                    .map(cluster::get)
+                    .filter(Objects::nonNull)
+                    .collect(ImmutableList.toImmutableList());
+        });
+        return backend;
+    }
+
+    /* A deployment whose generation and resourceVersion are its version. */
+    private static Object deployment(String name, String version) {
+        return ImmutableMap.of(
+                "metadata",
+                ImmutableMap.of(
+                        "name",
+                        name,
+                        "generation",
+                        Long.parseLong(version),
+                        "resourceVersion",
+                        version,
+                        "labels",
+                        ImmutableMap.of("app", name, "version", version)));
+    }
+
+    private static Object readTestFile(String name) throws IOException {
+        String jsonString = Resources.toString(Resources.getResource(name), StandardCharsets.UTF_8);
+        return Configuration.defaultConfiguration().jsonProvider().parse(jsonString);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static String nameOf(Object json) {
+        return (String) ((Map<String, Object>) ((Map<String, Object>) json).get("metadata")).get("name");
+    }
+}
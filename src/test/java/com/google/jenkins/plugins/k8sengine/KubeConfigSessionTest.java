@@ -0,0 +1,87 @@
+/*
+ * Copyright 2019 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.jenkins.plugins.k8sengine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.api.services.container.model.Cluster;
+import com.google.api.services.container.model.MasterAuth;
+import hudson.FilePath;
+import java.util.Map;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.yaml.snakeyaml.LoaderOptions;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.constructor.SafeConstructor;
+
+/** Tests {@link KubeConfigSession}. */
+@RunWith(MockitoJUnitRunner.class)
+public class KubeConfigSessionTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testOpenWritesKubeConfigWithCurrentContext() throws Exception {
+        FilePath workspace = new FilePath(temporaryFolder.newFolder("workspace"));
+        KubeConfig kubeConfig = testKubeConfig();
+        try (KubeConfigSession session = KubeConfigSession.open(workspace, kubeConfig)) {
+            assertTrue(session.getKubeConfigFile().exists());
+            Map<String, Object> config = (Map<String, Object>) new Yaml(new SafeConstructor(new LoaderOptions()))
+                    .load(session.getKubeConfigFile().readToString());
+            assertEquals(kubeConfig.getCurrentContext(), config.get("current-context"));
+        }
+    }
+
+    @Test
+    public void testCloseDeletesTempDir() throws Exception {
+        FilePath workspace = new FilePath(temporaryFolder.newFolder("workspace"));
+        KubeConfigSession session = KubeConfigSession.open(workspace, testKubeConfig());
+        FilePath tempDir = session.getTempDir();
+        assertTrue(tempDir.exists());
+        session.close();
+        assertFalse(tempDir.exists());
+    }
+
+    @Test
+    public void testSessionsUsePrivateDirsAndSingleRoundTrips() throws Exception {
+        FilePath workspace = new FilePath(temporaryFolder.newFolder("workspace"));
+        KubeConfigSession first = KubeConfigSession.open(workspace, testKubeConfig());
+        KubeConfigSession second = KubeConfigSession.open(workspace, testKubeConfig());
+        assertEquals(1, first.getRemotingCalls().getCount());
+
+        first.close();
+        assertEquals(2, first.getRemotingCalls().getCount());
+        assertTrue(second.getKubeConfigFile().exists());
+        second.close();
+    }
+
+    private static KubeConfig testKubeConfig() {
+        Cluster cluster = Mockito.mock(Cluster.class);
+        Mockito.when(cluster.getEndpoint()).thenReturn("testEndpoint");
+        Mockito.when(cluster.getLocation()).thenReturn("us-central1-c");
+        Mockito.when(cluster.getName()).thenReturn("testCluster");
+        MasterAuth auth = Mockito.mock(MasterAuth.class);
+        Mockito.when(cluster.getMasterAuth()).thenReturn(auth);
+        Mockito.when(auth.getClusterCaCertificate()).thenReturn("testCaCert");
+        return KubeConfig.fromCluster("testProject", cluster, "testAccessToken");
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2019 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.jenkins.plugins.k8sengine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.api.services.container.model.Cluster;
+import com.google.api.services.container.model.MasterAuth;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteStreams;
+import hudson.EnvVars;
+import hudson.FilePath;
+import hudson.Functions;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+
+/** Tests {@link KubectlCallable} against a stand-in for the kubectl executable. */
+public class KubectlCallableTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File workspace;
+    private File tempDir;
+
+    @Before
+    public void setUp() throws IOException {
+        // The stand-in for kubectl is a shell script.
+        Assume.assumeFalse(Functions.isWindows());
+        workspace = temporaryFolder.newFolder("workspace");
+        tempDir = temporaryFolder.newFolder("workspace@tmp");
+    }
+
+    @Test
+    public void testKubectlRunsWithTheBuildEnvironmentInTheWorkspace() throws Exception {
+        String kubectl = kubectl(
+                "echo \"$TEST_VALUE\"", "pwd", "test -f \"$2\" && echo kubeconfig", "echo \"$3 $4\"", "cat");
+
+        EnvVars env = new EnvVars("TEST_VALUE", "build");
+        String output =
+                callable(kubectl, ImmutableList.of("apply", "-"), bytesOf("stdin"), env).invoke(workspace, null);
+
+        assertEquals(
+                String.format("build%n%s%nkubeconfig%napply -%nstdin", workspace.getCanonicalPath()),
+                output.trim());
+        assertEquals(0, tempDir.list().length);
+    }
+
+    @Test
+    public void testManifestFilesAreStreamedAsOneYamlStream() throws Exception {
+        File json = new File(workspace, "a.json");
+        File yaml = new File(workspace, "b.yaml");
+        Files.write(json.toPath(), "{\"kind\": \"ConfigMap\"}".getBytes(StandardCharsets.UTF_8));
+        Files.write(yaml.toPath(), "kind: Service\n".getBytes(StandardCharsets.UTF_8));
+
+        Manifests manifests = Manifests.fromFileList(ImmutableList.of(new FilePath(json), new FilePath(yaml)));
+
+        String output = callable(
+                        kubectl("cat"),
+                        ImmutableList.of("apply", "-f", "-"),
+                        KubectlWrapper.documentsOf(manifests.toSummaries()),
+                        new EnvVars())
+                .invoke(workspace, null);
+
+        assertEquals(manifests.toYaml(), output);
+        assertTrue(output.indexOf("ConfigMap") < output.indexOf("---\nkind: Service"));
+    }
+
+    @Test
+    public void testFailedCommandReportsItsStatusAndErrors() throws Exception {
+        String kubectl = kubectl("echo 'error: the server does not allow this method' >&2", "exit 3");
+
+        try {
+            callable(kubectl, ImmutableList.of("get", "deployment"), null, new EnvVars())
+                    .invoke(workspace, null);
+            fail("Expected the failed command to throw an IOException");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("status: 3"));
+            assertTrue(e.getMessage().contains("the server does not allow this method"));
+        }
+        assertEquals(0, tempDir.list().length);
+    }
+
+    @Test
+    public void testInterruptKillsKubectl() throws Exception {
+        String kubectl = kubectl("touch \"$0.started\"", "sleep 60");
+        File started = new File(kubectl + ".started");
+        KubectlCallable<String> callable = callable(kubectl, ImmutableList.of("get", "pods"), null, new EnvVars());
+        AtomicReference<Throwable> thrown = new AtomicReference<>();
+        Thread thread = new Thread(() -> {
+            try {
+                callable.invoke(workspace, null);
+            } catch (Throwable t) {
+                thrown.set(t);
+            }
+        });
+
+        thread.start();
+        // Interrupt the wait for kubectl rather than the setup of its kubeconfig.
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(30);
+        while (!started.exists() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(started.exists());
+        thread.interrupt();
+        thread.join(TimeUnit.SECONDS.toMillis(30));
+
+        assertFalse(thread.isAlive());
+        assertTrue(thrown.get() instanceof InterruptedException);
+        assertEquals(0, tempDir.list().length);
+    }
+
+    private KubectlCallable<String> callable(
+            String kubectl, ImmutableList<String> args, KubectlWrapper.InputSource stdin, EnvVars env) {
+        return new KubectlCallable<>(
+                kubectl,
+                null,
+                testKubeConfig(),
+                tempDir.getAbsolutePath(),
+                args,
+                stdin,
+                env,
+                (stdout) -> new String(ByteStreams.toByteArray(stdout), StandardCharsets.UTF_8),
+                null);
+    }
+
+    private static KubectlWrapper.InputSource bytesOf(String stdin) {
+        return () -> new ByteArrayInputStream(stdin.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String kubectl(String... lines) throws IOException {
+        File script = temporaryFolder.newFile("kubectl");
+        Files.write(
+                script.toPath(),
+                ("#!/bin/sh\n" + String.join("\n", lines) + "\n").getBytes(StandardCharsets.UTF_8));
+        assertTrue(script.setExecutable(true));
+        return script.getAbsolutePath();
+    }
+
+    private static KubeConfig testKubeConfig() {
+        Cluster cluster = Mockito.mock(Cluster.class);
+        Mockito.when(cluster.getEndpoint()).thenReturn("testEndpoint");
+        Mockito.when(cluster.getLocation()).thenReturn("us-central1-c");
+        Mockito.when(cluster.getName()).thenReturn("testCluster");
+        MasterAuth auth = Mockito.mock(MasterAuth.class);
+        Mockito.when(cluster.getMasterAuth()).thenReturn(auth);
+        Mockito.when(auth.getClusterCaCertificate()).thenReturn("testCaCert");
+        return KubeConfig.fromCluster("testProject", cluster, "testAccessToken");
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2019 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.jenkins.plugins.k8sengine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.api.services.container.model.Cluster;
+import com.google.api.services.container.model.MasterAuth;
+import com.google.common.collect.ImmutableList;
+import hudson.FilePath;
+import hudson.Functions;
+import hudson.Launcher;
+import hudson.Proc;
+import hudson.model.TaskListener;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+
+/** Tests {@link KubectlWrapper} launching kubectl through a decorated {@link Launcher}. */
+public class KubectlWrapperTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File workspace;
+
+    @Before
+    public void setUp() throws IOException {
+        // The stand-in for kubectl is a shell script.
+        Assume.assumeFalse(Functions.isWindows());
+        workspace = temporaryFolder.newFolder("workspace");
+    }
+
+    @Test
+    public void testDecoratedLauncherRunsKubectl() throws Exception {
+        String kubectl = kubectl("test -f \"$2\" && echo kubeconfig", "echo \"$3 $4\"");
+
+        String output = wrapper(kubectl).runKubectlCommand("get", ImmutableList.of("pods"));
+
+        assertEquals(String.format("kubeconfig%nget pods"), output.trim());
+        assertEquals(0, new File(workspace.getPath() + "@tmp").list().length);
+    }
+
+    @Test
+    public void testDecoratedLauncherReceivesStandardInput() throws Exception {
+        String kubectl = kubectl("cat > \"$0.stdin\"");
+        Map<String, Object> metadata = new LinkedHashMap<>();
+        metadata.put("name", "web");
+        Map<String, Object> source = new LinkedHashMap<>();
+        source.put("apiVersion", "v1");
+        source.put("kind", "Service");
+        source.put("metadata", metadata);
+
+        wrapper(kubectl).apply(new Manifests.ManifestObject(source, null));
+
+        String stdin = new String(Files.readAllBytes(new File(kubectl + ".stdin").toPath()), StandardCharsets.UTF_8);
+        assertTrue(stdin.contains("kind: Service"));
+    }
+
+    /* A wrapper whose launcher is decorated to run the stand-in in place of kubectl. */
+    private KubectlWrapper wrapper(String kubectl) {
+        Launcher launcher = new Launcher.DecoratedLauncher(new Launcher.LocalLauncher(TaskListener.NULL)) {
+            @Override
+            public Proc launch(ProcStarter starter) throws IOException {
+                List<String> cmds = new ArrayList<>(starter.cmds());
+                cmds.set(0, kubectl);
+                return super.launch(starter.cmds(cmds));
+            }
+        };
+        return new KubectlWrapper.Builder()
+                .launcher(launcher)
+                .kubeConfig(testKubeConfig())
+                .workspace(new FilePath(workspace))
+                .namespace("")
+                .build();
+    }
+
+    private String kubectl(String... lines) throws IOException {
+        File script = temporaryFolder.newFile("kubectl");
+        Files.write(
+                script.toPath(),
+                ("#!/bin/sh\n" + String.join("\n", lines) + "\n").getBytes(StandardCharsets.UTF_8));
+        assertTrue(script.setExecutable(true));
+        return script.getAbsolutePath();
+    }
+
+    private static KubeConfig testKubeConfig() {
+        Cluster cluster = Mockito.mock(Cluster.class);
+        Mockito.when(cluster.getEndpoint()).thenReturn("testEndpoint");
+        Mockito.when(cluster.getLocation()).thenReturn("us-central1-c");
+        Mockito.when(cluster.getName()).thenReturn("testCluster");
+        MasterAuth auth = Mockito.mock(MasterAuth.class);
+        Mockito.when(cluster.getMasterAuth()).thenReturn(auth);
+        Mockito.when(auth.getClusterCaCertificate()).thenReturn("testCaCert");
+        return KubeConfig.fromCluster("testProject", cluster, "testAccessToken");
+    }
+}
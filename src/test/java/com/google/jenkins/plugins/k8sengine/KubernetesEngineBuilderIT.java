@@ -97,7 +97,7 @@ public class KubernetesEngineBuilderIT {
             KubernetesEngineBuilder gkeBuilder = getDefaultGKEBuilder();
             testJenkinsProject.getBuildersList().add(gkeBuilder);
             copyTestFileToDir(getClass(), testJenkinsProject.getCustomWorkspace(), TEST_DEPLOYMENT_MANIFEST);
-            gkeBuilder.pushAfterBuildStep((kubeConfig, run, workspace, launcher, listener) -> {
+            gkeBuilder.pushAfterBuildStep((kubeConfig, manifests, run, workspace, launcher, listener) -> {
                 KubectlWrapper kubectl = new KubectlWrapper.Builder()
                         .workspace(workspace)
                         .launcher(launcher)
@@ -252,7 +252,7 @@ public class KubernetesEngineBuilderIT {
         gkeBuilder.setManifestPattern(TEST_DEPLOYMENT_MANIFEST);
         gkeBuilder.setVerifyDeployments(true);
         gkeBuilder.setVerifyTimeoutInMinutes(1);
-        gkeBuilder.pushAfterBuildStep((kubeConfig, run, workspace, launcher, listener) -> {
+        gkeBuilder.pushAfterBuildStep((kubeConfig, manifests, run, workspace, launcher, listener) -> {
             KubectlWrapper kubectl = new KubectlWrapper.Builder()
                     .workspace(workspace)
                     .kubeConfig(kubeConfig)
@@ -260,7 +260,6 @@ public class KubernetesEngineBuilderIT {
                     .namespace("")
                     .build();
             Set<String> objectKinds = new HashSet<>();
-            Manifests manifests = Manifests.fromFile(workspace.child(gkeBuilder.getManifestPattern()));
             manifests.getObjectManifests().stream().forEach(mo -> objectKinds.add(mo.getKind()));
             for (String kind : objectKinds) {
                 kubectl.runKubectlCommand(
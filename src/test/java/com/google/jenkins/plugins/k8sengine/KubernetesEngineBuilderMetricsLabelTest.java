@@ -14,19 +14,30 @@
 
 package com.google.jenkins.plugins.k8sengine;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.anyString;
 
+import com.google.common.io.ByteStreams;
+import hudson.AbortException;
 import hudson.FilePath;
 import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.mockito.Mockito;
 import org.mockito.junit.MockitoJUnitRunner;
@@ -35,6 +46,9 @@ import org.yaml.snakeyaml.Yaml;
 /** Tests the Kubernetes metrics label behaviors within {@link KubernetesEngineBuilder}. */
 @RunWith(MockitoJUnitRunner.class)
 public class KubernetesEngineBuilderMetricsLabelTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     @Test
     @SuppressWarnings("unchecked")
     public void testAddMetricsLabelProperlyAddsLabel() throws IOException, InterruptedException {
@@ -231,4 +245,140 @@ public class KubernetesEngineBuilderMetricsLabelTest {
                 .write(anyString(), anyString());
         KubernetesEngineBuilder.addMetricsLabel(manifestFile);
     }
+
+    @Test
+    public void testLoadManifestsLabelsFileAndReturnsHeaders() throws Exception {
+        File file = temporaryFolder.newFile("manifest.yaml");
+        Files.write(
+                file.toPath(),
+                String.join(
+                                "\n",
+                                "apiVersion: apps/v1",
+                                "kind: Deployment",
+                                "metadata:",
+                                "  name: nginx-deployment",
+                                "  namespace: web",
+                                "spec:",
+                                "  replicas: 1")
+                        .getBytes(StandardCharsets.UTF_8));
+        RemotingCallCounter remotingCalls = new RemotingCallCounter();
+
+        List<Manifests.ManifestObject> objects = KubernetesEngineBuilder.loadManifests(
+                        new FilePath(temporaryFolder.getRoot()),
+                        "manifest.yaml",
+                        null,
+                        null,
+                        false,
+                        null,
+                        false,
+                        false,
+                        remotingCalls)
+                .getObjectManifests();
+
+        assertEquals(1, objects.size());
+        assertEquals("Deployment", objects.get(0).getKind());
+        assertEquals("nginx-deployment", objects.get(0).getName().get());
+        assertEquals("web", objects.get(0).getNamespace().get());
+        assertFalse(objects.get(0).isModified());
+        assertNotNull(objects.get(0).getSummary());
+        assertEquals(1, remotingCalls.getCount());
+        assertTrue(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8)
+                .contains(KubernetesEngineBuilder.METRICS_LABEL_VALUE));
+    }
+
+    @Test
+    public void testLoadManifestsWithSourcesLeavesFileUntouched() throws Exception {
+        File file = temporaryFolder.newFile("manifest.yaml");
+        byte[] content = String.join(
+                        "\n", "apiVersion: apps/v1", "kind: Deployment", "metadata:", "  name: nginx-deployment")
+                .getBytes(StandardCharsets.UTF_8);
+        Files.write(file.toPath(), content);
+
+        Manifests manifests = KubernetesEngineBuilder.loadManifests(
+                new FilePath(temporaryFolder.getRoot()),
+                "manifest.yaml",
+                null,
+                null,
+                false,
+                null,
+                true,
+                false,
+                new RemotingCallCounter());
+
+        assertArrayEquals(content, Files.readAllBytes(file.toPath()));
+        Map<String, String> labels = manifests.getObjectManifests().get(0).getOrCreateLabels();
+        assertEquals(
+                KubernetesEngineBuilder.METRICS_LABEL_VALUE, labels.get(KubernetesEngineBuilder.METRICS_LABEL_KEY));
+        assertTrue(manifests.toYaml().contains(KubernetesEngineBuilder.METRICS_LABEL_VALUE));
+    }
+
+    @Test
+    public void testLoadManifestsLabeledWhenAppliedAreLabeledAndStreamedOnTheAgent() throws Exception {
+        File file = temporaryFolder.newFile("manifest.yaml");
+        byte[] content = String.join(
+                        "\n",
+                        "apiVersion: v1",
+                        "kind: ConfigMap",
+                        "metadata: {name: web-config}",
+                        "---",
+                        "apiVersion: apps/v1",
+                        "kind: Deployment",
+                        "metadata: {name: nginx-deployment}")
+                .getBytes(StandardCharsets.UTF_8);
+        Files.write(file.toPath(), content);
+
+        Manifests manifests = KubernetesEngineBuilder.loadManifests(
+                new FilePath(temporaryFolder.getRoot()),
+                "manifest.yaml",
+                null,
+                null,
+                false,
+                null,
+                false,
+                true,
+                new RemotingCallCounter());
+
+        assertArrayEquals(content, Files.readAllBytes(file.toPath()));
+        assertTrue(manifests.isSummarized());
+        assertTrue(manifests.isLabeledWhenApplied());
+        Manifests.ManifestObject deployment = manifests.getObjectManifests().get(1);
+        assertEquals(1, deployment.getSummary().getIndex());
+
+        String documents;
+        try (InputStream stream = KubectlWrapper.documentsOf(manifests.subset(Arrays.asList(deployment)))
+                .open()) {
+            documents = new String(ByteStreams.toByteArray(stream), StandardCharsets.UTF_8);
+        }
+        assertTrue(documents.contains("nginx-deployment"));
+        assertTrue(documents.contains(KubernetesEngineBuilder.METRICS_LABEL_VALUE));
+        assertFalse(documents.contains("web-config"));
+        assertArrayEquals(content, Files.readAllBytes(file.toPath()));
+    }
+
+    @Test
+    public void testLoadManifestsValidationFailsBeforeChangingFiles() throws Exception {
+        File file = temporaryFolder.newFile("manifest.yaml");
+        byte[] content = String.join(
+                        "\n", "apiVersion: apps/v1", "kind: Deployment", "metadata: {name: web}", "spec: {replica: 1}")
+                .getBytes(StandardCharsets.UTF_8);
+        Files.write(file.toPath(), content);
+
+        try {
+            KubernetesEngineBuilder.loadManifests(
+                    new FilePath(temporaryFolder.getRoot()),
+                    "manifest.yaml",
+                    null,
+                    null,
+                    true,
+                    null,
+                    false,
+                    false,
+                    new RemotingCallCounter());
+            fail("Invalid manifests were loaded");
+        } catch (AbortException e) {
+            assertTrue(e.getMessage().contains("Deployment.spec: unknown field \"replica\""));
+            assertTrue(e.getMessage().contains("missing required field \"selector\""));
+        }
+        assertArrayEquals(content, Files.readAllBytes(file.toPath()));
+    }
 }
@@ -246,6 +246,22 @@ public class KubernetesEngineBuilderTest {
         assertEquals(Messages.KubernetesEngineBuilder_VerifyTimeoutInMinutesRequired(), result.getMessage());
     }
 
+    @Test
+    public void testDoCheckFullApplyIntervalInHoursNegative() {
+        DescriptorImpl descriptor = Mockito.spy(DescriptorImpl.class);
+        FormValidation result = descriptor.doCheckFullApplyIntervalInHours("-1");
+        assertNotNull(result);
+        assertEquals(Messages.KubernetesEngineBuilder_FullApplyIntervalInHoursFormatError(), result.getMessage());
+    }
+
+    @Test
+    public void testDoCheckFullApplyIntervalInHoursZero() {
+        DescriptorImpl descriptor = Mockito.spy(DescriptorImpl.class);
+        FormValidation result = descriptor.doCheckFullApplyIntervalInHours("0");
+        assertNotNull(result);
+        assertEquals(FormValidation.ok().getMessage(), result.getMessage());
+    }
+
     private DescriptorImpl setUpProjectDescriptor(
             List<String> initialProjects,
             String defaultProjectId,
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2019 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.jenkins.plugins.k8sengine;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Resources;
+import com.jayway.jsonpath.Configuration;
+import hudson.AbortException;
+import hudson.FilePath;
+import hudson.model.TaskListener;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+
+/** Tests {@link KubernetesEngineVerifyStep}. */
+public class KubernetesEngineVerifyStepTest {
+    private static final String VERIFIABLE_DEPLOYMENT_OUTPUT = "verifiableDeploymentOutput.json";
+    private static final long CALLBACK_TIMEOUT_MILLIS = 10000;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private StepContext context;
+    private KubernetesBackend backend;
+    private IOException connectError;
+
+    @Before
+    public void setUp() throws Exception {
+        File manifest = temporaryFolder.newFile("manifest.yaml");
+        Files.write(
+                manifest.toPath(),
+                String.join("\n", "apiVersion: apps/v1", "kind: Deployment", "metadata:", "  name: nginx-deployment")
+                        .getBytes(StandardCharsets.UTF_8));
+
+        TaskListener listener = Mockito.mock(TaskListener.class);
+        Mockito.when(listener.getLogger())
+                .thenReturn(new PrintStream(new ByteArrayOutputStream(), true, StandardCharsets.UTF_8.name()));
+        context = Mockito.mock(StepContext.class);
+        Mockito.when(context.get(FilePath.class)).thenReturn(new FilePath(temporaryFolder.getRoot()));
+        Mockito.when(context.get(TaskListener.class)).thenReturn(listener);
+        backend = Mockito.mock(KubernetesBackend.class);
+    }
+
+    @Test
+    public void testStepFinishesFromTheVerificationCallback() throws Exception {
+        Mockito.when(backend.getObjects(eq("deployment"), any(), any(), any()))
+                .thenReturn(ImmutableList.of(readTestFile(VERIFIABLE_DEPLOYMENT_OUTPUT)));
+
+        assertFalse(execution(step()).start());
+
+        Mockito.verify(context, Mockito.timeout(CALLBACK_TIMEOUT_MILLIS)).onSuccess(null);
+        Mockito.verify(context, Mockito.never()).onFailure(any());
+    }
+
+    @Test
+    public void testStepFailsWhenTheClusterCantBeConnectedTo() throws Exception {
+        connectError = new IOException("Unauthorized");
+
+        assertFalse(execution(step()).start());
+
+        Mockito.verify(context, Mockito.timeout(CALLBACK_TIMEOUT_MILLIS)).onFailure(connectError);
+        Mockito.verify(context, Mockito.never()).onSuccess(any());
+        Mockito.verify(backend, Mockito.never()).getObjects(anyString(), any(), any(), any());
+    }
+
+    @Test(expected = AbortException.class)
+    public void testManifestPatternIsRequired() throws Exception {
+        KubernetesEngineVerifyStep step = step();
+        step.setManifestPattern("");
+
+        execution(step).start();
+    }
+
+    @Test
+    public void testManifestsContentIsVerifiedWithoutAWorkspace() throws Exception {
+        Mockito.when(context.get(FilePath.class)).thenReturn(null);
+        Mockito.when(backend.getObjects(eq("deployment"), any(), any(), any()))
+                .thenReturn(ImmutableList.of(readTestFile(VERIFIABLE_DEPLOYMENT_OUTPUT)));
+        KubernetesEngineVerifyStep step = step();
+        step.setManifestPattern(null);
+        step.setManifests(
+                String.join("\n", "apiVersion: apps/v1", "kind: Deployment", "metadata:", "  name: nginx-deployment"));
+
+        assertFalse(execution(step).start());
+
+        Mockito.verify(context, Mockito.timeout(CALLBACK_TIMEOUT_MILLIS)).onSuccess(null);
+        Mockito.verify(context, Mockito.never()).get(FilePath.class);
+    }
+
+    @Test(expected = AbortException.class)
+    public void testManifestPatternRequiresAWorkspace() throws Exception {
+        Mockito.when(context.get(FilePath.class)).thenReturn(null);
+
+        execution(step()).start();
+    }
+
+    @Test
+    public void testStepDoesNotRequireANode() {
+        assertFalse(new KubernetesEngineVerifyStep.DescriptorImpl()
+                .getRequiredContext()
+                .contains(FilePath.class));
+    }
+
+    @Test
+    public void testVerifyTimeoutMustBePositive() throws Exception {
+        KubernetesEngineVerifyStep step = step();
+        step.setVerifyTimeoutInMinutes(0);
+
+        try {
+            execution(step).start();
+            fail("Expected the step without a timeout to be rejected");
+        } catch (AbortException e) {
+            assertTrue(e.getMessage().contains("verifyTimeoutInMinutes"));
+        }
+        Mockito.verify(backend, Mockito.never()).getObjects(anyString(), any(), any(), any());
+    }
+
+    @Test
+    public void testMissingParametersAreNamed() throws Exception {
+        KubernetesEngineVerifyStep step = step();
+        step.setCredentialsId(null);
+
+        try {
+            execution(step).start();
+            fail("Expected the step without credentials to be rejected");
+        } catch (AbortException e) {
+            assertTrue(e.getMessage().contains("credentialsId"));
+        }
+        Mockito.verify(context, Mockito.never()).onFailure(any());
+    }
+
+    @Test
+    public void testManifestFilesAreLeftUntouched() throws Exception {
+        File manifest = new File(temporaryFolder.getRoot(), "manifest.yaml");
+        byte[] content = Files.readAllBytes(manifest.toPath());
+        Mockito.when(backend.getObjects(eq("deployment"), any(), any(), any()))
+                .thenReturn(ImmutableList.of(readTestFile(VERIFIABLE_DEPLOYMENT_OUTPUT)));
+
+        execution(step()).start();
+
+        Mockito.verify(context, Mockito.timeout(CALLBACK_TIMEOUT_MILLIS)).onSuccess(null);
+        assertArrayEquals(content, Files.readAllBytes(manifest.toPath()));
+    }
+
+    @Test
+    public void testStopFailsTheStep() throws Exception {
+        KubernetesEngineVerifyStep.Execution execution = execution(step());
+        Exception cause = new InterruptedException();
+
+        execution.stop(cause);
+
+        Mockito.verify(context).onFailure(cause);
+    }
+
+    private static KubernetesEngineVerifyStep step() {
+        KubernetesEngineVerifyStep step = new KubernetesEngineVerifyStep();
+        step.setProjectId("test-project");
+        step.setLocation("us-central1-c");
+        step.setClusterName("test-cluster");
+        step.setManifestPattern("manifest.yaml");
+        step.setCredentialsId("test-credentials");
+        step.setVerifyTimeoutInMinutes(1);
+        return step;
+    }
+
+    private KubernetesEngineVerifyStep.Execution execution(KubernetesEngineVerifyStep step) {
+        return new KubernetesEngineVerifyStep.Execution(step, context) {
+            @Override
+            KubernetesBackend connect() throws IOException {
+                if (connectError != null) {
+                    throw connectError;
+                }
+                return backend;
+            }
+        };
+    }
+
+    private static Object readTestFile(String name) throws IOException {
+        String jsonString = Resources.toString(Resources.getResource(name), StandardCharsets.UTF_8);
+        return Configuration.defaultConfiguration().jsonProvider().parse(jsonString);
+    }
+}
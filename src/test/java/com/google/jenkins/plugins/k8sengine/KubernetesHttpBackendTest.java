@@ -0,0 +1,313 @@
+/*
+ * Copyright 2019 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.jenkins.plugins.k8sengine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.Resources;
+import com.jayway.jsonpath.JsonPath;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Tests {@link KubernetesHttpBackend} against a local stand-in for the Kubernetes API server. */
+public class KubernetesHttpBackendTest {
+    private static final String TEST_TOKEN = "test-token";
+    private static final String VERIFIABLE_DEPLOYMENT_OUTPUT = "verifiableDeploymentOutput.json";
+
+    private static final String CORE_VERSIONS = "{\"kind\": \"APIVersions\", \"versions\": [\"v1\"]}";
+    private static final String GROUPS = "{\"kind\": \"APIGroupList\", \"groups\": ["
+            + "{\"name\": \"apps\", \"preferredVersion\": {\"groupVersion\": \"apps/v1\"}},"
+            + "{\"name\": \"example.com\", \"preferredVersion\": {\"groupVersion\": \"example.com/v1\"}}]}";
+    private static final String CORE_RESOURCES = resourceList(
+            "v1",
+            resource("namespaces", "Namespace", false),
+            resource("pods", "Pod", true),
+            resource("pods/status", "Pod", true),
+            resource("services", "Service", true));
+    private static final String APPS_RESOURCES =
+            resourceList("apps/v1", resource("deployments", "Deployment", true));
+    private static final String EXAMPLE_RESOURCES = resourceList(
+            "example.com/v1", resource("mice", "Mouse", true), resource("clusterwidgets", "ClusterWidget", false));
+
+    private HttpServer server;
+    private List<RecordedRequest> requests;
+    private Map<String, String> discovery;
+    private List<String> discoveryRequests;
+    private int responseStatus;
+    private String responseBody;
+
+    @Before
+    public void startServer() throws IOException {
+        requests = Collections.synchronizedList(new ArrayList<>());
+        discoveryRequests = Collections.synchronizedList(new ArrayList<>());
+        discovery = new ConcurrentHashMap<>();
+        discovery.put("/api", CORE_VERSIONS);
+        discovery.put("/apis", GROUPS);
+        discovery.put("/api/v1", CORE_RESOURCES);
+        discovery.put("/apis/apps/v1", APPS_RESOURCES);
+        discovery.put("/apis/example.com/v1", EXAMPLE_RESOURCES);
+        responseStatus = 200;
+        responseBody = "{}";
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testGetObjectReadsNamespacedObject() throws Exception {
+        responseBody = Resources.toString(Resources.getResource(VERIFIABLE_DEPLOYMENT_OUTPUT), StandardCharsets.UTF_8);
+        Object json = newBackend("test-ns").getObject("deployment", "nginx-deployment");
+
+        assertEquals("nginx-deployment", JsonPath.read(json, "metadata.name"));
+        assertEquals(1, requests.size());
+        RecordedRequest request = requests.get(0);
+        assertEquals("GET", request.method);
+        assertEquals("/apis/apps/v1/namespaces/test-ns/deployments/nginx-deployment", request.path);
+        assertEquals("Bearer " + TEST_TOKEN, request.authorization);
+    }
+
+    @Test
+    public void testApplyUsesServerSideApply() throws Exception {
+        Map<String, Object> metadata = new LinkedHashMap<>();
+        metadata.put("name", "nginx-service");
+        Map<String, Object> source = new LinkedHashMap<>();
+        source.put("apiVersion", "v1");
+        source.put("kind", "Service");
+        source.put("metadata", metadata);
+
+        newBackend("").apply(new Manifests.ManifestObject(source, null));
+
+        assertEquals(1, requests.size());
+        RecordedRequest request = requests.get(0);
+        assertEquals("PATCH", request.method);
+        assertEquals("/api/v1/namespaces/default/services/nginx-service", request.path);
+        assertTrue(request.query.contains("fieldManager=" + KubernetesHttpBackend.FIELD_MANAGER));
+        assertTrue(request.query.contains("force=true"));
+        assertEquals(KubernetesHttpBackend.APPLY_PATCH_CONTENT_TYPE, request.contentType);
+        assertTrue(request.body.contains("name: nginx-service"));
+    }
+
+    @Test
+    public void testApplyUsesClusterScopedPath() throws Exception {
+        Map<String, Object> metadata = new LinkedHashMap<>();
+        metadata.put("name", "test-ns");
+        Map<String, Object> source = new LinkedHashMap<>();
+        source.put("apiVersion", "v1");
+        source.put("kind", "Namespace");
+        source.put("metadata", metadata);
+
+        newBackend("other-ns").apply(new Manifests.ManifestObject(source, null));
+
+        assertEquals("/api/v1/namespaces/test-ns", requests.get(0).path);
+    }
+
+    @Test
+    public void testApplyRejectsObjectsWithoutAName() throws Exception {
+        Map<String, Object> source = new LinkedHashMap<>();
+        source.put("apiVersion", "v1");
+        source.put("kind", "Service");
+        source.put("metadata", new LinkedHashMap<>());
+
+        try {
+            newBackend("").apply(new Manifests.ManifestObject(source, null));
+            fail("Expected the object without a name to be rejected");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("v1/Service"));
+        }
+
+        assertTrue(requests.isEmpty());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testGetObjectsSelectsASingleObjectByName() throws Exception {
+        responseBody = String.format(
+                "{\"kind\": \"DeploymentList\", \"items\": [%s]}",
+                Resources.toString(Resources.getResource(VERIFIABLE_DEPLOYMENT_OUTPUT), StandardCharsets.UTF_8));
+        ObjectFields fields = new ObjectFields.Builder().field("spec", "replicas").build();
+
+        List<Object> objects =
+                newBackend("test-ns").getObjects("deployment", null, Collections.singleton("nginx-deployment"), fields);
+
+        assertEquals(1, objects.size());
+        assertEquals(6, (int) JsonPath.read(objects.get(0), "spec.replicas"));
+        assertFalse(((Map<String, Object>) objects.get(0)).containsKey("status"));
+        assertEquals("/apis/apps/v1/namespaces/test-ns/deployments", requests.get(0).path);
+        assertEquals("fieldSelector=metadata.name=nginx-deployment", requests.get(0).query);
+    }
+
+    @Test
+    public void testCollectionIdNamesTheServerNamespaceResourceAndCredentials() throws Exception {
+        KubernetesHttpBackend backend = newBackend("test-ns");
+        String server = String.format("http://127.0.0.1:%d", this.server.getAddress().getPort());
+        String principal = " as token sha256:" + Hashing.sha256().hashString(TEST_TOKEN, StandardCharsets.UTF_8);
+
+        assertEquals(
+                server + "/apis/apps/v1/namespaces/test-ns/deployments" + principal,
+                backend.getCollectionId("Deployment", null));
+        assertEquals(server + "/api/v1/namespaces/other/pods" + principal, backend.getCollectionId("Pod", "other"));
+        assertFalse(backend.getCollectionId("Pod", null).contains(TEST_TOKEN));
+        assertTrue(requests.isEmpty());
+    }
+
+    @Test
+    public void testCollectionIdDiffersBetweenCredentials() throws Exception {
+        KubernetesHttpBackend other = new KubernetesHttpBackend.Builder()
+                .server(String.format("http://127.0.0.1:%d", server.getAddress().getPort()))
+                .token("other-token")
+                .namespace("test-ns")
+                .build();
+
+        assertNotEquals(
+                newBackend("test-ns").getCollectionId("Deployment", null), other.getCollectionId("Deployment", null));
+    }
+
+    @Test(expected = IOException.class)
+    public void testErrorStatusThrowsIOException() throws Exception {
+        responseStatus = 404;
+        responseBody = "{\"kind\":\"Status\",\"reason\":\"NotFound\"}";
+        newBackend("").getObject("deployment", "missing");
+    }
+
+    @Test
+    public void testApplyUsesDiscoveredResourceNames() throws Exception {
+        KubernetesHttpBackend backend = newBackend("test-ns");
+
+        backend.apply(new Manifests.ManifestObject(object("example.com/v1", "Mouse", "jerry"), null));
+        backend.apply(new Manifests.ManifestObject(object("example.com/v1", "ClusterWidget", "gadget"), null));
+
+        assertEquals("/apis/example.com/v1/namespaces/test-ns/mice/jerry", requests.get(0).path);
+        assertEquals("/apis/example.com/v1/clusterwidgets/gadget", requests.get(1).path);
+        assertEquals(Collections.singletonList("/apis/example.com/v1"), discoveryRequests);
+    }
+
+    @Test
+    public void testApplyDiscoversGroupVersionAgainForNewKinds() throws Exception {
+        KubernetesHttpBackend backend = newBackend("test-ns");
+        backend.apply(new Manifests.ManifestObject(object("example.com/v1", "Mouse", "jerry"), null));
+        discovery.put(
+                "/apis/example.com/v1",
+                resourceList("example.com/v1", resource("geese", "Goose", true), resource("mice", "Mouse", true)));
+
+        backend.apply(new Manifests.ManifestObject(object("example.com/v1", "Goose", "honk"), null));
+
+        assertEquals("/apis/example.com/v1/namespaces/test-ns/geese/honk", requests.get(1).path);
+        assertEquals(2, discoveryRequests.size());
+    }
+
+    @Test
+    public void testApplyRejectsKindsTheServerDoesNotServe() throws Exception {
+        try {
+            newBackend("").apply(new Manifests.ManifestObject(object("other.com/v1", "Widget", "w"), null));
+            fail("Expected the unknown kind to be rejected");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("no matches for kind \"Widget\""));
+        }
+
+        assertTrue(requests.isEmpty());
+    }
+
+    private static Map<String, Object> object(String apiVersion, String kind, String name) {
+        Map<String, Object> metadata = new LinkedHashMap<>();
+        metadata.put("name", name);
+        Map<String, Object> source = new LinkedHashMap<>();
+        source.put("apiVersion", apiVersion);
+        source.put("kind", kind);
+        source.put("metadata", metadata);
+        return source;
+    }
+
+    private static String resource(String name, String kind, boolean namespaced) {
+        return String.format("{\"name\": \"%s\", \"kind\": \"%s\", \"namespaced\": %s}", name, kind, namespaced);
+    }
+
+    private static String resourceList(String groupVersion, String... resources) {
+        return String.format(
+                "{\"kind\": \"APIResourceList\", \"groupVersion\": \"%s\", \"resources\": [%s]}",
+                groupVersion, String.join(",", resources));
+    }
+
+    private KubernetesHttpBackend newBackend(String namespace) throws IOException {
+        return new KubernetesHttpBackend.Builder()
+                .server(String.format("http://127.0.0.1:%d", server.getAddress().getPort()))
+                .token(TEST_TOKEN)
+                .namespace(namespace)
+                .build();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String discoveryResponse = discovery.get(exchange.getRequestURI().getPath());
+        if (discoveryResponse != null) {
+            discoveryRequests.add(exchange.getRequestURI().getPath());
+            respond(exchange, 200, discoveryResponse);
+            return;
+        }
+        if (exchange.getRequestURI().getPath().matches("/apis?(/[^/]+){0,2}")) {
+            respond(exchange, 404, "{\"kind\":\"Status\",\"reason\":\"NotFound\"}");
+            return;
+        }
+
+        RecordedRequest request = new RecordedRequest();
+        request.method = exchange.getRequestMethod();
+        request.path = exchange.getRequestURI().getPath();
+        request.query = exchange.getRequestURI().getQuery() == null ? "" : exchange.getRequestURI().getQuery();
+        request.authorization = exchange.getRequestHeaders().getFirst("Authorization");
+        request.contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        request.body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        requests.add(request);
+        respond(exchange, responseStatus, responseBody);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] response = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, response.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(response);
+        }
+    }
+
+    private static class RecordedRequest {
+        private String method;
+        private String path;
+        private String query;
+        private String authorization;
+        private String contentType;
+        private String body;
+    }
+}
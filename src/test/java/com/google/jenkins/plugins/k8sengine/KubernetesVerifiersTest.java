@@ -16,12 +16,19 @@ package com.google.jenkins.plugins.k8sengine;
 
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.io.Resources;
 import com.jayway.jsonpath.Configuration;
 import com.jayway.jsonpath.JsonPath;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import org.junit.Test;
 import org.mockito.Mockito;
@@ -73,6 +80,182 @@ public class KubernetesVerifiersTest {
         assertTrue(verificationLog.contains(shouldBeInLog));
     }
 
+    @Test
+    public void testMissingDeploymentNotVerified() {
+        Manifests.ManifestObject missingDeployment = Mockito.mock(Manifests.ManifestObject.class);
+        Mockito.when(missingDeployment.describe()).thenReturn("apps/v1/deployment: nginx-deployment-missing");
+        KubernetesVerifiers.VerificationResult result = KubernetesVerifiers.verify(missingDeployment, null);
+        assertFalse(result.isVerified());
+        assertTrue(result.toString()
+                .contains(Messages.KubernetesEngineBuilder_VerifyingObjectNotFound(missingDeployment.describe())));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testDeploymentPastItsProgressDeadlineFails() throws Exception {
+        Object deploymentOutput = readTestFile(UNVERIFIABLE_DEPLOYMENT_OUTPUT);
+        List<Map<String, Object>> conditions = JsonPath.read(deploymentOutput, "status.conditions");
+        Map<String, Object> progressing = conditions.get(1);
+        progressing.put("status", "False");
+        progressing.put("reason", "ProgressDeadlineExceeded");
+        progressing.put("message", "ReplicaSet \"nginx-deployment-bad-6bbd757f7d\" has timed out progressing.");
+
+        KubernetesVerifiers.VerificationResult result =
+                KubernetesVerifiers.verify(deployment("nginx-deployment-bad"), deploymentOutput);
+
+        assertFalse(result.isVerified());
+        assertTrue(result.isFailed());
+        assertTrue(result.toString().contains("Condition Progressing is ProgressDeadlineExceeded"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testDeploymentExceedingQuotaDuringASurgeRecovers() throws Exception {
+        Object surging = readTestFile(UNVERIFIABLE_DEPLOYMENT_OUTPUT);
+        Map<String, Object> replicaFailure = new LinkedHashMap<>();
+        replicaFailure.put("type", "ReplicaFailure");
+        replicaFailure.put("status", "True");
+        replicaFailure.put("reason", "FailedCreate");
+        replicaFailure.put("message", "pods \"nginx-deployment-bad-6bbd757f7d-x7k2p\" is forbidden: exceeded quota");
+        ((List<Map<String, Object>>) JsonPath.read(surging, "status.conditions")).add(replicaFailure);
+
+        KubernetesVerifiers.VerificationResult result =
+                KubernetesVerifiers.verify(deployment("nginx-deployment-bad"), surging);
+
+        assertFalse(result.isVerified());
+        assertFalse(result.isFailed());
+        assertTrue(result.toString().contains("Condition ReplicaFailure is FailedCreate"));
+
+        // The old pods terminate, freeing quota for the controller to create the new ones.
+        Object recovered = readTestFile(UNVERIFIABLE_DEPLOYMENT_OUTPUT);
+        ((Map<String, Object>) JsonPath.read(recovered, "status")).put("availableReplicas", 3);
+
+        assertTrue(KubernetesVerifiers.verify(deployment("nginx-deployment-bad"), recovered).isVerified());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testContainerWaitingForItsConfigIsOnlyReported() throws Exception {
+        Object pod = stuckPod();
+        Map<String, Object> waiting = JsonPath.read(pod, "status.containerStatuses[0].state.waiting");
+        waiting.put("reason", "CreateContainerConfigError");
+        waiting.put("message", "configmap \"nginx-config\" not found");
+        KubernetesBackend kubectl = Mockito.mock(KubernetesBackend.class);
+        Mockito.when(kubectl.getObjectsThatMatchLabels(eq("replicaset"), eq("default"), any(), any()))
+                .thenReturn(ImmutableList.of(stuckReplicaSet()));
+        Mockito.when(kubectl.getObjectsThatMatchLabels(eq("pod"), eq("default"), any(), any()))
+                .thenReturn(ImmutableList.of(pod));
+
+        KubernetesVerifiers.VerificationResult result = KubernetesVerifiers.verify(
+                kubectl, deployment("nginx-deployment-bad"), readTestFile(UNVERIFIABLE_DEPLOYMENT_OUTPUT));
+
+        assertFalse(result.isVerified());
+        assertFalse(result.isFailed());
+        assertTrue(result.toString().contains("AvailableReplicas = 0, MinimumReplicas = 3"));
+        assertTrue(result.toString().contains("is waiting with CreateContainerConfigError"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testDeploymentNotObservedYetIsNotVerified() throws Exception {
+        Object deploymentOutput = readTestFile(VERIFIABLE_DEPLOYMENT_OUTPUT);
+        ((Map<String, Object>) JsonPath.read(deploymentOutput, "metadata")).put("generation", 2);
+
+        KubernetesVerifiers.VerificationResult result =
+                KubernetesVerifiers.verify(deployment("nginx-deployment"), deploymentOutput);
+
+        assertFalse(result.isVerified());
+        assertFalse(result.isFailed());
+    }
+
+    @Test
+    public void testDeploymentWithStuckPodsFails() throws Exception {
+        KubernetesBackend kubectl = Mockito.mock(KubernetesBackend.class);
+        Mockito.when(kubectl.getObjectsThatMatchLabels(eq("replicaset"), eq("default"), any(), any()))
+                .thenReturn(ImmutableList.of(stuckReplicaSet()));
+        Mockito.when(kubectl.getObjectsThatMatchLabels(
+                        eq("pod"),
+                        eq("default"),
+                        eq(ImmutableMap.of("app", "nginx", "pod-template-hash", "6bbd757f7d")),
+                        any()))
+                .thenReturn(ImmutableList.of(stuckPod()));
+
+        KubernetesVerifiers.VerificationResult result = KubernetesVerifiers.verify(
+                kubectl, deployment("nginx-deployment-bad"), readTestFile(UNVERIFIABLE_DEPLOYMENT_OUTPUT));
+
+        assertTrue(result.isFailed());
+        assertTrue(result.toString()
+                .contains("Container nginx of pod nginx-deployment-bad-6bbd757f7d-x7k2p is waiting with "
+                        + "ImagePullBackOff"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testDeploymentsOfANamespaceShareTheirLists() throws Exception {
+        KubernetesBackend kubectl = Mockito.mock(KubernetesBackend.class);
+        Mockito.when(kubectl.getObjectsThatMatchLabels(eq("replicaset"), eq("default"), any(), any()))
+                .thenReturn(ImmutableList.of(stuckReplicaSet()));
+        Mockito.when(kubectl.getObjectsThatMatchLabels(eq("pod"), eq("default"), any(), any()))
+                .thenReturn(ImmutableList.of(stuckPod()));
+        Object other = readTestFile(UNVERIFIABLE_DEPLOYMENT_OUTPUT);
+        ((Map<String, Object>) JsonPath.read(other, "metadata")).put("name", "nginx-deployment-other");
+        Manifests.ManifestObject bad = deployment("nginx-deployment-bad");
+        Manifests.ManifestObject pending = deployment("nginx-deployment-other");
+
+        Map<Manifests.ManifestObject, KubernetesVerifiers.VerificationResult> failures =
+                KubernetesVerifiers.findFailures(
+                        kubectl,
+                        ImmutableMap.of(bad, readTestFile(UNVERIFIABLE_DEPLOYMENT_OUTPUT), pending, other));
+
+        assertTrue(failures.get(bad).isFailed());
+        assertFalse(failures.containsKey(pending));
+        Mockito.verify(kubectl, Mockito.times(1)).getObjectsThatMatchLabels(eq("replicaset"), any(), any(), any());
+        Mockito.verify(kubectl, Mockito.times(1)).getObjectsThatMatchLabels(eq("pod"), any(), any(), any());
+    }
+
+    @Test
+    public void testDeploymentWithPendingPodsIsStillVerified() throws Exception {
+        KubernetesBackend kubectl = Mockito.mock(KubernetesBackend.class);
+        Mockito.when(kubectl.getObjectsThatMatchLabels(any(), any(), any(), any())).thenReturn(ImmutableList.of());
+
+        KubernetesVerifiers.VerificationResult result = KubernetesVerifiers.verify(
+                kubectl, deployment("nginx-deployment-bad"), readTestFile(UNVERIFIABLE_DEPLOYMENT_OUTPUT));
+
+        assertFalse(result.isVerified());
+        assertFalse(result.isFailed());
+    }
+
+    static Manifests.ManifestObject deployment(String name) {
+        Manifests.ManifestObject deployment = Mockito.mock(Manifests.ManifestObject.class);
+        Mockito.when(deployment.getKind()).thenReturn("deployment");
+        Mockito.when(deployment.getName()).thenReturn(Optional.of(name));
+        Mockito.when(deployment.getApiVersion()).thenReturn("apps/v1");
+        Mockito.when(deployment.describe()).thenReturn("apps/v1/deployment: " + name);
+        return deployment;
+    }
+
+    static Object stuckReplicaSet() {
+        return parse(String.join(
+                "",
+                "{\"metadata\": {\"name\": \"nginx-deployment-bad-6bbd757f7d\",",
+                "\"labels\": {\"app\": \"nginx\", \"pod-template-hash\": \"6bbd757f7d\"},",
+                "\"annotations\": {\"deployment.kubernetes.io/revision\": \"1\"},",
+                "\"ownerReferences\": [{\"kind\": \"Deployment\", \"name\": \"nginx-deployment-bad\"}]}}"));
+    }
+
+    static Object stuckPod() {
+        return parse(String.join(
+                "",
+                "{\"metadata\": {\"name\": \"nginx-deployment-bad-6bbd757f7d-x7k2p\",",
+                "\"labels\": {\"app\": \"nginx\", \"pod-template-hash\": \"6bbd757f7d\"}},",
+                "\"status\": {\"containerStatuses\": [{\"name\": \"nginx\", \"state\": {\"waiting\":",
+                "{\"reason\": \"ImagePullBackOff\", \"message\": \"Back-off pulling image\"}}}]}}"));
+    }
+
+    private static Object parse(String json) {
+        return Configuration.defaultConfiguration().jsonProvider().parse(json);
+    }
+
     private static Object readTestFile(String name) throws IOException {
         String jsonString = Resources.toString(Resources.getResource(name), StandardCharsets.UTF_8);
         return Configuration.defaultConfiguration().jsonProvider().parse(jsonString);
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2019 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.jenkins.plugins.k8sengine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.cache.AbstractCache;
+import com.google.common.collect.ImmutableList;
+import hudson.FilePath;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.UUID;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/** Tests {@link ManifestCache}. */
+public class ManifestCacheTest {
+    private static final byte[] DEPLOYMENT = String.join(
+                    "\n", "apiVersion: apps/v1", "kind: Deployment", "metadata:", "  name: web", "")
+            .getBytes(StandardCharsets.UTF_8);
+    private static final ManifestParser SNAKEYAML = ManifestParser.forName(ManifestParser.SNAKEYAML);
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testUnchangedContentIsScannedOnce() throws Exception {
+        ManifestCache cache = new ManifestCache(ManifestCache.DEFAULT_MAX_CHARS);
+        AbstractCache.SimpleStatsCounter loadStats = new AbstractCache.SimpleStatsCounter();
+
+        ImmutableList<ManifestParser.Document> first = cache.get(SNAKEYAML, DEPLOYMENT, loadStats);
+        ImmutableList<ManifestParser.Document> second = cache.get(SNAKEYAML, DEPLOYMENT.clone(), loadStats);
+
+        assertSame(first, second);
+        assertEquals(1, cache.stats().hitCount());
+        assertEquals(1, cache.stats().missCount());
+        assertEquals(1, loadStats.snapshot().hitCount());
+    }
+
+    @Test
+    public void testCacheIsBoundedBySize() throws Exception {
+        ManifestCache cache = new ManifestCache(0);
+        AbstractCache.SimpleStatsCounter loadStats = new AbstractCache.SimpleStatsCounter();
+
+        cache.get(SNAKEYAML, DEPLOYMENT, loadStats);
+        cache.get(SNAKEYAML, DEPLOYMENT, loadStats);
+
+        assertEquals(2, cache.stats().missCount());
+    }
+
+    @Test
+    public void testEnginesAreCachedSeparately() throws Exception {
+        ManifestCache cache = new ManifestCache(ManifestCache.DEFAULT_MAX_CHARS);
+        AbstractCache.SimpleStatsCounter loadStats = new AbstractCache.SimpleStatsCounter();
+
+        cache.get(SNAKEYAML, DEPLOYMENT, loadStats);
+        cache.get(ManifestParser.forName(ManifestParser.JACKSON), DEPLOYMENT, loadStats);
+
+        assertEquals(2, cache.stats().missCount());
+    }
+
+    @Test
+    public void testBuildsGetIndependentObjects() throws Exception {
+        // A unique name keeps the content from being cached by other tests.
+        String name = UUID.randomUUID().toString();
+        File file = temporaryFolder.newFile();
+        Files.write(
+                file.toPath(),
+                String.join("\n", "apiVersion: v1", "kind: ConfigMap", "metadata:", "  name: " + name)
+                        .getBytes(StandardCharsets.UTF_8));
+
+        Manifests first = Manifests.fromFile(new FilePath(file));
+        first.getObjectManifests().get(0).addLabel("team", "frontend");
+        Manifests second = Manifests.fromFile(new FilePath(file));
+
+        assertEquals(0, first.getCacheHits());
+        assertEquals(1, first.getCacheMisses());
+        assertEquals(1, second.getCacheHits());
+        assertEquals(name, second.getObjectManifests().get(0).getName().get());
+        assertFalse(second.getObjectManifests().get(0).getLabels().containsKey("team"));
+        assertTrue(first.getObjectManifests().get(0).getLabels().containsKey("team"));
+    }
+}
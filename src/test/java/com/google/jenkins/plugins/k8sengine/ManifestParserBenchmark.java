@@ -0,0 +1,111 @@
+/*
+ * Copyright 2019 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.jenkins.plugins.k8sengine;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Compares the throughput and allocations of the {@link ManifestParser} engines on a large
+ * multi-document manifest. It isn't run by the build; run it from the test classpath with:
+ *
+ * <pre>
+ * java -cp ... com.google.jenkins.plugins.k8sengine.ManifestParserBenchmark [documents] [iterations]
+ * </pre>
+ */
+public class ManifestParserBenchmark {
+    private static final int DEFAULT_DOCUMENTS = 2000;
+    private static final int DEFAULT_ITERATIONS = 20;
+    private static final int WARMUP_ITERATIONS = 10;
+
+    public static void main(String[] args) throws Exception {
+        int documents = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_DOCUMENTS;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_ITERATIONS;
+        String manifest = manifest(documents);
+        System.out.printf("%d documents, %d KiB, %d iterations%n", documents, manifest.length() / 1024, iterations);
+
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        for (String name : ManifestParser.names()) {
+            ManifestParser parser = ManifestParser.forName(name);
+            for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+                parser.parse(manifest);
+            }
+
+            long allocated = threads.getThreadAllocatedBytes(thread);
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                parser.parse(manifest);
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            allocated = threads.getThreadAllocatedBytes(thread) - allocated;
+            System.out.printf(
+                    "%-10s %8.1f MiB/s %8.0f documents/s %8.1f MiB allocated per parse%n",
+                    name,
+                    manifest.length() * (double) iterations / seconds / (1024 * 1024),
+                    documents * (double) iterations / seconds,
+                    allocated / (double) iterations / (1024 * 1024));
+        }
+    }
+
+    /** @return A manifest of Deployments with bodies about as large as real ones. */
+    private static String manifest(int documents) {
+        StringBuilder manifest = new StringBuilder();
+        for (int i = 0; i < documents; i++) {
+            manifest.append("---\n")
+                    .append("apiVersion: apps/v1\n")
+                    .append("kind: Deployment\n")
+                    .append("metadata:\n")
+                    .append("  name: app-")
+                    .append(i)
+                    .append('\n')
+                    .append("  namespace: bench\n")
+                    .append("  labels:\n")
+                    .append("    app: app-")
+                    .append(i)
+                    .append('\n')
+                    .append("spec:\n")
+                    .append("  replicas: 3\n")
+                    .append("  selector:\n")
+                    .append("    matchLabels:\n")
+                    .append("      app: app-")
+                    .append(i)
+                    .append('\n')
+                    .append("  template:\n")
+                    .append("    metadata:\n")
+                    .append("      labels:\n")
+                    .append("        app: app-")
+                    .append(i)
+                    .append('\n')
+                    .append("    spec:\n")
+                    .append("      containers:\n");
+            for (int c = 0; c < 3; c++) {
+                manifest.append("      - name: container-")
+                        .append(c)
+                        .append('\n')
+                        .append("        image: gcr.io/bench/image:1.0.")
+                        .append(c)
+                        .append('\n')
+                        .append("        args: [\"--port=8080\", \"--verbose\"]\n")
+                        .append("        env:\n")
+                        .append("        - {name: MODE, value: production}\n")
+                        .append("        - {name: REGION, value: us-central1}\n")
+                        .append("        resources:\n")
+                        .append("          limits: {cpu: 500m, memory: 256Mi}\n");
+            }
+        }
+        return manifest.toString();
+    }
+}
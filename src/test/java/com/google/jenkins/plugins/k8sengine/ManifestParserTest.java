@@ -0,0 +1,143 @@
+/*
+ * Copyright 2019 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.jenkins.plugins.k8sengine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.common.collect.ImmutableList;
+import java.io.IOException;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.junit.Test;
+
+/** Tests the {@link ManifestParser} engines, which must parse manifests the same way. */
+public class ManifestParserTest {
+    private static final ManifestParser SNAKEYAML = ManifestParser.forName(ManifestParser.SNAKEYAML);
+    private static final ManifestParser JACKSON = ManifestParser.forName(ManifestParser.JACKSON);
+
+    private static final String MANIFEST = String.join(
+            "\n",
+            "# Leading comment",
+            "---",
+            "---",
+            "apiVersion: v1",
+            "kind: ConfigMap",
+            "metadata:",
+            "  name: config",
+            "  labels: {tier: \"1\", app: web}",
+            "data:",
+            "  script: |",
+            "    echo start",
+            "    ---",
+            "    echo end",
+            "--- # a Deployment",
+            "",
+            "# Comment inside the document",
+            "apiVersion: apps/v1",
+            "kind: Deployment",
+            "metadata:",
+            "  name: web",
+            "  namespace: prod",
+            "  annotations:",
+            "    note: ~",
+            "spec:",
+            "  replicas: 3",
+            "---",
+            "--- {apiVersion: v1, kind: Service, metadata: {name: web, namespace: null}}",
+            "---",
+            "# Trailing comment",
+            "");
+
+    @Test
+    public void testEnginesParseTheSameDocuments() throws Exception {
+        ImmutableList<ManifestParser.Document> expected = SNAKEYAML.parse(MANIFEST);
+        ImmutableList<ManifestParser.Document> actual = JACKSON.parse(MANIFEST);
+
+        assertEquals(3, expected.size());
+        assertEquals(describe(expected), describe(actual));
+    }
+
+    @Test
+    public void testEnginesReproduceTheContent() throws Exception {
+        for (ManifestParser parser : ImmutableList.of(SNAKEYAML, JACKSON)) {
+            String text = parser.parse(MANIFEST).stream()
+                    .map((document) -> document.getText() + document.getTrailer())
+                    .collect(Collectors.joining());
+            assertEquals(parser.getName(), MANIFEST, text);
+        }
+    }
+
+    @Test
+    public void testEnginesReadTheSameHeaders() throws Exception {
+        for (ManifestParser parser : ImmutableList.of(SNAKEYAML, JACKSON)) {
+            ImmutableList<ManifestParser.Document> documents = parser.parse(MANIFEST);
+
+            Map<String, Object> header = documents.get(0).getHeader();
+            assertEquals("ConfigMap", header.get("kind"));
+            Map<?, ?> labels = (Map<?, ?>) ((Map<?, ?>) header.get("metadata")).get("labels");
+            assertEquals("1", labels.get("tier"));
+            assertEquals("web", labels.get("app"));
+            assertTrue(documents.get(0).isExplicitStart());
+            assertFalse(documents.get(1).getHeader().containsKey("spec"));
+            assertFalse(((Map<?, ?>) documents.get(2).getHeader().get("metadata")).containsKey("namespace"));
+        }
+    }
+
+    @Test
+    public void testEnginesSplitCarriageReturnLineFeeds() throws Exception {
+        String manifest = String.join(
+                "\r\n", "apiVersion: v1", "kind: Secret", "---", "apiVersion: v1", "kind: Namespace", "");
+
+        assertEquals(describe(SNAKEYAML.parse(manifest)), describe(JACKSON.parse(manifest)));
+        assertEquals(2, JACKSON.parse(manifest).size());
+    }
+
+    @Test
+    public void testEnginesRejectNonObjects() {
+        for (ManifestParser parser : ImmutableList.of(SNAKEYAML, JACKSON)) {
+            try {
+                parser.parse("apiVersion: v1\nkind: Pod\n---\n- not\n- an object\n");
+                fail(parser.getName());
+            } catch (IOException e) {
+                assertEquals("Document 2 is not a Kubernetes object", e.getMessage());
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownEngineIsRejected() {
+        ManifestParser.forName("xml");
+    }
+
+    @Test
+    public void testDefaultEngineIsSnakeYaml() {
+        assertEquals(ManifestParser.SNAKEYAML, ManifestParser.forName(null).getName());
+        assertEquals(ManifestParser.SNAKEYAML, ManifestParser.forName("").getName());
+    }
+
+    private static String describe(ImmutableList<ManifestParser.Document> documents) {
+        return documents.stream()
+                .map((document) -> String.format(
+                        "%s|%b|%s|%s",
+                        document.getHeader(),
+                        document.isExplicitStart(),
+                        document.getText(),
+                        document.getTrailer()))
+                .collect(Collectors.joining("\n====\n"));
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2019 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.jenkins.plugins.k8sengine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import hudson.FilePath;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/** Tests {@link ManifestSchema}. */
+public class ManifestSchemaTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testValidObjectsHaveNoErrors() throws Exception {
+        Manifests manifests = load(
+                "apiVersion: apps/v1",
+                "kind: Deployment",
+                "metadata:",
+                "  name: web",
+                "  labels: {app: web}",
+                "  creationTimestamp: null",
+                "spec:",
+                "  replicas: 2",
+                "  selector:",
+                "    matchLabels: {app: web}",
+                "  template:",
+                "    spec:",
+                "      containers:",
+                "      - name: web",
+                "        image: nginx",
+                "        ports: [{containerPort: 80}]",
+                "        resources:",
+                "          limits: {cpu: 1, memory: 128Mi}",
+                "---",
+                "apiVersion: v1",
+                "kind: Service",
+                "metadata: {name: web}",
+                "spec:",
+                "  ports: [{port: 80, targetPort: http}]");
+
+        assertEquals(0, ManifestSchema.bundled().validate(manifests.getObjectManifests()).size());
+    }
+
+    @Test
+    public void testEveryErrorIsReported() throws Exception {
+        Manifests manifests = load(
+                "apiVersion: apps/v1",
+                "kind: Deployment",
+                "metadata:",
+                "  name: web",
+                "  labels: {tier: 1}",
+                "spec:",
+                "  replicas: two",
+                "  selector:",
+                "    matchLabels: {app: web}",
+                "  template:",
+                "    spec:",
+                "      containers:",
+                "      - image: nginx",
+                "        imagePullPolcy: Always",
+                "---",
+                "apiVersion: v1",
+                "kind: ConfigMap",
+                "metadata: {name: config}",
+                "data: [a, b]");
+
+        List<String> errors = ManifestSchema.bundled().validate(manifests.getObjectManifests());
+
+        assertEquals(5, errors.size());
+        String prefix = manifests.getObjectManifests().get(0).getFile().getRemote() + ": Deployment/web: ";
+        assertEquals(prefix + "Deployment.metadata.labels.tier: expected a string, got 1", errors.get(0));
+        assertEquals(prefix + "Deployment.spec.replicas: expected an integer, got \"two\"", errors.get(1));
+        assertTrue(errors.get(2).endsWith("containers[0]: unknown field \"imagePullPolcy\""));
+        assertTrue(errors.get(3).endsWith("containers[0]: missing required field \"name\""));
+        assertTrue(errors.get(4).endsWith("ConfigMap/config: ConfigMap.data: expected an object, got an array"));
+    }
+
+    @Test
+    public void testUnknownKindsAreNotValidated() throws Exception {
+        Manifests manifests = load(
+                "apiVersion: example.com/v1", "kind: Widget", "metadata: {name: w}", "spec: {anything: [1, 2]}");
+
+        assertEquals(0, ManifestSchema.bundled().validate(manifests.getObjectManifests()).size());
+    }
+
+    @Test
+    public void testValidationKeepsOriginalText() throws Exception {
+        Manifests manifests = load("apiVersion: v1", "kind: Namespace", "metadata:", "  name: web  # comment");
+
+        ManifestSchema.bundled().validate(manifests.getObjectManifests());
+
+        assertFalse(manifests.getObjectManifests().get(0).isModified());
+    }
+
+    @Test
+    public void testSchemaFilesAreLoadedOnce() throws Exception {
+        File file = temporaryFolder.newFile("openapi.json");
+        Files.write(
+                file.toPath(),
+                String.join(
+                                "",
+                                "{\"info\": {\"version\": \"v1.30.0\"}, \"definitions\": {\"Pod\": {",
+                                "\"type\": \"object\", \"properties\": {\"apiVersion\": {\"type\": \"string\"},",
+                                "\"kind\": {\"type\": \"string\"}, \"metadata\": {\"type\": \"object\"}},",
+                                "\"x-kubernetes-group-version-kind\": [{\"group\": \"\", \"version\": \"v1\",",
+                                "\"kind\": \"Pod\"}]}}}")
+                        .getBytes(StandardCharsets.UTF_8));
+
+        ManifestSchema schema = ManifestSchema.fromFile(new FilePath(file));
+        List<String> errors =
+                schema.validate(load("apiVersion: v1", "kind: Pod", "metadata: {name: p}", "spec: {}")
+                        .getObjectManifests());
+
+        assertSame(schema, ManifestSchema.fromFile(new FilePath(file)));
+        assertEquals("v1.30.0", schema.getVersion());
+        assertEquals(1, errors.size());
+        assertTrue(errors.get(0).endsWith("Pod/p: Pod: unknown field \"spec\""));
+    }
+
+    @Test(expected = IOException.class)
+    public void testFilesWithoutDefinitionsAreRejected() throws Exception {
+        File file = temporaryFolder.newFile("openapi.json");
+        Files.write(file.toPath(), "{\"openapi\": \"3.0.0\"}".getBytes(StandardCharsets.UTF_8));
+
+        ManifestSchema.fromFile(new FilePath(file));
+    }
+
+    private Manifests load(String... lines) throws Exception {
+        File file = temporaryFolder.newFile();
+        Files.write(file.toPath(), String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+        return Manifests.fromFile(new FilePath(file));
+    }
+}
@@ -0,0 +1,375 @@
+/*
+ * Copyright 2019 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.jenkins.plugins.k8sengine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import hudson.FilePath;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/** Tests {@link Manifests}. */
+public class ManifestsTest {
+    private static final String SERVICE = String.join(
+            "\n",
+            "# The front end service.",
+            "apiVersion: v1",
+            "kind: Service",
+            "metadata: {name: web, namespace: prod}",
+            "spec:",
+            "  ports: [ {port: 80} ]   # keep this formatting",
+            "");
+    private static final String DEPLOYMENT = String.join(
+            "\n",
+            "---",
+            "apiVersion: apps/v1",
+            "kind: Deployment",
+            "metadata:",
+            "  name: web",
+            "  labels:",
+            "    app: web",
+            "    tier: \"1\"",
+            "spec:",
+            "  template:",
+            "    metadata:",
+            "      labels: {app: other}",
+            "");
+    private static final String CONFIG_MAP = String.join(
+            "\n",
+            "---",
+            "apiVersion: v1",
+            "kind: ConfigMap",
+            "metadata:",
+            "  name: web-config",
+            "data:",
+            "  script: |",
+            "    echo '---'",
+            "");
+    private static final String TRAILER = "---\n# nothing else\n";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testHeaderFieldsAreReadWithoutParsingSources() throws Exception {
+        List<Manifests.ManifestObject> objects =
+                Manifests.fromFile(write(SERVICE + DEPLOYMENT + CONFIG_MAP)).getObjectManifests();
+
+        assertEquals(3, objects.size());
+        assertEquals("v1/Service: web", objects.get(0).describe());
+        assertEquals("prod", objects.get(0).getNamespace().get());
+        assertEquals("apps/v1/Deployment: web", objects.get(1).describe());
+        assertEquals(ImmutableMap.of("app", "web", "tier", "1"), objects.get(1).getLabels());
+        assertEquals("web-config", objects.get(2).getName().get());
+        objects.forEach((object) -> assertFalse(object.isModified()));
+    }
+
+    @Test
+    public void testUnmodifiedDocumentsAreWrittenByteForByte() throws Exception {
+        FilePath file = write(SERVICE + DEPLOYMENT + CONFIG_MAP + TRAILER);
+        Manifests manifests = Manifests.fromFile(file);
+
+        manifests.getObjectManifests().get(1).addLabel("team", "frontend");
+        manifests.write();
+
+        String written = file.readToString();
+        assertTrue(written.startsWith(SERVICE + "---\n"));
+        assertTrue(written.endsWith(CONFIG_MAP + TRAILER));
+        Manifests.ManifestObject deployment =
+                Manifests.fromFile(file).getObjectManifests().get(1);
+        assertEquals(ImmutableMap.of("app", "web", "tier", "1", "team", "frontend"), deployment.getLabels());
+    }
+
+    @Test
+    public void testUnmodifiedFilesAreNotWritten() throws Exception {
+        FilePath file = write(DEPLOYMENT);
+        Manifests manifests = Manifests.fromFile(file);
+        File written = new File(file.getRemote());
+        written.setLastModified(0);
+
+        manifests.getObjectManifests().get(0).addLabel("app", "web");
+        manifests.write();
+
+        assertFalse(manifests.getObjectManifests().get(0).isModified());
+        assertEquals(0, written.lastModified());
+    }
+
+    @Test
+    public void testToYamlKeepsOriginalText() throws Exception {
+        FilePath first = write(SERVICE + DEPLOYMENT);
+        FilePath second = write("kind: Namespace\napiVersion: v1\nmetadata: {name: prod}");
+        Manifests manifests = Manifests.fromFileList(Arrays.asList(first, second));
+
+        assertEquals(
+                SERVICE + DEPLOYMENT + "---\nkind: Namespace\napiVersion: v1\nmetadata: {name: prod}",
+                manifests.toYaml());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSourceIsParsedOnDemand() throws Exception {
+        Manifests.ManifestObject configMap =
+                Manifests.fromFile(write(CONFIG_MAP)).getObjectManifests().get(0);
+
+        assertEquals("echo '---'\n", ((Map<String, Object>) configMap.parseSource().get("data")).get("script"));
+        assertFalse(configMap.isModified());
+        assertEquals("web-config", ((Map<String, Object>) configMap.getSource().get("metadata")).get("name"));
+        assertTrue(configMap.isModified());
+    }
+
+    @Test
+    public void testFilesAreLoadedInOrder() throws Exception {
+        List<FilePath> files = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            files.add(write(configMap("first-" + i) + "---\n" + configMap("second-" + i)));
+        }
+
+        List<String> names = names(Manifests.fromFileList(files));
+
+        assertEquals(100, names.size());
+        for (int i = 0; i < 50; i++) {
+            assertEquals("first-" + i, names.get(2 * i));
+            assertEquals("second-" + i, names.get(2 * i + 1));
+        }
+    }
+
+    @Test
+    public void testConcurrentLoadsAreIsolated() throws Exception {
+        List<List<FilePath>> builds = new ArrayList<>();
+        for (int build = 0; build < 8; build++) {
+            List<FilePath> files = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                files.add(write(configMap(build + "-" + i)));
+            }
+            builds.add(files);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(builds.size());
+        try {
+            List<Future<List<String>>> results = new ArrayList<>();
+            for (List<FilePath> files : builds) {
+                results.add(executor.submit(() -> names(Manifests.fromFileList(files))));
+            }
+            for (int build = 0; build < builds.size(); build++) {
+                List<String> names = results.get(build).get();
+                for (int i = 0; i < 20; i++) {
+                    assertEquals(build + "-" + i, names.get(i));
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testParallelLoadFailuresAreReported() throws Exception {
+        Manifests.fromFileList(Arrays.asList(write(CONFIG_MAP), write("- not an object\n")));
+    }
+
+    @Test
+    public void testPatternGlobsAreResolvedInPathOrder() throws Exception {
+        File root = temporaryFolder.newFolder();
+        writeFile(root, "k8s/web/service.yaml", configMap("web-service"));
+        writeFile(root, "k8s/api/deployment.yml", configMap("api-deployment"));
+        writeFile(root, "k8s/api/README.md", "not a manifest");
+        writeFile(root, "k8s/test/fixture.yaml", configMap("fixture"));
+
+        Manifests manifests = Manifests.fromPattern(new FilePath(root), "k8s/**/*.yaml,k8s/**/*.yml", "**/test/**");
+
+        assertEquals(Arrays.asList("api-deployment", "web-service"), names(manifests));
+    }
+
+    @Test
+    public void testPatternDirectoryLoadsOnlyManifestExtensions() throws Exception {
+        File root = temporaryFolder.newFolder();
+        writeFile(
+                root,
+                "k8s/b.json",
+                String.join(
+                        "\n",
+                        "{\"apiVersion\": \"v1\",",
+                        "\"kind\": \"ConfigMap\",",
+                        "\"metadata\": {\"name\": \"b\"}}"));
+        writeFile(root, "k8s/a.yaml", configMap("a"));
+        writeFile(root, "k8s/notes.txt", "- not a manifest");
+
+        assertEquals(Arrays.asList("a", "b"), names(Manifests.fromPattern(new FilePath(root), "k8s", null)));
+    }
+
+    @Test
+    public void testPatternDirectoryLeavesOutSubdirectories() throws Exception {
+        File root = temporaryFolder.newFolder();
+        writeFile(root, "k8s/a.yaml", configMap("a"));
+        writeFile(root, "k8s/overlays/b.yaml", configMap("b"));
+
+        assertEquals(Arrays.asList("a"), names(Manifests.fromPattern(new FilePath(root), "k8s", null)));
+    }
+
+    @Test(expected = IOException.class)
+    public void testPatternWithoutMatchesFails() throws Exception {
+        Manifests.fromPattern(new FilePath(temporaryFolder.newFolder()), "**/*.yaml", null);
+    }
+
+    @Test
+    public void testSerializationKeepsObjects() throws Exception {
+        Manifests manifests = Manifests.fromFile(write(SERVICE + DEPLOYMENT));
+        manifests.getObjectManifests().get(1).addLabel("team", "frontend");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(manifests);
+        }
+        Manifests copy;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            copy = (Manifests) in.readObject();
+        }
+
+        assertEquals(Arrays.asList("web", "web"), names(copy));
+        assertEquals("frontend", copy.getObjectManifests().get(1).getLabels().get("team"));
+        assertEquals(manifests.toYaml(), copy.toYaml());
+    }
+
+    @Test
+    public void testSummarizedObjectsOnlyHoldTheirHeaders() throws Exception {
+        FilePath file = write(SERVICE + DEPLOYMENT);
+        Manifests summaries = Manifests.fromFile(file).toSummaries();
+        Manifests.ManifestObject deployment = summaries.getObjectManifests().get(1);
+
+        assertEquals("apps/v1/Deployment: web", deployment.describe());
+        assertEquals(1, deployment.getSummary().getIndex());
+        assertFalse(deployment.isModified());
+        try {
+            deployment.toYaml();
+            fail("A summarized object was rendered");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().contains("apps/v1/Deployment: web"));
+        }
+        try {
+            summaries.write();
+            fail("Summarized manifests were written");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().contains("no documents to write"));
+        }
+        assertEquals(SERVICE + DEPLOYMENT, file.readToString());
+    }
+
+    @Test
+    public void testQueryMatchesEveryCriterion() throws Exception {
+        Manifests manifests = Manifests.fromFile(write(String.join(
+                "---\n",
+                object("apps/v1", "Deployment", "web", "prod", "app: web"),
+                object("apps/v1", "Deployment", "api", "prod", "app: api"),
+                object("extensions/v1beta1", "Deployment", "legacy", "prod", "app: web"),
+                object("v1", "Service", "web", "prod", "app: web"),
+                object("apps/v1", "Deployment", "web", null, "app: web"))));
+
+        assertEquals(
+                Arrays.asList("web", "legacy"),
+                names(manifests.query().kind("deployment").namespace("prod").label("app", "web")));
+        assertEquals(
+                Arrays.asList("web", "api"),
+                names(manifests.query().apiVersionAndKind("apps/v1", "Deployment").namespace("prod")));
+        assertEquals(1, manifests.query().namespace(null).list().size());
+        assertEquals(3, manifests.query().name("web").list().size());
+        assertEquals(5, manifests.query().list().size());
+        assertTrue(manifests.query().kind("Deployment").name("missing").list().isEmpty());
+    }
+
+    @Test
+    public void testKindsAreReturnedInManifestOrder() throws Exception {
+        Manifests manifests = Manifests.fromFile(write(String.join(
+                "---\n",
+                object("v1", "Service", "first", null, "app: web"),
+                object("apps/v1", "Deployment", "second", null, "app: web"),
+                object("v1", "Service", "third", null, "app: web"))));
+
+        assertEquals(
+                Arrays.asList("first", "second", "third"),
+                names(manifests.getObjectManifestsOfKinds(ImmutableSet.of("Deployment", "SERVICE"))));
+    }
+
+    @Test
+    public void testLabelQueriesSeeAddedLabels() throws Exception {
+        Manifests manifests = Manifests.fromFile(write(object("apps/v1", "Deployment", "web", null, "app: web")));
+        assertTrue(manifests.query().label("team", "frontend").list().isEmpty());
+
+        manifests.getObjectManifests().get(0).addLabel("team", "frontend");
+
+        assertEquals(Arrays.asList("web"), names(manifests.query().label("team", "frontend")));
+    }
+
+    @Test(expected = IOException.class)
+    public void testNonObjectDocumentsAreRejected() throws Exception {
+        Manifests.fromFile(write(SERVICE + "---\n- not\n- an object\n"));
+    }
+
+    private static String configMap(String name) {
+        return "apiVersion: v1\nkind: ConfigMap\nmetadata:\n  name: " + name + "\n";
+    }
+
+    private static String object(String apiVersion, String kind, String name, String namespace, String label) {
+        return String.format(
+                "apiVersion: %s\nkind: %s\nmetadata:\n  name: %s\n%s  labels: {%s}\n",
+                apiVersion, kind, name, namespace == null ? "" : "  namespace: " + namespace + "\n", label);
+    }
+
+    private static List<String> names(Manifests manifests) {
+        return names(manifests.getObjectManifests());
+    }
+
+    private static List<String> names(Manifests.Query query) {
+        return names(query.list());
+    }
+
+    private static List<String> names(List<Manifests.ManifestObject> objects) {
+        return objects.stream()
+                .map((object) -> object.getName().get())
+                .collect(Collectors.toList());
+    }
+
+    private static void writeFile(File root, String path, String content) throws IOException {
+        File file = new File(root, path);
+        Files.createDirectories(file.getParentFile().toPath());
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private FilePath write(String content) throws IOException {
+        File file = temporaryFolder.newFile();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return new FilePath(file);
+    }
+}
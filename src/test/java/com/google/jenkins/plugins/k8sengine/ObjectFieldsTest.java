@@ -0,0 +1,137 @@
+/*
+ * Copyright 2019 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.jenkins.plugins.k8sengine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.io.Resources;
+import com.jayway.jsonpath.JsonPath;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+/** Tests {@link ObjectFields}. */
+public class ObjectFieldsTest {
+    private static final String VERIFIABLE_DEPLOYMENT_OUTPUT = "verifiableDeploymentOutput.json";
+    private static final ObjectFields FIELDS = new ObjectFields.Builder()
+            .field("metadata", "annotations", "deployment.kubernetes.io/revision")
+            .field("spec", "replicas")
+            .field("status")
+            .build();
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testOnlyProjectedFieldsAreKept() throws Exception {
+        Map<String, Object> deployment = (Map<String, Object>) FIELDS.parse(stream(deploymentJson()));
+
+        Map<String, Object> metadata = (Map<String, Object>) deployment.get("metadata");
+        assertEquals("nginx-deployment", metadata.get("name"));
+        assertEquals(
+                "1", ((Map<String, Object>) metadata.get("annotations")).get("deployment.kubernetes.io/revision"));
+        assertFalse(((Map<String, Object>) metadata.get("annotations"))
+                .containsKey("kubectl.kubernetes.io/last-applied-configuration"));
+        assertFalse(metadata.containsKey("uid"));
+        assertEquals(1, ((Map<String, Object>) deployment.get("spec")).size());
+        assertEquals(6, (int) JsonPath.read(deployment, "status.availableReplicas"));
+        assertFalse(deployment.containsKey("apiVersion"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testItemsOfListsAreProjected() throws Exception {
+        String deployment = deploymentJson();
+        String list = String.format(
+                "{\"apiVersion\": \"v1\", \"items\": [%s, %s], \"kind\": \"List\"}", deployment, deployment);
+
+        Map<String, Object> result = (Map<String, Object>) FIELDS.parse(stream(list));
+
+        List<Object> items = (List<Object>) result.get("items");
+        assertEquals(2, items.size());
+        assertEquals(6, (int) JsonPath.read(items.get(1), "spec.replicas"));
+        assertFalse(((Map<String, Object>) JsonPath.read(items.get(1), "metadata")).containsKey("uid"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testAllKeepsEveryField() throws Exception {
+        Map<String, Object> deployment = (Map<String, Object>) ObjectFields.ALL.parse(stream(deploymentJson()));
+
+        assertTrue(ObjectFields.ALL.isAll());
+        assertEquals("apps/v1", deployment.get("apiVersion"));
+        assertEquals("nginx", JsonPath.read(deployment, "spec.template.spec.containers[0].name"));
+    }
+
+    @Test
+    public void testEmptyResponseIsNull() throws Exception {
+        assertNull(FIELDS.parse(stream("")));
+    }
+
+    @Test
+    public void testProjectionIsSerializable() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(FIELDS);
+        }
+        ObjectFields fields;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            fields = (ObjectFields) in.readObject();
+        }
+
+        assertEquals(FIELDS.parse(stream(deploymentJson())), fields.parse(stream(deploymentJson())));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testParsedObjectsAreProjected() throws Exception {
+        Object parsed = ObjectFields.ALL.parse(stream(deploymentJson()));
+
+        Map<String, Object> deployment = (Map<String, Object>) FIELDS.project(parsed);
+
+        assertEquals(FIELDS.parse(stream(deploymentJson())), deployment);
+        assertFalse(((Map<String, Object>) deployment.get("metadata")).containsKey("uid"));
+    }
+
+    @Test
+    public void testUnionCoversBothFields() {
+        ObjectFields other = new ObjectFields.Builder().field("metadata", "labels").build();
+
+        ObjectFields union = FIELDS.and(other);
+
+        assertTrue(union.covers(FIELDS));
+        assertTrue(union.covers(other));
+        assertFalse(FIELDS.covers(other));
+        assertFalse(union.covers(ObjectFields.ALL));
+        assertTrue(ObjectFields.ALL.covers(union));
+        assertTrue(FIELDS.and(ObjectFields.ALL).isAll());
+    }
+
+    private static String deploymentJson() throws IOException {
+        return Resources.toString(Resources.getResource(VERIFIABLE_DEPLOYMENT_OUTPUT), StandardCharsets.UTF_8);
+    }
+
+    private static InputStream stream(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
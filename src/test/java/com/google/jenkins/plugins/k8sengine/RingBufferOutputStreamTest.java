@@ -0,0 +1,60 @@
+/*
+ * Copyright 2019 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.jenkins.plugins.k8sengine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+
+/** Tests {@link RingBufferOutputStream}. */
+public class RingBufferOutputStreamTest {
+    @Test
+    public void testRetainsEverythingBelowCapacity() throws Exception {
+        RingBufferOutputStream out = new RingBufferOutputStream(8);
+        out.write("abc".getBytes(StandardCharsets.UTF_8));
+        out.write('d');
+        assertFalse(out.isTruncated());
+        assertEquals("abcd", out.toString("UTF-8"));
+    }
+
+    @Test
+    public void testRetainsTailAcrossWrites() throws Exception {
+        RingBufferOutputStream out = new RingBufferOutputStream(4);
+        out.write("abc".getBytes(StandardCharsets.UTF_8));
+        out.write("defg".getBytes(StandardCharsets.UTF_8), 0, 3);
+        assertTrue(out.isTruncated());
+        assertEquals("cdef", new String(out.toByteArray(), StandardCharsets.UTF_8));
+        assertEquals("[...]cdef", out.toString("UTF-8"));
+    }
+
+    @Test
+    public void testRetainsTailOfOversizedWrite() throws Exception {
+        RingBufferOutputStream out = new RingBufferOutputStream(4);
+        out.write('x');
+        out.write("abcdefgh".getBytes(StandardCharsets.UTF_8));
+        assertEquals("efgh", new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testExactCapacityIsNotTruncated() throws Exception {
+        RingBufferOutputStream out = new RingBufferOutputStream(4);
+        out.write("abcd".getBytes(StandardCharsets.UTF_8));
+        assertFalse(out.isTruncated());
+        assertEquals("abcd", out.toString("UTF-8"));
+    }
+}
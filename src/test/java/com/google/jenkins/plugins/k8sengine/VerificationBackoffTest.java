@@ -0,0 +1,109 @@
+/*
+ * Copyright 2019 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.jenkins.plugins.k8sengine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.Test;
+import reactor.retry.IterationContext;
+
+/** Tests {@link VerificationBackoff}. */
+public class VerificationBackoffTest {
+    @Test
+    public void testDelaysGrowUpToTheCap() {
+        VerificationBackoff backoff = new VerificationBackoff(1, 10, 2, 0);
+
+        assertEquals(Duration.ofSeconds(1), delay(backoff, 1));
+        assertEquals(Duration.ofSeconds(2), delay(backoff, 2));
+        assertEquals(Duration.ofSeconds(8), delay(backoff, 4));
+        assertEquals(Duration.ofSeconds(10), delay(backoff, 5));
+        assertEquals(Duration.ofSeconds(10), delay(backoff, 20));
+    }
+
+    @Test
+    public void testMultiplierOfOneKeepsDelaysFixed() {
+        VerificationBackoff backoff = new VerificationBackoff(5, 30, 1, 0);
+
+        assertEquals(Duration.ofSeconds(5), delay(backoff, 1));
+        assertEquals(Duration.ofSeconds(5), delay(backoff, 10));
+    }
+
+    @Test
+    public void testJitterRandomizesDelaysWithinBounds() {
+        VerificationBackoff backoff = new VerificationBackoff(1, 30, 2, 50);
+
+        Set<Duration> delays = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            Duration delay = delay(backoff, 4);
+            assertTrue(delay.toString(), delay.compareTo(Duration.ofSeconds(4)) >= 0);
+            assertTrue(delay.toString(), delay.compareTo(Duration.ofSeconds(12)) <= 0);
+            delays.add(delay);
+        }
+        assertTrue(delays.size() > 1);
+    }
+
+    @Test
+    public void testMaxDelayIsRaisedToTheInitialDelay() {
+        assertEquals(10, new VerificationBackoff(10, 5, 2, 0).getMaxDelayInSeconds());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInitialDelayMustBePositive() {
+        new VerificationBackoff(0, 30, 2, 50);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testJitterMustBeAPercentage() {
+        new VerificationBackoff(1, 30, 2, 101);
+    }
+
+    @Test
+    public void testBuildStepSettingsOverrideTheDefaults() {
+        KubernetesEngineBuilder builder = new KubernetesEngineBuilder();
+        builder.setVerifyMaxDelayInSeconds(60);
+        builder.setVerifyJitterPercent(0);
+
+        VerificationBackoff backoff = builder.getVerificationBackoff(new VerificationBackoff(3, 20, 3, 25));
+
+        assertEquals(3, backoff.getInitialDelayInSeconds());
+        assertEquals(60, backoff.getMaxDelayInSeconds());
+        assertEquals(3, backoff.getMultiplier());
+        assertEquals(0, backoff.getJitterPercent());
+    }
+
+    private static Duration delay(VerificationBackoff backoff, long iteration) {
+        IterationContext<Object> context = new IterationContext<Object>() {
+            @Override
+            public Object applicationContext() {
+                return null;
+            }
+
+            @Override
+            public long iteration() {
+                return iteration;
+            }
+
+            @Override
+            public Duration backoff() {
+                return Duration.ZERO;
+            }
+        };
+        return backoff.jitter().apply(backoff.backoff().apply(context));
+    }
+}
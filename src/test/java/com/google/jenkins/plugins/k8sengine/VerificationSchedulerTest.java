@@ -0,0 +1,132 @@
+/*
+ * Copyright 2019 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.jenkins.plugins.k8sengine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+/** Tests {@link VerificationScheduler}. */
+public class VerificationSchedulerTest {
+    @Test
+    public void testParallelismBoundsRunningTasks() throws Exception {
+        VerificationScheduler scheduler = new VerificationScheduler(2, false);
+        VerificationScheduler.Lane lane = scheduler.newLane("build");
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(5);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+
+        for (int i = 0; i < 5; i++) {
+            lane.execute(() -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                await(release);
+                running.decrementAndGet();
+                finished.countDown();
+            });
+        }
+
+        assertEquals(2, scheduler.getRunning());
+        assertEquals(3, scheduler.getQueueDepth());
+        release.countDown();
+        assertTrue(finished.await(10, TimeUnit.SECONDS));
+        assertEquals(2, maxRunning.get());
+        waitForIdle(scheduler);
+        assertEquals(5, scheduler.getCompleted());
+        assertEquals(0, scheduler.getQueueDepth());
+    }
+
+    @Test
+    public void testLanesTakeTurns() throws Exception {
+        VerificationScheduler scheduler = new VerificationScheduler(1, false);
+        VerificationScheduler.Lane large = scheduler.newLane("large");
+        VerificationScheduler.Lane small = scheduler.newLane("small");
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(6);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+
+        // The first task holds the only thread while the others are queued.
+        large.execute(() -> {
+            await(release);
+            order.add("large");
+            finished.countDown();
+        });
+        for (int i = 0; i < 4; i++) {
+            large.execute(() -> {
+                order.add("large");
+                finished.countDown();
+            });
+        }
+        small.execute(() -> {
+            order.add("small");
+            finished.countDown();
+        });
+        assertEquals(2, scheduler.getWaitingLanes());
+        release.countDown();
+
+        assertTrue(finished.await(10, TimeUnit.SECONDS));
+        assertEquals("small", order.get(2));
+    }
+
+    @Test
+    public void testVirtualThreadsFallBackOnOlderJdks() throws Exception {
+        VerificationScheduler scheduler = new VerificationScheduler(1, true);
+        CountDownLatch finished = new CountDownLatch(1);
+
+        scheduler.newLane("build").execute(finished::countDown);
+
+        assertTrue(finished.await(10, TimeUnit.SECONDS));
+        assertEquals(VerificationScheduler.isVirtualThreadsSupported(), scheduler.isUsingVirtualThreads());
+    }
+
+    @Test
+    public void testRaisingParallelismStartsQueuedTasks() throws Exception {
+        VerificationScheduler scheduler = new VerificationScheduler(1, false);
+        VerificationScheduler.Lane lane = scheduler.newLane("build");
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(2);
+
+        lane.execute(() -> await(release));
+        lane.execute(finished::countDown);
+        lane.execute(finished::countDown);
+        assertEquals(2, scheduler.getQueueDepth());
+        scheduler.configure(3, false);
+
+        // The queued tasks run while the first one still holds its thread.
+        assertTrue(finished.await(10, TimeUnit.SECONDS));
+        release.countDown();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void waitForIdle(VerificationScheduler scheduler) throws InterruptedException {
+        for (int i = 0; i < 100 && scheduler.getRunning() > 0; i++) {
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2019 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.jenkins.plugins.k8sengine;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Resources;
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.JsonPath;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+/** Tests {@link VerificationTask}. */
+public class VerificationTaskTest {
+    private static final String VERIFIABLE_DEPLOYMENT_OUTPUT = "verifiableDeploymentOutput.json";
+    private static final String UNVERIFIABLE_DEPLOYMENT_OUTPUT = "unverifiableDeploymentOutput.json";
+
+    @Test
+    public void testObjectsOfAKindAreRetrievedTogether() throws Exception {
+        KubernetesBackend kubectl = Mockito.mock(KubernetesBackend.class);
+        Mockito.when(kubectl.getObjects(eq("deployment"), isNull(), any(), any()))
+                .thenReturn(ImmutableList.of(readTestFile(VERIFIABLE_DEPLOYMENT_OUTPUT)));
+
+        boolean verified = VerificationTask.verifyObjects(
+                kubectl,
+                ImmutableList.of(deployment("nginx-deployment"), deployment("nginx-deployment")),
+                new PrintStream(new ByteArrayOutputStream(), true, StandardCharsets.UTF_8.name()),
+                1);
+
+        assertTrue(verified);
+        Mockito.verify(kubectl, Mockito.times(1)).getObjects(eq("deployment"), isNull(), any(Collection.class), any());
+        Mockito.verify(kubectl, Mockito.never()).getObject(anyString(), anyString());
+    }
+
+    @Test
+    public void testWatchVerifiesObjectsAsTheyArrive() throws Exception {
+        KubernetesBackend kubectl = Mockito.mock(KubernetesBackend.class);
+        Closeable watch = Mockito.mock(Closeable.class);
+        Object deployment = readTestFile(VERIFIABLE_DEPLOYMENT_OUTPUT);
+        Mockito.when(kubectl.watch(eq("deployment"), isNull(), any())).thenAnswer((invocation) -> {
+            invocation.getArgument(2, KubernetesBackend.WatchListener.class).onObject(deployment);
+            return watch;
+        });
+
+        boolean verified = VerificationTask.watchObjects(
+                kubectl,
+                ImmutableList.of(deployment("nginx-deployment")),
+                new PrintStream(new ByteArrayOutputStream(), true, StandardCharsets.UTF_8.name()),
+                1);
+
+        assertTrue(verified);
+        Mockito.verify(watch).close();
+        Mockito.verify(kubectl, Mockito.never()).getObjects(anyString(), any(), any(), any());
+    }
+
+    @Test
+    public void testWatchFallsBackToPollingWhenItEnds() throws Exception {
+        KubernetesBackend kubectl = Mockito.mock(KubernetesBackend.class);
+        Mockito.when(kubectl.watch(eq("deployment"), isNull(), any())).thenAnswer((invocation) -> {
+            invocation.getArgument(2, KubernetesBackend.WatchListener.class).onClose(null);
+            return Mockito.mock(Closeable.class);
+        });
+        Mockito.when(kubectl.getObjects(eq("deployment"), isNull(), any(), any()))
+                .thenReturn(ImmutableList.of(readTestFile(VERIFIABLE_DEPLOYMENT_OUTPUT)));
+
+        boolean verified = VerificationTask.watchObjects(
+                kubectl,
+                ImmutableList.of(deployment("nginx-deployment")),
+                new PrintStream(new ByteArrayOutputStream(), true, StandardCharsets.UTF_8.name()),
+                1);
+
+        assertTrue(verified);
+        Mockito.verify(kubectl).getObjects(eq("deployment"), isNull(), any(Collection.class), any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testPollingStopsOnceADeploymentFails() throws Exception {
+        Object deployment = readTestFile(UNVERIFIABLE_DEPLOYMENT_OUTPUT);
+        List<Map<String, Object>> conditions = JsonPath.read(deployment, "status.conditions");
+        conditions.get(1).put("status", "False");
+        conditions.get(1).put("reason", "ProgressDeadlineExceeded");
+        KubernetesBackend kubectl = Mockito.mock(KubernetesBackend.class);
+        Mockito.when(kubectl.getObjects(eq("deployment"), isNull(), any(), any()))
+                .thenReturn(ImmutableList.of(deployment));
+
+        boolean verified = VerificationTask.verifyObjects(
+                kubectl,
+                ImmutableList.of(deployment("nginx-deployment-bad")),
+                new PrintStream(new ByteArrayOutputStream(), true, StandardCharsets.UTF_8.name()),
+                1);
+
+        assertFalse(verified);
+        Mockito.verify(kubectl, Mockito.times(1)).getObjects(eq("deployment"), isNull(), any(Collection.class), any());
+    }
+
+    @Test
+    public void testWatchLooksForStuckPodsAwayFromTheWatchThread() throws Exception {
+        KubernetesBackend kubectl = Mockito.mock(KubernetesBackend.class);
+        Object deployment = readTestFile(UNVERIFIABLE_DEPLOYMENT_OUTPUT);
+        AtomicReference<Thread> watchThread = new AtomicReference<>();
+        Set<Thread> queryThreads = ConcurrentHashMap.newKeySet();
+        Mockito.when(kubectl.watch(eq("deployment"), isNull(), any())).thenAnswer((invocation) -> {
+            watchThread.set(Thread.currentThread());
+            invocation.getArgument(2, KubernetesBackend.WatchListener.class).onObject(deployment);
+            return Mockito.mock(Closeable.class);
+        });
+        Mockito.when(kubectl.getObjectsThatMatchLabels(anyString(), any(), any(), any()))
+                .thenAnswer((invocation) -> {
+                    queryThreads.add(Thread.currentThread());
+                    return ImmutableList.of(
+                            "pod".equals(invocation.getArgument(0))
+                                    ? KubernetesVerifiersTest.stuckPod()
+                                    : KubernetesVerifiersTest.stuckReplicaSet());
+                });
+
+        boolean verified = VerificationTask.watchObjects(
+                kubectl,
+                ImmutableList.of(deployment("nginx-deployment-bad")),
+                new PrintStream(new ByteArrayOutputStream(), true, StandardCharsets.UTF_8.name()),
+                1);
+
+        assertFalse(verified);
+        assertFalse(queryThreads.isEmpty());
+        assertFalse(queryThreads.contains(watchThread.get()));
+        Mockito.verify(kubectl, Mockito.never()).getObjects(anyString(), any(), any(), any());
+    }
+
+    @Test
+    public void testInterruptedVerificationThrowsInterruptedException() throws Exception {
+        KubernetesBackend kubectl = Mockito.mock(KubernetesBackend.class);
+        CountDownLatch polled = new CountDownLatch(1);
+        Mockito.when(kubectl.getObjects(eq("deployment"), isNull(), any(), any()))
+                .thenAnswer((invocation) -> {
+                    polled.countDown();
+                    Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+                    return ImmutableList.of();
+                });
+        AtomicReference<Throwable> thrown = new AtomicReference<>();
+        Thread build = new Thread(() -> {
+            try {
+                VerificationTask.verifyObjects(
+                        kubectl,
+                        ImmutableList.of(deployment("nginx-deployment")),
+                        new PrintStream(new ByteArrayOutputStream(), true, StandardCharsets.UTF_8.name()),
+                        1);
+            } catch (Throwable t) {
+                thrown.set(t);
+            }
+        });
+
+        build.start();
+        assertTrue(polled.await(30, TimeUnit.SECONDS));
+        build.interrupt();
+        build.join(TimeUnit.SECONDS.toMillis(30));
+
+        assertFalse(build.isAlive());
+        assertTrue(thrown.get() instanceof InterruptedException);
+    }
+
+    private static Manifests.ManifestObject deployment(String name) {
+        Manifests.ManifestObject deployment = Mockito.mock(Manifests.ManifestObject.class);
+        Mockito.when(deployment.getKind()).thenReturn("Deployment");
+        Mockito.when(deployment.getApiVersion()).thenReturn("apps/v1");
+        Mockito.when(deployment.getName()).thenReturn(Optional.of(name));
+        Mockito.when(deployment.getNamespace()).thenReturn(Optional.empty());
+        return deployment;
+    }
+
+    private static Object readTestFile(String name) throws IOException {
+        String jsonString = Resources.toString(Resources.getResource(name), StandardCharsets.UTF_8);
+        return Configuration.defaultConfiguration().jsonProvider().parse(jsonString);
+    }
+}